@@ -37,6 +37,9 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     static final ResourceLeakDetector<ByteBuf> leakDetector = new ResourceLeakDetector<ByteBuf>(ByteBuf.class);
 
+    // Returned by indexOfFoundByProcessor() if the processor is not a simple search.
+    private static final int NOT_SEARCHABLE = -2;
+
     int readerIndex;
     int writerIndex;
     private int markedReaderIndex;
@@ -146,6 +149,13 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return maxCapacity() - writerIndex;
     }
 
+    /**
+     * Resets the marked indexes, which is needed when the instance is recycled.
+     */
+    final void discardMarks() {
+        markedReaderIndex = markedWriterIndex = 0;
+    }
+
     @Override
     public ByteBuf markReaderIndex() {
         markedReaderIndex = readerIndex;
@@ -643,6 +653,14 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return slice;
     }
 
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        checkReadableBytes(length);
+        ByteBuf slice = retainedSlice(readerIndex, length);
+        readerIndex += length;
+        return slice;
+    }
+
     @Override
     public ByteBuf readBytes(byte[] dst, int dstIndex, int length) {
         checkReadableBytes(length);
@@ -896,6 +914,11 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return new DuplicatedByteBuf(this);
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return PooledDuplicatedByteBuf.newInstance(this, readerIndex, writerIndex);
+    }
+
     @Override
     public ByteBuf slice() {
         return slice(readerIndex, readableBytes());
@@ -906,6 +929,16 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return new SlicedByteBuf(this, index, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice() {
+        return retainedSlice(readerIndex, readableBytes());
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return PooledSlicedByteBuf.newInstance(this, index, length);
+    }
+
     @Override
     public ByteBuffer nioBuffer() {
         return nioBuffer(readerIndex, readableBytes());
@@ -944,6 +977,11 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return ByteBufUtil.indexOf(this, fromIndex, toIndex, value);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        return ByteBufUtil.indexOf(this, fromIndex, toIndex, value1, value2);
+    }
+
     @Override
     public int bytesBefore(byte value) {
         return bytesBefore(readerIndex(), readableBytes(), value);
@@ -988,6 +1026,11 @@ public abstract class AbstractByteBuf extends ByteBuf {
         }
 
         final int endIndex = index + length;
+        int found = indexOfFoundByProcessor(index, endIndex, processor);
+        if (found != NOT_SEARCHABLE) {
+            return found;
+        }
+
         int i = index;
         try {
             do {
@@ -1004,6 +1047,26 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return -1;
     }
 
+    /**
+     * Replaces the well-known single-byte search processors by {@link #indexOf(int, int, byte, byte)}, which
+     * searches a word at a time.  Returns {@link #NOT_SEARCHABLE} for any other processor.
+     */
+    private int indexOfFoundByProcessor(int fromIndex, int toIndex, ByteBufProcessor processor) {
+        if (processor == ByteBufProcessor.FIND_LF) {
+            return indexOf(fromIndex, toIndex, (byte) '\n', (byte) '\n');
+        }
+        if (processor == ByteBufProcessor.FIND_CRLF) {
+            return indexOf(fromIndex, toIndex, (byte) '\r', (byte) '\n');
+        }
+        if (processor == ByteBufProcessor.FIND_CR) {
+            return indexOf(fromIndex, toIndex, (byte) '\r', (byte) '\r');
+        }
+        if (processor == ByteBufProcessor.FIND_NUL) {
+            return indexOf(fromIndex, toIndex, (byte) 0, (byte) 0);
+        }
+        return NOT_SEARCHABLE;
+    }
+
     @Override
     public int forEachByteDesc(ByteBufProcessor processor) {
         int index = readerIndex;
@@ -1029,6 +1092,11 @@ public abstract class AbstractByteBuf extends ByteBuf {
             return -1;
         }
 
+        int found = indexOfFoundByProcessor(index + length, index, processor);
+        if (found != NOT_SEARCHABLE) {
+            return found;
+        }
+
         int i = index + length - 1;
         try {
             do {
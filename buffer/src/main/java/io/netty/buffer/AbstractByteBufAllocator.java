@@ -39,6 +39,7 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
                 break;
             case ADVANCED:
             case PARANOID:
+            case ADAPTIVE:
                 leak = AbstractByteBuf.leakDetector.open(buf);
                 if (leak != null) {
                     buf = new AdvancedLeakAwareByteBuf(buf, leak);
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * Abstract base class for the recycled derived buffers returned by {@link ByteBuf#retainedSlice(int, int)} and
+ * {@link ByteBuf#retainedDuplicate()}.  Unlike {@link AbstractDerivedByteBuf} it has its own reference count and
+ * holds a single reference to its parent, which is released when this buffer is deallocated.
+ */
+abstract class AbstractPooledDerivedByteBuf extends AbstractReferenceCountedByteBuf {
+
+    private final Recycler.Handle<AbstractPooledDerivedByteBuf> recyclerHandle;
+
+    ByteBuf buffer;
+    int adjustment;
+
+    @SuppressWarnings("unchecked")
+    AbstractPooledDerivedByteBuf(Recycler.Handle<? extends AbstractPooledDerivedByteBuf> recyclerHandle) {
+        super(0);
+        this.recyclerHandle = (Handle<AbstractPooledDerivedByteBuf>) recyclerHandle;
+    }
+
+    /**
+     * Initializes a recycled instance.  {@link #capacity()} must be valid before this method is called.
+     */
+    final void init(ByteBuf buffer, int adjustment, int readerIndex, int writerIndex, int maxCapacity) {
+        this.buffer = buffer;
+        this.adjustment = adjustment;
+        maxCapacity(maxCapacity);
+        setIndex(readerIndex, writerIndex);
+        discardMarks();
+        buffer.retain();
+        setRefCnt(1);
+    }
+
+    @Override
+    protected final void deallocate() {
+        ByteBuf parent = buffer;
+        buffer = null;
+        recyclerHandle.recycle(this);
+        parent.release();
+    }
+
+    @Override
+    public final ByteBuf unwrap() {
+        return buffer;
+    }
+
+    @Override
+    public final ByteBufAllocator alloc() {
+        return buffer.alloc();
+    }
+
+    @Override
+    public final ByteOrder order() {
+        return buffer.order();
+    }
+
+    @Override
+    public final boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    @Override
+    public final boolean hasArray() {
+        return buffer.hasArray();
+    }
+
+    @Override
+    public final byte[] array() {
+        return buffer.array();
+    }
+
+    @Override
+    public final int arrayOffset() {
+        return buffer.arrayOffset() + adjustment;
+    }
+
+    @Override
+    public final boolean hasMemoryAddress() {
+        return buffer.hasMemoryAddress();
+    }
+
+    @Override
+    public final long memoryAddress() {
+        return buffer.memoryAddress() + adjustment;
+    }
+
+    @Override
+    protected final byte _getByte(int index) {
+        return buffer.getByte(index + adjustment);
+    }
+
+    @Override
+    protected final short _getShort(int index) {
+        return buffer.getShort(index + adjustment);
+    }
+
+    @Override
+    protected final int _getUnsignedMedium(int index) {
+        return buffer.getUnsignedMedium(index + adjustment);
+    }
+
+    @Override
+    protected final int _getInt(int index) {
+        return buffer.getInt(index + adjustment);
+    }
+
+    @Override
+    protected final long _getLong(int index) {
+        return buffer.getLong(index + adjustment);
+    }
+
+    @Override
+    public final ByteBuf copy(int index, int length) {
+        checkIndex(index, length);
+        return buffer.copy(index + adjustment, length);
+    }
+
+    @Override
+    public final ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buffer.getBytes(index + adjustment, dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public final ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buffer.getBytes(index + adjustment, dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public final ByteBuf getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        buffer.getBytes(index + adjustment, dst);
+        return this;
+    }
+
+    @Override
+    protected final void _setByte(int index, int value) {
+        buffer.setByte(index + adjustment, value);
+    }
+
+    @Override
+    protected final void _setShort(int index, int value) {
+        buffer.setShort(index + adjustment, value);
+    }
+
+    @Override
+    protected final void _setMedium(int index, int value) {
+        buffer.setMedium(index + adjustment, value);
+    }
+
+    @Override
+    protected final void _setInt(int index, int value) {
+        buffer.setInt(index + adjustment, value);
+    }
+
+    @Override
+    protected final void _setLong(int index, long value) {
+        buffer.setLong(index + adjustment, value);
+    }
+
+    @Override
+    public final ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buffer.setBytes(index + adjustment, src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public final ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buffer.setBytes(index + adjustment, src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public final ByteBuf setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        buffer.setBytes(index + adjustment, src);
+        return this;
+    }
+
+    @Override
+    public final ByteBuf getBytes(int index, OutputStream out, int length) throws IOException {
+        checkIndex(index, length);
+        buffer.getBytes(index + adjustment, out, length);
+        return this;
+    }
+
+    @Override
+    public final int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        return buffer.getBytes(index + adjustment, out, length);
+    }
+
+    @Override
+    public final int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        return buffer.setBytes(index + adjustment, in, length);
+    }
+
+    @Override
+    public final int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        return buffer.setBytes(index + adjustment, in, length);
+    }
+
+    @Override
+    public final int nioBufferCount() {
+        return buffer.nioBufferCount();
+    }
+
+    @Override
+    public final ByteBuffer nioBuffer(int index, int length) {
+        checkIndex(index, length);
+        return buffer.nioBuffer(index + adjustment, length);
+    }
+
+    @Override
+    public final ByteBuffer[] nioBuffers(int index, int length) {
+        checkIndex(index, length);
+        return buffer.nioBuffers(index + adjustment, length);
+    }
+
+    @Override
+    public final ByteBuffer internalNioBuffer(int index, int length) {
+        return nioBuffer(index, length);
+    }
+
+    @Override
+    public final int forEachByte(int index, int length, ByteBufProcessor processor) {
+        checkIndex(index, length);
+        int ret = buffer.forEachByte(index + adjustment, length, processor);
+        if (ret >= adjustment) {
+            return ret - adjustment;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public final int forEachByteDesc(int index, int length, ByteBufProcessor processor) {
+        checkIndex(index, length);
+        int ret = buffer.forEachByteDesc(index + adjustment, length, processor);
+        if (ret >= adjustment) {
+            return ret - adjustment;
+        } else {
+            return -1;
+        }
+    }
+}
@@ -36,6 +36,14 @@ final class AdvancedLeakAwareByteBuf extends WrappedByteBuf {
         this.leak = leak;
     }
 
+    /**
+     * Record an access to the wrapped buffer which does not go through this wrapper, for example a direct write to
+     * its memory.
+     */
+    void recordLeakNonRefCountingOperation() {
+        leak.record();
+    }
+
     @Override
     public ByteBuf order(ByteOrder endianness) {
         leak.record();
@@ -70,6 +78,28 @@ final class AdvancedLeakAwareByteBuf extends WrappedByteBuf {
         return new AdvancedLeakAwareByteBuf(super.readSlice(length), leak);
     }
 
+    // Not recycled, for the same reason as in SimpleLeakAwareByteBuf.
+
+    @Override
+    public ByteBuf retainedSlice() {
+        return slice().retain();
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return slice(index, length).retain();
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return duplicate().retain();
+    }
+
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return readSlice(length).retain();
+    }
+
     @Override
     public ByteBuf discardReadBytes() {
         leak.record();
@@ -580,6 +610,12 @@ final class AdvancedLeakAwareByteBuf extends WrappedByteBuf {
         return super.indexOf(fromIndex, toIndex, value);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        leak.record();
+        return super.indexOf(fromIndex, toIndex, value1, value2);
+    }
+
     @Override
     public int bytesBefore(byte value) {
         leak.record();
@@ -198,6 +198,12 @@ import java.nio.charset.UnsupportedCharsetException;
  * {@link #writerIndex() writerIndex} and marker indexes, while it shares
  * other internal data representation, just like a NIO buffer does.
  * <p>
+ * A derived buffer shares the reference count of its parent.  If a derived buffer
+ * has to outlive the current call, use {@link #retainedDuplicate()},
+ * {@link #retainedSlice()} or {@link #retainedSlice(int, int)} instead of
+ * retaining a derived buffer, which return a recycled buffer with its own reference
+ * count that keeps its parent alive until it is released.
+ * <p>
  * In case a completely fresh copy of an existing buffer is required, please
  * call {@link #copy()} method instead.
  *
@@ -1200,6 +1206,24 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract ByteBuf readSlice(int length);
 
+    /**
+     * Returns a new retained slice of this buffer's sub-region starting at the current
+     * {@code readerIndex} and increases the {@code readerIndex} by the size
+     * of the new slice (= {@code length}).
+     * <p>
+     * Note that this method returns a {@linkplain #retain() retained} buffer unlike {@link #readSlice(int)}.
+     * This method behaves similarly to {@code readSlice(...).retain()} except that this method may return
+     * a recycled buffer implementation that produces less garbage.
+     *
+     * @param length the size of the new slice
+     *
+     * @return the newly created slice
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code length} is greater than {@code this.readableBytes}
+     */
+    public abstract ByteBuf readRetainedSlice(int length);
+
     /**
      * Transfers this buffer's data to the specified destination starting at
      * the current {@code readerIndex} until the destination becomes
@@ -1556,6 +1580,23 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract int indexOf(int fromIndex, int toIndex, byte value);
 
+    /**
+     * Locates the first occurrence of either {@code value1} or {@code value2}
+     * in this buffer, for example the first {@code CR} or {@code LF}.  The
+     * search takes place from the specified {@code fromIndex} (inclusive) to
+     * the specified {@code toIndex} (exclusive).
+     * <p>
+     * If {@code fromIndex} is greater than {@code toIndex}, the search is
+     * performed in a reversed order.
+     * <p>
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     *
+     * @return the absolute index of the first occurrence if found.
+     *         {@code -1} otherwise.
+     */
+    public abstract int indexOf(int fromIndex, int toIndex, byte value1, byte value2);
+
     /**
      * Locates the first occurrence of the specified {@code value} in this
      * buffer.  The search takes place from the current {@code readerIndex}
@@ -1672,6 +1713,35 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract ByteBuf slice(int index, int length);
 
+    /**
+     * Returns a retained slice of this buffer's readable bytes. Modifying the content
+     * of the returned buffer or this buffer affects each other's content
+     * while they maintain separate indexes and marks.  This method is
+     * identical to {@code buf.retainedSlice(buf.readerIndex(), buf.readableBytes())}.
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     * <p>
+     * Note that this method returns a {@linkplain #retain() retained} buffer unlike {@link #slice()}.
+     * This method behaves similarly to {@code slice().retain()} except that this method may return
+     * a recycled buffer implementation that produces less garbage.  The returned buffer has its own
+     * reference count and releases its reference to this buffer once it is released itself.
+     */
+    public abstract ByteBuf retainedSlice();
+
+    /**
+     * Returns a retained slice of this buffer's sub-region. Modifying the content of
+     * the returned buffer or this buffer affects each other's content while
+     * they maintain separate indexes and marks.
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     * <p>
+     * Note that this method returns a {@linkplain #retain() retained} buffer unlike {@link #slice(int, int)}.
+     * This method behaves similarly to {@code slice(...).retain()} except that this method may return
+     * a recycled buffer implementation that produces less garbage.  The returned buffer has its own
+     * reference count and releases its reference to this buffer once it is released itself.
+     */
+    public abstract ByteBuf retainedSlice(int index, int length);
+
     /**
      * Returns a buffer which shares the whole region of this buffer.
      * Modifying the content of the returned buffer or this buffer affects
@@ -1682,6 +1752,21 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract ByteBuf duplicate();
 
+    /**
+     * Returns a retained buffer which shares the whole region of this buffer.
+     * Modifying the content of the returned buffer or this buffer affects
+     * each other's content while they maintain separate indexes and marks.
+     * This method is identical to {@code buf.retainedSlice(0, buf.capacity())}.
+     * This method does not modify {@code readerIndex} or {@code writerIndex} of
+     * this buffer.
+     * <p>
+     * Note that this method returns a {@linkplain #retain() retained} buffer unlike {@link #duplicate()}.
+     * This method behaves similarly to {@code duplicate().retain()} except that this method may return
+     * a recycled buffer implementation that produces less garbage.  The returned buffer has its own
+     * reference count and releases its reference to this buffer once it is released itself.
+     */
+    public abstract ByteBuf retainedDuplicate();
+
     /**
      * Returns the maximum number of NIO {@link ByteBuffer}s that consist this buffer.  Note that {@link #nioBuffers()}
      * or {@link #nioBuffers(int, int)} might return a less number of {@link ByteBuffer}s.
@@ -19,6 +19,7 @@ import io.netty.util.CharsetUtil;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -42,11 +43,24 @@ public final class ByteBufUtil {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ByteBufUtil.class);
 
     private static final char[] HEXDUMP_TABLE = new char[256 * 4];
+    private static final String NEWLINE = StringUtil.NEWLINE;
 
     static final ByteBufAllocator DEFAULT_ALLOCATOR;
 
     private static final int THREAD_LOCAL_BUFFER_SIZE;
 
+    private static final boolean BIG_ENDIAN_NATIVE_ORDER = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    // Shorter searches are not worth reading whole words.
+    private static final int WORD_SEARCH_THRESHOLD = 16;
+    private static final long LOW_SEVEN_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+    private static final int XXH_PRIME1 = 0x9E3779B1;
+    private static final int XXH_PRIME2 = 0x85EBCA77;
+    private static final int XXH_PRIME3 = 0xC2B2AE3D;
+    private static final int XXH_PRIME4 = 0x27D4EB2F;
+    private static final int XXH_PRIME5 = 0x165667B1;
+
     static {
         final char[] DIGITS = "0123456789abcdef".toCharArray();
         for (int i = 0; i < 256; i ++) {
@@ -142,6 +156,64 @@ public final class ByteBufUtil {
         return new String(buf);
     }
 
+    /**
+     * Returns a multi-line hexadecimal dump of the specified buffer's readable bytes, which is formatted for
+     * logging.
+     */
+    public static String prettyHexDump(ByteBuf buffer) {
+        return prettyHexDump(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
+    /**
+     * Returns a multi-line hexadecimal dump of the specified buffer's sub-region, which is formatted for logging.
+     */
+    public static String prettyHexDump(ByteBuf buffer, int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        StringBuilder buf = new StringBuilder(PrettyHexDump.estimateLength(length));
+        appendPrettyHexDump(buf, buffer, offset, length);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the multi-line hexadecimal dump of the specified buffer's readable bytes to the specified
+     * {@link StringBuilder}.
+     *
+     * @see #appendPrettyHexDump(StringBuilder, ByteBuf, int, int, int)
+     */
+    public static void appendPrettyHexDump(StringBuilder dump, ByteBuf buf) {
+        appendPrettyHexDump(dump, buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    /**
+     * Appends the multi-line hexadecimal dump of the specified buffer's sub-region to the specified
+     * {@link StringBuilder}.
+     *
+     * @see #appendPrettyHexDump(StringBuilder, ByteBuf, int, int, int)
+     */
+    public static void appendPrettyHexDump(StringBuilder dump, ByteBuf buf, int offset, int length) {
+        appendPrettyHexDump(dump, buf, offset, length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends the multi-line hexadecimal dump of at most {@code maxLength} bytes of the specified buffer's
+     * sub-region to the specified {@link StringBuilder}, followed by the number of omitted bytes if the region is
+     * longer.  Each row is appended from pre-computed tables without creating any intermediate objects, so reusing
+     * the {@link StringBuilder} makes dumping allocation-free.
+     */
+    public static void appendPrettyHexDump(StringBuilder dump, ByteBuf buf, int offset, int length, int maxLength) {
+        if (offset < 0 || length < 0 || offset > buf.capacity() - length) {
+            throw new IndexOutOfBoundsException(
+                    "expected: 0 <= offset(" + offset + ") <= offset + length(" + length + ") <= buf.capacity("
+                    + buf.capacity() + ')');
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("maxLength: " + maxLength + " (expected: >= 0)");
+        }
+        PrettyHexDump.append(dump, buf, offset, length, maxLength);
+    }
+
     /**
      * Calculates the hash code of the specified buffer.  This method is
      * useful when implementing a new buffer type.
@@ -153,19 +225,35 @@ public final class ByteBufUtil {
 
         int hashCode = 1;
         int arrayIndex = buffer.readerIndex();
+        int i = intCount;
+        if (canAccessWords(buffer)) {
+            // Hash two ints per word, in the same order as the loops below.
+            byte[] array = arrayOrNull(buffer);
+            long base = baseOf(buffer, array);
+            for (; i > 1; i -= 2) {
+                long word = wordAt(array, base, arrayIndex);
+                if (BIG_ENDIAN_NATIVE_ORDER) {
+                    hashCode = 31 * (31 * hashCode + (int) (word >>> 32)) + (int) word;
+                } else {
+                    hashCode = 31 * (31 * hashCode + swapInt((int) word)) + swapInt((int) (word >>> 32));
+                }
+                arrayIndex += 8;
+            }
+        }
+
         if (buffer.order() == ByteOrder.BIG_ENDIAN) {
-            for (int i = intCount; i > 0; i --) {
+            for (; i > 0; i --) {
                 hashCode = 31 * hashCode + buffer.getInt(arrayIndex);
                 arrayIndex += 4;
             }
         } else {
-            for (int i = intCount; i > 0; i --) {
+            for (; i > 0; i --) {
                 hashCode = 31 * hashCode + swapInt(buffer.getInt(arrayIndex));
                 arrayIndex += 4;
             }
         }
 
-        for (int i = byteCount; i > 0; i --) {
+        for (i = byteCount; i > 0; i --) {
             hashCode = 31 * hashCode + buffer.getByte(arrayIndex ++);
         }
 
@@ -176,6 +264,88 @@ public final class ByteBufUtil {
         return hashCode;
     }
 
+    /**
+     * Calculates the <a href="https://github.com/Cyan4973/xxHash">xxHash32</a> of the readable bytes of the specified
+     * buffer with the seed {@code 0}.
+     *
+     * @see #xxHash32(ByteBuf, int)
+     */
+    public static int xxHash32(ByteBuf buffer) {
+        return xxHash32(buffer, 0);
+    }
+
+    /**
+     * Calculates the <a href="https://github.com/Cyan4973/xxHash">xxHash32</a> of the readable bytes of the specified
+     * buffer with the given seed.  Unlike {@link #hashCode(ByteBuf)} the result is well distributed in all bits and
+     * will never change, so it is suitable for hash tables and sharding keyed by the content of buffers.  The reader
+     * and writer index of the buffer are not modified.
+     */
+    public static int xxHash32(ByteBuf buffer, int seed) {
+        final int length = buffer.readableBytes();
+        final int end = buffer.readerIndex() + length;
+        int index = buffer.readerIndex();
+
+        int hash;
+        if (length >= 16) {
+            int v1 = seed + XXH_PRIME1 + XXH_PRIME2;
+            int v2 = seed + XXH_PRIME2;
+            int v3 = seed;
+            int v4 = seed - XXH_PRIME1;
+            final int stripeEnd = end - 15;
+            if (canAccessWords(buffer)) {
+                byte[] array = arrayOrNull(buffer);
+                long base = baseOf(buffer, array);
+                for (; index < stripeEnd; index += 16) {
+                    long word1 = wordAt(array, base, index);
+                    long word2 = wordAt(array, base, index + 8);
+                    if (BIG_ENDIAN_NATIVE_ORDER) {
+                        word1 = Long.reverseBytes(word1);
+                        word2 = Long.reverseBytes(word2);
+                    }
+                    v1 = xxHash32Round(v1, (int) word1);
+                    v2 = xxHash32Round(v2, (int) (word1 >>> 32));
+                    v3 = xxHash32Round(v3, (int) word2);
+                    v4 = xxHash32Round(v4, (int) (word2 >>> 32));
+                }
+            } else {
+                for (; index < stripeEnd; index += 16) {
+                    v1 = xxHash32Round(v1, littleEndianInt(buffer, index));
+                    v2 = xxHash32Round(v2, littleEndianInt(buffer, index + 4));
+                    v3 = xxHash32Round(v3, littleEndianInt(buffer, index + 8));
+                    v4 = xxHash32Round(v4, littleEndianInt(buffer, index + 12));
+                }
+            }
+            hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) +
+                   Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            hash = seed + XXH_PRIME5;
+        }
+
+        hash += length;
+        for (; index <= end - 4; index += 4) {
+            hash = Integer.rotateLeft(hash + littleEndianInt(buffer, index) * XXH_PRIME3, 17) * XXH_PRIME4;
+        }
+        for (; index < end; index ++) {
+            hash = Integer.rotateLeft(hash + (buffer.getByte(index) & 0xff) * XXH_PRIME5, 11) * XXH_PRIME1;
+        }
+
+        hash ^= hash >>> 15;
+        hash *= XXH_PRIME2;
+        hash ^= hash >>> 13;
+        hash *= XXH_PRIME3;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int xxHash32Round(int acc, int lane) {
+        return Integer.rotateLeft(acc + lane * XXH_PRIME2, 13) * XXH_PRIME1;
+    }
+
+    private static int littleEndianInt(ByteBuf buffer, int index) {
+        int value = buffer.getInt(index);
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : swapInt(value);
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other as described in {@code ChannelBuffer#equals(Object)}.
@@ -193,6 +363,12 @@ public final class ByteBufUtil {
         int aIndex = bufferA.readerIndex();
         int bIndex = bufferB.readerIndex();
 
+        if (canAccessWords(bufferA) && canAccessWords(bufferB)) {
+            byte[] aArray = arrayOrNull(bufferA);
+            byte[] bArray = arrayOrNull(bufferB);
+            return equals(aArray, baseOf(bufferA, aArray) + aIndex, bArray, baseOf(bufferB, bArray) + bIndex, aLen);
+        }
+
         if (bufferA.order() == bufferB.order()) {
             for (int i = longCount; i > 0; i --) {
                 if (bufferA.getLong(aIndex) != bufferB.getLong(bIndex)) {
@@ -222,6 +398,21 @@ public final class ByteBufUtil {
         return true;
     }
 
+    private static boolean equals(byte[] aArray, long aBase, byte[] bArray, long bBase, int length) {
+        int i = 0;
+        for (int end = length - 7; i < end; i += 8) {
+            if (wordAt(aArray, aBase, i) != wordAt(bArray, bBase, i)) {
+                return false;
+            }
+        }
+        for (; i < length; i ++) {
+            if (byteAt(aArray, aBase, i) != byteAt(bArray, bBase, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Compares the two specified buffers as described in {@link ByteBuf#compareTo(ByteBuf)}.
      * This method is useful when implementing a new buffer type.
@@ -236,32 +427,30 @@ public final class ByteBufUtil {
         int aIndex = bufferA.readerIndex();
         int bIndex = bufferB.readerIndex();
 
-        if (bufferA.order() == bufferB.order()) {
-            for (int i = uintCount; i > 0; i --) {
-                long va = bufferA.getUnsignedInt(aIndex);
-                long vb = bufferB.getUnsignedInt(bIndex);
-                if (va > vb) {
-                    return 1;
-                }
-                if (va < vb) {
-                    return -1;
-                }
-                aIndex += 4;
-                bIndex += 4;
+        if (canAccessWords(bufferA) && canAccessWords(bufferB)) {
+            byte[] aArray = arrayOrNull(bufferA);
+            byte[] bArray = arrayOrNull(bufferB);
+            int result = compare(
+                    aArray, baseOf(bufferA, aArray) + aIndex, bArray, baseOf(bufferB, bArray) + bIndex, minLength);
+            return result != 0 ? result : aLen - bLen;
+        }
+
+        // Compare the bytes in the order they are stored in, whatever the byte order of the buffers.
+        final boolean swapA = bufferA.order() != ByteOrder.BIG_ENDIAN;
+        final boolean swapB = bufferB.order() != ByteOrder.BIG_ENDIAN;
+        for (int i = uintCount; i > 0; i --) {
+            int a = bufferA.getInt(aIndex);
+            int b = bufferB.getInt(bIndex);
+            long va = (swapA ? swapInt(a) : a) & 0xFFFFFFFFL;
+            long vb = (swapB ? swapInt(b) : b) & 0xFFFFFFFFL;
+            if (va > vb) {
+                return 1;
             }
-        } else {
-            for (int i = uintCount; i > 0; i --) {
-                long va = bufferA.getUnsignedInt(aIndex);
-                long vb = swapInt(bufferB.getInt(bIndex)) & 0xFFFFFFFFL;
-                if (va > vb) {
-                    return 1;
-                }
-                if (va < vb) {
-                    return -1;
-                }
-                aIndex += 4;
-                bIndex += 4;
+            if (va < vb) {
+                return -1;
             }
+            aIndex += 4;
+            bIndex += 4;
         }
 
         for (int i = byteCount; i > 0; i --) {
@@ -280,6 +469,69 @@ public final class ByteBufUtil {
         return aLen - bLen;
     }
 
+    private static int compare(byte[] aArray, long aBase, byte[] bArray, long bBase, int length) {
+        int i = 0;
+        for (int end = length - 7; i < end; i += 8) {
+            long va = wordAt(aArray, aBase, i);
+            long vb = wordAt(bArray, bBase, i);
+            if (va != vb) {
+                if (!BIG_ENDIAN_NATIVE_ORDER) {
+                    va = Long.reverseBytes(va);
+                    vb = Long.reverseBytes(vb);
+                }
+                // Compare as unsigned values.
+                return va + Long.MIN_VALUE < vb + Long.MIN_VALUE ? -1 : 1;
+            }
+        }
+        for (; i < length; i ++) {
+            int va = byteAt(aArray, aBase, i) & 0xFF;
+            int vb = byteAt(bArray, bBase, i) & 0xFF;
+            if (va != vb) {
+                return va < vb ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns {@code true} if the content of the buffer can be read a word at a time with {@link #wordAt}.  The
+     * readable bytes of a buffer are always in bounds, so only inaccessible buffers are left to the slow path, which
+     * raises the same exception as before.
+     */
+    private static boolean canAccessWords(ByteBuf buffer) {
+        return PlatformDependent.isUnaligned() && (buffer.hasArray() || buffer.hasMemoryAddress()) &&
+               buffer.refCnt() != 0;
+    }
+
+    private static byte[] arrayOrNull(ByteBuf buffer) {
+        return buffer.hasArray() ? buffer.array() : null;
+    }
+
+    /**
+     * Returns the array offset if the buffer is backed by the given array, or its memory address otherwise.
+     */
+    private static long baseOf(ByteBuf buffer, byte[] array) {
+        return array != null ? buffer.arrayOffset() : buffer.memoryAddress();
+    }
+
+    /**
+     * Reads 8 bytes in the native byte order from the array, or from the memory address if the array is
+     * {@code null}.
+     */
+    private static long wordAt(byte[] array, long base, int index) {
+        if (array != null) {
+            return PlatformDependent.getLong(array, (int) base + index);
+        }
+        return PlatformDependent.getLong(base + index);
+    }
+
+    private static byte byteAt(byte[] array, long base, int index) {
+        if (array != null) {
+            return array[(int) base + index];
+        }
+        return PlatformDependent.getByte(base + index);
+    }
+
     /**
      * The default implementation of {@link ByteBuf#indexOf(int, int, byte)}.
      * This method is useful when implementing a new buffer type.
@@ -292,6 +544,18 @@ public final class ByteBufUtil {
         }
     }
 
+    /**
+     * The default implementation of {@link ByteBuf#indexOf(int, int, byte, byte)}.
+     * This method is useful when implementing a new buffer type.
+     */
+    public static int indexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
+        if (fromIndex <= toIndex) {
+            return firstIndexOf(buffer, fromIndex, toIndex, value1, value2);
+        } else {
+            return lastIndexOf(buffer, fromIndex, toIndex, value1, value2);
+        }
+    }
+
     /**
      * Toggles the endianness of the specified 16-bit short integer.
      */
@@ -342,13 +606,29 @@ public final class ByteBufUtil {
     }
 
     private static int firstIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        return firstIndexOf(buffer, fromIndex, toIndex, value, value);
+    }
+
+    private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        return lastIndexOf(buffer, fromIndex, toIndex, value, value);
+    }
+
+    private static int firstIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
         fromIndex = Math.max(fromIndex, 0);
         if (fromIndex >= toIndex || buffer.capacity() == 0) {
             return -1;
         }
 
+        if (canSearchWords(buffer, fromIndex, toIndex)) {
+            if (buffer.hasArray()) {
+                return firstIndexOf(buffer.array(), buffer.arrayOffset(), fromIndex, toIndex, value1, value2);
+            }
+            return firstIndexOf(buffer.memoryAddress(), fromIndex, toIndex, value1, value2);
+        }
+
         for (int i = fromIndex; i < toIndex; i ++) {
-            if (buffer.getByte(i) == value) {
+            byte b = buffer.getByte(i);
+            if (b == value1 || b == value2) {
                 return i;
             }
         }
@@ -356,24 +636,166 @@ public final class ByteBufUtil {
         return -1;
     }
 
-    private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
+    private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
             return -1;
         }
 
+        if (canSearchWords(buffer, toIndex, fromIndex)) {
+            if (buffer.hasArray()) {
+                return lastIndexOf(buffer.array(), buffer.arrayOffset(), fromIndex, toIndex, value1, value2);
+            }
+            return lastIndexOf(buffer.memoryAddress(), fromIndex, toIndex, value1, value2);
+        }
+
         for (int i = fromIndex - 1; i >= toIndex; i --) {
-            if (buffer.getByte(i) == value) {
+            byte b = buffer.getByte(i);
+            if (b == value1 || b == value2) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if the bytes between {@code lowIndex} (inclusive) and {@code highIndex} (exclusive) can be
+     * searched 8 bytes at a time.  Out of bounds or inaccessible buffers are left to the byte by byte search, which
+     * raises the same exception as before.
+     */
+    private static boolean canSearchWords(ByteBuf buffer, int lowIndex, int highIndex) {
+        return highIndex - lowIndex >= WORD_SEARCH_THRESHOLD && lowIndex >= 0 && highIndex <= buffer.capacity() &&
+               PlatformDependent.isUnaligned() && (buffer.hasArray() || buffer.hasMemoryAddress()) &&
+               buffer.refCnt() != 0;
+    }
+
+    private static int firstIndexOf(
+            byte[] array, int arrayOffset, int fromIndex, int toIndex, byte value1, byte value2) {
+        long pattern1 = wordPattern(value1);
+        long pattern2 = wordPattern(value2);
+        int i = fromIndex;
+        for (int end = toIndex - 7; i < end; i += 8) {
+            long matches = wordMatches(PlatformDependent.getLong(array, arrayOffset + i), pattern1, pattern2);
+            if (matches != 0) {
+                return i + firstMatchIndex(matches);
+            }
+        }
+        for (; i < toIndex; i ++) {
+            byte b = array[arrayOffset + i];
+            if (b == value1 || b == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(
+            byte[] array, int arrayOffset, int fromIndex, int toIndex, byte value1, byte value2) {
+        long pattern1 = wordPattern(value1);
+        long pattern2 = wordPattern(value2);
+        int i = fromIndex;
+        for (int end = toIndex + 8; i >= end; i -= 8) {
+            long matches = wordMatches(PlatformDependent.getLong(array, arrayOffset + i - 8), pattern1, pattern2);
+            if (matches != 0) {
+                return i - 8 + lastMatchIndex(matches);
+            }
+        }
+        for (i --; i >= toIndex; i --) {
+            byte b = array[arrayOffset + i];
+            if (b == value1 || b == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstIndexOf(long address, int fromIndex, int toIndex, byte value1, byte value2) {
+        long pattern1 = wordPattern(value1);
+        long pattern2 = wordPattern(value2);
+        int i = fromIndex;
+        for (int end = toIndex - 7; i < end; i += 8) {
+            long matches = wordMatches(PlatformDependent.getLong(address + i), pattern1, pattern2);
+            if (matches != 0) {
+                return i + firstMatchIndex(matches);
+            }
+        }
+        for (; i < toIndex; i ++) {
+            byte b = PlatformDependent.getByte(address + i);
+            if (b == value1 || b == value2) {
                 return i;
             }
         }
+        return -1;
+    }
 
+    private static int lastIndexOf(long address, int fromIndex, int toIndex, byte value1, byte value2) {
+        long pattern1 = wordPattern(value1);
+        long pattern2 = wordPattern(value2);
+        int i = fromIndex;
+        for (int end = toIndex + 8; i >= end; i -= 8) {
+            long matches = wordMatches(PlatformDependent.getLong(address + i - 8), pattern1, pattern2);
+            if (matches != 0) {
+                return i - 8 + lastMatchIndex(matches);
+            }
+        }
+        for (i --; i >= toIndex; i --) {
+            byte b = PlatformDependent.getByte(address + i);
+            if (b == value1 || b == value2) {
+                return i;
+            }
+        }
         return -1;
     }
 
+    /**
+     * Returns a word whose bytes are all the given value.
+     */
+    private static long wordPattern(byte value) {
+        return (value & 0xffL) * 0x0101010101010101L;
+    }
+
+    /**
+     * Returns a word with the highest bit of every byte set which equals one of the patterns, and all other bits
+     * cleared.  Unlike the well-known {@code (x - 0x01..) & ~x & 0x80..} trick this has no false positives, so the
+     * matches can be scanned from either end of the word.
+     */
+    private static long wordMatches(long word, long pattern1, long pattern2) {
+        long matches = zeroBytes(word ^ pattern1);
+        if (pattern1 != pattern2) {
+            matches |= zeroBytes(word ^ pattern2);
+        }
+        return matches;
+    }
+
+    private static long zeroBytes(long word) {
+        return ~((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS | word | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Returns the offset of the first matching byte of the word in memory order.
+     */
+    private static int firstMatchIndex(long matches) {
+        if (BIG_ENDIAN_NATIVE_ORDER) {
+            return Long.numberOfLeadingZeros(matches) >>> 3;
+        }
+        return Long.numberOfTrailingZeros(matches) >>> 3;
+    }
+
+    /**
+     * Returns the offset of the last matching byte of the word in memory order.
+     */
+    private static int lastMatchIndex(long matches) {
+        if (BIG_ENDIAN_NATIVE_ORDER) {
+            return 7 - (Long.numberOfTrailingZeros(matches) >>> 3);
+        }
+        return 7 - (Long.numberOfLeadingZeros(matches) >>> 3);
+    }
+
     /**
      * Encode a {@link CharSequence} in <a href="http://en.wikipedia.org/wiki/UTF-8">UTF-8</a> and write
-     * it to a {@link ByteBuf}.
+     * it to a {@link ByteBuf}.  Malformed surrogates are written as {@code '?'}, like {@link String#getBytes(Charset)}
+     * does.
      *
      * This method returns the actual number of bytes written.
      */
@@ -384,46 +806,169 @@ public final class ByteBufUtil {
         if (seq == null) {
             throw new NullPointerException("seq");
         }
-        // UTF-8 uses max. 3 bytes per char, so calculate the worst case.
+        // UTF-8 uses max. 3 bytes per char, so reserve the worst case if the buffer has enough room anyway.
+        // Otherwise calculate the exact length, so the buffer does not grow more than needed.
+        final int maxSize = seq.length() * 3;
+        return writeUtf8(buf, seq, maxSize >= 0 && maxSize <= buf.writableBytes()? maxSize : utf8Bytes(seq));
+    }
+
+    /**
+     * Writes the given {@link CharSequence} in UTF-8 after making sure {@code reserveBytes} are writable, which must
+     * be at least {@link #utf8Bytes(CharSequence)}.
+     */
+    static int writeUtf8(ByteBuf buf, CharSequence seq, int reserveBytes) {
+        buf.ensureWritable(reserveBytes);
         final int len = seq.length();
-        final int maxSize = len * 3;
-        buf.ensureWritable(maxSize);
+
+        buf = unwrapWritable(buf);
         if (buf instanceof AbstractByteBuf) {
             // Fast-Path
             AbstractByteBuf buffer = (AbstractByteBuf) buf;
-            int oldWriterIndex = buffer.writerIndex;
-            int writerIndex = oldWriterIndex;
-
-            // We can use the _set methods as these not need to do any index checks and reference checks.
-            // This is possible as we called ensureWritable(...) before.
-            for (int i = 0; i < len; i++) {
-                char c = seq.charAt(i);
-                if (c < 0x80) {
-                    buffer._setByte(writerIndex++, (byte) c);
-                } else if (c < 0x800) {
-                    buffer._setByte(writerIndex++, (byte) (0xc0 | (c >> 6)));
-                    buffer._setByte(writerIndex++, (byte) (0x80 | (c & 0x3f)));
-                } else {
-                    buffer._setByte(writerIndex++, (byte) (0xe0 | (c >> 12)));
-                    buffer._setByte(writerIndex++, (byte) (0x80 | ((c >> 6) & 0x3f)));
-                    buffer._setByte(writerIndex++, (byte) (0x80 | (c & 0x3f)));
-                }
+            int writerIndex = buffer.writerIndex;
+            int written;
+            // We can write to the memory directly or use the _set methods as these not need to do any index checks
+            // and reference checks. This is possible as we called ensureWritable(...) before.
+            if (buffer.hasArray()) {
+                written = writeUtf8(buffer.array(), buffer.arrayOffset() + writerIndex, seq, len);
+            } else if (buffer.hasMemoryAddress()) {
+                written = writeUtf8(buffer.memoryAddress() + writerIndex, seq, len);
+            } else {
+                written = writeUtf8(buffer, writerIndex, seq, len);
             }
             // update the writerIndex without any extra checks for performance reasons
-            buffer.writerIndex = writerIndex;
-            return writerIndex - oldWriterIndex;
+            buffer.writerIndex = writerIndex + written;
+            return written;
         } else {
-            // Maybe we could also check if we can unwrap() to access the wrapped buffer which
-            // may be an AbstractByteBuf. But this may be overkill so let us keep it simple for now.
             byte[] bytes = seq.toString().getBytes(CharsetUtil.UTF_8);
             buf.writeBytes(bytes);
             return bytes.length;
         }
     }
 
+    /**
+     * Returns the exact number of bytes {@link #writeUtf8(ByteBuf, CharSequence)} writes for the given
+     * {@link CharSequence}.
+     */
+    public static int utf8Bytes(CharSequence seq) {
+        if (seq == null) {
+            throw new NullPointerException("seq");
+        }
+        final int len = seq.length();
+        int bytes = len;
+        for (int i = 0; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes ++;
+            } else if (isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    // 4 bytes for 2 chars.
+                    bytes += 2;
+                    i++;
+                }
+                // A malformed surrogate is written as '?'.
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    private static int writeUtf8(byte[] array, int offset, CharSequence seq, int len) {
+        int index = offset;
+        for (int i = 0; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                array[index++] = (byte) c;
+            } else if (c < 0x800) {
+                array[index++] = (byte) (0xc0 | (c >> 6));
+                array[index++] = (byte) (0x80 | (c & 0x3f));
+            } else if (isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, seq.charAt(++i));
+                    array[index++] = (byte) (0xf0 | (codePoint >> 18));
+                    array[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    array[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    array[index++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    array[index++] = '?';
+                }
+            } else {
+                array[index++] = (byte) (0xe0 | (c >> 12));
+                array[index++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                array[index++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return index - offset;
+    }
+
+    private static int writeUtf8(long address, CharSequence seq, int len) {
+        long addr = address;
+        for (int i = 0; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                PlatformDependent.putByte(addr++, (byte) c);
+            } else if (c < 0x800) {
+                PlatformDependent.putByte(addr++, (byte) (0xc0 | (c >> 6)));
+                PlatformDependent.putByte(addr++, (byte) (0x80 | (c & 0x3f)));
+            } else if (isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, seq.charAt(++i));
+                    PlatformDependent.putByte(addr++, (byte) (0xf0 | (codePoint >> 18)));
+                    PlatformDependent.putByte(addr++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    PlatformDependent.putByte(addr++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    PlatformDependent.putByte(addr++, (byte) (0x80 | (codePoint & 0x3f)));
+                } else {
+                    PlatformDependent.putByte(addr++, (byte) '?');
+                }
+            } else {
+                PlatformDependent.putByte(addr++, (byte) (0xe0 | (c >> 12)));
+                PlatformDependent.putByte(addr++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                PlatformDependent.putByte(addr++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return (int) (addr - address);
+    }
+
+    private static int writeUtf8(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
+        int index = writerIndex;
+        for (int i = 0; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                buffer._setByte(index++, (byte) c);
+            } else if (c < 0x800) {
+                buffer._setByte(index++, (byte) (0xc0 | (c >> 6)));
+                buffer._setByte(index++, (byte) (0x80 | (c & 0x3f)));
+            } else if (isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, seq.charAt(++i));
+                    buffer._setByte(index++, (byte) (0xf0 | (codePoint >> 18)));
+                    buffer._setByte(index++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer._setByte(index++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer._setByte(index++, (byte) (0x80 | (codePoint & 0x3f)));
+                } else {
+                    buffer._setByte(index++, '?');
+                }
+            } else {
+                buffer._setByte(index++, (byte) (0xe0 | (c >> 12)));
+                buffer._setByte(index++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer._setByte(index++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return index - writerIndex;
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
     /**
      * Encode a {@link CharSequence} in <a href="http://en.wikipedia.org/wiki/ASCII">ASCII</a> and write it
-     * to a {@link ByteBuf}.
+     * to a {@link ByteBuf}.  Every char is written as a single byte.  Chars which are not ASCII are written as their
+     * ISO-8859-1 byte if the memory of the buffer can be written directly, or as {@code '?'} if that is not possible
+     * or the char is greater than {@code 0xff}.
      *
      * This method returns the actual number of bytes written.
      */
@@ -437,26 +982,58 @@ public final class ByteBufUtil {
         // ASCII uses 1 byte per char
         final int len = seq.length();
         buf.ensureWritable(len);
+
+        buf = unwrapWritable(buf);
         if (buf instanceof AbstractByteBuf) {
             // Fast-Path
             AbstractByteBuf buffer = (AbstractByteBuf) buf;
             int writerIndex = buffer.writerIndex;
 
-            // We can use the _set methods as these not need to do any index checks and reference checks.
-            // This is possible as we called ensureWritable(...) before.
-            for (int i = 0; i < len; i++) {
-                buffer._setByte(writerIndex++, (byte) seq.charAt(i));
+            // We can write to the memory directly or use the _set methods as these not need to do any index checks
+            // and reference checks. This is possible as we called ensureWritable(...) before.
+            if (buffer.hasArray()) {
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset() + writerIndex;
+                for (int i = 0; i < len; i++) {
+                    array[offset + i] = c2b(seq.charAt(i));
+                }
+            } else if (buffer.hasMemoryAddress()) {
+                long address = buffer.memoryAddress() + writerIndex;
+                for (int i = 0; i < len; i++) {
+                    PlatformDependent.putByte(address + i, c2b(seq.charAt(i)));
+                }
+            } else {
+                for (int i = 0; i < len; i++) {
+                    buffer._setByte(writerIndex + i, c2b(seq.charAt(i)));
+                }
             }
             // update the writerIndex without any extra checks for performance reasons
-            buffer.writerIndex = writerIndex;
+            buffer.writerIndex = writerIndex + len;
         } else {
-            // Maybe we could also check if we can unwrap() to access the wrapped buffer which
-            // may be an AbstractByteBuf. But this may be overkill so let us keep it simple for now.
             buf.writeBytes(seq.toString().getBytes(CharsetUtil.US_ASCII));
         }
         return len;
     }
 
+    private static byte c2b(char c) {
+        return c < 0x100? (byte) c : (byte) '?';
+    }
+
+    /**
+     * Returns the buffer whose memory is written by the given {@link WrappedByteBuf}, so its content can be
+     * written without going through every wrapper.  The write is recorded by every leak-aware wrapper first, as it
+     * bypasses them.
+     */
+    private static ByteBuf unwrapWritable(ByteBuf buf) {
+        while (buf instanceof WrappedByteBuf) {
+            if (buf instanceof AdvancedLeakAwareByteBuf) {
+                ((AdvancedLeakAwareByteBuf) buf).recordLeakNonRefCountingOperation();
+            }
+            buf = buf.unwrap();
+        }
+        return buf;
+    }
+
     /**
      * Encode the given {@link CharBuffer} using the given {@link Charset} into a new {@link ByteBuf} which
      * is allocated via the {@link ByteBufAllocator}.
@@ -466,6 +1043,15 @@ public final class ByteBufUtil {
     }
 
     static ByteBuf encodeString0(ByteBufAllocator alloc, boolean enforceHeap, CharBuffer src, Charset charset) {
+        if (CharsetUtil.UTF_8.equals(charset)) {
+            // Write directly into the buffer instead of going through a CharsetEncoder.
+            int length = utf8Bytes(src);
+            ByteBuf dst = enforceHeap? alloc.heapBuffer(length) : alloc.buffer(length);
+            writeUtf8(dst, src, length);
+            src.position(src.limit());
+            return dst;
+        }
+
         final CharsetEncoder encoder = CharsetUtil.getEncoder(charset);
         int length = (int) ((double) src.remaining() * encoder.maxBytesPerChar());
         boolean release = true;
@@ -534,10 +1120,145 @@ public final class ByteBufUtil {
         }
     }
 
+    /**
+     * The tables used by {@link #appendPrettyHexDump(StringBuilder, ByteBuf, int, int, int)}, which are only
+     * created when the first dump is made.
+     */
+    private static final class PrettyHexDump {
+
+        private static final String HEADER =
+                NEWLINE + "         +-------------------------------------------------+" +
+                NEWLINE + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
+                NEWLINE + "+--------+-------------------------------------------------+----------------+";
+        private static final String FOOTER =
+                NEWLINE + "+--------+-------------------------------------------------+----------------+";
+
+        private static final String[] BYTE2HEX = new String[256];
+        private static final String[] HEXPADDING = new String[16];
+        private static final String[] BYTEPADDING = new String[16];
+        private static final char[] BYTE2CHAR = new char[256];
+        private static final String[] HEXDUMP_ROWPREFIXES = new String[65536 >>> 4];
+
+        static {
+            int i;
+
+            // Generate the lookup table for byte-to-hex-dump conversion
+            for (i = 0; i < BYTE2HEX.length; i ++) {
+                BYTE2HEX[i] = ' ' + StringUtil.byteToHexStringPadded(i);
+            }
+
+            // Generate the lookup table for hex dump paddings
+            for (i = 0; i < HEXPADDING.length; i ++) {
+                int padding = HEXPADDING.length - i;
+                StringBuilder buf = new StringBuilder(padding * 3);
+                for (int j = 0; j < padding; j ++) {
+                    buf.append("   ");
+                }
+                HEXPADDING[i] = buf.toString();
+            }
+
+            // Generate the lookup table for byte dump paddings
+            for (i = 0; i < BYTEPADDING.length; i ++) {
+                int padding = BYTEPADDING.length - i;
+                StringBuilder buf = new StringBuilder(padding);
+                for (int j = 0; j < padding; j ++) {
+                    buf.append(' ');
+                }
+                BYTEPADDING[i] = buf.toString();
+            }
+
+            // Generate the lookup table for byte-to-char conversion
+            for (i = 0; i < BYTE2CHAR.length; i ++) {
+                if (i <= 0x1f || i >= 0x7f) {
+                    BYTE2CHAR[i] = '.';
+                } else {
+                    BYTE2CHAR[i] = (char) i;
+                }
+            }
+
+            // Generate the lookup table for the start-offset header in each row (up to 64KiB).
+            for (i = 0; i < HEXDUMP_ROWPREFIXES.length; i ++) {
+                StringBuilder buf = new StringBuilder(12);
+                appendRowPrefix(buf, i << 4);
+                HEXDUMP_ROWPREFIXES[i] = buf.toString();
+            }
+        }
+
+        /**
+         * Returns the length of the dump of the given number of bytes, so the {@link StringBuilder} does not need to
+         * grow.
+         */
+        static int estimateLength(int length) {
+            int rows = (length + 15) >>> 4;
+            return HEADER.length() + FOOTER.length() + rows * (NEWLINE.length() + 78) + 32;
+        }
+
+        static void append(StringBuilder dump, ByteBuf buf, int offset, int length, int maxLength) {
+            final int dumpLength = Math.min(length, maxLength);
+            final int fullRows = dumpLength >>> 4;
+            final int remainder = dumpLength & 0xF;
+
+            dump.append(HEADER);
+
+            // Dump the rows which have 16 bytes.
+            for (int row = 0; row < fullRows; row ++) {
+                appendRow(dump, buf, offset, row, 16);
+            }
+
+            // Dump the last row which has less than 16 bytes.
+            if (remainder != 0) {
+                appendRow(dump, buf, offset, fullRows, remainder);
+            }
+
+            dump.append(FOOTER);
+            if (dumpLength < length) {
+                dump.append(NEWLINE).append("... ").append(length - dumpLength).append("B more");
+            }
+        }
+
+        private static void appendRow(StringBuilder dump, ByteBuf buf, int offset, int row, int rowLength) {
+            final int rowStartIndex = row << 4;
+            if (row < HEXDUMP_ROWPREFIXES.length) {
+                dump.append(HEXDUMP_ROWPREFIXES[row]);
+            } else {
+                appendRowPrefix(dump, rowStartIndex);
+            }
+
+            // Hex dump
+            final int startIndex = offset + rowStartIndex;
+            final int endIndex = startIndex + rowLength;
+            for (int j = startIndex; j < endIndex; j ++) {
+                dump.append(BYTE2HEX[buf.getUnsignedByte(j)]);
+            }
+            if (rowLength < 16) {
+                dump.append(HEXPADDING[rowLength]);
+            }
+            dump.append(" |");
+
+            // ASCII dump
+            for (int j = startIndex; j < endIndex; j ++) {
+                dump.append(BYTE2CHAR[buf.getUnsignedByte(j)]);
+            }
+            if (rowLength < 16) {
+                dump.append(BYTEPADDING[rowLength]);
+            }
+            dump.append('|');
+        }
+
+        private static void appendRowPrefix(StringBuilder dump, int rowStartIndex) {
+            dump.append(NEWLINE);
+            dump.append(Long.toHexString(rowStartIndex & 0xFFFFFFFFL | 0x100000000L));
+            dump.setCharAt(dump.length() - 9, '|');
+            dump.append('|');
+        }
+
+        private PrettyHexDump() { }
+    }
+
     static final class ThreadLocalUnsafeDirectByteBuf extends UnpooledUnsafeDirectByteBuf {
 
         private static final Recycler<ThreadLocalUnsafeDirectByteBuf> RECYCLER =
-                new Recycler<ThreadLocalUnsafeDirectByteBuf>() {
+                new Recycler<ThreadLocalUnsafeDirectByteBuf>("threadLocalDirectByteBuf") {
                     @Override
                     protected ThreadLocalUnsafeDirectByteBuf newObject(Handle handle) {
                         return new ThreadLocalUnsafeDirectByteBuf(handle);
@@ -570,7 +1291,8 @@ public final class ByteBufUtil {
 
     static final class ThreadLocalDirectByteBuf extends UnpooledDirectByteBuf {
 
-        private static final Recycler<ThreadLocalDirectByteBuf> RECYCLER = new Recycler<ThreadLocalDirectByteBuf>() {
+        private static final Recycler<ThreadLocalDirectByteBuf> RECYCLER =
+                new Recycler<ThreadLocalDirectByteBuf>("threadLocalDirectByteBuf") {
             @Override
             protected ThreadLocalDirectByteBuf newObject(Handle handle) {
                 return new ThreadLocalDirectByteBuf(handle);
@@ -41,11 +41,33 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
 
     private static final ByteBuffer EMPTY_NIO_BUFFER = Unpooled.EMPTY_BUFFER.nioBuffer();
 
+    // Components smaller than this are merged by ConsolidationPolicy.SMALL_COMPONENTS.
+    private static final int SMALL_COMPONENT_SIZE = 8192;
+
+    /**
+     * Specifies how a {@link CompositeByteBuf} reduces the number of its components once it has more than
+     * {@link #maxNumComponents()}.
+     */
+    public enum ConsolidationPolicy {
+        /**
+         * Copy all components into a single new buffer (default).
+         */
+        ALL,
+        /**
+         * Copy every run of adjacent small components into a single new buffer, and leave large components as they
+         * are.  All components are only copied if this does not reduce the number of components enough.
+         */
+        SMALL_COMPONENTS
+    }
+
     private final ResourceLeak leak;
     private final ByteBufAllocator alloc;
     private final boolean direct;
     private final List<Component> components = new ArrayList<Component>();
     private final int maxNumComponents;
+    private ConsolidationPolicy consolidationPolicy = ConsolidationPolicy.ALL;
+    // The index of the component which was found last, as accesses tend to be sequential.
+    private int lastAccessedComponent;
 
     private boolean freed;
 
@@ -208,18 +230,23 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
             throw new NullPointerException("buffers");
         }
 
-        // No need for consolidation
-        for (ByteBuf b: buffers) {
-            if (b == null) {
-                break;
-            }
-            cIndex = addComponent0(cIndex, b) + 1;
-            int size = components.size();
-            if (cIndex > size) {
-                cIndex = size;
-            }
+        // Only add the buffers up to the first null.
+        int numBuffers = 0;
+        while (numBuffers < buffers.length && buffers[numBuffers] != null) {
+            numBuffers ++;
         }
-        return cIndex;
+        if (numBuffers == 0) {
+            return cIndex;
+        }
+
+        // No need for consolidation - insert all components at once and update the offsets only once.
+        List<Component> added = new ArrayList<Component>(numBuffers);
+        for (int i = 0; i < numBuffers; i ++) {
+            added.add(new Component(buffers[i].order(ByteOrder.BIG_ENDIAN).slice()));
+        }
+        components.addAll(cIndex, added);
+        updateComponentOffsets(cIndex);
+        return cIndex + numBuffers;
     }
 
     /**
@@ -266,8 +293,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
     private void consolidateIfNeeded() {
         // Consolidate if the number of components will exceed the allowed maximum by the current
         // operation.
-        final int numComponents = components.size();
+        int numComponents = components.size();
         if (numComponents > maxNumComponents) {
+            if (consolidationPolicy == ConsolidationPolicy.SMALL_COMPONENTS) {
+                consolidateSmallComponents();
+                numComponents = components.size();
+                if (numComponents <= maxNumComponents) {
+                    return;
+                }
+            }
+
             final int capacity = components.get(numComponents - 1).endOffset;
 
             ByteBuf consolidated = allocBuffer(capacity);
@@ -286,6 +321,39 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
         }
     }
 
+    /**
+     * Merges every run of adjacent components which are smaller than {@link #SMALL_COMPONENT_SIZE}.
+     */
+    private void consolidateSmallComponents() {
+        for (int cIndex = 0; cIndex < components.size(); cIndex ++) {
+            int endCIndex = cIndex;
+            int capacity = 0;
+            while (endCIndex < components.size() && components.get(endCIndex).length < SMALL_COMPONENT_SIZE) {
+                capacity += components.get(endCIndex).length;
+                endCIndex ++;
+            }
+            if (endCIndex - cIndex > 1) {
+                mergeComponents(cIndex, endCIndex, capacity);
+            }
+        }
+        updateComponentOffsets(0);
+    }
+
+    /**
+     * Replaces the components from {@code cIndex} (inclusive) to {@code endCIndex} (exclusive) by a single component
+     * with their content.  The caller must update the offsets of the components.
+     */
+    private void mergeComponents(int cIndex, int endCIndex, int capacity) {
+        final ByteBuf merged = allocBuffer(capacity);
+        for (int i = cIndex; i < endCIndex; i ++) {
+            Component c = components.get(i);
+            merged.writeBytes(c.buf);
+            c.freeIfNecessary();
+        }
+        components.subList(cIndex + 1, endCIndex).clear();
+        components.set(cIndex, new Component(merged));
+    }
+
     private void checkComponentIndex(int cIndex) {
         ensureAccessible();
         if (cIndex < 0 || cIndex > components.size()) {
@@ -583,13 +651,48 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
         return maxNumComponents;
     }
 
+    /**
+     * Return the {@link ConsolidationPolicy} which is applied once there are more than {@link #maxNumComponents()}.
+     */
+    public ConsolidationPolicy consolidationPolicy() {
+        return consolidationPolicy;
+    }
+
+    /**
+     * Set the {@link ConsolidationPolicy} which is applied once there are more than {@link #maxNumComponents()}.
+     */
+    public CompositeByteBuf consolidationPolicy(ConsolidationPolicy consolidationPolicy) {
+        if (consolidationPolicy == null) {
+            throw new NullPointerException("consolidationPolicy");
+        }
+        this.consolidationPolicy = consolidationPolicy;
+        return this;
+    }
+
     /**
      * Return the index for the given offset
      */
     public int toComponentIndex(int offset) {
         checkIndex(offset);
+        return toComponentIndex0(offset);
+    }
+
+    private int toComponentIndex0(int offset) {
+        // Try the last accessed component and its successor first, which hit for sequential access.
+        final int size = components.size();
+        final int last = lastAccessedComponent;
+        for (int i = last; i < size && i <= last + 1; i ++) {
+            Component c = components.get(i);
+            if (offset < c.offset) {
+                break;
+            }
+            if (offset < c.endOffset) {
+                lastAccessedComponent = i;
+                return i;
+            }
+        }
 
-        for (int low = 0, high = components.size(); low <= high;) {
+        for (int low = 0, high = size - 1; low <= high;) {
             int mid = low + high >>> 1;
             Component c = components.get(mid);
             if (offset >= c.endOffset) {
@@ -597,6 +700,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
             } else if (offset < c.offset) {
                 high = mid - 1;
             } else {
+                lastAccessedComponent = mid;
                 return mid;
             }
         }
@@ -1093,21 +1197,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
 
     private Component findComponent(int offset) {
         checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                assert c.length != 0;
-                return c;
-            }
-        }
-
-        throw new Error("should not reach here");
+        Component c = components.get(toComponentIndex0(offset));
+        assert c.length != 0;
+        return c;
     }
 
     @Override
@@ -1239,17 +1331,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf {
         final int endCIndex = cIndex + numComponents;
         final Component last = components.get(endCIndex - 1);
         final int capacity = last.endOffset - components.get(cIndex).offset;
-        final ByteBuf consolidated = allocBuffer(capacity);
-
-        for (int i = cIndex; i < endCIndex; i ++) {
-            Component c = components.get(i);
-            ByteBuf b = c.buf;
-            consolidated.writeBytes(b);
-            c.freeIfNecessary();
-        }
-
-        components.subList(cIndex + 1, endCIndex).clear();
-        components.set(cIndex, new Component(consolidated));
+        mergeComponents(cIndex, endCIndex, capacity);
         updateComponentOffsets(cIndex);
         return this;
     }
@@ -161,6 +161,17 @@ public class DuplicatedByteBuf extends AbstractDerivedByteBuf {
         return buffer.slice(index, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        checkIndex(index, length);
+        return PooledSlicedByteBuf.newInstance(buffer, index, length);
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return PooledDuplicatedByteBuf.newInstance(buffer, readerIndex(), writerIndex());
+    }
+
     @Override
     public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
         buffer.getBytes(index, dst, dstIndex, length);
@@ -505,6 +505,11 @@ public final class EmptyByteBuf extends ByteBuf {
         return checkLength(length);
     }
 
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return checkLength(length);
+    }
+
     @Override
     public ByteBuf readBytes(ByteBuf dst) {
         return checkLength(dst.writableBytes());
@@ -650,6 +655,13 @@ public final class EmptyByteBuf extends ByteBuf {
         return -1;
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        checkIndex(fromIndex);
+        checkIndex(toIndex);
+        return -1;
+    }
+
     @Override
     public int bytesBefore(byte value) {
         return -1;
@@ -709,11 +721,26 @@ public final class EmptyByteBuf extends ByteBuf {
         return checkIndex(index, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice() {
+        return this;
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return checkIndex(index, length);
+    }
+
     @Override
     public ByteBuf duplicate() {
         return this;
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return this;
+    }
+
     @Override
     public int nioBufferCount() {
         return 1;
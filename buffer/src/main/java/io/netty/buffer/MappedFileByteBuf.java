@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read-only {@link ByteBuf} which is backed by a memory-mapped region of a file.  Its content is read directly
+ * from the page cache, so it can be written to a channel or encrypted without copying the file into a heap or direct
+ * buffer first.
+ * <p>
+ * The region is unmapped as soon as the reference count drops to {@code 0}.  Accessing the buffer or one of its
+ * derived buffers afterwards is not allowed.  The file must not be truncated while it is mapped.
+ *
+ * @see MappedFileCache
+ */
+public final class MappedFileByteBuf extends ReadOnlyByteBufferBuf {
+
+    private final MappedByteBuffer mapped;
+
+    private MappedFileByteBuf(ByteBufAllocator allocator, MappedByteBuffer mapped) {
+        super(allocator, mapped);
+        this.mapped = mapped;
+    }
+
+    /**
+     * Map the given region of the file.
+     */
+    public static MappedFileByteBuf map(File file, long offset, int length) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the channel was closed.
+            return map(raf.getChannel(), offset, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Map the given region of the file which was opened with the given {@link FileChannel}.
+     */
+    public static MappedFileByteBuf map(FileChannel channel, long offset, int length) throws IOException {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset: " + offset + " (expected: 0+)");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("length: " + length + " (expected: 0+)");
+        }
+        long size = channel.size();
+        if (offset + length > size) {
+            throw new IllegalArgumentException(
+                    "offset + length: " + (offset + length) + " (expected: <= file size(" + size + "))");
+        }
+        return new MappedFileByteBuf(ByteBufAllocator.DEFAULT, channel.map(MapMode.READ_ONLY, offset, length));
+    }
+
+    @Override
+    protected void deallocate() {
+        // Unmap right away instead of waiting for the garbage collector, which may take long for mappings as they
+        // hardly use any heap.
+        PlatformDependent.freeDirectBuffer(mapped);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches {@link MappedFileByteBuf}s of frequently served file regions, so a file is not mapped and unmapped again
+ * for every request.  Regions are keyed by the absolute path of the file, the offset and the length, and the least
+ * recently used regions are unmapped once the number of regions or the number of mapped bytes exceeds the limits.
+ * <p>
+ * A region is mapped again when the last modification time of the file changed since it was mapped.  Each buffer
+ * returned by {@link #get(File, long, int)} must be released by the caller; a region evicted from the cache stays
+ * mapped until all buffers obtained for it were released.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class MappedFileCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long mappedBytes;
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxEntries the maximal number of cached regions
+     * @param maxBytes   the maximal number of bytes of all cached regions
+     */
+    public MappedFileCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries: " + maxEntries + " (expected: > 0)");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + " (expected: > 0)");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return a buffer of the given region of the file, which is mapped if it is not cached yet.  The returned buffer
+     * has its own reader and writer index and must be released by the caller.
+     */
+    public ByteBuf get(File file, long offset, int length) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        Key key = new Key(file.getAbsolutePath(), offset, length);
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified == lastModified) {
+                return entry.buf.duplicate().retain();
+            }
+        }
+
+        // Map outside of the lock as it involves I/O.
+        MappedFileByteBuf buf = MappedFileByteBuf.map(file, offset, length);
+        if (length > maxBytes) {
+            return buf;
+        }
+
+        ByteBuf result;
+        List<MappedFileByteBuf> removed = new ArrayList<MappedFileByteBuf>(2);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified == lastModified) {
+                // Another thread mapped the same region in the meantime.
+                removed.add(buf);
+                result = entry.buf.duplicate().retain();
+            } else {
+                if (entry != null) {
+                    removed.add(entry.buf);
+                    mappedBytes -= entry.buf.capacity();
+                }
+                entries.put(key, new Entry(buf, lastModified));
+                mappedBytes += length;
+                evict(removed);
+                result = buf.duplicate().retain();
+            }
+        }
+        release(removed);
+        return result;
+    }
+
+    private void evict(List<MappedFileByteBuf> removed) {
+        Iterator<Entry> i = entries.values().iterator();
+        while (i.hasNext() && (entries.size() > maxEntries || mappedBytes > maxBytes)) {
+            MappedFileByteBuf buf = i.next().buf;
+            i.remove();
+            mappedBytes -= buf.capacity();
+            removed.add(buf);
+        }
+    }
+
+    /**
+     * Remove all regions from the cache.  Regions which are still in use are unmapped once the buffers obtained
+     * for them are released.
+     */
+    public void clear() {
+        List<MappedFileByteBuf> removed;
+        synchronized (this) {
+            removed = new ArrayList<MappedFileByteBuf>(entries.size());
+            for (Entry e: entries.values()) {
+                removed.add(e.buf);
+            }
+            entries.clear();
+            mappedBytes = 0;
+        }
+        release(removed);
+    }
+
+    /**
+     * Return the number of cached regions.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the number of bytes of all cached regions.
+     */
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    private static void release(List<MappedFileByteBuf> bufs) {
+        for (int i = 0; i < bufs.size(); i ++) {
+            bufs.get(i).release();
+        }
+    }
+
+    private static final class Entry {
+        final MappedFileByteBuf buf;
+        final long lastModified;
+
+        Entry(MappedFileByteBuf buf, long lastModified) {
+            this.buf = buf;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long offset;
+        private final int length;
+
+        Key(String path, long offset, int length) {
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (path.hashCode() * 31 + (int) (offset ^ offset >>> 32)) * 31 + length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return offset == k.offset && length == k.length && path.equals(k.path);
+        }
+    }
+}
@@ -20,11 +20,27 @@ import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
-
-abstract class PoolArena<T> {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+abstract class PoolArena<T> implements PoolArenaMetric {
+
+    enum SizeClass {
+        Tiny,
+        Small,
+        Normal
+    }
 
     static final int numTinySubpagePools = 512 >>> 4;
 
+    // The number of deferred frees after which the freeing thread hands them back to the arena itself.
+    static final int deferredFreeBatchSize = 64;
+
     final PooledByteBufAllocator parent;
 
     private final int maxOrder;
@@ -33,6 +49,9 @@ abstract class PoolArena<T> {
     final int chunkSize;
     final int subpageOverflowMask;
     final int numSmallSubpagePools;
+    final boolean fineSizeClasses;
+    // null if huge chunks are not cached
+    private final PoolHugeChunkCache<T> hugeChunkCache;
     private final PoolSubpage<T>[] tinySubpagePools;
     private final PoolSubpage<T>[] smallSubpagePools;
 
@@ -43,22 +62,57 @@ abstract class PoolArena<T> {
     private final PoolChunkList<T> q075;
     private final PoolChunkList<T> q100;
 
+    private final List<PoolChunkListMetric> chunkListMetrics;
+
+    // Metrics for allocations and deallocations. The non-atomic counters are only updated while holding the lock of
+    // the arena, but are volatile so they can be read without it.
+    private volatile long allocationsTiny;
+    private volatile long allocationsSmall;
+    private volatile long allocationsNormal;
+    private volatile long deallocationsTiny;
+    private volatile long deallocationsSmall;
+    private volatile long deallocationsNormal;
+    private volatile long reclaimedBytes;
+    private final AtomicLong allocationsHuge = new AtomicLong();
+    private final AtomicLong deallocationsHuge = new AtomicLong();
+    private final AtomicLong activeBytesHuge = new AtomicLong();
+    // Allocations served by and deallocations taken by the thread-local caches, indexed by SizeClass.ordinal(). They
+    // are counted by the caches and added in batches. The thread cache hits are the sum of the cached allocations.
+    private final AtomicLongArray cachedAllocations = new AtomicLongArray(SizeClass.values().length);
+    private final AtomicLongArray cachedDeallocations = new AtomicLongArray(SizeClass.values().length);
+    private final AtomicLong threadCacheMisses = new AtomicLong();
+
+    // Number of thread caches backed by this arena.
+    final AtomicInteger numThreadCaches = new AtomicInteger();
+
+    // The cache a dedicated arena is bound to, or null for a shared arena. Frees of other threads than the owner of
+    // the cache are deferred and handed back to a dedicated arena in batches, so they do not contend with the owner
+    // for the lock of the arena.
+    private volatile PoolThreadCache owner;
+    private final Queue<DeferredFree<T>> deferredFrees = PlatformDependent.newMpscQueue();
+    private final AtomicInteger numDeferredFrees = new AtomicInteger();
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
-    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                        boolean fineSizeClasses, long maxCachedHugeBytes) {
         this.parent = parent;
         this.pageSize = pageSize;
         this.maxOrder = maxOrder;
         this.pageShifts = pageShifts;
         this.chunkSize = chunkSize;
-        subpageOverflowMask = ~(pageSize - 1);
+        this.fineSizeClasses = fineSizeClasses;
+        hugeChunkCache = maxCachedHugeBytes > 0 ? new PoolHugeChunkCache<T>(this, maxCachedHugeBytes) : null;
+        // With fine-grained size classes everything below 4 pages is allocated from subpages.
+        subpageOverflowMask = fineSizeClasses ? ~((pageSize << 2) - 1) : ~(pageSize - 1);
         tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
         for (int i = 0; i < tinySubpagePools.length; i ++) {
             tinySubpagePools[i] = newSubpagePoolHead(pageSize);
         }
 
-        numSmallSubpagePools = pageShifts - 9;
+        // 512 bytes up to the overflow, either with one size class per doubling or with four.
+        numSmallSubpagePools = fineSizeClasses ? pageShifts - 7 << 2 : pageShifts - 9;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
             smallSubpagePools[i] = newSubpagePoolHead(pageSize);
@@ -77,6 +131,15 @@ abstract class PoolArena<T> {
         q025.prevList = q000;
         q000.prevList = null;
         qInit.prevList = qInit;
+
+        List<PoolChunkListMetric> metrics = new ArrayList<PoolChunkListMetric>(6);
+        metrics.add(qInit);
+        metrics.add(q000);
+        metrics.add(q025);
+        metrics.add(q050);
+        metrics.add(q075);
+        metrics.add(q100);
+        chunkListMetrics = Collections.unmodifiableList(metrics);
     }
 
     private PoolSubpage<T> newSubpagePoolHead(int pageSize) {
@@ -103,7 +166,10 @@ abstract class PoolArena<T> {
         return normCapacity >>> 4;
     }
 
-    static int smallIdx(int normCapacity) {
+    int smallIdx(int normCapacity) {
+        if (fineSizeClasses) {
+            return fineSizeClassIdx(normCapacity, 9);
+        }
         int tableIdx = 0;
         int i = normCapacity >>> 10;
         while (i != 0) {
@@ -113,7 +179,40 @@ abstract class PoolArena<T> {
         return tableIdx;
     }
 
-    // capacity < pageSize
+    /**
+     * Returns the index of the cache for the given normal capacity in {@link PoolThreadCache}.
+     */
+    int normalIdx(int normCapacity) {
+        if (fineSizeClasses) {
+            return fineSizeClassIdx(normCapacity, pageShifts + 2);
+        }
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(normCapacity >> pageShifts);
+    }
+
+    /**
+     * Returns the index of a fine-grained size class, counted from the size class {@code 1 << log2Base}. For
+     * capacities which are not a size class the index of the next smaller size class is returned.
+     */
+    private static int fineSizeClassIdx(int capacity, int log2Base) {
+        int log2Group = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(capacity);
+        return (log2Group - log2Base << 2) + (capacity >>> log2Group - 2 & 3);
+    }
+
+    /**
+     * Returns the size of the run of pages a subpage for elements of the given size is allocated from.
+     */
+    int subpageRunSize(int elemSize) {
+        int runSize = pageSize;
+        if (fineSizeClasses && !isTiny(elemSize)) {
+            // Use the smallest run which can be divided into elements without a remainder, at most 7 pages.
+            while (runSize % elemSize != 0) {
+                runSize += pageSize;
+            }
+        }
+        return runSize;
+    }
+
+    // capacity < pageSize, or capacity < 4 * pageSize with fine-grained size classes
     boolean isTinyOrSmall(int normCapacity) {
         return (normCapacity & subpageOverflowMask) == 0;
     }
@@ -145,6 +244,7 @@ abstract class PoolArena<T> {
             }
 
             synchronized (this) {
+                freeDeferred0();
                 final PoolSubpage<T> head = table[tableIdx];
                 final PoolSubpage<T> s = head.next;
                 if (s != head) {
@@ -152,6 +252,7 @@ abstract class PoolArena<T> {
                     long handle = s.allocate();
                     assert handle >= 0;
                     s.chunk.initBufWithSubpage(buf, handle, reqCapacity);
+                    incTinySmallAllocation(table == tinySubpagePools);
                     return;
                 }
             }
@@ -169,6 +270,13 @@ abstract class PoolArena<T> {
     }
 
     private synchronized void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
+        freeDeferred0();
+        if (isTinyOrSmall(normCapacity)) {
+            incTinySmallAllocation(isTiny(normCapacity));
+        } else {
+            ++ allocationsNormal;
+        }
+
         if (q050.allocate(buf, reqCapacity, normCapacity) || q025.allocate(buf, reqCapacity, normCapacity) ||
             q000.allocate(buf, reqCapacity, normCapacity) || qInit.allocate(buf, reqCapacity, normCapacity) ||
             q075.allocate(buf, reqCapacity, normCapacity) || q100.allocate(buf, reqCapacity, normCapacity)) {
@@ -183,28 +291,198 @@ abstract class PoolArena<T> {
         qInit.add(c);
     }
 
+    private void incTinySmallAllocation(boolean tiny) {
+        if (tiny) {
+            ++ allocationsTiny;
+        } else {
+            ++ allocationsSmall;
+        }
+    }
+
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
-        buf.initUnpooled(newUnpooledChunk(reqCapacity), reqCapacity);
+        PoolChunk<T> chunk;
+        if (hugeChunkCache != null) {
+            // Round up to a size class, so the chunk can be reused by similar allocations.
+            int chunkSize = PoolHugeChunkCache.normalizeCapacity(reqCapacity);
+            chunk = hugeChunkCache.poll(chunkSize);
+            if (chunk == null) {
+                chunk = newUnpooledChunk(chunkSize);
+            }
+        } else {
+            chunk = newUnpooledChunk(reqCapacity);
+        }
+        activeBytesHuge.addAndGet(chunk.chunkSize());
+        buf.initUnpooled(chunk, reqCapacity);
+        allocationsHuge.incrementAndGet();
     }
 
     void free(PoolChunk<T> chunk, long handle, int normCapacity, boolean sameThreads) {
         if (chunk.unpooled) {
-            destroyChunk(chunk);
+            int size = chunk.chunkSize();
+            if (hugeChunkCache == null || !hugeChunkCache.offer(chunk)) {
+                destroyChunk(chunk);
+            }
+            activeBytesHuge.addAndGet(-size);
+            deallocationsHuge.incrementAndGet();
         } else {
+            SizeClass sizeClass = sizeClass(normCapacity);
             if (sameThreads) {
-                PoolThreadCache cache = parent.threadCache.get();
-                if (cache.add(this, chunk, handle, normCapacity)) {
+                PoolThreadCache cache = parent.currentCache();
+                if (cache.add(this, chunk, handle, normCapacity, sizeClass)) {
                     // cached so not free it.
                     return;
                 }
             }
 
+            PoolThreadCache owner = this.owner;
+            if (owner != null && !owner.isOwner()) {
+                deferFree(chunk, handle, sizeClass);
+                return;
+            }
+            freeChunk(chunk, handle, sizeClass, true);
+        }
+    }
+
+    private void deferFree(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
+        deferredFrees.add(new DeferredFree<T>(chunk, handle, sizeClass));
+        // Hand back a whole batch if the owner did not pick them up in the meantime. If the arena was unbound
+        // concurrently the owner will not pick them up at all, so hand them back immediately.
+        if (numDeferredFrees.incrementAndGet() >= deferredFreeBatchSize || owner == null) {
+            freeDeferred();
+        }
+    }
+
+    /**
+     * Free all deferred frees of other threads while holding the lock of the arena only once.
+     */
+    void freeDeferred() {
+        if (numDeferredFrees.get() != 0) {
             synchronized (this) {
-                chunk.parent.free(chunk, handle);
+                freeDeferred0();
             }
         }
     }
 
+    // Must be called while holding the lock of the arena, which also makes sure there is only one consumer of the
+    // queue at a time.
+    private void freeDeferred0() {
+        if (numDeferredFrees.get() == 0) {
+            return;
+        }
+        for (;;) {
+            DeferredFree<T> deferredFree = deferredFrees.poll();
+            if (deferredFree == null) {
+                break;
+            }
+            numDeferredFrees.decrementAndGet();
+            freeChunk0(deferredFree.chunk, deferredFree.handle, deferredFree.sizeClass, true);
+        }
+    }
+
+    /**
+     * Bind this arena to the given cache, whose owner must be the only one allocating from it.
+     */
+    void bind(PoolThreadCache owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Unbind this arena from its owner after the owner stopped using it. Deferred frees are handed back immediately
+     * from now on.
+     */
+    void unbind() {
+        owner = null;
+        freeDeferred();
+    }
+
+    /**
+     * Returns {@code true} if this arena is bound to the given cache.
+     */
+    boolean isBoundTo(PoolThreadCache cache) {
+        return owner == cache;
+    }
+
+    private SizeClass sizeClass(int normCapacity) {
+        if (!isTinyOrSmall(normCapacity)) {
+            return SizeClass.Normal;
+        }
+        return isTiny(normCapacity) ? SizeClass.Tiny : SizeClass.Small;
+    }
+
+    /**
+     * Give the memory back to the arena. {@code deallocation} is {@code false} if the memory comes from a thread-local
+     * cache, which counted the deallocation already when the buffer was released into it.
+     */
+    void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass, boolean deallocation) {
+        synchronized (this) {
+            freeChunk0(chunk, handle, sizeClass, deallocation);
+        }
+    }
+
+    private void freeChunk0(PoolChunk<T> chunk, long handle, SizeClass sizeClass, boolean deallocation) {
+        if (deallocation) {
+            switch (sizeClass) {
+            case Normal:
+                ++ deallocationsNormal;
+                break;
+            case Small:
+                ++ deallocationsSmall;
+                break;
+            case Tiny:
+                ++ deallocationsTiny;
+                break;
+            default:
+                throw new Error();
+            }
+        }
+        chunk.parent.free(chunk, handle);
+    }
+
+    /**
+     * Destroy a pooled chunk which was removed from its {@link PoolChunkList}. Must be called while holding the lock
+     * of the arena.
+     */
+    void releaseChunk(PoolChunk<T> chunk) {
+        reclaimedBytes += chunk.chunkSize();
+        destroyChunk(chunk);
+    }
+
+    /**
+     * Release all pooled chunks which were completely unused for at least {@code idleTimeoutNanos}. Chunks which
+     * still had allocations in a thread-local cache are not released, so the caches should be trimmed first.
+     */
+    synchronized void releaseIdleChunks(long idleTimeoutNanos) {
+        long idleSinceNanos = System.nanoTime() - idleTimeoutNanos;
+        freeDeferred0();
+        // A chunk only moves one list down when allocations are freed, so unused chunks may be found in every list.
+        qInit.releaseIdleChunks(idleSinceNanos);
+        q000.releaseIdleChunks(idleSinceNanos);
+        q025.releaseIdleChunks(idleSinceNanos);
+        q050.releaseIdleChunks(idleSinceNanos);
+        q075.releaseIdleChunks(idleSinceNanos);
+        if (hugeChunkCache != null) {
+            reclaimedBytes += hugeChunkCache.releaseIdleChunks(idleSinceNanos);
+        }
+    }
+
+    /**
+     * Add the allocations served by a thread-local cache, the deallocations it took and its misses to the metrics of
+     * this arena. The arrays are indexed by {@link SizeClass#ordinal()}.
+     */
+    void addThreadCacheMetrics(int[] allocations, int[] deallocations, int misses) {
+        for (int i = 0; i < allocations.length; i ++) {
+            if (allocations[i] != 0) {
+                cachedAllocations.addAndGet(i, allocations[i]);
+            }
+            if (deallocations[i] != 0) {
+                cachedDeallocations.addAndGet(i, deallocations[i]);
+            }
+        }
+        if (misses != 0) {
+            threadCacheMisses.addAndGet(misses);
+        }
+    }
+
     PoolSubpage<T> findSubpagePoolHead(int elemSize) {
         int tableIdx;
         PoolSubpage<T>[] table;
@@ -212,12 +490,7 @@ abstract class PoolArena<T> {
             tableIdx = elemSize >>> 4;
             table = tinySubpagePools;
         } else {
-            tableIdx = 0;
-            elemSize >>>= 10;
-            while (elemSize != 0) {
-                elemSize >>>= 1;
-                tableIdx ++;
-            }
+            tableIdx = smallIdx(elemSize);
             table = smallSubpagePools;
         }
 
@@ -233,6 +506,13 @@ abstract class PoolArena<T> {
         }
 
         if (!isTiny(reqCapacity)) { // >= 512
+            if (fineSizeClasses) {
+                // Four size classes per doubling, for example 1024, 1280, 1536, 1792, 2048. All size classes of
+                // normal capacities (>= 4 * pageSize) are multiples of pageSize.
+                int step = Integer.highestOneBit(reqCapacity - 1) >>> 2;
+                return reqCapacity + step - 1 & ~(step - 1);
+            }
+
             // Doubled
 
             int normalizedCapacity = reqCapacity;
@@ -277,7 +557,7 @@ abstract class PoolArena<T> {
         int readerIndex = buf.readerIndex();
         int writerIndex = buf.writerIndex();
 
-        allocate(parent.threadCache.get(), buf, newCapacity);
+        allocate(parent.currentCache(), buf, newCapacity);
         if (newCapacity > oldCapacity) {
             memoryCopy(
                     oldMemory, oldOffset,
@@ -302,6 +582,163 @@ abstract class PoolArena<T> {
         }
     }
 
+    @Override
+    public int numThreadCaches() {
+        return numThreadCaches.get();
+    }
+
+    @Override
+    public int numTinySubpages() {
+        return tinySubpagePools.length;
+    }
+
+    @Override
+    public int numSmallSubpages() {
+        return smallSubpagePools.length;
+    }
+
+    @Override
+    public int numChunkLists() {
+        return chunkListMetrics.size();
+    }
+
+    @Override
+    public List<PoolSubpageMetric> tinySubpages() {
+        return subPageMetricList(tinySubpagePools);
+    }
+
+    @Override
+    public List<PoolSubpageMetric> smallSubpages() {
+        return subPageMetricList(smallSubpagePools);
+    }
+
+    @Override
+    public List<PoolChunkListMetric> chunkLists() {
+        return chunkListMetrics;
+    }
+
+    private List<PoolSubpageMetric> subPageMetricList(PoolSubpage<?>[] pages) {
+        List<PoolSubpageMetric> metrics = new ArrayList<PoolSubpageMetric>();
+        synchronized (this) {
+            for (PoolSubpage<?> head : pages) {
+                if (head.next == head) {
+                    continue;
+                }
+                PoolSubpage<?> s = head.next;
+                for (;;) {
+                    metrics.add(s);
+                    s = s.next;
+                    if (s == head) {
+                        break;
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    @Override
+    public long numAllocations() {
+        return numTinyAllocations() + numSmallAllocations() + numNormalAllocations() + allocationsHuge.get();
+    }
+
+    @Override
+    public long numTinyAllocations() {
+        return allocationsTiny + cachedAllocations.get(SizeClass.Tiny.ordinal());
+    }
+
+    @Override
+    public long numSmallAllocations() {
+        return allocationsSmall + cachedAllocations.get(SizeClass.Small.ordinal());
+    }
+
+    @Override
+    public long numNormalAllocations() {
+        return allocationsNormal + cachedAllocations.get(SizeClass.Normal.ordinal());
+    }
+
+    @Override
+    public long numHugeAllocations() {
+        return allocationsHuge.get();
+    }
+
+    @Override
+    public long numDeallocations() {
+        return numTinyDeallocations() + numSmallDeallocations() + numNormalDeallocations() + deallocationsHuge.get();
+    }
+
+    @Override
+    public long numTinyDeallocations() {
+        return deallocationsTiny + cachedDeallocations.get(SizeClass.Tiny.ordinal());
+    }
+
+    @Override
+    public long numSmallDeallocations() {
+        return deallocationsSmall + cachedDeallocations.get(SizeClass.Small.ordinal());
+    }
+
+    @Override
+    public long numNormalDeallocations() {
+        return deallocationsNormal + cachedDeallocations.get(SizeClass.Normal.ordinal());
+    }
+
+    @Override
+    public long numHugeDeallocations() {
+        return deallocationsHuge.get();
+    }
+
+    @Override
+    public long numActiveAllocations() {
+        long val = numAllocations() - numDeallocations();
+        return Math.max(val, 0);
+    }
+
+    @Override
+    public long numActiveBytes() {
+        long val = activeBytesHuge.get();
+        for (PoolChunkListMetric list: chunkListMetrics) {
+            for (PoolChunkMetric chunk: list) {
+                val += chunk.chunkSize() - chunk.freeBytes();
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public long numChunkBytes() {
+        long val = 0;
+        for (PoolChunkListMetric list: chunkListMetrics) {
+            for (PoolChunkMetric chunk: list) {
+                val += chunk.chunkSize();
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public long numCachedHugeBytes() {
+        return hugeChunkCache != null ? hugeChunkCache.cachedBytes() : 0;
+    }
+
+    @Override
+    public long numReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    @Override
+    public long numThreadCacheHits() {
+        long hits = 0;
+        for (int i = 0; i < cachedAllocations.length(); i ++) {
+            hits += cachedAllocations.get(i);
+        }
+        return hits;
+    }
+
+    @Override
+    public long numThreadCacheMisses() {
+        return threadCacheMisses.get();
+    }
+
     protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
     protected abstract PoolChunk<T> newUnpooledChunk(int capacity);
     protected abstract PooledByteBuf<T> newByteBuf(int maxCapacity);
@@ -378,10 +815,23 @@ abstract class PoolArena<T> {
         return buf.toString();
     }
 
+    private static final class DeferredFree<T> {
+        final PoolChunk<T> chunk;
+        final long handle;
+        final SizeClass sizeClass;
+
+        DeferredFree(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
+            this.chunk = chunk;
+            this.handle = handle;
+            this.sizeClass = sizeClass;
+        }
+    }
+
     static final class HeapArena extends PoolArena<byte[]> {
 
-        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                  boolean fineSizeClasses, long maxCachedHugeBytes) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize, fineSizeClasses, maxCachedHugeBytes);
         }
 
         @Override
@@ -423,8 +873,9 @@ abstract class PoolArena<T> {
 
         private static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
 
-        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize,
+                    boolean fineSizeClasses, long maxCachedHugeBytes) {
+            super(parent, pageSize, maxOrder, pageShifts, chunkSize, fineSizeClasses, maxCachedHugeBytes);
         }
 
         @Override
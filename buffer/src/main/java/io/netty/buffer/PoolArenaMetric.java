@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.util.List;
+
+/**
+ * Expose metrics for an arena of the {@link PooledByteBufAllocator}.
+ * <p>
+ * The counters can be read from any thread without blocking allocations. The {@link PoolChunkListMetric}s and
+ * {@link PoolSubpageMetric}s are snapshots which are taken while holding the lock of the arena for a short time.
+ * Allocations and deallocations which are served by a thread-local cache are not counted, as they do not touch the
+ * arena.
+ */
+public interface PoolArenaMetric {
+
+    /**
+     * Returns the number of thread caches backed by this arena, which is the number of threads bound to it.
+     */
+    int numThreadCaches();
+
+    /**
+     * Returns the number of tiny sub-pages for the arena.
+     */
+    int numTinySubpages();
+
+    /**
+     * Returns the number of small sub-pages for the arena.
+     */
+    int numSmallSubpages();
+
+    /**
+     * Returns the number of chunk lists for the arena.
+     */
+    int numChunkLists();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolSubpageMetric}s for tiny sub-pages which have
+     * elements available for allocation.
+     */
+    List<PoolSubpageMetric> tinySubpages();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolSubpageMetric}s for small sub-pages which have
+     * elements available for allocation.
+     */
+    List<PoolSubpageMetric> smallSubpages();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolChunkListMetric}s, ordered from the list of the
+     * least used chunks ({@code qInit}) to the list of the fully used chunks ({@code q100}).
+     */
+    List<PoolChunkListMetric> chunkLists();
+
+    /**
+     * Return the number of allocations done via the arena. This includes all sizes.
+     * <p>
+     * The allocation and deallocation counts include the buffers which were served by or released into the
+     * thread-local caches of the arena. Those are added periodically by every thread, so they may lag behind.
+     */
+    long numAllocations();
+
+    /**
+     * Return the number of tiny allocations done via the arena.
+     */
+    long numTinyAllocations();
+
+    /**
+     * Return the number of small allocations done via the arena.
+     */
+    long numSmallAllocations();
+
+    /**
+     * Return the number of normal allocations done via the arena.
+     */
+    long numNormalAllocations();
+
+    /**
+     * Return the number of huge allocations done via the arena.
+     */
+    long numHugeAllocations();
+
+    /**
+     * Return the number of deallocations done via the arena. This includes all sizes.
+     */
+    long numDeallocations();
+
+    /**
+     * Return the number of tiny deallocations done via the arena.
+     */
+    long numTinyDeallocations();
+
+    /**
+     * Return the number of small deallocations done via the arena.
+     */
+    long numSmallDeallocations();
+
+    /**
+     * Return the number of normal deallocations done via the arena.
+     */
+    long numNormalDeallocations();
+
+    /**
+     * Return the number of huge deallocations done via the arena.
+     */
+    long numHugeDeallocations();
+
+    /**
+     * Return the number of currently active allocations, including the ones held by thread-local caches.
+     */
+    long numActiveAllocations();
+
+    /**
+     * Return the number of bytes of the currently active allocations, including the ones held by thread-local
+     * caches and the huge allocations.
+     */
+    long numActiveBytes();
+
+    /**
+     * Return the number of bytes of all chunks held by the arena. Huge allocations are not pooled and so not
+     * included. Comparing it with the active bytes of the chunks shows the fragmentation of the arena.
+     */
+    long numChunkBytes();
+
+    /**
+     * Return the number of bytes of the chunks of huge allocations which are cached for reuse by the arena. They are
+     * neither included in {@link #numActiveBytes()} nor in {@link #numChunkBytes()}.
+     */
+    long numCachedHugeBytes();
+
+    /**
+     * Return the number of bytes of pooled chunks which were released by the arena so far, either because they
+     * became completely unused or because they were not used for longer than the configured idle timeout. This
+     * includes cached chunks of huge allocations which were released because they were not reused in time.
+     */
+    long numReclaimedBytes();
+
+    /**
+     * Return the number of allocations which were served by the thread-local caches of the threads bound to this
+     * arena. The value is updated periodically by every thread, so it may lag behind.
+     */
+    long numThreadCacheHits();
+
+    /**
+     * Return the number of allocations which could not be served by the thread-local caches of the threads bound to
+     * this arena although the size is cacheable. The value is updated periodically by every thread, so it may lag
+     * behind.
+     */
+    long numThreadCacheMisses();
+}
@@ -32,7 +32,7 @@ package io.netty.buffer;
  *
  * For simplicity all sizes are normalized according to PoolArena#normalizeCapacity method
  * This ensures that when we request for memory segments of size >= pageSize the normalizedCapacity
- * equals the next nearest power of 2
+ * equals the next nearest power of 2, unless fine-grained size classes are used (see below)
  *
  * To search for the first offset in chunk that has at least requested size available we construct a
  * complete balanced binary tree and store it in an array (just like heaps) - memoryMap
@@ -91,6 +91,16 @@ package io.netty.buffer;
  * 2) use this handle to construct the PoolSubpage object or if it already exists just call init(normCapacity)
  *    note that this PoolSubpage object is added to subpagesPool in the PoolArena when we init() it
  *
+ * Fine-grained size classes:
+ * --------------------------
+ * With fine-grained size classes (four per doubling, see PoolArena#normalizeCapacity) a run may consist of a
+ * number of pages which is not a power of 2, for example 5 pages. allocateRun(size) then uses allocateNode(d) to
+ * find a free node of the next power of 2 (8 pages), marks the nodes which cover the requested pages from the left
+ * (4 pages + 1 page) as unusable and leaves the rest of the node (1 page + 2 pages) free for other allocations.
+ * The number of pages is stored in the handle, so free(handle) can release the same nodes again.
+ * Subpages of small size classes are carved out of runs whose size is a multiple of the element size, so they
+ * may span several pages. The PoolSubpage is registered at the first page of its run.
+ *
  * Note:
  * -----
  * In the implementation for improving cache coherence,
@@ -101,7 +111,7 @@ package io.netty.buffer;
  * the second value (i.e, x) indicates that the first node which is free to be allocated is at depth x (from root)
  */
 
-final class PoolChunk<T> {
+final class PoolChunk<T> implements PoolChunkMetric {
 
     final PoolArena<T> arena;
     final T memory;
@@ -110,8 +120,6 @@ final class PoolChunk<T> {
     private final byte[] memoryMap;
     private final byte[] depthMap;
     private final PoolSubpage<T>[] subpages;
-    /** Used to determine if the requested capacity is equal to or greater than pageSize. */
-    private final int subpageOverflowMask;
     private final int pageSize;
     private final int pageShifts;
     private final int maxOrder;
@@ -121,7 +129,10 @@ final class PoolChunk<T> {
     /** Used to mark memory as unusable */
     private final byte unusable;
 
-    private int freeBytes;
+    // Only updated while holding the lock of the arena, but volatile so the metrics can read it without the lock.
+    private volatile int freeBytes;
+    /** The value of {@link System#nanoTime()} when the last allocation of this chunk was freed. */
+    private long idleSinceNanos;
 
     PoolChunkList<T> parent;
     PoolChunk<T> prev;
@@ -140,7 +151,6 @@ final class PoolChunk<T> {
         this.chunkSize = chunkSize;
         unusable = (byte) (maxOrder + 1);
         log2ChunkSize = log2(chunkSize);
-        subpageOverflowMask = ~(pageSize - 1);
         freeBytes = chunkSize;
 
         assert maxOrder < 30 : "maxOrder should be < 30, but is: " + maxOrder;
@@ -171,7 +181,6 @@ final class PoolChunk<T> {
         memoryMap = null;
         depthMap = null;
         subpages = null;
-        subpageOverflowMask = 0;
         pageSize = 0;
         pageShifts = 0;
         maxOrder = 0;
@@ -186,7 +195,8 @@ final class PoolChunk<T> {
         return new PoolSubpage[size];
     }
 
-    int usage() {
+    @Override
+    public int usage() {
         final int freeBytes = this.freeBytes;
         if (freeBytes == 0) {
             return 100;
@@ -199,11 +209,21 @@ final class PoolChunk<T> {
         return 100 - freePercentage;
     }
 
+    @Override
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public int freeBytes() {
+        return freeBytes;
+    }
+
     long allocate(int normCapacity) {
-        if ((normCapacity & subpageOverflowMask) != 0) { // >= pageSize
-            return allocateRun(normCapacity);
-        } else {
+        if (arena.isTinyOrSmall(normCapacity)) {
             return allocateSubpage(normCapacity);
+        } else {
+            return allocateRun(normCapacity);
         }
     }
 
@@ -289,13 +309,50 @@ final class PoolChunk<T> {
      * @return index in memoryMap
      */
     private long allocateRun(int normCapacity) {
-        int d = maxOrder - (log2(normCapacity) - pageShifts);
+        int pages = normCapacity >>> pageShifts;
+        int log2Pages = log2(pages);
+        if ((pages & pages - 1) != 0) {
+            // Not a power of 2, so only a part of the node is used.
+            log2Pages ++;
+        }
+        int d = maxOrder - log2Pages;
         int id = allocateNode(d);
         if (id < 0) {
             return id;
         }
-        freeBytes -= runLength(id);
-        return id;
+        if (pages == 1 << log2Pages) {
+            freeBytes -= runLength(id);
+            return id;
+        }
+
+        // Mark only the used pages, which makes the unused pages at the end of the node available again.
+        updatePartialRun(id, pages, true);
+        freeBytes -= normCapacity;
+        return (long) pages << Integer.SIZE | id;
+    }
+
+    /**
+     * Allocate or free the nodes which cover the first {@code pages} pages of the node {@code id}.
+     */
+    private void updatePartialRun(int id, int pages, boolean allocate) {
+        int nodePages = 1 << maxOrder - depth(id);
+        while (pages > 0) {
+            // Move to the left child, which covers half of the pages.
+            nodePages >>>= 1;
+            id <<= 1;
+            if (pages >= nodePages) {
+                if (allocate) {
+                    setValue(id, unusable);
+                    updateParentsAlloc(id);
+                } else {
+                    setValue(id, depth(id));
+                    updateParentsFree(id);
+                }
+                pages -= nodePages;
+                // Continue with the right sibling.
+                id ^= 1;
+            }
+        }
     }
 
     /**
@@ -306,21 +363,22 @@ final class PoolChunk<T> {
      * @return index in memoryMap
      */
     private long allocateSubpage(int normCapacity) {
-        int d = maxOrder; // subpages are only be allocated from pages i.e., leaves
-        int id = allocateNode(d);
-        if (id < 0) {
-            return id;
+        // A single page unless fine-grained size classes are used.
+        final int runSize = arena.subpageRunSize(normCapacity);
+        long runHandle = allocateRun(runSize);
+        if (runHandle < 0) {
+            return runHandle;
         }
 
         final PoolSubpage<T>[] subpages = this.subpages;
-        final int pageSize = this.pageSize;
-
-        freeBytes -= pageSize;
 
+        // The subpage is registered at the first page of the run.
+        int runId = (int) runHandle;
+        int id = runId << maxOrder - depth(runId);
         int subpageIdx = subpageIdx(id);
         PoolSubpage<T> subpage = subpages[subpageIdx];
-        if (subpage == null) {
-            subpage = new PoolSubpage<T>(this, id, runOffset(id), pageSize, normCapacity);
+        if (subpage == null || subpage.pageSize != runSize) {
+            subpage = new PoolSubpage<T>(this, id, runHandle, runOffset(id), runSize, normCapacity);
             subpages[subpageIdx] = subpage;
         } else {
             subpage.init(normCapacity);
@@ -340,16 +398,35 @@ final class PoolChunk<T> {
         int memoryMapIdx = (int) handle;
         int bitmapIdx = (int) (handle >>> Integer.SIZE);
 
-        if (bitmapIdx != 0) { // free a subpage
+        if (isSubpage(bitmapIdx)) { // free a subpage
             PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
             assert subpage != null && subpage.doNotDestroy;
             if (subpage.free(bitmapIdx & 0x3FFFFFFF)) {
                 return;
             }
+            // Free the run the subpage was carved from.
+            memoryMapIdx = (int) subpage.runHandle;
+            bitmapIdx = (int) (subpage.runHandle >>> Integer.SIZE);
+        }
+        if (bitmapIdx == 0) {
+            freeBytes += runLength(memoryMapIdx);
+            setValue(memoryMapIdx, depth(memoryMapIdx));
+            updateParentsFree(memoryMapIdx);
+        } else {
+            // A run of pages which only uses a part of the node, bitmapIdx holds the number of pages.
+            freeBytes += bitmapIdx << pageShifts;
+            updatePartialRun(memoryMapIdx, bitmapIdx, false);
+        }
+        if (freeBytes == chunkSize) {
+            idleSinceNanos = System.nanoTime();
         }
-        freeBytes += runLength(memoryMapIdx);
-        setValue(memoryMapIdx, depth(memoryMapIdx));
-        updateParentsFree(memoryMapIdx);
+    }
+
+    /**
+     * Returns {@code true} if no memory of this chunk was in use since the given value of {@link System#nanoTime()}.
+     */
+    boolean isIdleSince(long nanos) {
+        return freeBytes == chunkSize && idleSinceNanos - nanos <= 0;
     }
 
     void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity) {
@@ -359,17 +436,25 @@ final class PoolChunk<T> {
             byte val = value(memoryMapIdx);
             assert val == unusable : String.valueOf(val);
             buf.init(this, handle, runOffset(memoryMapIdx), reqCapacity, runLength(memoryMapIdx));
+        } else if (!isSubpage(bitmapIdx)) {
+            // A run of pages which only uses a part of the node, bitmapIdx holds the number of pages.
+            buf.init(this, handle, runOffset(memoryMapIdx), reqCapacity, bitmapIdx << pageShifts);
         } else {
             initBufWithSubpage(buf, handle, bitmapIdx, reqCapacity);
         }
     }
 
+    private static boolean isSubpage(int bitmapIdx) {
+        // See PoolSubpage.toHandle(int)
+        return (bitmapIdx & 0x40000000) != 0;
+    }
+
     void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int reqCapacity) {
         initBufWithSubpage(buf, handle, (int) (handle >>> Integer.SIZE), reqCapacity);
     }
 
     private void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int bitmapIdx, int reqCapacity) {
-        assert bitmapIdx != 0;
+        assert isSubpage(bitmapIdx);
 
         int memoryMapIdx = (int) handle;
 
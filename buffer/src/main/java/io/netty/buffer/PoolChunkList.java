@@ -18,7 +18,12 @@ package io.netty.buffer;
 
 import io.netty.util.internal.StringUtil;
 
-final class PoolChunkList<T> {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+final class PoolChunkList<T> implements PoolChunkListMetric {
     private final PoolArena<T> arena;
     private final PoolChunkList<T> nextList;
     PoolChunkList<T> prevList;
@@ -67,13 +72,27 @@ final class PoolChunkList<T> {
             remove(chunk);
             if (prevList == null) {
                 assert chunk.usage() == 0;
-                arena.destroyChunk(chunk);
+                arena.releaseChunk(chunk);
             } else {
                 prevList.add(chunk);
             }
         }
     }
 
+    /**
+     * Release all chunks of this list which were not used since the given value of {@link System#nanoTime()}.
+     */
+    void releaseIdleChunks(long idleSinceNanos) {
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.isIdleSince(idleSinceNanos)) {
+                remove(cur);
+                arena.releaseChunk(cur);
+            }
+            cur = next;
+        }
+    }
+
     void add(PoolChunk<T> chunk) {
         if (chunk.usage() >= maxUsage) {
             nextList.add(chunk);
@@ -108,6 +127,30 @@ final class PoolChunkList<T> {
         }
     }
 
+    @Override
+    public int minUsage() {
+        return minUsage;
+    }
+
+    @Override
+    public int maxUsage() {
+        return maxUsage;
+    }
+
+    @Override
+    public Iterator<PoolChunkMetric> iterator() {
+        synchronized (arena) {
+            if (head == null) {
+                return Collections.<PoolChunkMetric>emptyList().iterator();
+            }
+            List<PoolChunkMetric> metrics = new ArrayList<PoolChunkMetric>();
+            for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+                metrics.add(cur);
+            }
+            return metrics.iterator();
+        }
+    }
+
     @Override
     public String toString() {
         if (head == null) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the unpooled chunks of huge allocations (> chunkSize) of a {@link PoolArena} for reuse, so repeated huge
+ * allocations do not need to allocate and release the memory every time.
+ * <p>
+ * The capacity of huge allocations is rounded up to one of four size classes per doubling, which are used as the
+ * buckets of this cache. A cached chunk is reused for an allocation of the same size class, or of a smaller one if
+ * this wastes at most a quarter of the requested size. The cache holds at most {@code maxCachedBytes} over all
+ * buckets, if more memory is added the least recently cached chunks are evicted first.
+ * <p>
+ * All methods are thread-safe. They are guarded by the lock of the cache and not by the lock of the arena, so huge
+ * allocations do not contend with other allocations.
+ */
+final class PoolHugeChunkCache<T> {
+
+    private final PoolArena<T> arena;
+    private final long maxCachedBytes;
+
+    // The cached chunks by their size. Each bucket is ordered from the least to the most recently cached chunk and
+    // empty buckets are removed, so the ceiling entry of a size is always usable.
+    private final TreeMap<Integer, ArrayDeque<Entry<T>>> buckets = new TreeMap<Integer, ArrayDeque<Entry<T>>>();
+    // All entries of all buckets, ordered from the least to the most recently cached chunk, for eviction.
+    private Entry<T> head;
+    private Entry<T> tail;
+    private volatile long cachedBytes;
+
+    PoolHugeChunkCache(PoolArena<T> arena, long maxCachedBytes) {
+        this.arena = arena;
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Returns the size class of the given huge capacity.
+     */
+    static int normalizeCapacity(int reqCapacity) {
+        int step = Integer.highestOneBit(reqCapacity - 1) >>> 2;
+        int normalizedCapacity = reqCapacity + step - 1 & ~(step - 1);
+        if (normalizedCapacity < 0) {
+            // Overflow, do not round up.
+            return reqCapacity;
+        }
+        return normalizedCapacity;
+    }
+
+    /**
+     * Returns a cached chunk of at least the given size, or {@code null} if there is none which is small enough.
+     */
+    PoolChunk<T> poll(int chunkSize) {
+        synchronized (this) {
+            Map.Entry<Integer, ArrayDeque<Entry<T>>> bucket = buckets.ceilingEntry(chunkSize);
+            if (bucket == null || bucket.getKey() - chunkSize > chunkSize >>> 2) {
+                return null;
+            }
+            // Prefer the most recently cached chunk, as its memory is the most likely to be resident.
+            ArrayDeque<Entry<T>> entries = bucket.getValue();
+            Entry<T> entry = entries.pollLast();
+            if (entries.isEmpty()) {
+                buckets.remove(bucket.getKey());
+            }
+            unlink(entry);
+            cachedBytes -= entry.chunk.chunkSize();
+            return entry.chunk;
+        }
+    }
+
+    /**
+     * Add the given unused chunk to the cache. Returns {@code false} if the chunk is too big to be cached, so it must
+     * be destroyed by the caller.
+     */
+    boolean offer(PoolChunk<T> chunk) {
+        int chunkSize = chunk.chunkSize();
+        if (chunkSize > maxCachedBytes) {
+            return false;
+        }
+
+        List<PoolChunk<T>> evicted = null;
+        synchronized (this) {
+            Entry<T> entry = new Entry<T>(chunk, System.nanoTime());
+            ArrayDeque<Entry<T>> entries = buckets.get(chunkSize);
+            if (entries == null) {
+                entries = new ArrayDeque<Entry<T>>();
+                buckets.put(chunkSize, entries);
+            }
+            entries.addLast(entry);
+            link(entry);
+
+            long cachedBytes = this.cachedBytes + chunkSize;
+            while (cachedBytes > maxCachedBytes) {
+                PoolChunk<T> eldest = removeEldest();
+                cachedBytes -= eldest.chunkSize();
+                if (evicted == null) {
+                    evicted = new ArrayList<PoolChunk<T>>(2);
+                }
+                evicted.add(eldest);
+            }
+            this.cachedBytes = cachedBytes;
+        }
+        destroy(evicted);
+        return true;
+    }
+
+    /**
+     * Release all chunks which were cached before the given value of {@link System#nanoTime()}. Returns the number of
+     * released bytes.
+     */
+    long releaseIdleChunks(long idleSinceNanos) {
+        List<PoolChunk<T>> evicted = null;
+        long released = 0;
+        synchronized (this) {
+            // Entries are ordered by the time they were cached.
+            while (head != null && head.cachedNanos - idleSinceNanos <= 0) {
+                PoolChunk<T> eldest = removeEldest();
+                cachedBytes -= eldest.chunkSize();
+                released += eldest.chunkSize();
+                if (evicted == null) {
+                    evicted = new ArrayList<PoolChunk<T>>();
+                }
+                evicted.add(eldest);
+            }
+        }
+        destroy(evicted);
+        return released;
+    }
+
+    /**
+     * Returns the number of bytes of all cached chunks.
+     */
+    long cachedBytes() {
+        return cachedBytes;
+    }
+
+    // Must be called while holding the lock. The eldest entry is also the first one of its bucket.
+    private PoolChunk<T> removeEldest() {
+        Entry<T> eldest = head;
+        Integer chunkSize = eldest.chunk.chunkSize();
+        ArrayDeque<Entry<T>> entries = buckets.get(chunkSize);
+        Entry<T> removed = entries.pollFirst();
+        assert removed == eldest;
+        if (entries.isEmpty()) {
+            buckets.remove(chunkSize);
+        }
+        unlink(eldest);
+        return eldest.chunk;
+    }
+
+    private void link(Entry<T> entry) {
+        entry.prev = tail;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.next = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev == null) {
+            head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next == null) {
+            tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = entry.next = null;
+    }
+
+    private void destroy(List<PoolChunk<T>> chunks) {
+        if (chunks == null) {
+            return;
+        }
+        for (PoolChunk<T> chunk: chunks) {
+            arena.destroyChunk(chunk);
+        }
+    }
+
+    private static final class Entry<T> {
+        final PoolChunk<T> chunk;
+        final long cachedNanos;
+        Entry<T> prev;
+        Entry<T> next;
+
+        Entry(PoolChunk<T> chunk, long cachedNanos) {
+            this.chunk = chunk;
+            this.cachedNanos = cachedNanos;
+        }
+    }
+}
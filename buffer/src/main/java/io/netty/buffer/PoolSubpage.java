@@ -16,12 +16,16 @@
 
 package io.netty.buffer;
 
-final class PoolSubpage<T> {
+final class PoolSubpage<T> implements PoolSubpageMetric {
 
     final PoolChunk<T> chunk;
     private final int memoryMapIdx;
     private final int runOffset;
-    private final int pageSize;
+    // The size of the run this subpage was carved from. This is a single page unless fine-grained size classes
+    // are used.
+    final int pageSize;
+    // The handle which is used to free the run once this subpage is not used anymore.
+    final long runHandle;
     private final long[] bitmap;
 
     PoolSubpage<T> prev;
@@ -44,12 +48,14 @@ final class PoolSubpage<T> {
         runOffset = -1;
         elemSize = -1;
         this.pageSize = pageSize;
+        runHandle = -1;
         bitmap = null;
     }
 
-    PoolSubpage(PoolChunk<T> chunk, int memoryMapIdx, int runOffset, int pageSize, int elemSize) {
+    PoolSubpage(PoolChunk<T> chunk, int memoryMapIdx, long runHandle, int runOffset, int pageSize, int elemSize) {
         this.chunk = chunk;
         this.memoryMapIdx = memoryMapIdx;
+        this.runHandle = runHandle;
         this.runOffset = runOffset;
         this.pageSize = pageSize;
         bitmap = new long[pageSize >>> 10]; // pageSize / 16 / 64
@@ -210,4 +216,30 @@ final class PoolSubpage<T> {
         return String.valueOf('(') + memoryMapIdx + ": " + (maxNumElems - numAvail) + '/' + maxNumElems +
                ", offset: " + runOffset + ", length: " + pageSize + ", elemSize: " + elemSize + ')';
     }
+
+    @Override
+    public int maxNumElements() {
+        synchronized (chunk.arena) {
+            return maxNumElems;
+        }
+    }
+
+    @Override
+    public int numAvailable() {
+        synchronized (chunk.arena) {
+            return numAvail;
+        }
+    }
+
+    @Override
+    public int elementSize() {
+        synchronized (chunk.arena) {
+            return elemSize;
+        }
+    }
+
+    @Override
+    public int pageSize() {
+        return pageSize;
+    }
 }
@@ -17,11 +17,16 @@
 package io.netty.buffer;
 
 
+import io.netty.buffer.PoolArena.SizeClass;
 import io.netty.util.ThreadDeathWatcher;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Acts a Thread cache for allocations. This implementation is moduled after
@@ -44,14 +49,27 @@ final class PoolThreadCache {
     private final MemoryRegionCache<byte[]>[] normalHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
 
-    // Used for bitshifting when calculate the index of normal caches later
-    private final int numShiftsNormalDirect;
-    private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
 
     private int allocations;
 
-    private final Thread thread = Thread.currentThread();
+    // Allocations served by and deallocations taken by this cache per SizeClass, and the cache misses, which were not
+    // yet added to the metrics of the arenas.
+    private final int[] heapAllocations = new int[SizeClass.values().length];
+    private final int[] heapDeallocations = new int[SizeClass.values().length];
+    private final int[] directAllocations = new int[SizeClass.values().length];
+    private final int[] directDeallocations = new int[SizeClass.values().length];
+    private int heapMisses;
+    private int directMisses;
+
+    private final AtomicBoolean freed = new AtomicBoolean();
+
+    // Set by the periodic trim task of an event loop which runs on another thread than the one owning this cache.
+    private volatile boolean trimRequested;
+
+    // The thread owning this cache, or null if it is owned by an EventExecutor which may run on different threads.
+    private final Thread thread;
+    private final EventExecutor executor;
     private final Runnable freeTask = new Runnable() {
         @Override
         public void run() {
@@ -65,6 +83,18 @@ final class PoolThreadCache {
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
                     int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                     int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+        this(heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize, maxCachedBufferCapacity,
+                freeSweepAllocationThreshold, null);
+    }
+
+    /**
+     * @param executor  the {@link EventExecutor} owning this cache, or {@code null} if it is owned by the current
+     *                  {@link Thread}. The cache of an {@link EventExecutor} is only accessed while it runs, and must
+     *                  be freed explicitly once it terminated.
+     */
+    PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
+                    int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold, EventExecutor executor) {
         if (maxCachedBufferCapacity < 0) {
             throw new IllegalArgumentException("maxCachedBufferCapacity: "
                     + maxCachedBufferCapacity + " (expected: >= 0)");
@@ -74,50 +104,59 @@ final class PoolThreadCache {
                     + maxCachedBufferCapacity + " (expected: > 0)");
         }
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        this.executor = executor;
+        thread = executor == null ? Thread.currentThread() : null;
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
-            tinySubPageDirectCaches = createSubPageCaches(tinyCacheSize, PoolArena.numTinySubpagePools);
-            smallSubPageDirectCaches = createSubPageCaches(smallCacheSize, directArena.numSmallSubpagePools);
+            tinySubPageDirectCaches = createSubPageCaches(
+                    tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
+            smallSubPageDirectCaches = createSubPageCaches(
+                    smallCacheSize, directArena.numSmallSubpagePools, SizeClass.Small);
 
-            numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, directArena);
+
+            directArena.numThreadCaches.incrementAndGet();
         } else {
             // No directArea is configured so just null out all caches
             tinySubPageDirectCaches = null;
             smallSubPageDirectCaches = null;
             normalDirectCaches = null;
-            numShiftsNormalDirect = -1;
         }
         if (heapArena != null) {
             // Create the caches for the heap allocations
-            tinySubPageHeapCaches = createSubPageCaches(tinyCacheSize, PoolArena.numTinySubpagePools);
-            smallSubPageHeapCaches = createSubPageCaches(smallCacheSize, heapArena.numSmallSubpagePools);
+            tinySubPageHeapCaches = createSubPageCaches(
+                    tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
+            smallSubPageHeapCaches = createSubPageCaches(
+                    smallCacheSize, heapArena.numSmallSubpagePools, SizeClass.Small);
 
-            numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, heapArena);
+
+            heapArena.numThreadCaches.incrementAndGet();
         } else {
             // No heapArea is configured so just null out all caches
             tinySubPageHeapCaches = null;
             smallSubPageHeapCaches = null;
             normalHeapCaches = null;
-            numShiftsNormalHeap = -1;
         }
 
-        // The thread-local cache will keep a list of pooled buffers which must be returned to
-        // the pool when the thread is not alive anymore.
-        ThreadDeathWatcher.watch(thread, freeTask);
+        if (thread != null) {
+            // The thread-local cache will keep a list of pooled buffers which must be returned to
+            // the pool when the thread is not alive anymore.
+            ThreadDeathWatcher.watch(thread, freeTask);
+        }
     }
 
-    private static <T> SubPageMemoryRegionCache<T>[] createSubPageCaches(int cacheSize, int numCaches) {
+    private static <T> SubPageMemoryRegionCache<T>[] createSubPageCaches(
+            int cacheSize, int numCaches, SizeClass sizeClass) {
         if (cacheSize > 0) {
             @SuppressWarnings("unchecked")
             SubPageMemoryRegionCache<T>[] cache = new SubPageMemoryRegionCache[numCaches];
             for (int i = 0; i < cache.length; i++) {
                 // TODO: maybe use cacheSize / cache.length
-                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize);
+                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, sizeClass);
             }
             return cache;
         } else {
@@ -129,7 +168,13 @@ final class PoolThreadCache {
             int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
         if (cacheSize > 0) {
             int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
-            int arraySize = Math.max(1, max / area.pageSize);
+            int arraySize;
+            if (area.fineSizeClasses) {
+                // One cache for every normal size class up to max.
+                arraySize = area.isTinyOrSmall(max) ? 0 : area.normalIdx(max) + 1;
+            } else {
+                arraySize = Math.max(1, max / area.pageSize);
+            }
 
             @SuppressWarnings("unchecked")
             NormalMemoryRegionCache<T>[] cache = new NormalMemoryRegionCache[arraySize];
@@ -142,45 +187,48 @@ final class PoolThreadCache {
         }
     }
 
-    private static int log2(int val) {
-        int res = 0;
-        while (val > 1) {
-            val >>= 1;
-            res++;
-        }
-        return res;
-    }
-
     /**
      * Try to allocate a tiny buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
     boolean allocateTiny(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForTiny(area, normCapacity), buf, reqCapacity);
+        return allocate(area, cacheForTiny(area, normCapacity), buf, reqCapacity);
     }
 
     /**
      * Try to allocate a small buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
     boolean allocateSmall(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForSmall(area, normCapacity), buf, reqCapacity);
+        return allocate(area, cacheForSmall(area, normCapacity), buf, reqCapacity);
     }
 
     /**
      * Try to allocate a small buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
     boolean allocateNormal(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForNormal(area, normCapacity), buf, reqCapacity);
+        return allocate(area, cacheForNormal(area, normCapacity), buf, reqCapacity);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private boolean allocate(MemoryRegionCache<?> cache, PooledByteBuf buf, int reqCapacity) {
+    private boolean allocate(PoolArena<?> area, MemoryRegionCache<?> cache, PooledByteBuf buf, int reqCapacity) {
         if (cache == null) {
             // no cache found so just return false here
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity);
-        if (++ allocations >= freeSweepAllocationThreshold) {
-            allocations = 0;
+        if (area.isDirect()) {
+            if (allocated) {
+                directAllocations[cache.sizeClass.ordinal()] ++;
+            } else {
+                directMisses ++;
+            }
+        } else {
+            if (allocated) {
+                heapAllocations[cache.sizeClass.ordinal()] ++;
+            } else {
+                heapMisses ++;
+            }
+        }
+        if (++ allocations >= freeSweepAllocationThreshold || trimRequested) {
             trim();
         }
         return allocated;
@@ -191,32 +239,63 @@ final class PoolThreadCache {
      * Returns {@code true} if it fit into the cache {@code false} otherwise.
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity) {
+    boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity, SizeClass sizeClass) {
         MemoryRegionCache<?> cache;
-        if (area.isTinyOrSmall(normCapacity)) {
-            if (PoolArena.isTiny(normCapacity)) {
-                cache = cacheForTiny(area, normCapacity);
-            } else {
-                cache = cacheForSmall(area, normCapacity);
-            }
-        } else {
+        switch (sizeClass) {
+        case Normal:
             cache = cacheForNormal(area, normCapacity);
+            break;
+        case Small:
+            cache = cacheForSmall(area, normCapacity);
+            break;
+        case Tiny:
+            cache = cacheForTiny(area, normCapacity);
+            break;
+        default:
+            throw new Error();
+        }
+        if (cache == null || area != (area.isDirect() ? directArena : heapArena)) {
+            // Memory of another arena, for example after the thread was bound to dedicated arenas.
+            return false;
         }
-        if (cache == null) {
+        if (!cache.add(chunk, handle)) {
             return false;
         }
-        return cache.add(chunk, handle);
+        (area.isDirect() ? directDeallocations : heapDeallocations)[sizeClass.ordinal()] ++;
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if this cache uses the dedicated arenas of its owner instead of shared arenas.
+     */
+    boolean isDedicated() {
+        PoolArena<?> arena = heapArena != null ? heapArena : directArena;
+        return arena != null && arena.isBoundTo(this);
+    }
+
+    /**
+     * Returns {@code true} if the current thread is the owner of this cache, or runs the {@link EventExecutor} owning
+     * it.
+     */
+    boolean isOwner() {
+        return executor != null ? ThreadExecutorMap.currentExecutor() == executor : thread == Thread.currentThread();
     }
 
     /**
      *  Should be called if the Thread that uses this cache is about to exist to release resources out of the cache
      */
     void free() {
-        ThreadDeathWatcher.unwatch(thread, freeTask);
+        if (thread != null) {
+            ThreadDeathWatcher.unwatch(thread, freeTask);
+        }
         free0();
     }
 
     private void free0() {
+        if (!freed.compareAndSet(false, true)) {
+            return;
+        }
+
         int numFreed = free(tinySubPageDirectCaches) +
                 free(smallSubPageDirectCaches) +
                 free(normalDirectCaches) +
@@ -225,10 +304,45 @@ final class PoolThreadCache {
                 free(normalHeapCaches);
 
         if (numFreed > 0 && logger.isDebugEnabled()) {
-            logger.debug("Freed {} thread-local buffer(s) from thread: {}", numFreed, thread.getName());
+            if (thread != null) {
+                logger.debug("Freed {} thread-local buffer(s) from thread: {}", numFreed, thread.getName());
+            } else {
+                logger.debug("Freed {} thread-local buffer(s) from executor: {}", numFreed, executor);
+            }
+        }
+
+        flushMetrics();
+        if (directArena != null) {
+            directArena.numThreadCaches.decrementAndGet();
+            if (directArena.isBoundTo(this)) {
+                directArena.parent.unbindDedicatedArena(directArena);
+            }
+        }
+        if (heapArena != null) {
+            heapArena.numThreadCaches.decrementAndGet();
+            if (heapArena.isBoundTo(this)) {
+                heapArena.parent.unbindDedicatedArena(heapArena);
+            }
         }
     }
 
+    /**
+     * Add the locally counted allocations, deallocations and misses to the metrics of the arenas.
+     */
+    private void flushMetrics() {
+        if (directArena != null) {
+            directArena.addThreadCacheMetrics(directAllocations, directDeallocations, directMisses);
+        }
+        if (heapArena != null) {
+            heapArena.addThreadCacheMetrics(heapAllocations, heapDeallocations, heapMisses);
+        }
+        Arrays.fill(directAllocations, 0);
+        Arrays.fill(directDeallocations, 0);
+        Arrays.fill(heapAllocations, 0);
+        Arrays.fill(heapDeallocations, 0);
+        directMisses = heapMisses = 0;
+    }
+
     private static int free(MemoryRegionCache<?>[] caches) {
         if (caches == null) {
             return 0;
@@ -249,12 +363,53 @@ final class PoolThreadCache {
     }
 
     void trim() {
+        allocations = 0;
+        trimRequested = false;
         trim(tinySubPageDirectCaches);
         trim(smallSubPageDirectCaches);
         trim(normalDirectCaches);
         trim(tinySubPageHeapCaches);
         trim(smallSubPageHeapCaches);
         trim(normalHeapCaches);
+        flushMetrics();
+        // Pick up the memory which other threads freed in the meantime, if the arenas are dedicated to the owner.
+        if (directArena != null) {
+            directArena.freeDeferred();
+        }
+        if (heapArena != null) {
+            heapArena.freeDeferred();
+        }
+    }
+
+    /**
+     * Trim this cache if called by its owner. Otherwise the owner is asked to trim it on its next allocation, as the
+     * cache must only be accessed by its owner.
+     */
+    void trimOrRequestTrim() {
+        if (isOwner()) {
+            trim();
+        } else {
+            trimRequested = true;
+        }
+    }
+
+    /**
+     * Returns {@code true} if this cache was freed and must not be used anymore.
+     */
+    boolean isFreed() {
+        return freed.get();
+    }
+
+    /**
+     * Release the chunks of the arenas bound to this cache which were unused for at least {@code idleTimeoutNanos}.
+     */
+    void releaseIdleChunks(long idleTimeoutNanos) {
+        if (directArena != null) {
+            directArena.releaseIdleChunks(idleTimeoutNanos);
+        }
+        if (heapArena != null) {
+            heapArena.releaseIdleChunks(idleTimeoutNanos);
+        }
     }
 
     private static void trim(MemoryRegionCache<?>[] caches) {
@@ -282,7 +437,7 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
-        int idx = PoolArena.smallIdx(normCapacity);
+        int idx = area.smallIdx(normCapacity);
         if (area.isDirect()) {
             return cache(smallSubPageDirectCaches, idx);
         }
@@ -290,11 +445,10 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        int idx = area.normalIdx(normCapacity);
         if (area.isDirect()) {
-            int idx = log2(normCapacity >> numShiftsNormalDirect);
             return cache(normalDirectCaches, idx);
         }
-        int idx = log2(normCapacity >> numShiftsNormalHeap);
         return cache(normalHeapCaches, idx);
     }
 
@@ -309,8 +463,8 @@ final class PoolThreadCache {
      * Cache used for buffers which are backed by TINY or SMALL size.
      */
     private static final class SubPageMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        SubPageMemoryRegionCache(int size) {
-            super(size);
+        SubPageMemoryRegionCache(int size, SizeClass sizeClass) {
+            super(size, sizeClass);
         }
 
         @Override
@@ -325,7 +479,7 @@ final class PoolThreadCache {
      */
     private static final class NormalMemoryRegionCache<T> extends MemoryRegionCache<T> {
         NormalMemoryRegionCache(int size) {
-            super(size);
+            super(size, SizeClass.Normal);
         }
 
         @Override
@@ -341,13 +495,15 @@ final class PoolThreadCache {
     private abstract static class MemoryRegionCache<T> {
         private final Entry<T>[] entries;
         private final int maxUnusedCached;
+        private final SizeClass sizeClass;
         private int head;
         private int tail;
         private int maxEntriesInUse;
         private int entriesInUse;
 
         @SuppressWarnings("unchecked")
-        MemoryRegionCache(int size) {
+        MemoryRegionCache(int size, SizeClass sizeClass) {
+            this.sizeClass = sizeClass;
             entries = new Entry[powerOfTwo(size)];
             for (int i = 0; i < entries.length; i++) {
                 entries[i] = new Entry<T>();
@@ -456,15 +612,14 @@ final class PoolThreadCache {
         }
 
         @SuppressWarnings({ "unchecked", "rawtypes" })
-        private static boolean freeEntry(Entry entry) {
+        private boolean freeEntry(Entry entry) {
             PoolChunk chunk = entry.chunk;
             if (chunk == null) {
                 return false;
             }
-            // need to synchronize on the area from which it was allocated before.
-            synchronized (chunk.arena) {
-                chunk.parent.free(chunk, entry.handle);
-            }
+            // synchronizes on the area from which it was allocated before.
+            // The deallocation was counted when the buffer was released into the cache.
+            chunk.arena.freeChunk(chunk, entry.handle, sizeClass, false);
             entry.chunk = null;
             return true;
         }
@@ -16,13 +16,27 @@
 
 package io.netty.buffer;
 
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator {
@@ -38,6 +52,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
     private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
+    private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
+    private static final long DEFAULT_CHUNK_IDLE_TIMEOUT_MILLIS;
+    private static final boolean DEFAULT_FINE_SIZE_CLASSES;
+    private static final long DEFAULT_MAX_CACHED_HUGE_BYTES;
+    private static final boolean DEFAULT_DEDICATED_EVENT_LOOP_ARENAS;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -94,6 +113,35 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         DEFAULT_CACHE_TRIM_INTERVAL = SystemPropertyUtil.getInt(
                 "io.netty.allocator.cacheTrimInterval", 8192);
 
+        // the interval in which the thread-local caches of event loops are trimmed, 0 disables time-based trimming
+        DEFAULT_CACHE_TRIM_INTERVAL_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.cacheTrimIntervalMillis", 0));
+
+        // the time after which completely unused chunks are released, 0 keeps them until the arena is collected
+        DEFAULT_CHUNK_IDLE_TIMEOUT_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkIdleTimeoutMillis", 0));
+
+        // four size classes per doubling instead of one, which trades some speed for less internal fragmentation
+        boolean defaultFineSizeClasses = SystemPropertyUtil.getBoolean("io.netty.allocator.fineSizeClasses", false);
+        Throwable fineSizeClassesFallbackCause = null;
+        if (defaultFineSizeClasses) {
+            try {
+                validateFineSizeClasses(DEFAULT_MAX_ORDER);
+            } catch (Throwable t) {
+                fineSizeClassesFallbackCause = t;
+                defaultFineSizeClasses = false;
+            }
+        }
+        DEFAULT_FINE_SIZE_CLASSES = defaultFineSizeClasses;
+
+        // the number of bytes of huge allocations each arena keeps for reuse, 0 releases them immediately
+        DEFAULT_MAX_CACHED_HUGE_BYTES = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.maxCachedHugeBytes", 0));
+
+        // bind every event loop to its own arenas on its first allocation instead of sharing them
+        DEFAULT_DEDICATED_EVENT_LOOP_ARENAS = SystemPropertyUtil.getBoolean(
+                "io.netty.allocator.dedicatedEventLoopArenas", false);
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -113,6 +161,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
             logger.debug("-Dio.netty.allocator.normalCacheSize: {}", DEFAULT_NORMAL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
+            logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.chunkIdleTimeoutMillis: {}", DEFAULT_CHUNK_IDLE_TIMEOUT_MILLIS);
+            if (fineSizeClassesFallbackCause == null) {
+                logger.debug("-Dio.netty.allocator.fineSizeClasses: {}", DEFAULT_FINE_SIZE_CLASSES);
+            } else {
+                logger.debug("-Dio.netty.allocator.fineSizeClasses: {}", DEFAULT_FINE_SIZE_CLASSES,
+                        fineSizeClassesFallbackCause);
+            }
+            logger.debug("-Dio.netty.allocator.maxCachedHugeBytes: {}", DEFAULT_MAX_CACHED_HUGE_BYTES);
+            logger.debug("-Dio.netty.allocator.dedicatedEventLoopArenas: {}", DEFAULT_DEDICATED_EVENT_LOOP_ARENAS);
         }
     }
 
@@ -121,12 +179,34 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     private final PoolArena<byte[]>[] heapArenas;
     private final PoolArena<ByteBuffer>[] directArenas;
+    // Contain the shared arenas and the dedicated arenas which are currently bound to a thread or an event loop.
+    private final List<PoolArenaMetric> heapArenaMetrics = new CopyOnWriteArrayList<PoolArenaMetric>();
+    private final List<PoolArenaMetric> directArenaMetrics = new CopyOnWriteArrayList<PoolArenaMetric>();
+    private final List<PoolArenaMetric> heapArenaMetricsView = Collections.unmodifiableList(heapArenaMetrics);
+    private final List<PoolArenaMetric> directArenaMetricsView = Collections.unmodifiableList(directArenaMetrics);
+    private final int pageSize;
+    private final int maxOrder;
+    private final int pageShifts;
+    private final int chunkSize;
+    private final boolean fineSizeClasses;
+    private final long maxCachedHugeBytes;
     private final int tinyCacheSize;
     private final int smallCacheSize;
     private final int normalCacheSize;
+    private final long cacheTrimIntervalMillis;
+    private final long chunkIdleTimeoutMillis;
 
     final PoolThreadLocalCache threadCache;
 
+    // The periodic trim tasks of the event loops, at most one per EventExecutor.
+    private final ConcurrentMap<EventExecutor, CacheTrimTask> cacheTrimTasks =
+            PlatformDependent.newConcurrentHashMap();
+
+    // The caches of the event loops which are bound to dedicated arenas. An EventExecutor may run on different threads
+    // of its Executor over time, so its arenas are bound to the executor itself and not to a thread-local cache.
+    private final ConcurrentMap<EventExecutor, PoolThreadCache> executorCaches =
+            PlatformDependent.newConcurrentHashMap();
+
     public PooledByteBufAllocator() {
         this(false);
     }
@@ -146,12 +226,74 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, tinyCacheSize, smallCacheSize,
+                normalCacheSize, DEFAULT_CACHE_TRIM_INTERVAL_MILLIS, DEFAULT_CHUNK_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param cacheTrimIntervalMillis   the interval in which the thread-local caches of {@link EventExecutor}
+     *                                  threads are trimmed, in addition to the trimming after
+     *                                  {@code io.netty.allocator.cacheTrimInterval} allocations. {@code 0} disables
+     *                                  the time-based trimming.
+     * @param chunkIdleTimeoutMillis    the time after which completely unused chunks are released. {@code 0} keeps
+     *                                  them in the arena.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  long cacheTrimIntervalMillis, long chunkIdleTimeoutMillis) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, tinyCacheSize, smallCacheSize,
+                normalCacheSize, cacheTrimIntervalMillis, chunkIdleTimeoutMillis, DEFAULT_FINE_SIZE_CLASSES);
+    }
+
+    /**
+     * @param fineSizeClasses   {@code true} if capacities of 512 bytes and more should be rounded up to one of four
+     *                          size classes per doubling (for example 8192, 10240, 12288, 14336, 16384) instead of
+     *                          the next power of 2. This wastes less memory per buffer, but allocates from runs of
+     *                          pages which are not a power of 2 and so is a bit slower. Requires a {@code maxOrder}
+     *                          of at least 3.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  long cacheTrimIntervalMillis, long chunkIdleTimeoutMillis, boolean fineSizeClasses) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, tinyCacheSize, smallCacheSize,
+                normalCacheSize, cacheTrimIntervalMillis, chunkIdleTimeoutMillis, fineSizeClasses,
+                DEFAULT_MAX_CACHED_HUGE_BYTES);
+    }
+
+    /**
+     * @param maxCachedHugeBytes    the maximal number of bytes of huge allocations (bigger than the chunk size) each
+     *                              arena keeps for reuse after they were released. Their capacity is rounded up to
+     *                              one of four size classes per doubling, so they can be reused for similar sizes.
+     *                              Chunks which were not reused for {@code chunkIdleTimeoutMillis} are released.
+     *                              {@code 0} releases huge allocations immediately.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  long cacheTrimIntervalMillis, long chunkIdleTimeoutMillis, boolean fineSizeClasses,
+                                  long maxCachedHugeBytes) {
         super(preferDirect);
+        if (cacheTrimIntervalMillis < 0) {
+            throw new IllegalArgumentException(
+                    "cacheTrimIntervalMillis: " + cacheTrimIntervalMillis + " (expected: >= 0)");
+        }
+        if (chunkIdleTimeoutMillis < 0) {
+            throw new IllegalArgumentException(
+                    "chunkIdleTimeoutMillis: " + chunkIdleTimeoutMillis + " (expected: >= 0)");
+        }
+        if (maxCachedHugeBytes < 0) {
+            throw new IllegalArgumentException(
+                    "maxCachedHugeBytes: " + maxCachedHugeBytes + " (expected: >= 0)");
+        }
         threadCache = new PoolThreadLocalCache();
         this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
         this.normalCacheSize = normalCacheSize;
+        this.cacheTrimIntervalMillis = cacheTrimIntervalMillis;
+        this.chunkIdleTimeoutMillis = chunkIdleTimeoutMillis;
         final int chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
+        if (fineSizeClasses) {
+            validateFineSizeClasses(maxOrder);
+        }
 
         if (nHeapArena < 0) {
             throw new IllegalArgumentException("nHeapArena: " + nHeapArena + " (expected: >= 0)");
@@ -161,12 +303,19 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         }
 
         int pageShifts = validateAndCalculatePageShifts(pageSize);
+        this.pageSize = pageSize;
+        this.maxOrder = maxOrder;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+        this.fineSizeClasses = fineSizeClasses;
+        this.maxCachedHugeBytes = maxCachedHugeBytes;
 
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
             for (int i = 0; i < heapArenas.length; i ++) {
-                heapArenas[i] = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+                heapArenas[i] = newHeapArena();
             }
+            heapArenaMetrics.addAll(Arrays.asList(heapArenas));
         } else {
             heapArenas = null;
         }
@@ -174,13 +323,24 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         if (nDirectArena > 0) {
             directArenas = newArenaArray(nDirectArena);
             for (int i = 0; i < directArenas.length; i ++) {
-                directArenas[i] = new PoolArena.DirectArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+                directArenas[i] = newDirectArena();
             }
+            directArenaMetrics.addAll(Arrays.asList(directArenas));
         } else {
             directArenas = null;
         }
     }
 
+    private PoolArena<byte[]> newHeapArena() {
+        return new PoolArena.HeapArena(
+                this, pageSize, maxOrder, pageShifts, chunkSize, fineSizeClasses, maxCachedHugeBytes);
+    }
+
+    private PoolArena<ByteBuffer> newDirectArena() {
+        return new PoolArena.DirectArena(
+                this, pageSize, maxOrder, pageShifts, chunkSize, fineSizeClasses, maxCachedHugeBytes);
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> PoolArena<T>[] newArenaArray(int size) {
         return new PoolArena[size];
@@ -199,6 +359,14 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pageSize);
     }
 
+    private static void validateFineSizeClasses(int maxOrder) {
+        // Subpages of the largest small size classes are allocated from runs of up to 7 pages.
+        if (maxOrder < 3) {
+            throw new IllegalArgumentException(
+                    "maxOrder: " + maxOrder + " (expected: 3-14 with fine-grained size classes)");
+        }
+    }
+
     private static int validateAndCalculateChunkSize(int pageSize, int maxOrder) {
         if (maxOrder > 14) {
             throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
@@ -218,7 +386,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     @Override
     protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
-        PoolThreadCache cache = threadCache.get();
+        PoolThreadCache cache = currentCache();
         PoolArena<byte[]> heapArena = cache.heapArena;
 
         ByteBuf buf;
@@ -233,7 +401,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     @Override
     protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
-        PoolThreadCache cache = threadCache.get();
+        PoolThreadCache cache = currentCache();
         PoolArena<ByteBuffer> directArena = cache.directArena;
 
         ByteBuf buf;
@@ -250,35 +418,272 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return toLeakAwareBuffer(buf);
     }
 
+    /**
+     * Returns the cache of the {@link EventExecutor} which is currently running if it is bound to dedicated arenas,
+     * and the thread-local cache of the current {@link Thread} otherwise.
+     */
+    PoolThreadCache currentCache() {
+        if (DEFAULT_DEDICATED_EVENT_LOOP_ARENAS || !executorCaches.isEmpty()) {
+            EventExecutor executor = ThreadExecutorMap.currentExecutor();
+            if (executor != null) {
+                PoolThreadCache cache = executorCaches.get(executor);
+                if (cache != null) {
+                    return cache;
+                }
+                if (DEFAULT_DEDICATED_EVENT_LOOP_ARENAS) {
+                    return executorCache(executor);
+                }
+            }
+        }
+        return threadCache.get();
+    }
+
     @Override
     public boolean isDirectBufferPooled() {
         return directArenas != null;
     }
 
+    /**
+     * Trim the thread-local cache of the current {@link Thread}, or the cache of the {@link EventExecutor} it runs if
+     * that is bound to dedicated arenas, which returns the cached memory that was not used since the last trim to the
+     * arenas. Returns {@code true} if a cache was trimmed, {@code false} if the current {@link Thread} has no cache.
+     */
+    public boolean trimCurrentThreadCache() {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        PoolThreadCache cache = executor != null ? executorCaches.get(executor) : null;
+        if (cache == null) {
+            if (!threadCache.isSet()) {
+                return false;
+            }
+            cache = threadCache.get();
+        }
+        cache.trim();
+        return true;
+    }
+
+    /**
+     * Release all chunks of all arenas which were completely unused for at least the configured chunk idle timeout,
+     * or which are unused at all if no timeout is configured. Memory which is held by thread-local caches is still
+     * in use, so {@link #trimCurrentThreadCache()} may release more chunks. Returns the number of released bytes.
+     */
+    public long releaseIdleChunks() {
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(chunkIdleTimeoutMillis);
+        long released = 0;
+        released += releaseIdleChunks(heapArenaMetrics, idleTimeoutNanos);
+        released += releaseIdleChunks(directArenaMetrics, idleTimeoutNanos);
+        return released;
+    }
+
+    private static long releaseIdleChunks(List<PoolArenaMetric> arenas, long idleTimeoutNanos) {
+        long released = 0;
+        for (PoolArenaMetric metric: arenas) {
+            PoolArena<?> arena = (PoolArena<?>) metric;
+            long reclaimed = arena.numReclaimedBytes();
+            arena.releaseIdleChunks(idleTimeoutNanos);
+            released += arena.numReclaimedBytes() - reclaimed;
+        }
+        return released;
+    }
+
+    /**
+     * Bind the current {@link Thread} to its own heap and direct arena, which are not used by any other thread. Frees
+     * of buffers of these arenas by other threads are handed back to the arenas in batches. The arenas are released
+     * when the thread-local cache of the thread is freed, usually when the thread terminates.
+     * <p>
+     * The shared arenas this allocator was created with are still used by all threads which are not bound, so their
+     * number only needs to cover these threads. Memory which was allocated by the current thread before is returned
+     * to the shared arenas. Returns {@code false} if the current thread is already bound to its own arenas.
+     */
+    public boolean bindCurrentThreadToDedicatedArenas() {
+        if (threadCache.isSet()) {
+            if (threadCache.get().isDedicated()) {
+                return false;
+            }
+            // Frees the current cache, which also returns its memory to the shared arenas.
+            threadCache.remove();
+        }
+        threadCache.set(threadCache.newThreadCache(true, null));
+        return true;
+    }
+
+    /**
+     * Bind every {@link EventExecutor} of the given {@link EventExecutorGroup} to its own heap and direct arena, as
+     * described in {@link #bindCurrentThreadToDedicatedArenas()}. The arenas are bound to the {@link EventExecutor}
+     * and not to a thread, so they are used by whichever thread of its {@link java.util.concurrent.Executor} runs it.
+     * They are released when the {@link EventExecutor} terminates. Use
+     * {@code -Dio.netty.allocator.dedicatedEventLoopArenas=true} to bind every {@link EventExecutor} on its first
+     * allocation instead.
+     */
+    public void bindDedicatedArenas(EventExecutorGroup group) {
+        if (group == null) {
+            throw new NullPointerException("group");
+        }
+        for (EventExecutor executor: group.<EventExecutor>children()) {
+            executorCache(executor);
+        }
+    }
+
+    /**
+     * Returns the cache of the given {@link EventExecutor}, which is bound to dedicated arenas and created if needed.
+     */
+    private PoolThreadCache executorCache(final EventExecutor executor) {
+        PoolThreadCache cache = executorCaches.get(executor);
+        if (cache != null) {
+            return cache;
+        }
+        final PoolThreadCache newCache = threadCache.newThreadCache(true, executor);
+        cache = executorCaches.putIfAbsent(executor, newCache);
+        if (cache != null) {
+            newCache.free();
+            return cache;
+        }
+        executor.terminationFuture().addListener(new FutureListener<Object>() {
+            @Override
+            public void operationComplete(Future<Object> future) {
+                executorCaches.remove(executor, newCache);
+                newCache.free();
+            }
+        });
+        return newCache;
+    }
+
+    /**
+     * Called by the cache of a thread or an {@link EventExecutor} which was bound to the given dedicated arena when
+     * it is freed.
+     */
+    void unbindDedicatedArena(PoolArena<?> arena) {
+        arena.unbind();
+        if (arena.isDirect()) {
+            directArenaMetrics.remove(arena);
+        } else {
+            heapArenaMetrics.remove(arena);
+        }
+    }
+
+    /**
+     * Return the number of heap arenas, including the dedicated arenas which are currently bound to a thread or an
+     * {@link EventExecutor}.
+     */
+    public int numHeapArenas() {
+        return heapArenaMetrics.size();
+    }
+
+    /**
+     * Return the number of direct arenas, including the dedicated arenas which are currently bound to a thread or an
+     * {@link EventExecutor}.
+     */
+    public int numDirectArenas() {
+        return directArenaMetrics.size();
+    }
+
+    /**
+     * Return a {@link List} of all heap {@link PoolArenaMetric}s that are provided by this pool. The dedicated arenas
+     * of threads are added and removed while the threads are bound.
+     */
+    public List<PoolArenaMetric> heapArenas() {
+        return heapArenaMetricsView;
+    }
+
+    /**
+     * Return a {@link List} of all direct {@link PoolArenaMetric}s that are provided by this pool. The dedicated
+     * arenas of threads are added and removed while the threads are bound.
+     */
+    public List<PoolArenaMetric> directArenas() {
+        return directArenaMetricsView;
+    }
+
+    /**
+     * Return the number of thread local caches used by this {@link PooledByteBufAllocator}.
+     */
+    public int numThreadLocalCaches() {
+        // Every thread local cache is bound to one heap and one direct arena, so only count one kind of arenas.
+        List<PoolArenaMetric> arenas = heapArenaMetrics.isEmpty() ? directArenaMetrics : heapArenaMetrics;
+        int total = 0;
+        for (PoolArenaMetric arena: arenas) {
+            total += arena.numThreadCaches();
+        }
+        return total;
+    }
+
+    /**
+     * Return the size of the tiny cache.
+     */
+    public int tinyCacheSize() {
+        return tinyCacheSize;
+    }
+
+    /**
+     * Return the size of the small cache.
+     */
+    public int smallCacheSize() {
+        return smallCacheSize;
+    }
+
+    /**
+     * Return the size of the normal cache.
+     */
+    public int normalCacheSize() {
+        return normalCacheSize;
+    }
+
     final class PoolThreadLocalCache extends FastThreadLocal<PoolThreadCache> {
         private final AtomicInteger index = new AtomicInteger();
 
         @Override
         protected PoolThreadCache initialValue() {
-            final int idx = index.getAndIncrement();
+            return newThreadCache(false, null);
+        }
+
+        /**
+         * Create a new cache, which is owned by the given {@link EventExecutor} or by the current {@link Thread} if
+         * it is {@code null}.
+         */
+        PoolThreadCache newThreadCache(boolean dedicated, EventExecutor owner) {
             final PoolArena<byte[]> heapArena;
             final PoolArena<ByteBuffer> directArena;
 
-            if (heapArenas != null) {
-                heapArena = heapArenas[Math.abs(idx % heapArenas.length)];
+            if (dedicated) {
+                heapArena = heapArenas != null ? newHeapArena() : null;
+                directArena = directArenas != null ? newDirectArena() : null;
             } else {
-                heapArena = null;
+                final int idx = index.getAndIncrement();
+                if (heapArenas != null) {
+                    heapArena = heapArenas[Math.abs(idx % heapArenas.length)];
+                } else {
+                    heapArena = null;
+                }
+
+                if (directArenas != null) {
+                    directArena = directArenas[Math.abs(idx % directArenas.length)];
+                } else {
+                    directArena = null;
+                }
             }
 
-            if (directArenas != null) {
-                directArena = directArenas[Math.abs(idx % directArenas.length)];
-            } else {
-                directArena = null;
+            PoolThreadCache cache = new PoolThreadCache(
+                    heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
+                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL, owner);
+
+            if (dedicated) {
+                if (heapArena != null) {
+                    heapArena.bind(cache);
+                    heapArenaMetrics.add(heapArena);
+                }
+                if (directArena != null) {
+                    directArena.bind(cache);
+                    directArenaMetrics.add(directArena);
+                }
             }
 
-            return new PoolThreadCache(
-                    heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+            if (cacheTrimIntervalMillis > 0 || chunkIdleTimeoutMillis > 0) {
+                // Event loops may stay idle for a long time after a traffic spike, so trim their caches and release
+                // the idle chunks of their arenas periodically instead of waiting for the next allocations.
+                EventExecutor executor = owner != null ? owner : ThreadExecutorMap.currentExecutor();
+                if (executor != null) {
+                    cacheTrimTask(executor).add(cache);
+                }
+            }
+            return cache;
         }
 
         @Override
@@ -287,6 +692,71 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         }
     }
 
+    private CacheTrimTask cacheTrimTask(EventExecutor executor) {
+        CacheTrimTask task = cacheTrimTasks.get(executor);
+        if (task == null) {
+            task = new CacheTrimTask(executor);
+            CacheTrimTask old = cacheTrimTasks.putIfAbsent(executor, task);
+            if (old != null) {
+                return old;
+            }
+            task.schedule();
+        }
+        return task;
+    }
+
+    /**
+     * Trims the thread-local caches which were created while the {@link EventExecutor} was running. An
+     * {@link EventExecutor} may run on different threads of its {@link java.util.concurrent.Executor} over time, so
+     * the caches are trimmed explicitly instead of the one of the thread the task happens to run on.
+     */
+    private final class CacheTrimTask implements Runnable, FutureListener<Object> {
+        private final EventExecutor executor;
+        private final Set<PoolThreadCache> caches =
+                Collections.newSetFromMap(PlatformDependent.<PoolThreadCache, Boolean>newConcurrentHashMap());
+
+        CacheTrimTask(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        void schedule() {
+            long interval = cacheTrimIntervalMillis > 0 ? cacheTrimIntervalMillis : chunkIdleTimeoutMillis;
+            try {
+                executor.scheduleAtFixedRate(this, interval, interval, TimeUnit.MILLISECONDS);
+                executor.terminationFuture().addListener(this);
+            } catch (RejectedExecutionException e) {
+                cacheTrimTasks.remove(executor, this);
+            }
+        }
+
+        void add(PoolThreadCache cache) {
+            caches.add(cache);
+        }
+
+        @Override
+        public void run() {
+            for (Iterator<PoolThreadCache> i = caches.iterator(); i.hasNext();) {
+                PoolThreadCache cache = i.next();
+                if (cache.isFreed()) {
+                    i.remove();
+                    continue;
+                }
+                if (cacheTrimIntervalMillis > 0) {
+                    cache.trimOrRequestTrim();
+                }
+                if (chunkIdleTimeoutMillis > 0) {
+                    cache.releaseIdleChunks(TimeUnit.MILLISECONDS.toNanos(chunkIdleTimeoutMillis));
+                }
+            }
+        }
+
+        @Override
+        public void operationComplete(Future<Object> future) {
+            // The executor terminated, so do not keep it reachable.
+            cacheTrimTasks.remove(executor, this);
+        }
+    }
+
 //    Too noisy at the moment.
 //
 //    public String toString() {
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.Recycler;
+
+/**
+ * A recycled {@link DuplicatedByteBuf} with its own reference count, as returned by
+ * {@link ByteBuf#retainedDuplicate()}.
+ */
+final class PooledDuplicatedByteBuf extends AbstractPooledDerivedByteBuf {
+
+    private static final Recycler<PooledDuplicatedByteBuf> RECYCLER =
+            new Recycler<PooledDuplicatedByteBuf>("pooledDuplicatedByteBuf") {
+        @Override
+        protected PooledDuplicatedByteBuf newObject(Handle<PooledDuplicatedByteBuf> handle) {
+            return new PooledDuplicatedByteBuf(handle);
+        }
+    };
+
+    static PooledDuplicatedByteBuf newInstance(ByteBuf buffer, int readerIndex, int writerIndex) {
+        PooledDuplicatedByteBuf duplicate = RECYCLER.get();
+        duplicate.init(buffer, 0, readerIndex, writerIndex, buffer.maxCapacity());
+        return duplicate;
+    }
+
+    private PooledDuplicatedByteBuf(Recycler.Handle<PooledDuplicatedByteBuf> recyclerHandle) {
+        super(recyclerHandle);
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        buffer.capacity(newCapacity);
+        return this;
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return newInstance(buffer, readerIndex(), writerIndex());
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        checkIndex(index, length);
+        return PooledSlicedByteBuf.newInstance(buffer, index, length);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.Recycler;
+
+/**
+ * A recycled {@link SlicedByteBuf} with its own reference count, as returned by
+ * {@link ByteBuf#retainedSlice(int, int)}.
+ */
+final class PooledSlicedByteBuf extends AbstractPooledDerivedByteBuf {
+
+    private static final Recycler<PooledSlicedByteBuf> RECYCLER =
+            new Recycler<PooledSlicedByteBuf>("pooledSlicedByteBuf") {
+        @Override
+        protected PooledSlicedByteBuf newObject(Handle<PooledSlicedByteBuf> handle) {
+            return new PooledSlicedByteBuf(handle);
+        }
+    };
+
+    static PooledSlicedByteBuf newInstance(ByteBuf buffer, int index, int length) {
+        if (index < 0 || index > buffer.capacity() - length) {
+            throw new IndexOutOfBoundsException(buffer + ".retainedSlice(" + index + ", " + length + ')');
+        }
+        PooledSlicedByteBuf slice = RECYCLER.get();
+        slice.length = length;
+        slice.init(buffer, index, 0, length, length);
+        return slice;
+    }
+
+    private int length;
+
+    private PooledSlicedByteBuf(Recycler.Handle<PooledSlicedByteBuf> recyclerHandle) {
+        super(recyclerHandle);
+    }
+
+    @Override
+    public int capacity() {
+        return length;
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        throw new UnsupportedOperationException("sliced buffer");
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        ByteBuf duplicate = newInstance(buffer, adjustment, length);
+        duplicate.setIndex(readerIndex(), writerIndex());
+        return duplicate;
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        checkIndex(index, length);
+        return newInstance(buffer, index + adjustment, length);
+    }
+}
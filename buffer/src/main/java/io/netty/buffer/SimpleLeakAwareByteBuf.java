@@ -86,4 +86,27 @@ final class SimpleLeakAwareByteBuf extends WrappedByteBuf {
     public ByteBuf readSlice(int length) {
         return new SimpleLeakAwareByteBuf(super.readSlice(length), leak);
     }
+
+    // A recycled derived buffer has its own reference count, so releasing it would close the leak of this buffer
+    // too early.  Retain plain derived buffers instead, which share the reference count of the tracked buffer.
+
+    @Override
+    public ByteBuf retainedSlice() {
+        return slice().retain();
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return slice(index, length).retain();
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return duplicate().retain();
+    }
+
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return readSlice(length).retain();
+    }
 }
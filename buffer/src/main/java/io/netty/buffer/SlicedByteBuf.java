@@ -144,6 +144,13 @@ public class SlicedByteBuf extends AbstractDerivedByteBuf {
         return duplicate;
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        ByteBuf duplicate = PooledSlicedByteBuf.newInstance(buffer, adjustment, length);
+        duplicate.setIndex(readerIndex(), writerIndex());
+        return duplicate;
+    }
+
     @Override
     public ByteBuf copy(int index, int length) {
         checkIndex(index, length);
@@ -159,6 +166,12 @@ public class SlicedByteBuf extends AbstractDerivedByteBuf {
         return buffer.slice(index + adjustment, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        checkIndex(index, length);
+        return PooledSlicedByteBuf.newInstance(buffer, index + adjustment, length);
+    }
+
     @Override
     public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
         checkIndex(index, length);
@@ -500,6 +500,11 @@ public class SwappedByteBuf extends ByteBuf {
         return buf.readSlice(length).order(order);
     }
 
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return buf.readRetainedSlice(length).order(order);
+    }
+
     @Override
     public ByteBuf readBytes(ByteBuf dst) {
         buf.readBytes(dst);
@@ -664,6 +669,11 @@ public class SwappedByteBuf extends ByteBuf {
         return buf.indexOf(fromIndex, toIndex, value);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        return buf.indexOf(fromIndex, toIndex, value1, value2);
+    }
+
     @Override
     public int bytesBefore(byte value) {
         return buf.bytesBefore(value);
@@ -719,11 +729,26 @@ public class SwappedByteBuf extends ByteBuf {
         return buf.slice(index, length).order(order);
     }
 
+    @Override
+    public ByteBuf retainedSlice() {
+        return buf.retainedSlice().order(order);
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return buf.retainedSlice(index, length).order(order);
+    }
+
     @Override
     public ByteBuf duplicate() {
         return buf.duplicate().order(order);
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return buf.retainedDuplicate().order(order);
+    }
+
     @Override
     public int nioBufferCount() {
         return buf.nioBufferCount();
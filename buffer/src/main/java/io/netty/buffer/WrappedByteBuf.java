@@ -488,6 +488,11 @@ public class WrappedByteBuf extends ByteBuf {
         return buf.readSlice(length);
     }
 
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return buf.readRetainedSlice(length);
+    }
+
     @Override
     public ByteBuf readBytes(ByteBuf dst) {
         buf.readBytes(dst);
@@ -652,6 +657,11 @@ public class WrappedByteBuf extends ByteBuf {
         return buf.indexOf(fromIndex, toIndex, value);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        return buf.indexOf(fromIndex, toIndex, value1, value2);
+    }
+
     @Override
     public int bytesBefore(byte value) {
         return buf.bytesBefore(value);
@@ -707,11 +717,26 @@ public class WrappedByteBuf extends ByteBuf {
         return buf.slice(index, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice() {
+        return buf.retainedSlice();
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return buf.retainedSlice(index, length);
+    }
+
     @Override
     public ByteBuf duplicate() {
         return buf.duplicate();
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return buf.retainedDuplicate();
+    }
+
     @Override
     public int nioBufferCount() {
         return buf.nioBufferCount();
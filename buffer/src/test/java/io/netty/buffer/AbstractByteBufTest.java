@@ -1555,6 +1555,71 @@ public abstract class AbstractByteBufTest {
         assertEquals(3, buffer.indexOf(4, 1, (byte) 2));
     }
 
+    @Test
+    public void testIndexOfTwoValues() {
+        buffer.clear();
+        buffer.writeByte((byte) 1);
+        buffer.writeByte((byte) 2);
+        buffer.writeByte((byte) 3);
+        buffer.writeByte((byte) 2);
+        buffer.writeByte((byte) 1);
+
+        assertEquals(-1, buffer.indexOf(1, 4, (byte) 1, (byte) 4));
+        assertEquals(-1, buffer.indexOf(4, 1, (byte) 1, (byte) 4));
+        assertEquals(1, buffer.indexOf(1, 4, (byte) 3, (byte) 2));
+        assertEquals(3, buffer.indexOf(4, 1, (byte) 3, (byte) 2));
+        assertEquals(2, buffer.indexOf(1, 4, (byte) 3, (byte) 4));
+    }
+
+    @Test
+    public void testIndexOfLongRanges() {
+        // Use a small alphabet so there are many matches at every offset within a word.
+        byte[] value = new byte[buffer.capacity()];
+        for (int i = 0; i < value.length; i ++) {
+            value[i] = (byte) (random.nextInt(64) == 0? '\n' : random.nextInt(32) == 0? '\r' : 'a' + i % 7);
+        }
+        buffer.clear();
+        buffer.writeBytes(value);
+
+        for (int i = 0; i < 1000; i ++) {
+            int fromIndex = random.nextInt(value.length + 1);
+            int toIndex = Math.min(value.length, fromIndex + random.nextInt(256));
+            assertEquals(firstIndexOf(value, fromIndex, toIndex, '\n', '\n'),
+                         buffer.indexOf(fromIndex, toIndex, (byte) '\n'));
+            assertEquals(firstIndexOf(value, fromIndex, toIndex, '\r', '\n'),
+                         buffer.indexOf(fromIndex, toIndex, (byte) '\r', (byte) '\n'));
+            assertEquals(lastIndexOf(value, toIndex, fromIndex, '\n', '\n'),
+                         buffer.indexOf(toIndex, fromIndex, (byte) '\n'));
+            assertEquals(lastIndexOf(value, toIndex, fromIndex, '\r', '\n'),
+                         buffer.indexOf(toIndex, fromIndex, (byte) '\r', (byte) '\n'));
+
+            int expected = firstIndexOf(value, fromIndex, toIndex, '\r', '\n');
+            if (fromIndex < toIndex) {
+                assertEquals(expected, buffer.forEachByte(fromIndex, toIndex - fromIndex, ByteBufProcessor.FIND_CRLF));
+                assertEquals(lastIndexOf(value, toIndex, fromIndex, '\r', '\r'),
+                        buffer.forEachByteDesc(fromIndex, toIndex - fromIndex, ByteBufProcessor.FIND_CR));
+            }
+        }
+    }
+
+    private static int firstIndexOf(byte[] value, int fromIndex, int toIndex, char value1, char value2) {
+        for (int i = fromIndex; i < toIndex; i ++) {
+            if (value[i] == value1 || value[i] == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] value, int fromIndex, int toIndex, char value1, char value2) {
+        for (int i = fromIndex - 1; i >= toIndex; i --) {
+            if (value[i] == value1 || value[i] == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Test
     public void testNioBuffer1() {
         Assume.assumeTrue(buffer.nioBufferCount() == 1);
@@ -2472,6 +2537,42 @@ public abstract class AbstractByteBufTest {
         assertEquals(0, buf.refCnt());
     }
 
+    @Test
+    public void testRetainedSliceAndDuplicate() {
+        ByteBuf buf = newBuffer(8).clear();
+        for (int i = 0; i < 8; i ++) {
+            buf.writeByte(i);
+        }
+
+        ByteBuf slice = buf.retainedSlice(2, 4);
+        assertEquals(2, buf.refCnt());
+        assertEquals(4, slice.readableBytes());
+        assertEquals(2, slice.getByte(0));
+
+        ByteBuf sliceOfSlice = slice.retainedSlice(1, 2);
+        assertEquals(3, sliceOfSlice.getByte(0));
+        ByteBuf duplicateOfSlice = slice.skipBytes(1).retainedDuplicate();
+        assertEquals(1, duplicateOfSlice.readerIndex());
+        assertEquals(3, duplicateOfSlice.readByte());
+        // The derived buffers of the slice keep their own reference to the parent.
+        assertTrue(slice.release());
+        assertEquals(5, duplicateOfSlice.getByte(3));
+
+        ByteBuf duplicate = buf.retainedDuplicate();
+        assertEquals(buf, duplicate);
+        ByteBuf readSlice = buf.readRetainedSlice(3);
+        assertEquals(3, buf.readerIndex());
+        assertEquals(0, duplicate.readerIndex());
+        assertEquals(2, readSlice.getByte(2));
+
+        assertTrue(sliceOfSlice.release());
+        assertTrue(duplicateOfSlice.release());
+        assertTrue(duplicate.release());
+        assertTrue(readSlice.release());
+        assertEquals(1, buf.refCnt());
+        assertTrue(buf.release());
+    }
+
     // Test-case trying to reproduce:
     // https://github.com/netty/netty/issues/2843
     @Test
@@ -22,6 +22,7 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static io.netty.buffer.Unpooled.*;
 import static io.netty.util.ReferenceCountUtil.*;
@@ -226,6 +227,83 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         assertEquals(wrappedBuffer(new byte[] { 7, 8, 9, 10 }), buf.component(2));
     }
 
+    @Test
+    public void testSmallComponentsConsolidation() {
+        CompositeByteBuf buf = releaseLater(compositeBuffer(4));
+        buf.consolidationPolicy(CompositeByteBuf.ConsolidationPolicy.SMALL_COMPONENTS);
+        ByteBuf large = wrappedBuffer(new byte[16384]);
+        buf.addComponent(wrappedBuffer(new byte[] { 1 }));
+        buf.addComponent(wrappedBuffer(new byte[] { 2, 3 }));
+        buf.addComponent(large);
+        buf.addComponent(wrappedBuffer(new byte[] { 4, 5, 6 }));
+        buf.addComponent(wrappedBuffer(new byte[] { 7, 8, 9, 10 }));
+
+        // Only the small components around the large one are merged.
+        assertEquals(3, buf.numComponents());
+        assertEquals(wrappedBuffer(new byte[] { 1, 2, 3 }), buf.component(0));
+        assertSame(large, buf.internalComponent(1).unwrap());
+        assertEquals(wrappedBuffer(new byte[] { 4, 5, 6, 7, 8, 9, 10 }), buf.component(2));
+        assertEquals(3, buf.toByteIndex(1));
+        assertEquals(3 + 16384, buf.toByteIndex(2));
+        assertEquals(10, buf.getByte(3 + 16384 + 6));
+    }
+
+    @Test
+    public void testSmallComponentsConsolidationFallsBackToAll() {
+        CompositeByteBuf buf = releaseLater(compositeBuffer(2));
+        buf.consolidationPolicy(CompositeByteBuf.ConsolidationPolicy.SMALL_COMPONENTS);
+        buf.addComponent(wrappedBuffer(new byte[16384]));
+        buf.addComponent(wrappedBuffer(new byte[16384]));
+        buf.addComponent(wrappedBuffer(new byte[16384]));
+
+        assertEquals(1, buf.numComponents());
+        assertEquals(3 * 16384, buf.capacity());
+    }
+
+    @Test
+    public void testAddComponentsInMiddle() {
+        CompositeByteBuf buf = releaseLater(compositeBuffer(Integer.MAX_VALUE));
+        buf.addComponent(wrappedBuffer(new byte[] { 1 }));
+        buf.addComponent(wrappedBuffer(new byte[] { 7, 8 }));
+        buf.addComponents(1, wrappedBuffer(new byte[] { 2, 3 }), EMPTY_BUFFER, wrappedBuffer(new byte[] { 4, 5, 6 }));
+        buf.writerIndex(buf.capacity());
+
+        assertEquals(5, buf.numComponents());
+        assertEquals(0, buf.toByteIndex(0));
+        assertEquals(1, buf.toByteIndex(1));
+        assertEquals(3, buf.toByteIndex(2));
+        assertEquals(3, buf.toByteIndex(3));
+        assertEquals(6, buf.toByteIndex(4));
+        assertEquals(wrappedBuffer(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), buf);
+    }
+
+    @Test
+    public void testToComponentIndex() {
+        CompositeByteBuf buf = releaseLater(compositeBuffer(Integer.MAX_VALUE));
+        for (int i = 0; i < 100; i ++) {
+            buf.addComponent(wrappedBuffer(new byte[i % 3 + 1]));
+            buf.addComponent(EMPTY_BUFFER);
+        }
+
+        // Sequential access in both directions and random access must all find the right component.
+        for (int offset = 0; offset < buf.capacity(); offset ++) {
+            assertComponentIndex(buf, offset);
+        }
+        for (int offset = buf.capacity() - 1; offset >= 0; offset --) {
+            assertComponentIndex(buf, offset);
+        }
+        Random random = new Random();
+        for (int i = 0; i < 1000; i ++) {
+            assertComponentIndex(buf, random.nextInt(buf.capacity()));
+        }
+    }
+
+    private static void assertComponentIndex(CompositeByteBuf buf, int offset) {
+        int cIndex = buf.toComponentIndex(offset);
+        assertTrue(buf.toByteIndex(cIndex) <= offset);
+        assertTrue(offset < buf.toByteIndex(cIndex) + buf.internalComponent(cIndex).readableBytes());
+    }
+
     @Test
     public void testCompositeWrappedBuffer() {
         ByteBuf header = releaseLater(buffer(12)).order(order);
@@ -91,6 +91,62 @@ public class ByteBufDerivationTest {
         assertThat(dup2.maxCapacity(), is(dup.maxCapacity()));
     }
 
+    @Test
+    public void testRetainedSlice() throws Exception {
+        ByteBuf buf = Unpooled.buffer(8).setIndex(1, 7);
+        ByteBuf slice = buf.slice(1, 7).retainedSlice(1, 5);
+
+        assertThat(slice, instanceOf(PooledSlicedByteBuf.class));
+        assertThat(slice.unwrap(), sameInstance(buf));
+        assertThat(slice.refCnt(), is(1));
+        assertThat(buf.refCnt(), is(2));
+        assertThat(slice.readerIndex(), is(0));
+        assertThat(slice.writerIndex(), is(5));
+        assertThat(slice.capacity(), is(5));
+        assertThat(slice.maxCapacity(), is(5));
+
+        ByteBuf slice2 = slice.retainedSlice(1, 3);
+        assertThat(slice2.unwrap(), sameInstance(buf));
+        buf.setByte(3, 42);
+        assertThat(slice2.getByte(0), is((byte) 42));
+
+        assertThat(slice.release(), is(true));
+        assertThat(slice2.release(), is(true));
+        assertThat(buf.refCnt(), is(1));
+    }
+
+    @Test
+    public void testRetainedDuplicate() throws Exception {
+        ByteBuf buf = Unpooled.buffer(8).setIndex(1, 7);
+        ByteBuf dup = buf.duplicate().setIndex(2, 6).retainedDuplicate();
+
+        assertThat(dup, instanceOf(PooledDuplicatedByteBuf.class));
+        assertThat(dup.unwrap(), sameInstance(buf));
+        assertThat(dup.readerIndex(), is(2));
+        assertThat(dup.writerIndex(), is(6));
+        assertThat(dup.capacity(), is(buf.capacity()));
+        assertThat(dup.maxCapacity(), is(buf.maxCapacity()));
+        assertThat(buf.refCnt(), is(2));
+
+        assertThat(dup.release(), is(true));
+        assertThat(buf.refCnt(), is(1));
+    }
+
+    @Test
+    public void testRetainedSliceIsRecycled() throws Exception {
+        ByteBuf buf = Unpooled.buffer(8).writeLong(0);
+        ByteBuf slice = buf.retainedSlice(1, 7).setIndex(1, 2).markReaderIndex();
+        slice.release();
+
+        ByteBuf slice2 = buf.retainedSlice(2, 6);
+        assertThat(slice2, sameInstance(slice));
+        assertThat(slice2.readerIndex(), is(0));
+        assertThat(slice2.writerIndex(), is(6));
+        assertThat(slice2.capacity(), is(6));
+        assertThat(slice2.resetReaderIndex().readerIndex(), is(0));
+        slice2.release();
+    }
+
     @Test
     public void testReadOnly() throws Exception {
         ByteBuf buf = Unpooled.buffer(8).setIndex(1, 7);
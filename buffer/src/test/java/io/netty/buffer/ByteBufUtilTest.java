@@ -17,11 +17,19 @@ package io.netty.buffer;
 
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ResourceLeak;
+import io.netty.util.internal.StringUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ByteBufUtilTest {
 
+    private static final String NEWLINE = StringUtil.NEWLINE;
+
     @Test
     public void testWriteUsAscii() {
         String usAscii = "NettyRocks";
@@ -43,4 +51,178 @@ public class ByteBufUtilTest {
 
         Assert.assertEquals(buf, buf2);
     }
+
+    @Test
+    public void testWriteUtf8Surrogates() {
+        // A surrogate pair, a high surrogate without a low surrogate and a low surrogate without a high surrogate.
+        String utf8 = "a\ud800\udc00b\ud800c\udc00\ud800";
+        byte[] expected = utf8.getBytes(CharsetUtil.UTF_8);
+        Assert.assertEquals(expected.length, ByteBufUtil.utf8Bytes(utf8));
+
+        ByteBuf[] buffers = {
+                Unpooled.buffer(1), Unpooled.directBuffer(1),
+                Unpooled.unreleasableBuffer(Unpooled.buffer(1)), Unpooled.compositeBuffer()
+        };
+        for (ByteBuf buf: buffers) {
+            ReferenceCountUtil.releaseLater(buf);
+            Assert.assertEquals(expected.length, ByteBufUtil.writeUtf8(buf, utf8));
+            Assert.assertEquals(Unpooled.wrappedBuffer(expected), buf);
+        }
+    }
+
+    @Test
+    public void testWriteUtf8Direct() {
+        String utf8 = "Some UTF-8 like \u00e4\u00c4\u220f\u0152\u0152 \ud83d\ude00";
+        ByteBuf buf = ReferenceCountUtil.releaseLater(Unpooled.directBuffer(16));
+        Assert.assertEquals(ByteBufUtil.utf8Bytes(utf8), ByteBufUtil.writeUtf8(buf, utf8));
+        Assert.assertEquals(Unpooled.wrappedBuffer(utf8.getBytes(CharsetUtil.UTF_8)), buf);
+    }
+
+    @Test
+    public void testWriteAsciiDirect() {
+        String usAscii = "NettyRocks";
+        ByteBuf buf = ReferenceCountUtil.releaseLater(Unpooled.directBuffer(4));
+        ByteBufUtil.writeAscii(buf, usAscii);
+        Assert.assertEquals(Unpooled.wrappedBuffer(usAscii.getBytes(CharsetUtil.US_ASCII)), buf);
+    }
+
+    @Test
+    public void testWriteAsciiReplacesNonAsciiCharsOfOtherBuffers() {
+        // A SwappedByteBuf is neither an AbstractByteBuf nor a WrappedByteBuf, so it is written via its own methods.
+        ByteBuf buf = ReferenceCountUtil.releaseLater(Unpooled.buffer(4)).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(3, ByteBufUtil.writeAscii(buf, "a\u00e4\u220f"));
+        Assert.assertEquals(Unpooled.wrappedBuffer(new byte[] { 'a', '?', '?' }), buf);
+    }
+
+    @Test
+    public void testWriteUtf8RecordsAccessOfLeakAwareBuffer() {
+        final AtomicInteger records = new AtomicInteger();
+        ResourceLeak leak = new ResourceLeak() {
+            @Override
+            public void record() {
+                records.incrementAndGet();
+            }
+
+            @Override
+            public void record(Object hint) {
+                records.incrementAndGet();
+            }
+
+            @Override
+            public boolean close() {
+                return true;
+            }
+        };
+        ByteBuf buf = new AdvancedLeakAwareByteBuf(ReferenceCountUtil.releaseLater(Unpooled.buffer(16)), leak);
+        records.set(0);
+        ByteBufUtil.writeUtf8(buf, "Netty");
+        Assert.assertTrue(records.get() > 0);
+        Assert.assertEquals(Unpooled.wrappedBuffer("Netty".getBytes(CharsetUtil.UTF_8)), buf);
+    }
+
+    @Test
+    public void testEncodeStringUtf8() {
+        String utf8 = "Some UTF-8 like \u00e4\u00c4\u220f\u0152\u0152 \ud83d\ude00\ud800";
+        ByteBuf buf = ReferenceCountUtil.releaseLater(Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8));
+        Assert.assertEquals(Unpooled.wrappedBuffer(utf8.getBytes(CharsetUtil.UTF_8)), buf);
+    }
+
+    @Test
+    public void testPrettyHexDump() {
+        ByteBuf buf = Unpooled.copiedBuffer("xx0123456789abcdefA\n", CharsetUtil.US_ASCII).skipBytes(2);
+        String header =
+                NEWLINE + "         +-------------------------------------------------+" +
+                NEWLINE + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
+                NEWLINE + "+--------+-------------------------------------------------+----------------+";
+        String firstRow = NEWLINE + "|00000000| 30 31 32 33 34 35 36 37 38 39 61 62 63 64 65 66 |0123456789abcdef|";
+        String footer = NEWLINE + "+--------+-------------------------------------------------+----------------+";
+
+        // Only the readable bytes are dumped and the offsets are relative to the reader index.
+        Assert.assertEquals(header + firstRow +
+                NEWLINE + "|00000010| 41 0a                                           |A.              |" +
+                footer, ByteBufUtil.prettyHexDump(buf));
+
+        StringBuilder dump = new StringBuilder();
+        ByteBufUtil.appendPrettyHexDump(dump, buf, buf.readerIndex(), buf.readableBytes(), 16);
+        Assert.assertEquals(header + firstRow + footer + NEWLINE + "... 2B more", dump.toString());
+
+        Assert.assertEquals("", ByteBufUtil.prettyHexDump(buf, 0, 0));
+        buf.release();
+    }
+
+    @Test
+    public void testXxHash32() {
+        assertXxHash32(0x02CC5D05, "");
+        assertXxHash32(0x32D153FF, "abc");
+        assertXxHash32(0xE2293B2F, "Nobody inspects the spammish repetition");
+    }
+
+    private static void assertXxHash32(int expected, String value) {
+        for (ByteBuf buf: variants(value.getBytes(CharsetUtil.US_ASCII))) {
+            Assert.assertEquals(value, expected, ByteBufUtil.xxHash32(buf));
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testEqualsCompareAndHashCode() {
+        Random random = new Random();
+        for (int length = 0; length < 40; length ++) {
+            byte[] a = new byte[length];
+            random.nextBytes(a);
+            byte[] b = a.clone();
+            if (length > 0) {
+                b[random.nextInt(length)] ^= 1 << random.nextInt(8);
+            }
+            int expectedCompare = memcmp(a, b);
+
+            ByteBuf[] as = variants(a);
+            ByteBuf[] bs = variants(b);
+            int expectedHashCode = ByteBufUtil.hashCode(as[0]);
+            for (ByteBuf x: as) {
+                Assert.assertEquals(expectedHashCode, ByteBufUtil.hashCode(x));
+                for (ByteBuf y: as) {
+                    Assert.assertTrue(ByteBufUtil.equals(x, y));
+                    Assert.assertEquals(0, ByteBufUtil.compare(x, y));
+                }
+                for (ByteBuf y: bs) {
+                    Assert.assertEquals(expectedCompare == 0, ByteBufUtil.equals(x, y));
+                    Assert.assertEquals(expectedCompare, Integer.signum(ByteBufUtil.compare(x, y)));
+                    Assert.assertEquals(-expectedCompare, Integer.signum(ByteBufUtil.compare(y, x)));
+                }
+            }
+            release(as);
+            release(bs);
+        }
+    }
+
+    private static int memcmp(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i ++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xFF) < (b[i] & 0xFF) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static ByteBuf[] variants(byte[] bytes) {
+        byte[] padded = new byte[bytes.length + 5];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        int half = bytes.length / 2;
+        return new ByteBuf[] {
+                Unpooled.wrappedBuffer(bytes),
+                Unpooled.wrappedBuffer(padded, 3, bytes.length),
+                Unpooled.directBuffer(bytes.length).writeBytes(bytes),
+                Unpooled.wrappedBuffer(bytes).order(ByteOrder.LITTLE_ENDIAN),
+                Unpooled.directBuffer(bytes.length).order(ByteOrder.LITTLE_ENDIAN).writeBytes(bytes),
+                Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(bytes, 0, half),
+                                       Unpooled.wrappedBuffer(bytes, half, bytes.length - half)),
+        };
+    }
+
+    private static void release(ByteBuf... buffers) {
+        for (ByteBuf buf: buffers) {
+            buf.release();
+        }
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.*;
+
+public class MappedFileByteBufTest {
+
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[4096];
+        for (int i = 0; i < content.length; i ++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("netty-mapped-", ".tmp");
+        file.deleteOnExit();
+        write(file, content);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        ByteBuf buf = MappedFileByteBuf.map(file, 16, 1024);
+        try {
+            assertTrue(buf.isDirect());
+            assertEquals(1024, buf.readableBytes());
+            assertEquals(Unpooled.wrappedBuffer(content, 16, 1024), buf);
+            assertEquals(16, buf.getByte(0));
+            assertEquals(1024, buf.nioBuffer().remaining());
+        } finally {
+            assertTrue(buf.release());
+        }
+        assertEquals(0, buf.refCnt());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testWriteNotAllowed() throws IOException {
+        ByteBuf buf = MappedFileByteBuf.map(file, 0, 16);
+        try {
+            buf.setByte(0, 1);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapBeyondEndOfFile() throws IOException {
+        MappedFileByteBuf.map(file, 4000, 100);
+    }
+
+    @Test
+    public void testCacheHit() throws IOException {
+        MappedFileCache cache = new MappedFileCache(4, 1 << 20);
+        ByteBuf a = cache.get(file, 0, 1024);
+        ByteBuf b = cache.get(file, 0, 1024);
+        assertEquals(1, cache.size());
+        assertEquals(1024, cache.mappedBytes());
+        assertEquals(a, b);
+        assertEquals(a.nioBuffer(), b.nioBuffer());
+
+        // The readers index of each returned buffer is independent.
+        a.skipBytes(10);
+        assertEquals(1024, b.readableBytes());
+
+        a.release();
+        b.release();
+        ByteBuf c = cache.get(file, 0, 1024);
+        assertEquals(0, c.getByte(0));
+        c.release();
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.mappedBytes());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        MappedFileCache cache = new MappedFileCache(2, 1 << 20);
+        cache.get(file, 0, 16).release();
+        cache.get(file, 16, 16).release();
+        // Access the first region so that the second one becomes the least recently used.
+        cache.get(file, 0, 16).release();
+
+        ByteBuf third = cache.get(file, 32, 16);
+        assertEquals(2, cache.size());
+        assertEquals(32, cache.mappedBytes());
+        assertEquals(32, third.getByte(0));
+        third.release();
+
+        cache = new MappedFileCache(16, 100);
+        ByteBuf first = cache.get(file, 0, 64);
+        cache.get(file, 64, 64).release();
+        assertEquals(1, cache.size());
+        assertEquals(64, cache.mappedBytes());
+
+        // The evicted region stays mapped until the last buffer was released.
+        assertEquals(1, first.refCnt());
+        assertEquals(63, first.getByte(63));
+        first.release();
+
+        // Regions larger than the whole cache are not cached at all.
+        ByteBuf big = cache.get(file, 0, 1024);
+        assertEquals(1, cache.size());
+        assertTrue(big.release());
+        cache.clear();
+    }
+
+    @Test
+    public void testModifiedFileIsRemapped() throws IOException {
+        MappedFileCache cache = new MappedFileCache(4, 1 << 20);
+        ByteBuf a = cache.get(file, 0, 16);
+        assertEquals(0, a.getByte(0));
+
+        byte[] modified = content.clone();
+        modified[0] = 42;
+        write(file, modified);
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+
+        ByteBuf b = cache.get(file, 0, 16);
+        assertEquals(42, b.getByte(0));
+        assertEquals(1, cache.size());
+        a.release();
+        b.release();
+        cache.clear();
+    }
+}
@@ -25,11 +25,42 @@ public class PoolArenaTest {
 
     @Test
     public void testNormalizeCapacity() throws Exception {
-        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999);
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, false, 0);
         int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
         int[] expectedResult = {0, 16, 512, 1024, 1024, 2048};
         for (int i = 0; i < reqCapacities.length; i ++) {
             Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
         }
     }
+
+    @Test
+    public void testNormalizeCapacityWithFineSizeClasses() throws Exception {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 11, 13, 8192 << 11, true, 0);
+        int[] reqCapacities = {0, 15, 510, 512, 513, 1023, 1025, 9216, 32769, 8192 << 11};
+        int[] expectedResult = {0, 16, 512, 512, 640, 1024, 1280, 10240, 40960, 8192 << 11};
+        for (int i = 0; i < reqCapacities.length; i ++) {
+            Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
+        }
+    }
+
+    @Test
+    public void testFineSizeClassIndexes() throws Exception {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 11, 13, 8192 << 11, true, 0);
+        Assert.assertEquals(24, arena.numSmallSubpagePools);
+        Assert.assertEquals(0, arena.smallIdx(512));
+        Assert.assertEquals(1, arena.smallIdx(640));
+        Assert.assertEquals(4, arena.smallIdx(1024));
+        Assert.assertEquals(23, arena.smallIdx(28672));
+        Assert.assertTrue(arena.isTinyOrSmall(28672));
+        Assert.assertFalse(arena.isTinyOrSmall(32768));
+        Assert.assertEquals(0, arena.normalIdx(32768));
+        Assert.assertEquals(1, arena.normalIdx(40960));
+        Assert.assertEquals(4, arena.normalIdx(65536));
+
+        // Runs of subpages are a multiple of the element size.
+        Assert.assertEquals(8192, arena.subpageRunSize(16));
+        Assert.assertEquals(8192, arena.subpageRunSize(1024));
+        Assert.assertEquals(8192 * 5, arena.subpageRunSize(10240));
+        Assert.assertEquals(8192 * 7, arena.subpageRunSize(28672));
+    }
 }
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.internal.ThreadExecutorMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PooledByteBufAllocatorTest {
+
+    private static final int PAGE_SIZE = 8192;
+    private static final int CHUNK_SIZE = PAGE_SIZE << 11;
+
+    @Test
+    public void testArenaMetrics() {
+        // Disable the thread local caches so every release goes back to the arena.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 1, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false);
+        assertEquals(1, allocator.numHeapArenas());
+        assertEquals(1, allocator.numDirectArenas());
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+        assertEquals(6, metric.numChunkLists());
+        assertEquals(0, metric.numActiveAllocations());
+        assertEquals(0, metric.numChunkBytes());
+
+        ByteBuf tiny = allocator.heapBuffer(16);
+        ByteBuf small = allocator.heapBuffer(1024);
+        ByteBuf normal = allocator.heapBuffer(PAGE_SIZE * 2);
+        ByteBuf huge = allocator.heapBuffer(CHUNK_SIZE + 1);
+
+        assertEquals(1, metric.numTinyAllocations());
+        assertEquals(1, metric.numSmallAllocations());
+        assertEquals(1, metric.numNormalAllocations());
+        assertEquals(1, metric.numHugeAllocations());
+        assertEquals(4, metric.numAllocations());
+        assertEquals(4, metric.numActiveAllocations());
+        assertEquals(CHUNK_SIZE, metric.numChunkBytes());
+        // One page for each of the subpages, two pages for the normal buffer and the whole huge buffer.
+        assertEquals(PAGE_SIZE * 4 + CHUNK_SIZE + 1, metric.numActiveBytes());
+        assertEquals(1, metric.tinySubpages().size());
+        assertEquals(1, metric.smallSubpages().size());
+        PoolSubpageMetric subpage = metric.tinySubpages().get(0);
+        assertEquals(16, subpage.elementSize());
+        assertEquals(PAGE_SIZE / 16, subpage.maxNumElements());
+        assertEquals(PAGE_SIZE / 16 - 1, subpage.numAvailable());
+        assertEquals(1, countChunks(metric));
+
+        assertTrue(tiny.release());
+        assertTrue(small.release());
+        assertTrue(normal.release());
+        assertTrue(huge.release());
+
+        assertEquals(1, metric.numTinyDeallocations());
+        assertEquals(1, metric.numSmallDeallocations());
+        assertEquals(1, metric.numNormalDeallocations());
+        assertEquals(1, metric.numHugeDeallocations());
+        assertEquals(4, metric.numDeallocations());
+        assertEquals(0, metric.numActiveAllocations());
+
+        // The direct arena was not used at all.
+        assertEquals(0, allocator.directArenas().get(0).numAllocations());
+    }
+
+    @Test
+    public void testThreadCacheMetrics() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 64, 64, 64, 0, 0, false);
+        assertTrue(allocator.directArenas().isEmpty());
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+        assertEquals(0, metric.numThreadCaches());
+
+        // The first allocation misses the cache, the release puts the memory into the cache and the second
+        // allocation is served by the cache.
+        assertTrue(allocator.heapBuffer(1024).release());
+        assertEquals(1, allocator.numThreadLocalCaches());
+        assertTrue(allocator.heapBuffer(1024).release());
+
+        // Free the thread local cache, which flushes its hits and misses to the arena.
+        allocator.threadCache.remove();
+        assertEquals(0, metric.numThreadCaches());
+        assertEquals(1, metric.numThreadCacheHits());
+        assertEquals(1, metric.numThreadCacheMisses());
+        // The allocation served by the cache and the releases into the cache are counted as well.
+        assertEquals(2, metric.numSmallAllocations());
+        assertEquals(2, metric.numSmallDeallocations());
+        assertEquals(0, metric.numActiveAllocations());
+    }
+
+    @Test
+    public void testReleaseIdleChunks() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, TimeUnit.MINUTES.toMillis(1), false);
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+        assertTrue(allocator.heapBuffer(PAGE_SIZE).release());
+        assertEquals(CHUNK_SIZE, metric.numChunkBytes());
+
+        // The chunk was not idle for long enough.
+        assertEquals(0, allocator.releaseIdleChunks());
+        assertEquals(CHUNK_SIZE, metric.numChunkBytes());
+
+        allocator = new PooledByteBufAllocator(false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false);
+        metric = allocator.heapArenas().get(0);
+        ByteBuf buf = allocator.heapBuffer(PAGE_SIZE);
+        assertTrue(allocator.heapBuffer(PAGE_SIZE).release());
+
+        // The chunk is still in use.
+        assertEquals(0, allocator.releaseIdleChunks());
+        assertTrue(buf.release());
+        assertEquals(CHUNK_SIZE, allocator.releaseIdleChunks());
+        assertEquals(0, metric.numChunkBytes());
+        assertEquals(CHUNK_SIZE, metric.numReclaimedBytes());
+    }
+
+    @Test(timeout = 10000)
+    public void testEventLoopTrimsCacheAndReleasesIdleChunks() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 1, 10, 10, false);
+        EventExecutor executor = new DefaultEventExecutor();
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // The memory stays in the thread-local cache of the event loop.
+                    assertTrue(allocator.heapBuffer(PAGE_SIZE).release());
+                }
+            }).sync();
+            // The event loop may use a dedicated arena, which is added after the shared one.
+            PoolArenaMetric metric = allocator.heapArenas().get(allocator.numHeapArenas() - 1);
+            assertEquals(1, metric.numThreadCaches());
+
+            // Neither the cache nor the arena are used anymore, so the memory is released eventually.
+            while (metric.numReclaimedBytes() != CHUNK_SIZE) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, metric.numChunkBytes());
+            assertEquals(1, metric.numNormalDeallocations());
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTrimTaskRequestsTrimOfCacheOfOtherThread() throws Exception {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 1, 10, 0, false);
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+        EventExecutor executor = new DefaultEventExecutor();
+        // Pretend the current thread runs the executor while the cache is created, as if the executor moved to
+        // another thread of its Executor afterwards.
+        ThreadExecutorMap.setCurrentEventExecutor(executor);
+        try {
+            assertTrue(allocator.heapBuffer(PAGE_SIZE).release());
+        } finally {
+            ThreadExecutorMap.setCurrentEventExecutor(null);
+        }
+        try {
+            // The trim task runs on the thread of the executor, which must not touch the cache of this thread.
+            Thread.sleep(100);
+            assertEquals(PAGE_SIZE, metric.numActiveBytes());
+
+            // The next allocation of the owner trims the cache as requested.
+            ByteBuf buf = allocator.heapBuffer(PAGE_SIZE * 2);
+            assertEquals(PAGE_SIZE * 2, metric.numActiveBytes());
+            assertTrue(buf.release());
+        } finally {
+            allocator.threadCache.remove();
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    public void testFineSizeClasses() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, true);
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+
+        // A 9 KiB buffer only uses 10 KiB instead of 16 KiB.
+        ByteBuf buf = allocator.heapBuffer(9 * 1024);
+        assertEquals(1, metric.numSmallAllocations());
+        assertEquals(10 * 1024, metric.smallSubpages().get(0).elementSize());
+        assertTrue(buf.release());
+
+        // A run of 5 pages leaves the remaining 3 pages of the node to other allocations. The run of the subpage
+        // above is kept, as it is the only one of its size class.
+        long activeBytes = metric.numActiveBytes();
+        assertEquals(PAGE_SIZE * 5, activeBytes);
+        ByteBuf normal = allocator.heapBuffer(PAGE_SIZE * 5);
+        assertEquals(1, metric.numNormalAllocations());
+        assertEquals(activeBytes + PAGE_SIZE * 5, metric.numActiveBytes());
+        assertTrue(normal.release());
+        assertEquals(activeBytes, metric.numActiveBytes());
+
+        // Allocate buffers of random sizes and make sure they do not overlap.
+        Random random = new Random(42);
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 2000; i ++) {
+            int capacity = random.nextInt(PAGE_SIZE * 8);
+            ByteBuf b = allocator.heapBuffer(capacity, capacity);
+            assertEquals(capacity, b.capacity());
+            b.writerIndex(capacity);
+            for (int j = 0; j < capacity; j ++) {
+                b.setByte(j, i);
+            }
+            buffers.add(b);
+        }
+        for (int i = 0; i < buffers.size(); i ++) {
+            ByteBuf b = buffers.get(i);
+            for (int j = 0; j < b.capacity(); j ++) {
+                assertEquals((byte) i, b.getByte(j));
+            }
+            assertTrue(b.release());
+        }
+        assertEquals(0, metric.numActiveAllocations());
+        // Only the subpages which are kept in the pools for their size class are still allocated.
+        for (PoolChunkListMetric list: metric.chunkLists()) {
+            for (PoolChunkMetric chunk: list) {
+                assertTrue(chunk.usage() < 25);
+            }
+        }
+    }
+
+    @Test
+    public void testHugeChunkCache() {
+        // Each huge allocation of CHUNK_SIZE + 1 is rounded up to CHUNK_SIZE * 5 / 4, so two of them fit the cache.
+        int hugeSize = CHUNK_SIZE * 5 / 4;
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false, hugeSize * 2);
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+
+        ByteBuf buf = allocator.heapBuffer(CHUNK_SIZE + 1);
+        assertEquals(CHUNK_SIZE + 1, buf.capacity());
+        assertEquals(hugeSize, metric.numActiveBytes());
+        byte[] array = buf.array();
+        assertTrue(buf.release());
+        assertEquals(0, metric.numActiveBytes());
+        assertEquals(hugeSize, metric.numCachedHugeBytes());
+
+        // An allocation of the same size class reuses the cached memory.
+        buf = allocator.heapBuffer(CHUNK_SIZE + 2);
+        assertSame(array, buf.array());
+        assertEquals(0, metric.numCachedHugeBytes());
+
+        // An allocation of a different size class does not.
+        ByteBuf other = allocator.heapBuffer(CHUNK_SIZE * 2);
+        assertNotSame(array, other.array());
+        ByteBuf third = allocator.heapBuffer(CHUNK_SIZE + 1);
+        assertTrue(buf.release());
+        assertTrue(third.release());
+        assertEquals(hugeSize * 2, metric.numCachedHugeBytes());
+
+        // Releasing another one exceeds the cap, so the least recently cached chunks are evicted until it fits.
+        assertTrue(other.release());
+        assertEquals(CHUNK_SIZE * 2, metric.numCachedHugeBytes());
+        buf = allocator.heapBuffer(CHUNK_SIZE + 1);
+        assertNotSame(array, buf.array());
+        assertTrue(buf.release());
+        assertEquals(hugeSize, metric.numCachedHugeBytes());
+
+        // A cached chunk of the next size class is reused as well, as it wastes at most a quarter of the capacity.
+        buf = allocator.heapBuffer(CHUNK_SIZE * 3 / 2);
+        array = buf.array();
+        assertTrue(buf.release());
+        assertEquals(CHUNK_SIZE * 3 / 2, metric.numCachedHugeBytes());
+        buf = allocator.heapBuffer(CHUNK_SIZE + 1);
+        assertSame(array, buf.array());
+        assertEquals(CHUNK_SIZE * 3 / 2, metric.numActiveBytes());
+        assertTrue(buf.release());
+
+        // No idle timeout is configured, so all cached chunks are released.
+        assertEquals(CHUNK_SIZE * 3 / 2, allocator.releaseIdleChunks());
+        assertEquals(0, metric.numCachedHugeBytes());
+        assertEquals(7, metric.numHugeAllocations());
+        assertEquals(7, metric.numHugeDeallocations());
+    }
+
+    @Test(timeout = 10000)
+    public void testDedicatedArenas() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false);
+        PoolArenaMetric shared = allocator.heapArenas().get(0);
+        assertTrue(allocator.bindCurrentThreadToDedicatedArenas());
+        try {
+            assertFalse(allocator.bindCurrentThreadToDedicatedArenas());
+            assertEquals(2, allocator.numHeapArenas());
+            assertEquals(1, allocator.numThreadLocalCaches());
+            assertEquals(0, shared.numThreadCaches());
+            PoolArenaMetric dedicated = allocator.heapArenas().get(1);
+
+            // The buffers are allocated by the current thread, but released by another one.
+            final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            for (int i = 0; i < PoolArena.deferredFreeBatchSize; i ++) {
+                buffers.add(allocator.heapBuffer(PAGE_SIZE));
+            }
+            assertEquals(0, shared.numAllocations());
+            assertEquals(PoolArena.deferredFreeBatchSize, dedicated.numNormalAllocations());
+
+            // The frees are deferred until a whole batch was released.
+            runInOtherThread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < buffers.size() - 1; i ++) {
+                        assertTrue(buffers.get(i).release());
+                    }
+                }
+            });
+            assertEquals(0, dedicated.numNormalDeallocations());
+            runInOtherThread(new Runnable() {
+                @Override
+                public void run() {
+                    assertTrue(buffers.get(buffers.size() - 1).release());
+                }
+            });
+            assertEquals(PoolArena.deferredFreeBatchSize, dedicated.numNormalDeallocations());
+            assertEquals(0, dedicated.numActiveAllocations());
+        } finally {
+            allocator.threadCache.remove();
+        }
+
+        // The dedicated arena is unbound when the thread-local cache is freed.
+        assertEquals(1, allocator.numHeapArenas());
+        assertSame(shared, allocator.heapArenas().get(0));
+    }
+
+    @Test
+    public void testDeferredFreesArePickedUpByOwner() throws Exception {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false);
+        assertTrue(allocator.bindCurrentThreadToDedicatedArenas());
+        try {
+            PoolArenaMetric dedicated = allocator.heapArenas().get(1);
+            final ByteBuf buf = allocator.heapBuffer(PAGE_SIZE);
+            runInOtherThread(new Runnable() {
+                @Override
+                public void run() {
+                    assertTrue(buf.release());
+                }
+            });
+            assertEquals(1, dedicated.numActiveAllocations());
+
+            // The next allocation of the owner hands back the deferred free first, so the same memory is reused.
+            ByteBuf next = allocator.heapBuffer(PAGE_SIZE);
+            assertEquals(1, dedicated.numNormalDeallocations());
+            assertEquals(PAGE_SIZE, dedicated.numActiveBytes());
+            assertTrue(next.release());
+        } finally {
+            allocator.threadCache.remove();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBindDedicatedArenasOfGroup() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                false, 1, 0, PAGE_SIZE, 11, 0, 0, 0, 0, 0, false);
+        PoolArenaMetric shared = allocator.heapArenas().get(0);
+        EventExecutorGroup group = new DefaultEventExecutorGroup(2);
+        try {
+            allocator.bindDedicatedArenas(group);
+            assertEquals(3, allocator.numHeapArenas());
+            assertEquals(2, allocator.numThreadLocalCaches());
+            assertEquals(0, shared.numThreadCaches());
+
+            // An executor may run every task on another thread, but always allocates from its own arena.
+            List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            for (EventExecutor e: group.<EventExecutor>children()) {
+                for (int i = 0; i < 2; i ++) {
+                    buffers.add(e.submit(new Callable<ByteBuf>() {
+                        @Override
+                        public ByteBuf call() {
+                            return allocator.heapBuffer(PAGE_SIZE);
+                        }
+                    }).sync().getNow());
+                }
+            }
+            assertEquals(0, shared.numAllocations());
+            assertEquals(2, allocator.heapArenas().get(1).numNormalAllocations());
+            assertEquals(2, allocator.heapArenas().get(2).numNormalAllocations());
+            for (ByteBuf buf: buffers) {
+                assertTrue(buf.release());
+            }
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+
+        // The dedicated arenas are unbound when the executors terminate.
+        while (allocator.numHeapArenas() != 1) {
+            Thread.sleep(10);
+        }
+        assertSame(shared, allocator.heapArenas().get(0));
+    }
+
+    private static void runInOtherThread(Runnable task) throws InterruptedException {
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        Thread thread = new Thread(task);
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                cause.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(cause.get());
+    }
+
+    private static int countChunks(PoolArenaMetric metric) {
+        int count = 0;
+        for (PoolChunkListMetric list: metric.chunkLists()) {
+            assertTrue(list.minUsage() <= list.maxUsage());
+            for (Iterator<PoolChunkMetric> i = list.iterator(); i.hasNext();) {
+                PoolChunkMetric chunk = i.next();
+                assertEquals(CHUNK_SIZE, chunk.chunkSize());
+                assertTrue(chunk.usage() > 0);
+                count ++;
+            }
+        }
+        return count;
+    }
+}
@@ -16,10 +16,10 @@
 package io.netty.handler.codec.http;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.FileRegion;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import io.netty.util.CharsetUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
@@ -142,9 +142,9 @@ public abstract class HttpObjectEncoder<H extends HttpMessage> extends MessageTo
 
     private void encodeChunkedContent(ChannelHandlerContext ctx, Object msg, long contentLength, List<Object> out) {
         if (contentLength > 0) {
-            byte[] length = Long.toHexString(contentLength).getBytes(CharsetUtil.US_ASCII);
-            ByteBuf buf = ctx.alloc().buffer(length.length + 2);
-            buf.writeBytes(length);
+            String length = Long.toHexString(contentLength);
+            ByteBuf buf = ctx.alloc().buffer(length.length() + 2);
+            ByteBufUtil.writeAscii(buf, length);
             buf.writeBytes(CRLF);
             out.add(buf);
             out.add(encodeAndRetain(msg));
@@ -16,8 +16,8 @@
 package io.netty.handler.codec.http;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.AsciiString;
-import io.netty.util.CharsetUtil;
 
 import static io.netty.handler.codec.http.HttpConstants.*;
 
@@ -71,7 +71,7 @@ public class HttpRequestEncoder extends HttpObjectEncoder<HttpRequest> {
             }
         }
 
-        buf.writeBytes(uri.getBytes(CharsetUtil.UTF_8));
+        ByteBufUtil.writeUtf8(buf, uri);
         buf.writeByte(SP);
 
         AsciiString version = request.protocolVersion().text();
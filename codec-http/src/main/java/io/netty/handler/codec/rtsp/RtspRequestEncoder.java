@@ -16,10 +16,10 @@
 package io.netty.handler.codec.rtsp;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.AsciiString;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpRequest;
-import io.netty.util.CharsetUtil;
 
 import static io.netty.handler.codec.http.HttpConstants.*;
 
@@ -42,7 +42,7 @@ public class RtspRequestEncoder extends RtspObjectEncoder<HttpRequest> {
         buf.writeBytes(method.array(), method.arrayOffset(), method.length());
         buf.writeByte(SP);
 
-        buf.writeBytes(request.uri().getBytes(CharsetUtil.UTF_8));
+        ByteBufUtil.writeUtf8(buf, request.uri());
         buf.writeByte(SP);
 
         AsciiString version = request.protocolVersion().text();
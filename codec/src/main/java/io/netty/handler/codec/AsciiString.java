@@ -253,7 +253,8 @@ public final class AsciiString implements CharSequence, Comparable<CharSequence>
         } else if (v != null) {
             final ByteBuf buf = Unpooled.copiedBuffer(v, charset);
             try {
-                if (buf.hasArray()) {
+                if (buf.hasArray() && buf.arrayOffset() == 0 && buf.readerIndex() == 0 &&
+                    buf.array().length == buf.readableBytes()) {
                     return buf.array();
                 } else {
                     byte[] result = new byte[buf.readableBytes()];
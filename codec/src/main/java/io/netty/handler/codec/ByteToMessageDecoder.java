@@ -18,6 +18,7 @@ package io.netty.handler.codec;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.CompositeByteBuf.ConsolidationPolicy;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerAdapter;
@@ -122,6 +123,8 @@ public abstract class ByteToMessageDecoder extends ChannelHandlerAdapter {
                 } else {
                     int readable = cumulation.readableBytes();
                     composite = alloc.compositeBuffer();
+                    // Only merge small chunks once there are too many components, so large chunks are not copied.
+                    composite.consolidationPolicy(ConsolidationPolicy.SMALL_COMPONENTS);
                     composite.addComponent(cumulation).writerIndex(readable);
                 }
                 composite.addComponent(in).writerIndex(composite.writerIndex() + in.readableBytes());
@@ -480,20 +480,20 @@ public class LengthFieldBasedFrameDecoder extends ByteToMessageDecoder {
     }
 
     /**
-     * Extract the sub-region of the specified buffer.
+     * Extract the sub-region of the specified buffer.  The default implementation returns a
+     * {@linkplain ByteBuf#retainedSlice(int, int) retained slice}, which shares the memory of the
+     * cumulation buffer without copying it.
      * <p>
      * If you are sure that the frame and its content are not accessed after
      * the current {@link #decode(ChannelHandlerContext, ByteBuf)}
-     * call returns, you can even avoid memory copy by returning the sliced
+     * call returns, you can even avoid the reference count by returning the sliced
      * sub-region (i.e. <tt>return buffer.slice(index, length)</tt>).
      * It's often useful when you convert the extracted frame into an object.
      * Refer to the source code of {@link ObjectDecoder} to see how this method
-     * is overridden to avoid memory copy.
+     * is overridden.
      */
     protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
-        ByteBuf frame = ctx.alloc().buffer(length);
-        frame.writeBytes(buffer, index, length);
-        return frame;
+        return buffer.retainedSlice(index, length);
     }
 
     private void fail(long frameLength) {
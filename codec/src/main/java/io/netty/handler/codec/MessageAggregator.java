@@ -18,6 +18,7 @@ package io.netty.handler.codec;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.CompositeByteBuf.ConsolidationPolicy;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -239,6 +240,7 @@ public abstract class MessageAggregator<I, S, C extends ByteBufHolder, O extends
 
             // A streamed message - initialize the cumulative buffer, and wait for incoming chunks.
             CompositeByteBuf content = ctx.alloc().compositeBuffer(maxCumulationBufferComponents);
+            content.consolidationPolicy(ConsolidationPolicy.SMALL_COMPONENTS);
             if (m instanceof ByteBufHolder) {
                 appendPartialContent(content, ((ByteBufHolder) m).content());
             }
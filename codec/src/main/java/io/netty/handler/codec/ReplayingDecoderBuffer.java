@@ -170,6 +170,12 @@ final class ReplayingDecoderBuffer extends ByteBuf {
         return this;
     }
 
+    @Override
+    public ByteBuf retainedDuplicate() {
+        reject();
+        return this;
+    }
+
     @Override
     public boolean getBoolean(int index) {
         checkIndex(index, 1);
@@ -318,6 +324,19 @@ final class ReplayingDecoderBuffer extends ByteBuf {
         return buffer.indexOf(fromIndex, toIndex, value);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value1, byte value2) {
+        if (fromIndex == toIndex) {
+            return -1;
+        }
+
+        if (Math.max(fromIndex, toIndex) > buffer.writerIndex()) {
+            throw REPLAY;
+        }
+
+        return buffer.indexOf(fromIndex, toIndex, value1, value2);
+    }
+
     @Override
     public int bytesBefore(byte value) {
         int bytes = buffer.bytesBefore(value);
@@ -527,6 +546,12 @@ final class ReplayingDecoderBuffer extends ByteBuf {
         return buffer.readSlice(length);
     }
 
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        checkReadableBytes(length);
+        return buffer.readRetainedSlice(length);
+    }
+
     @Override
     public ByteBuf readBytes(OutputStream out, int length) {
         reject();
@@ -749,6 +774,18 @@ final class ReplayingDecoderBuffer extends ByteBuf {
         return buffer.slice(index, length);
     }
 
+    @Override
+    public ByteBuf retainedSlice() {
+        reject();
+        return this;
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        checkIndex(index, length);
+        return buffer.retainedSlice(index, length);
+    }
+
     @Override
     public int nioBufferCount() {
         return buffer.nioBufferCount();
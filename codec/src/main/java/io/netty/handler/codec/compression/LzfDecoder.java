@@ -189,7 +189,7 @@ public class LzfDecoder extends ByteToMessageDecoder {
                         recycler.releaseInputBuffer(inputArray);
                     }
                 } else if (chunkLength > 0) {
-                    out.add(in.readSlice(chunkLength).retain());
+                    out.add(in.readRetainedSlice(chunkLength));
                 }
 
                 currentState = State.INIT_BLOCK;
@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -91,6 +92,6 @@ public class AsciiStringTest {
         final CharsetEncoder encoder = CharsetUtil.getEncoder(charset);
         final ByteBuffer nativeBuffer = ByteBuffer.allocate((int) (encoder.maxBytesPerChar() * value.length()));
         encoder.encode(CharBuffer.wrap(value), nativeBuffer, true);
-        return nativeBuffer.array();
+        return Arrays.copyOf(nativeBuffer.array(), nativeBuffer.position());
     }
 }
@@ -82,4 +82,31 @@ public class LengthFieldBasedFrameDecoderTest {
         Assert.assertNull(channel.readInbound());
         channel.finish();
     }
+
+    @Test
+    public void testFramesAreRetainedSlices() {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(1);
+        buf.writeByte('a');
+        buf.writeInt(2);
+        buf.writeByte('b');
+        buf.writeByte('c');
+        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldBasedFrameDecoder(16, 0, 4, 0, 4));
+        Assert.assertTrue(channel.writeInbound(buf));
+
+        ByteBuf a = channel.readInbound();
+        ByteBuf bc = channel.readInbound();
+        Assert.assertFalse(channel.finish());
+        Assert.assertEquals('a', a.readByte());
+        Assert.assertEquals('b', bc.getByte(0));
+        Assert.assertEquals(2, bc.readableBytes());
+
+        // The frames share the memory of the input, which is released together with the last frame.
+        buf.setByte(9, 'x');
+        Assert.assertEquals('x', bc.getByte(0));
+        Assert.assertEquals(2, buf.refCnt());
+        a.release();
+        bc.release();
+        Assert.assertEquals(0, buf.refCnt());
+    }
 }
@@ -0,0 +1,790 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.MpscLinkedQueueNode;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Timer} which works like the {@link HashedWheelTimer} but scales to a much higher number of
+ * {@link Timeout}s.
+ *
+ * <h3>Shards</h3>
+ *
+ * The timer is split into a configurable number of shards. Each shard has its own wheel and its own worker
+ * {@link Thread}. A {@link Timeout} is always handled by the shard that belongs to the {@link Thread} which created
+ * it, so threads which create many {@link Timeout}s do not contend on the same queue and the work of expiring and
+ * cancelling {@link Timeout}s is spread over several worker threads.
+ *
+ * <h3>Overflow Wheels</h3>
+ *
+ * The {@link HashedWheelTimer} keeps a {@link Timeout} whose deadline is more than one round of the wheel away in
+ * the wheel and checks it on every round. This timer uses a hierarchy of wheels instead: a bucket of an overflow wheel
+ * covers a whole round of the wheel below, and its {@link Timeout}s are cascaded into the wheel below once it
+ * is reached. Therefore every {@link Timeout} is only visited a few times until it expires, no matter how long
+ * its delay is. The overflow wheels are created on demand.
+ *
+ * <h3>Task Execution</h3>
+ *
+ * By default the {@link TimerTask}s are executed by the worker thread of their shard. If an {@link Executor} is
+ * specified, the expired {@link TimerTask}s are dispatched to it instead, so long running {@link TimerTask}s do
+ * not delay other {@link Timeout}s. Passing an {@link io.netty.util.concurrent.EventExecutorGroup} spreads the
+ * {@link TimerTask}s over its {@link io.netty.util.concurrent.EventExecutor}s.
+ *
+ * <h3>Cancellation</h3>
+ *
+ * A cancelled {@link Timeout} is unlinked from its bucket by the worker thread on the next tick, so it does not
+ * stay in the wheel until its deadline.
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * Like the {@link HashedWheelTimer} this timer creates a new thread per shard when it is started, so you should
+ * create only one instance and share it across your application.
+ */
+public class MultithreadHashedWheelTimer implements Timer {
+
+    static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(MultithreadHashedWheelTimer.class);
+
+    private static final ResourceLeakDetector<MultithreadHashedWheelTimer> leakDetector =
+            new ResourceLeakDetector<MultithreadHashedWheelTimer>(
+                    MultithreadHashedWheelTimer.class, 1, Runtime.getRuntime().availableProcessors() * 4);
+
+    private static final AtomicIntegerFieldUpdater<MultithreadHashedWheelTimer> WORKER_STATE_UPDATER;
+    static {
+        AtomicIntegerFieldUpdater<MultithreadHashedWheelTimer> workerStateUpdater =
+                PlatformDependent.newAtomicIntegerFieldUpdater(MultithreadHashedWheelTimer.class, "workerState");
+        if (workerStateUpdater == null) {
+            workerStateUpdater =
+                    AtomicIntegerFieldUpdater.newUpdater(MultithreadHashedWheelTimer.class, "workerState");
+        }
+        WORKER_STATE_UPDATER = workerStateUpdater;
+    }
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+    @SuppressWarnings({ "unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+    private volatile int workerState = WORKER_STATE_INIT; // 0 - init, 1 - started, 2 - shut down
+
+    private final ResourceLeak leak;
+    private final Shard[] shards;
+    private final long tickDuration;
+    private final int wheelBits;
+    private final Executor taskExecutor;
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+    private final TimerMetrics metrics = new Metrics();
+
+    private volatile long startTime;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), default tick
+     * duration, default number of ticks per wheel and one shard per available processor.
+     */
+    public MultithreadHashedWheelTimer() {
+        this(Executors.defaultThreadFactory(), 100, TimeUnit.MILLISECONDS, 512,
+                Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates the background {@link Thread}s of the shards
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param ticksPerWheel  the size of the wheel and of each overflow wheel
+     * @param shards         the number of shards and worker threads
+     * @param taskExecutor   the {@link Executor} which executes the expired {@link TimerTask}s, or {@code null} if the
+     *                       {@link TimerTask}s should be executed by the worker threads
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if either of {@code tickDuration}, {@code ticksPerWheel} and {@code shards}
+     *                                  is <= 0
+     */
+    public MultithreadHashedWheelTimer(
+            ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel, int shards,
+            Executor taskExecutor) {
+
+        if (threadFactory == null) {
+            throw new NullPointerException("threadFactory");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel must be greater than 0: " + ticksPerWheel);
+        }
+        if (ticksPerWheel > 1073741824) {
+            throw new IllegalArgumentException("ticksPerWheel may not be greater than 2^30: " + ticksPerWheel);
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be greater than 0: " + shards);
+        }
+
+        // Normalize ticksPerWheel to power of two.
+        int wheelBits = 0;
+        while (1 << wheelBits < ticksPerWheel) {
+            wheelBits ++;
+        }
+        // Make sure that every wheel has at least two buckets, so the overflow wheels cover all possible ticks.
+        this.wheelBits = Math.max(1, wheelBits);
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.taskExecutor = taskExecutor;
+
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i ++) {
+            this.shards[i] = new Shard(threadFactory);
+        }
+
+        leak = leakDetector.open(this);
+    }
+
+    /**
+     * Starts the background threads explicitly.  The background threads will
+     * start automatically on demand even if you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been
+     *                               {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    long startTime = System.nanoTime();
+                    if (startTime == 0) {
+                        // We use 0 as an indicator for the uninitialized value here, so make sure it's not 0.
+                        startTime = 1;
+                    }
+                    this.startTime = startTime;
+                    startTimeInitialized.countDown();
+
+                    for (Shard shard: shards) {
+                        shard.workerThread.start();
+                    }
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+
+        // Wait until the startTime is initialized.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        Thread currentThread = Thread.currentThread();
+        for (Shard shard: shards) {
+            if (currentThread == shard.workerThread) {
+                throw new IllegalStateException(
+                        MultithreadHashedWheelTimer.class.getSimpleName() +
+                                ".stop() cannot be called from " +
+                                TimerTask.class.getSimpleName());
+            }
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            WORKER_STATE_UPDATER.set(this, WORKER_STATE_SHUTDOWN);
+
+            if (leak != null) {
+                leak.close();
+            }
+
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        for (Shard shard: shards) {
+            Thread workerThread = shard.workerThread;
+            while (workerThread.isAlive()) {
+                workerThread.interrupt();
+                try {
+                    workerThread.join(100);
+                } catch (InterruptedException ignored) {
+                    interrupted = true;
+                }
+            }
+            unprocessedTimeouts.addAll(shard.unprocessedTimeouts);
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (leak != null) {
+            leak.close();
+        }
+        return Collections.unmodifiableSet(unprocessedTimeouts);
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        if (deadline < 0 && delay > 0) {
+            // Guard against overflow.
+            deadline = Long.MAX_VALUE;
+        }
+
+        // Use the same shard for all timeouts of a thread, so threads do not contend on the queues of the shards.
+        Shard shard = shards[(int) (Thread.currentThread().getId() % shards.length)];
+        MultithreadHashedWheelTimeout timeout = new MultithreadHashedWheelTimeout(this, shard, task, deadline);
+        shard.pendingTimeouts.incrementAndGet();
+        shard.timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the {@link TimerMetrics} of this timer.
+     */
+    public TimerMetrics metrics() {
+        return metrics;
+    }
+
+    private final class Shard implements Runnable {
+        private final Queue<MultithreadHashedWheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+        private final Queue<CancelledTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+        // wheels[0] is the wheel of the ticks, wheels[n] covers one round of wheels[n - 1] per bucket.
+        private final Bucket[][] wheels = new Bucket[(63 + wheelBits - 1) / wheelBits][];
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        private final Thread workerThread;
+
+        final AtomicLong pendingTimeouts = new AtomicLong();
+        final AtomicLong cancelledTimeoutCount = new AtomicLong();
+        volatile long expiredTimeoutCount;
+        volatile long tickLag;
+
+        private long tick;
+
+        Shard(ThreadFactory threadFactory) {
+            workerThread = threadFactory.newThread(this);
+        }
+
+        @Override
+        public void run() {
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    tickLag = Math.max(0, deadline - tickDuration * (tick + 1));
+                    processCancelledTimeouts();
+                    transferTimeoutsToBuckets();
+                    expireTimeouts();
+                    advance();
+                }
+            } while (WORKER_STATE_UPDATER.get(MultithreadHashedWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (Bucket[] wheel: wheels) {
+                if (wheel != null) {
+                    for (Bucket bucket: wheel) {
+                        bucket.clearTimeouts(unprocessedTimeouts);
+                    }
+                }
+            }
+            for (;;) {
+                MultithreadHashedWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTimeouts();
+        }
+
+        private void transferTimeoutsToBuckets() {
+            // transfer only max. 100000 timeouts per tick to prevent a thread to stale the workerThread when it just
+            // adds new timeouts in a loop.
+            for (int i = 0; i < 100000; i++) {
+                MultithreadHashedWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    // all processed
+                    break;
+                }
+                if (timeout.isCancelled()) {
+                    // Was cancelled in the meantime.
+                    continue;
+                }
+                addTimeout(timeout);
+            }
+        }
+
+        /**
+         * Add the given {@link MultithreadHashedWheelTimeout} to the bucket of the lowest wheel which covers its
+         * deadline.
+         */
+        private void addTimeout(MultithreadHashedWheelTimeout timeout) {
+            // Ensure we don't schedule for past.
+            long ticks = Math.max(timeout.deadline / tickDuration, tick);
+            int level = 0;
+            for (;;) {
+                int shift = level * wheelBits;
+                if (shift + wheelBits >= 63 || ticks >>> shift + wheelBits == tick >>> shift + wheelBits) {
+                    Bucket[] wheel = wheel(level);
+                    wheel[(int) (ticks >>> shift) & wheel.length - 1].addTimeout(timeout);
+                    return;
+                }
+                level ++;
+            }
+        }
+
+        private Bucket[] wheel(int level) {
+            Bucket[] wheel = wheels[level];
+            if (wheel == null) {
+                wheel = new Bucket[1 << wheelBits];
+                for (int i = 0; i < wheel.length; i ++) {
+                    wheel[i] = new Bucket();
+                }
+                wheels[level] = wheel;
+            }
+            return wheel;
+        }
+
+        private void expireTimeouts() {
+            Bucket bucket = wheel(0)[(int) tick & (1 << wheelBits) - 1];
+            long expired = bucket.expireTimeouts(taskExecutor);
+            if (expired != 0) {
+                expiredTimeoutCount += expired;
+                pendingTimeouts.addAndGet(-expired);
+            }
+        }
+
+        /**
+         * Move to the next tick and cascade the {@link Timeout}s of the overflow buckets which are reached by it.
+         */
+        private void advance() {
+            long oldTick = tick;
+            long newTick = oldTick + 1;
+            tick = newTick;
+
+            for (int level = wheels.length - 1; level > 0; level --) {
+                Bucket[] wheel = wheels[level];
+                int shift = level * wheelBits;
+                if (wheel == null || newTick >>> shift == oldTick >>> shift) {
+                    continue;
+                }
+                Bucket bucket = wheel[(int) (newTick >>> shift) & wheel.length - 1];
+                for (;;) {
+                    MultithreadHashedWheelTimeout timeout = bucket.pollTimeout();
+                    if (timeout == null) {
+                        break;
+                    }
+                    if (!timeout.isCancelled()) {
+                        addTimeout(timeout);
+                    }
+                }
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            for (;;) {
+                CancelledTimeout cancelled = cancelledTimeouts.poll();
+                if (cancelled == null) {
+                    // all processed
+                    break;
+                }
+                MultithreadHashedWheelTimeout timeout = cancelled.timeout;
+                Bucket bucket = timeout.bucket;
+                if (bucket != null) {
+                    bucket.remove(timeout);
+                }
+            }
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise (with Long.MIN_VALUE changed by +1)
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+
+                // Check if we run on windows, as if thats the case we will need
+                // to round the sleepTime as workaround for a bug that only affect
+                // the JVM if it runs on windows.
+                //
+                // See https://github.com/netty/netty/issues/356
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(MultithreadHashedWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Metrics implements TimerMetrics {
+        @Override
+        public long pendingTimeouts() {
+            long pendingTimeouts = 0;
+            for (Shard shard: shards) {
+                pendingTimeouts += shard.pendingTimeouts.get();
+            }
+            return pendingTimeouts;
+        }
+
+        @Override
+        public long expiredTimeouts() {
+            long expiredTimeouts = 0;
+            for (Shard shard: shards) {
+                expiredTimeouts += shard.expiredTimeoutCount;
+            }
+            return expiredTimeouts;
+        }
+
+        @Override
+        public long cancelledTimeouts() {
+            long cancelledTimeouts = 0;
+            for (Shard shard: shards) {
+                cancelledTimeouts += shard.cancelledTimeoutCount.get();
+            }
+            return cancelledTimeouts;
+        }
+
+        @Override
+        public long tickLag() {
+            long tickLag = 0;
+            for (Shard shard: shards) {
+                tickLag = Math.max(tickLag, shard.tickLag);
+            }
+            return tickLag;
+        }
+    }
+
+    private static final class MultithreadHashedWheelTimeout extends MpscLinkedQueueNode<Timeout>
+            implements Timeout, Runnable {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<MultithreadHashedWheelTimeout> STATE_UPDATER;
+
+        static {
+            AtomicIntegerFieldUpdater<MultithreadHashedWheelTimeout> updater =
+                    PlatformDependent.newAtomicIntegerFieldUpdater(MultithreadHashedWheelTimeout.class, "state");
+            if (updater == null) {
+                updater = AtomicIntegerFieldUpdater.newUpdater(MultithreadHashedWheelTimeout.class, "state");
+            }
+            STATE_UPDATER = updater;
+        }
+
+        private final MultithreadHashedWheelTimer timer;
+        private final Shard shard;
+        private final TimerTask task;
+        final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // This will be used to chain timeouts in the Bucket via a double-linked-list.
+        // As only the workerThread will act on it there is no need for synchronization / volatile.
+        MultithreadHashedWheelTimeout next;
+        MultithreadHashedWheelTimeout prev;
+
+        // The bucket to which the timeout was added
+        Bucket bucket;
+
+        MultithreadHashedWheelTimeout(MultithreadHashedWheelTimer timer, Shard shard, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.shard = shard;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            // only update the state it will be removed from the Bucket on next tick.
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            shard.pendingTimeouts.decrementAndGet();
+            shard.cancelledTimeoutCount.incrementAndGet();
+
+            // The timeout itself can not be added to the queue of cancelled timeouts as it may still be used as
+            // tombstone by the queue of new timeouts.
+            shard.cancelledTimeouts.add(new CancelledTimeout(this));
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        @Override
+        public MultithreadHashedWheelTimeout value() {
+            return this;
+        }
+
+        /**
+         * Expire this timeout and execute its {@link TimerTask} via the given {@link Executor} or in the calling
+         * thread if the {@link Executor} is {@code null}.
+         *
+         * @return {@code true} if the timeout was expired, {@code false} if it was cancelled before
+         */
+        boolean expire(Executor executor) {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return false;
+            }
+
+            if (executor == null) {
+                run();
+            } else {
+                try {
+                    executor.execute(this);
+                } catch (Throwable t) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Failed to submit an expired " + TimerTask.class.getSimpleName() +
+                                " to the executor: " + executor, t);
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(StringUtil.simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    private static final class CancelledTimeout extends MpscLinkedQueueNode<CancelledTimeout> {
+        final MultithreadHashedWheelTimeout timeout;
+
+        CancelledTimeout(MultithreadHashedWheelTimeout timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public CancelledTimeout value() {
+            return this;
+        }
+    }
+
+    /**
+     * Bucket that stores MultithreadHashedWheelTimeouts. These are stored in a linked-list like datastructure to
+     * allow easy removal of MultithreadHashedWheelTimeouts in the middle. Also the MultithreadHashedWheelTimeout act
+     * as nodes themself and so no extra object creation is needed.
+     */
+    private static final class Bucket {
+        // Used for the linked-list datastructure
+        private MultithreadHashedWheelTimeout head;
+        private MultithreadHashedWheelTimeout tail;
+
+        /**
+         * Add {@link MultithreadHashedWheelTimeout} to this bucket.
+         */
+        void addTimeout(MultithreadHashedWheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Expire all {@link MultithreadHashedWheelTimeout}s of this bucket and return the number of expired
+         * timeouts.
+         */
+        long expireTimeouts(Executor executor) {
+            long expired = 0;
+            for (;;) {
+                MultithreadHashedWheelTimeout timeout = pollTimeout();
+                if (timeout == null) {
+                    return expired;
+                }
+                if (timeout.expire(executor)) {
+                    expired ++;
+                }
+            }
+        }
+
+        void remove(MultithreadHashedWheelTimeout timeout) {
+            MultithreadHashedWheelTimeout next = timeout.next;
+            // remove timeout that was either processed or cancelled by updating the linked-list
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                // if timeout is also the tail we need to adjust the entry too
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                // if the timeout is the tail modify the tail to be the prev node.
+                tail = timeout.prev;
+            }
+            // null out prev, next and bucket to allow for GC.
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Clear this bucket and return all not expired / cancelled {@link Timeout}s.
+         */
+        void clearTimeouts(Set<Timeout> set) {
+            for (;;) {
+                MultithreadHashedWheelTimeout timeout = pollTimeout();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isExpired() || timeout.isCancelled()) {
+                    continue;
+                }
+                set.add(timeout);
+            }
+        }
+
+        MultithreadHashedWheelTimeout pollTimeout() {
+            MultithreadHashedWheelTimeout head = this.head;
+            if (head == null) {
+                return null;
+            }
+            MultithreadHashedWheelTimeout next = head.next;
+            if (next == null) {
+                tail = this.head =  null;
+            } else {
+                this.head = next;
+                next.prev = null;
+            }
+
+            // null out prev and next to allow for GC.
+            head.next = null;
+            head.prev = null;
+            head.bucket = null;
+            return head;
+        }
+    }
+}
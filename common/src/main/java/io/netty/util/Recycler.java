@@ -22,13 +22,26 @@ import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Light-weight object pool based on a thread-local stack.
+ * <p>
+ * The maximal number of pooled objects per thread is {@code io.netty.recycler.maxCapacity} by default. A
+ * {@link Recycler} with a name uses {@code io.netty.recycler.maxCapacity.<name>} instead if it is set, so the pooling
+ * of different object types can be tuned separately. Objects which are recycled by other threads than the one which
+ * got them are handed back via a queue per thread, which holds at most {@code maxCapacity / maxSharedCapacityFactor}
+ * objects for all threads (see {@code io.netty.recycler.maxSharedCapacityFactor}).
+ * <p>
+ * The statistics of all {@link Recycler}s which are still in use are returned by {@link #metrics()}.
  *
  * @param <T> the type of the pooled object
  */
@@ -39,12 +52,17 @@ public abstract class Recycler<T> {
     private static final AtomicInteger ID_GENERATOR = new AtomicInteger(Integer.MIN_VALUE);
     private static final int OWN_THREAD_ID = ID_GENERATOR.getAndIncrement();
     private static final int DEFAULT_MAX_CAPACITY;
+    private static final int DEFAULT_MAX_SHARED_CAPACITY_FACTOR;
     private static final int INITIAL_CAPACITY;
 
+    // The number of hits, misses and drops a thread counts before adding them to the statistics of the recycler.
+    private static final int STATS_FLUSH_THRESHOLD = 128;
+
+    // All recyclers which are still referenced, to be able to return their statistics.
+    private static final Set<Recycler<?>> RECYCLERS =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Recycler<?>, Boolean>()));
+
     static {
-        // In the future, we might have different maxCapacity for different object types.
-        // e.g. io.netty.recycler.maxCapacity.writeTask
-        //      io.netty.recycler.maxCapacity.outboundBuffer
         int maxCapacity = SystemPropertyUtil.getInt("io.netty.recycler.maxCapacity", 0);
         if (maxCapacity <= 0) {
             // TODO: Some arbitrary large number - should adjust as we get more production experience.
@@ -52,18 +70,80 @@ public abstract class Recycler<T> {
         }
 
         DEFAULT_MAX_CAPACITY = maxCapacity;
+
+        // By default at most half of the objects can be handed back by other threads at a time.
+        DEFAULT_MAX_SHARED_CAPACITY_FACTOR = Math.max(1,
+                SystemPropertyUtil.getInt("io.netty.recycler.maxSharedCapacityFactor", 2));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.recycler.maxCapacity: {}", DEFAULT_MAX_CAPACITY);
+            logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", DEFAULT_MAX_SHARED_CAPACITY_FACTOR);
         }
 
         INITIAL_CAPACITY = Math.min(DEFAULT_MAX_CAPACITY, 256);
     }
 
+    private final String name;
     private final int maxCapacity;
+    private final int maxSharedCapacity;
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
         protected Stack<T> initialValue() {
-            return new Stack<T>(Recycler.this, Thread.currentThread(), maxCapacity);
+            return new Stack<T>(Recycler.this, Thread.currentThread(), maxCapacity, maxSharedCapacity);
+        }
+
+        @Override
+        protected void onRemoval(Stack<T> value) {
+            value.flushStats();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong crossThreadRecycles = new AtomicLong();
+
+    private final RecyclerMetric metric = new RecyclerMetric() {
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public int maxCapacity() {
+            return maxCapacity;
+        }
+
+        @Override
+        public int maxSharedCapacity() {
+            return maxSharedCapacity;
+        }
+
+        @Override
+        public long numHits() {
+            return hits.get();
+        }
+
+        @Override
+        public long numMisses() {
+            return misses.get();
+        }
+
+        @Override
+        public long numDrops() {
+            return drops.get();
+        }
+
+        @Override
+        public long numCrossThreadRecycles() {
+            return crossThreadRecycles.get();
+        }
+
+        @Override
+        public String toString() {
+            return name + "(maxCapacity: " + maxCapacity + ", maxSharedCapacity: " + maxSharedCapacity +
+                    ", hits: " + numHits() + ", misses: " + numMisses() + ", drops: " + numDrops() +
+                    ", crossThreadRecycles: " + numCrossThreadRecycles() + ')';
         }
     };
 
@@ -72,7 +152,51 @@ public abstract class Recycler<T> {
     }
 
     protected Recycler(int maxCapacity) {
+        this(null, maxCapacity, DEFAULT_MAX_SHARED_CAPACITY_FACTOR);
+    }
+
+    /**
+     * Creates a new instance with the given name, which uses {@code io.netty.recycler.maxCapacity.<name>} as its
+     * maximal capacity per thread if the property is set. {@code 0} disables the pooling.
+     */
+    protected Recycler(String name) {
+        this(name, maxCapacity(name), DEFAULT_MAX_SHARED_CAPACITY_FACTOR);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name                      the name of the {@link Recycler} for its {@link RecyclerMetric}, or
+     *                                  {@code null} to use the name of its class
+     * @param maxCapacity               the maximal number of pooled objects per thread
+     * @param maxSharedCapacityFactor   the factor by which the number of objects which can be handed back by other
+     *                                  threads at a time is smaller than {@code maxCapacity}
+     */
+    protected Recycler(String name, int maxCapacity, int maxSharedCapacityFactor) {
+        if (maxSharedCapacityFactor < 1) {
+            throw new IllegalArgumentException(
+                    "maxSharedCapacityFactor: " + maxSharedCapacityFactor + " (expected: >= 1)");
+        }
+        this.name = name != null ? name : getClass().getName();
         this.maxCapacity = Math.max(0, maxCapacity);
+        // Reserve at least one link, so small recyclers can still be used by other threads.
+        maxSharedCapacity = this.maxCapacity == 0 ? 0 :
+                Math.max(this.maxCapacity / maxSharedCapacityFactor, WeakOrderQueue.LINK_CAPACITY);
+        RECYCLERS.add(this);
+    }
+
+    private static int maxCapacity(String name) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        int maxCapacity = SystemPropertyUtil.getInt("io.netty.recycler.maxCapacity." + name, -1);
+        if (maxCapacity < 0) {
+            return DEFAULT_MAX_CAPACITY;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.recycler.maxCapacity.{}: {}", name, maxCapacity);
+        }
+        return maxCapacity;
     }
 
     @SuppressWarnings("unchecked")
@@ -80,8 +204,11 @@ public abstract class Recycler<T> {
         Stack<T> stack = threadLocal.get();
         DefaultHandle<T> handle = stack.pop();
         if (handle == null) {
+            stack.countMiss();
             handle = stack.newHandle();
             handle.value = newObject(handle);
+        } else {
+            stack.countHit();
         }
         return (T) handle.value;
     }
@@ -104,6 +231,33 @@ public abstract class Recycler<T> {
         return threadLocal.get().size;
     }
 
+    /**
+     * Add the statistics which were counted by the current thread to the statistics of this {@link Recycler}.
+     */
+    final void flushThreadLocalStats() {
+        threadLocal.get().flushStats();
+    }
+
+    /**
+     * Returns the statistics of this {@link Recycler}.
+     */
+    public final RecyclerMetric metric() {
+        return metric;
+    }
+
+    /**
+     * Returns the statistics of all {@link Recycler}s which are still in use.
+     */
+    public static List<RecyclerMetric> metrics() {
+        List<RecyclerMetric> metrics = new ArrayList<RecyclerMetric>();
+        synchronized (RECYCLERS) {
+            for (Recycler<?> recycler: RECYCLERS) {
+                metrics.add(recycler.metric);
+            }
+        }
+        return metrics;
+    }
+
     protected abstract T newObject(Handle<T> handle);
 
     public interface Handle<T> {
@@ -134,12 +288,23 @@ public abstract class Recycler<T> {
             // we don't want to have a ref to the queue as the value in our weak map
             // so we null it out; to ensure there are no races with restoring it later
             // we impose a memory ordering here (no-op on x86)
+            Recycler<?> parent = stack.parent;
             Map<Stack<?>, WeakOrderQueue> delayedRecycled = DELAYED_RECYCLED.get();
             WeakOrderQueue queue = delayedRecycled.get(stack);
             if (queue == null) {
-                delayedRecycled.put(stack, queue = new WeakOrderQueue(stack, thread));
+                queue = WeakOrderQueue.newQueue(stack, thread);
+                if (queue == null) {
+                    // The other threads hold back as many objects of the stack as allowed already - drop it.
+                    parent.drops.incrementAndGet();
+                    return;
+                }
+                delayedRecycled.put(stack, queue);
+            }
+            if (queue.add(this)) {
+                parent.crossThreadRecycles.incrementAndGet();
+            } else {
+                parent.drops.incrementAndGet();
             }
-            queue.add(this);
         }
     }
 
@@ -171,30 +336,69 @@ public abstract class Recycler<T> {
         private WeakOrderQueue next;
         private final WeakReference<Thread> owner;
         private final int id = ID_GENERATOR.getAndIncrement();
+        // the space of the stack which is left for the links of all its queues, not the stack itself
+        private final AtomicInteger availableSharedCapacity;
 
-        WeakOrderQueue(Stack<?> stack, Thread thread) {
+        private WeakOrderQueue(Stack<?> stack, Thread thread) {
             head = tail = new Link();
             owner = new WeakReference<Thread>(thread);
+            availableSharedCapacity = stack.availableSharedCapacity;
             synchronized (stack) {
                 next = stack.head;
                 stack.head = this;
             }
         }
 
-        void add(DefaultHandle<?> handle) {
-            handle.lastRecycledId = id;
+        // returns null if the shared capacity of the stack is exhausted
+        static WeakOrderQueue newQueue(Stack<?> stack, Thread thread) {
+            if (!reserveSpace(stack.availableSharedCapacity)) {
+                return null;
+            }
+            return new WeakOrderQueue(stack, thread);
+        }
+
+        private static boolean reserveSpace(AtomicInteger availableSharedCapacity) {
+            for (;;) {
+                int available = availableSharedCapacity.get();
+                if (available < LINK_CAPACITY) {
+                    return false;
+                }
+                if (availableSharedCapacity.compareAndSet(available, available - LINK_CAPACITY)) {
+                    return true;
+                }
+            }
+        }
 
+        private void reclaimSpace() {
+            availableSharedCapacity.addAndGet(LINK_CAPACITY);
+        }
+
+        // returns false if the handle was dropped because the shared capacity of the stack is exhausted
+        boolean add(DefaultHandle<?> handle) {
             Link tail = this.tail;
             int writeIndex;
             if ((writeIndex = tail.get()) == LINK_CAPACITY) {
+                if (!reserveSpace(availableSharedCapacity)) {
+                    return false;
+                }
                 this.tail = tail = tail.next = new Link();
                 writeIndex = tail.get();
             }
+            handle.lastRecycledId = id;
             tail.elements[writeIndex] = handle;
             handle.stack = null;
             // we lazy set to ensure that setting stack to null appears before we unnull it in the owning thread;
             // this also means we guarantee visibility of an element in the queue if we see the index updated
             tail.lazySet(writeIndex + 1);
+            return true;
+        }
+
+        // called by the owner of the stack once the owner of this queue is gone and the queue is unlinked
+        void reclaimAllSpace() {
+            for (Link link = head; link != null; link = link.next) {
+                reclaimSpace();
+            }
+            head = null;
         }
 
         boolean hasFinalData() {
@@ -215,6 +419,7 @@ public abstract class Recycler<T> {
                     return false;
                 }
                 this.head = head = head.next;
+                reclaimSpace();
             }
 
             final int srcStart = head.readIndex;
@@ -251,6 +456,7 @@ public abstract class Recycler<T> {
 
                 if (srcEnd == LINK_CAPACITY && head.next != null) {
                     this.head = head.next;
+                    reclaimSpace();
                 }
 
                 head.readIndex = srcEnd;
@@ -270,20 +476,54 @@ public abstract class Recycler<T> {
         // still recycling all items.
         final Recycler<T> parent;
         final Thread thread;
+        final AtomicInteger availableSharedCapacity;
         private DefaultHandle<?>[] elements;
         private final int maxCapacity;
         private int size;
 
+        // statistics which were not added to the parent yet
+        private int hits;
+        private int misses;
+        private int drops;
+
         private volatile WeakOrderQueue head;
         private WeakOrderQueue cursor, prev;
 
-        Stack(Recycler<T> parent, Thread thread, int maxCapacity) {
+        Stack(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacity) {
             this.parent = parent;
             this.thread = thread;
             this.maxCapacity = maxCapacity;
+            availableSharedCapacity = new AtomicInteger(maxSharedCapacity);
             elements = new DefaultHandle[Math.min(INITIAL_CAPACITY, maxCapacity)];
         }
 
+        void countHit() {
+            if (++ hits == STATS_FLUSH_THRESHOLD) {
+                flushStats();
+            }
+        }
+
+        void countMiss() {
+            if (++ misses == STATS_FLUSH_THRESHOLD) {
+                flushStats();
+            }
+        }
+
+        void flushStats() {
+            if (hits != 0) {
+                parent.hits.addAndGet(hits);
+                hits = 0;
+            }
+            if (misses != 0) {
+                parent.misses.addAndGet(misses);
+                misses = 0;
+            }
+            if (drops != 0) {
+                parent.drops.addAndGet(drops);
+                drops = 0;
+            }
+        }
+
         int increaseCapacity(int expectedCapacity) {
             int newCapacity = elements.length;
             int maxCapacity = this.maxCapacity;
@@ -364,6 +604,7 @@ public abstract class Recycler<T> {
                     }
                     if (prev != null) {
                         prev.next = next;
+                        cursor.reclaimAllSpace();
                     }
                 } else {
                     prev = cursor;
@@ -387,6 +628,9 @@ public abstract class Recycler<T> {
             int size = this.size;
             if (size >= maxCapacity) {
                 // Hit the maximum capacity - drop the possibly youngest object.
+                if (++ drops == STATS_FLUSH_THRESHOLD) {
+                    flushStats();
+                }
                 return;
             }
             if (size == elements.length) {
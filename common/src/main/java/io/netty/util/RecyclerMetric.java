@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+/**
+ * Statistics of a {@link Recycler}.
+ * <p>
+ * Hits, misses and drops are counted per thread and added to the statistics in batches, so the values may lag
+ * behind by a few hundred per thread which uses the {@link Recycler}.
+ */
+public interface RecyclerMetric {
+
+    /**
+     * Return the name of the {@link Recycler}.
+     */
+    String name();
+
+    /**
+     * Return the maximal number of pooled objects per thread.
+     */
+    int maxCapacity();
+
+    /**
+     * Return the maximal number of objects per thread which can be handed back by other threads at a time.
+     */
+    int maxSharedCapacity();
+
+    /**
+     * Return the number of objects which were served from the pool.
+     */
+    long numHits();
+
+    /**
+     * Return the number of objects which were created because the pool was empty.
+     */
+    long numMisses();
+
+    /**
+     * Return the number of recycled objects which were dropped because the pool of their thread or the capacity for
+     * objects handed back by other threads was exhausted.
+     */
+    long numDrops();
+
+    /**
+     * Return the number of objects which were recycled by another thread than the one which got them.
+     */
+    long numCrossThreadRecycles();
+}
@@ -18,6 +18,7 @@ package io.netty.util;
 
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadLocalRandom;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -26,15 +27,22 @@ import java.lang.ref.ReferenceQueue;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.netty.util.internal.StringUtil.*;
 
 public final class ResourceLeakDetector<T> {
 
     private static final String PROP_LEVEL = "io.netty.leakDetectionLevel";
+    private static final String PROP_ADAPTIVE_BUDGET = "io.netty.leakDetection.adaptiveBudgetMicros";
     private static final Level DEFAULT_LEVEL = Level.SIMPLE;
+    private static final long DEFAULT_ADAPTIVE_BUDGET_MICROS;
 
     /**
      * Represents the level of resource leak detection.
@@ -58,7 +66,15 @@ public final class ResourceLeakDetector<T> {
          * Enables paranoid resource leak detection which reports where the leaked object was accessed recently,
          * at the cost of the highest possible overhead (for testing purposes only).
          */
-        PARANOID
+        PARANOID,
+        /**
+         * Enables adaptive sampling resource leak detection which reports where the leaked object was accessed
+         * recently, at a bounded overhead which is suitable for production.  The sampling interval is adjusted to
+         * the rate of new resources, so that tracking the sampled resources takes at most the configured CPU time
+         * per second.  Only a few access records are captured per resource and their stack traces are resolved
+         * only when a leak is reported.  Leaks are aggregated by their allocation site.
+         */
+        ADAPTIVE
     }
 
     private static Level level;
@@ -75,12 +91,18 @@ public final class ResourceLeakDetector<T> {
         }
 
         ResourceLeakDetector.level = level;
+        DEFAULT_ADAPTIVE_BUDGET_MICROS = Math.max(1, SystemPropertyUtil.getLong(PROP_ADAPTIVE_BUDGET, 1000));
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
+            logger.debug("-D{}: {}", PROP_ADAPTIVE_BUDGET, DEFAULT_ADAPTIVE_BUDGET_MICROS);
         }
     }
 
     private static final int DEFAULT_SAMPLING_INTERVAL = 113;
+    private static final int MAX_ADAPTIVE_SAMPLING_INTERVAL = 1 << 20;
+    private static final long ADAPTIVE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // The maximum number of allocation sites whose leaks are counted by the ADAPTIVE level.
+    static final int MAX_LEAKED_ALLOCATION_SITES = 256;
 
     /**
      * Sets the resource leak detection level.
@@ -105,6 +127,17 @@ public final class ResourceLeakDetector<T> {
 
     private final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
     private final ConcurrentMap<String, Boolean> reportedLeaks = PlatformDependent.newConcurrentHashMap();
+    // Ordered from the least to the most recently leaking allocation site, which is evicted first once there are too
+    // many sites. Guarded by itself.
+    private final Map<String, AtomicLong> leaksByAllocationSite =
+            new LinkedHashMap<String, AtomicLong>(16, 0.75f, true) {
+                private static final long serialVersionUID = 2911254357914787916L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AtomicLong> eldest) {
+                    return size() > MAX_LEAKED_ALLOCATION_SITES;
+                }
+            };
 
     private final String resourceType;
     private final int samplingInterval;
@@ -114,6 +147,13 @@ public final class ResourceLeakDetector<T> {
 
     private long leakCheckCnt;
 
+    // Used by the ADAPTIVE level only.
+    private final long adaptiveBudgetNanos;
+    private volatile int adaptiveSamplingInterval;
+    private long adaptivePeriodStartNanos;
+    private long adaptivePeriodStartCnt;
+    private long sampleCostNanos;
+
     public ResourceLeakDetector(Class<?> resourceType) {
         this(simpleClassName(resourceType));
     }
@@ -127,6 +167,10 @@ public final class ResourceLeakDetector<T> {
     }
 
     public ResourceLeakDetector(String resourceType, int samplingInterval, long maxActive) {
+        this(resourceType, samplingInterval, maxActive, DEFAULT_ADAPTIVE_BUDGET_MICROS);
+    }
+
+    ResourceLeakDetector(String resourceType, int samplingInterval, long maxActive, long adaptiveBudgetMicros) {
         if (resourceType == null) {
             throw new NullPointerException("resourceType");
         }
@@ -136,10 +180,16 @@ public final class ResourceLeakDetector<T> {
         if (maxActive <= 0) {
             throw new IllegalArgumentException("maxActive: " + maxActive + " (expected: 1+)");
         }
+        if (adaptiveBudgetMicros <= 0) {
+            throw new IllegalArgumentException("adaptiveBudgetMicros: " + adaptiveBudgetMicros + " (expected: 1+)");
+        }
 
         this.resourceType = resourceType;
         this.samplingInterval = samplingInterval;
         this.maxActive = maxActive;
+        adaptiveBudgetNanos = TimeUnit.MICROSECONDS.toNanos(adaptiveBudgetMicros);
+        adaptiveSamplingInterval = samplingInterval;
+        adaptivePeriodStartNanos = System.nanoTime();
 
         head.next = tail;
         tail.prev = head;
@@ -157,17 +207,75 @@ public final class ResourceLeakDetector<T> {
             return null;
         }
 
-        if (level.ordinal() < Level.PARANOID.ordinal()) {
-            if (leakCheckCnt ++ % samplingInterval == 0) {
-                reportLeak(level);
-                return new DefaultResourceLeak(obj);
-            } else {
-                return null;
-            }
-        } else {
+        if (level == Level.PARANOID) {
             reportLeak(level);
             return new DefaultResourceLeak(obj);
         }
+        if (level == Level.ADAPTIVE) {
+            return openAdaptive(obj);
+        }
+        if (leakCheckCnt ++ % samplingInterval == 0) {
+            reportLeak(level);
+            return new DefaultResourceLeak(obj);
+        } else {
+            return null;
+        }
+    }
+
+    private ResourceLeak openAdaptive(T obj) {
+        long cnt = leakCheckCnt ++;
+        if (cnt % adaptiveSamplingInterval != 0) {
+            return null;
+        }
+
+        reportLeak(Level.ADAPTIVE);
+        long startNanos = System.nanoTime();
+        DefaultResourceLeak leak = new DefaultResourceLeak(obj);
+        long nowNanos = System.nanoTime();
+        updateAdaptiveSamplingInterval(cnt, nowNanos - startNanos, nowNanos);
+        return leak;
+    }
+
+    private synchronized void updateAdaptiveSamplingInterval(long cnt, long costNanos, long nowNanos) {
+        sampleCostNanos = sampleCostNanos == 0? costNanos : (sampleCostNanos * 7 + costNanos) >>> 3;
+
+        long elapsedNanos = nowNanos - adaptivePeriodStartNanos;
+        if (elapsedNanos < ADAPTIVE_PERIOD_NANOS) {
+            return;
+        }
+
+        // Capturing an access record costs about as much as capturing the creation record, so estimate the cost of
+        // a sampled resource from the measured creation cost and the maximum number of records.
+        double opensPerSecond = (double) (cnt - adaptivePeriodStartCnt) * ADAPTIVE_PERIOD_NANOS / elapsedNanos;
+        double samplesPerSecond =
+                (double) adaptiveBudgetNanos / Math.max(1, sampleCostNanos * (DefaultResourceLeak.MAX_RECORDS + 1));
+        double interval = Math.ceil(opensPerSecond / samplesPerSecond);
+        adaptiveSamplingInterval = (int) Math.max(1, Math.min(interval, MAX_ADAPTIVE_SAMPLING_INTERVAL));
+
+        adaptivePeriodStartNanos = nowNanos;
+        adaptivePeriodStartCnt = cnt;
+    }
+
+    /**
+     * Returns the current sampling interval of the {@link Level#ADAPTIVE} level.
+     */
+    int adaptiveSamplingInterval() {
+        return adaptiveSamplingInterval;
+    }
+
+    /**
+     * Returns the number of leaks which were detected with the {@link Level#ADAPTIVE} level, keyed by the stack trace
+     * of their allocation site.  Only sampled resources are tracked, so the actual number of leaks is higher.  At most
+     * the {@value #MAX_LEAKED_ALLOCATION_SITES} most recently leaking allocation sites are kept.
+     */
+    public Map<String, Long> leaksByAllocationSite() {
+        Map<String, Long> leaks = new HashMap<String, Long>();
+        synchronized (leaksByAllocationSite) {
+            for (Map.Entry<String, AtomicLong> e: leaksByAllocationSite.entrySet()) {
+                leaks.put(e.getKey(), e.getValue().get());
+            }
+        }
+        return leaks;
     }
 
     private void reportLeak(Level level) {
@@ -184,7 +292,14 @@ public final class ResourceLeakDetector<T> {
         }
 
         // Report too many instances.
-        int samplingInterval = level == Level.PARANOID? 1 : this.samplingInterval;
+        int samplingInterval;
+        if (level == Level.PARANOID) {
+            samplingInterval = 1;
+        } else if (level == Level.ADAPTIVE) {
+            samplingInterval = adaptiveSamplingInterval;
+        } else {
+            samplingInterval = this.samplingInterval;
+        }
         if (active * samplingInterval > maxActive && loggedTooManyActive.compareAndSet(false, true)) {
             logger.error("LEAK: You are creating too many " + resourceType + " instances.  " +
                     resourceType + " is a shared resource that must be reused across the JVM," +
@@ -205,6 +320,11 @@ public final class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (ref.isCompact()) {
+                reportAdaptiveLeak(ref);
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.putIfAbsent(records, Boolean.TRUE) == null) {
                 if (records.isEmpty()) {
@@ -224,12 +344,37 @@ public final class ResourceLeakDetector<T> {
         }
     }
 
+    private void reportAdaptiveLeak(DefaultResourceLeak ref) {
+        String site = ref.creationRecord();
+        AtomicLong count;
+        synchronized (leaksByAllocationSite) {
+            count = leaksByAllocationSite.get(site);
+            if (count == null) {
+                count = new AtomicLong();
+                leaksByAllocationSite.put(site, count);
+            }
+        }
+
+        // Log the leaks of an allocation site with exponential back-off, so they do not flood the log.
+        long leaks = count.incrementAndGet();
+        if ((leaks & leaks - 1) == 0) {
+            logger.error(
+                    "LEAK: {}.release() was not called before it's garbage-collected " +
+                    "({} sampled leak(s) from this allocation site so far). " +
+                    "See http://netty.io/wiki/reference-counted-objects.html for more information.{}",
+                    resourceType, leaks, ref);
+        }
+    }
+
     private final class DefaultResourceLeak extends PhantomReference<Object> implements ResourceLeak {
 
         private static final int MAX_RECORDS = 4;
 
-        private final String creationRecord;
-        private final Deque<String> lastRecords = new ArrayDeque<String>();
+        // A String, or a Record if compact.
+        private final Object creationRecord;
+        private final boolean compact;
+        private final Deque<Object> lastRecords = new ArrayDeque<Object>();
+        private int numTouches;
         private final AtomicBoolean freed;
         private DefaultResourceLeak prev;
         private DefaultResourceLeak next;
@@ -239,10 +384,16 @@ public final class ResourceLeakDetector<T> {
 
             if (referent != null) {
                 Level level = getLevel();
-                if (level.ordinal() >= Level.ADVANCED.ordinal()) {
+                if (level == Level.ADAPTIVE) {
+                    // Skip the frames of this constructor, openAdaptive() and open().
+                    creationRecord = new Record(null, 3);
+                    compact = true;
+                } else if (level == Level.ADVANCED || level == Level.PARANOID) {
                     creationRecord = newRecord(null, 3);
+                    compact = false;
                 } else {
                     creationRecord = null;
+                    compact = false;
                 }
 
                 // TODO: Use CAS to update the list.
@@ -256,6 +407,7 @@ public final class ResourceLeakDetector<T> {
                 freed = new AtomicBoolean();
             } else {
                 creationRecord = null;
+                compact = false;
                 freed = new AtomicBoolean(true);
             }
         }
@@ -271,7 +423,20 @@ public final class ResourceLeakDetector<T> {
         }
 
         private void record0(Object hint, int recordsToSkip) {
-            if (creationRecord != null) {
+            if (compact) {
+                synchronized (lastRecords) {
+                    // Once MAX_RECORDS are captured, keep capturing with a probability of MAX_RECORDS / touches,
+                    // so the records stay reasonably recent while only O(log(touches)) stack traces are captured.
+                    int touches = ++ numTouches;
+                    if (touches > MAX_RECORDS && ThreadLocalRandom.current().nextInt(touches) >= MAX_RECORDS) {
+                        return;
+                    }
+                    lastRecords.add(new Record(hint, recordsToSkip - 1));
+                    if (lastRecords.size() > MAX_RECORDS) {
+                        lastRecords.removeFirst();
+                    }
+                }
+            } else if (creationRecord != null) {
                 String value = newRecord(hint, recordsToSkip);
 
                 synchronized (lastRecords) {
@@ -286,6 +451,14 @@ public final class ResourceLeakDetector<T> {
             }
         }
 
+        boolean isCompact() {
+            return compact;
+        }
+
+        String creationRecord() {
+            return String.valueOf(creationRecord);
+        }
+
         @Override
         public boolean close() {
             if (freed.compareAndSet(false, true)) {
@@ -343,23 +516,53 @@ public final class ResourceLeakDetector<T> {
             "io.netty.buffer.AbstractByteBufAllocator.toLeakAwareBuffer(",
     };
 
+    /**
+     * A compact access record whose stack trace is only resolved when it is converted into a {@link String}.
+     */
+    private static final class Record extends Throwable {
+
+        private static final long serialVersionUID = -2624339327402624853L;
+
+        private final String hintString;
+        private final int recordsToSkip;
+
+        Record(Object hint, int recordsToSkip) {
+            hintString = hintString(hint);
+            this.recordsToSkip = recordsToSkip;
+        }
+
+        @Override
+        public String toString() {
+            return newRecord(hintString, getStackTrace(), recordsToSkip);
+        }
+    }
+
+    private static String hintString(Object hint) {
+        if (hint == null) {
+            return null;
+        }
+        // Prefer a hint string to a simple string form.
+        if (hint instanceof ResourceLeakHint) {
+            return ((ResourceLeakHint) hint).toHintString();
+        }
+        return String.valueOf(hint);
+    }
+
     static String newRecord(Object hint, int recordsToSkip) {
+        return newRecord(hintString(hint), new Throwable().getStackTrace(), recordsToSkip);
+    }
+
+    private static String newRecord(String hintString, StackTraceElement[] array, int recordsToSkip) {
         StringBuilder buf = new StringBuilder(4096);
 
         // Append the hint first if available.
-        if (hint != null) {
-            buf.append("\tHint: ");
-            // Prefer a hint string to a simple string form.
-            if (hint instanceof ResourceLeakHint) {
-                buf.append(((ResourceLeakHint) hint).toHintString());
-            } else {
-                buf.append(hint);
-            }
-            buf.append(NEWLINE);
+        if (hintString != null) {
+            buf.append("\tHint: ")
+               .append(hintString)
+               .append(NEWLINE);
         }
 
         // Append the stack trace.
-        StackTraceElement[] array = new Throwable().getStackTrace();
         for (StackTraceElement e: array) {
             if (recordsToSkip > 0) {
                 recordsToSkip --;
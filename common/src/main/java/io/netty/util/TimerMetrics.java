@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+/**
+ * Runtime metrics of a {@link Timer}.
+ * <p>
+ * All values may be read from any thread without stopping the {@link Timer}. As the values are not read atomically,
+ * two values read one after the other may not belong to the same point in time.
+ */
+public interface TimerMetrics {
+
+    /**
+     * Return the number of {@link Timeout}s which were neither expired nor cancelled yet.
+     */
+    long pendingTimeouts();
+
+    /**
+     * Return the number of {@link Timeout}s which expired so far.
+     */
+    long expiredTimeouts();
+
+    /**
+     * Return the number of {@link Timeout}s which were cancelled so far.
+     */
+    long cancelledTimeouts();
+
+    /**
+     * Return the time in nanoseconds by which the last processed tick was late. If the {@link Timer} uses more than
+     * one worker thread the maximum of all workers is returned. A steadily growing value means that the workers can
+     * not keep up with the scheduled {@link Timeout}s.
+     */
+    long tickLag();
+}
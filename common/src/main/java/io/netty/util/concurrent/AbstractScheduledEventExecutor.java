@@ -18,6 +18,9 @@ package io.netty.util.concurrent;
 import io.netty.util.internal.CallableEventExecutorAdapter;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.RunnableEventExecutorAdapter;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.Iterator;
 import java.util.PriorityQueue;
@@ -28,9 +31,34 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract base class for {@link EventExecutor}s that want to support scheduling.
+ * <p>
+ * By default the scheduled tasks are kept in a {@link PriorityQueue}, which takes {@code O(log n)} time to add a task
+ * and keeps cancelled tasks until they expire or are purged. If the system property
+ * {@code io.netty.scheduler.timingWheel} is {@code true} (or {@link #useTimingWheel()} is overridden to return
+ * {@code true}) the scheduled tasks are kept in a hierarchical timing wheel instead, which adds and removes tasks in
+ * constant time and removes cancelled tasks eagerly. This pays off if an executor holds many timeouts which are
+ * usually cancelled before they expire, like the ones of {@code IdleStateHandler} or {@code ReadTimeoutHandler}.
+ * The duration of a tick of the wheel can be set via the system property
+ * {@code io.netty.scheduler.timingWheelTickMicros}. It does not affect the precision of the scheduled tasks.
  */
 public abstract class AbstractScheduledEventExecutor extends AbstractEventExecutor {
 
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(AbstractScheduledEventExecutor.class);
+
+    private static final boolean USE_TIMING_WHEEL =
+            SystemPropertyUtil.getBoolean("io.netty.scheduler.timingWheel", false);
+    private static final long TIMING_WHEEL_TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Math.max(1, SystemPropertyUtil.getInt("io.netty.scheduler.timingWheelTickMicros", 1000)));
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.scheduler.timingWheel: {}", USE_TIMING_WHEEL);
+            logger.debug("-Dio.netty.scheduler.timingWheelTickMicros: {}",
+                    TimeUnit.NANOSECONDS.toMicros(TIMING_WHEEL_TICK_NANOS));
+        }
+    }
+
     Queue<ScheduledFutureTask<?>> scheduledTaskQueue;
 
     protected AbstractScheduledEventExecutor() {
@@ -46,11 +74,24 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
 
     Queue<ScheduledFutureTask<?>> scheduledTaskQueue() {
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new PriorityQueue<ScheduledFutureTask<?>>();
+            if (useTimingWheel()) {
+                scheduledTaskQueue = new ScheduledTaskWheel(this, TIMING_WHEEL_TICK_NANOS);
+            } else {
+                scheduledTaskQueue = new PriorityQueue<ScheduledFutureTask<?>>();
+            }
         }
         return scheduledTaskQueue;
     }
 
+    /**
+     * Returns {@code true} if the scheduled tasks should be kept in a hierarchical timing wheel instead of a
+     * {@link PriorityQueue}. The default implementation returns the value of the system property
+     * {@code io.netty.scheduler.timingWheel}.
+     */
+    protected boolean useTimingWheel() {
+        return USE_TIMING_WHEEL;
+    }
+
     private static  boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -208,9 +249,26 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         return task;
     }
 
+    /**
+     * Called when the given {@link ScheduledFutureTask} was cancelled. Only the timing wheel can remove it cheaply,
+     * so the {@link PriorityQueue} keeps it until it expires or is purged.
+     */
+    final void removeCancelledScheduledTask(ScheduledFutureTask<?> task) {
+        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
+        if (!(scheduledTaskQueue instanceof ScheduledTaskWheel)) {
+            return;
+        }
+        if (inEventLoop()) {
+            scheduledTaskQueue.remove(task);
+        } else {
+            ((ScheduledTaskWheel) scheduledTaskQueue).removeLater(task);
+        }
+    }
+
     void purgeCancelledScheduledTasks() {
         Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
-        if (isNullOrEmpty(scheduledTaskQueue)) {
+        if (isNullOrEmpty(scheduledTaskQueue) || scheduledTaskQueue instanceof ScheduledTaskWheel) {
+            // The timing wheel removes cancelled tasks eagerly.
             return;
         }
         Iterator<ScheduledFutureTask<?>> i = scheduledTaskQueue.iterator();
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+/**
+ * Runtime metrics of an {@link EventExecutor} that executes all its tasks in a single thread.
+ * <p>
+ * All values are collected continuously and may be read from any thread without stopping the {@link EventExecutor}.
+ * As the values are not read atomically, two values read one after the other may not belong to the same point in time.
+ * All times are reported in nanoseconds.
+ */
+public interface EventExecutorMetrics {
+
+    /**
+     * Return the number of tasks that are pending for processing.  Unlike
+     * {@link SingleThreadEventExecutor#pendingTasks()} this does not walk the task queue but reads a counter, so it
+     * is cheap to call from any thread.  Tasks used internally by the executor, such as the one that samples the
+     * {@linkplain #taskQueueLatencyHistogram() task queue latency}, are not included.
+     */
+    int pendingTasks();
+
+    /**
+     * Return the number of scheduled tasks that did not expire yet. This includes tasks that were cancelled but not
+     * removed yet.
+     */
+    int scheduledTasks();
+
+    /**
+     * Return the number of tasks that were executed via {@link SingleThreadEventExecutor#runAllTasks()} or
+     * {@link SingleThreadEventExecutor#runAllTasks(long)} so far, not including the tasks used internally by the
+     * executor.
+     */
+    long completedTasks();
+
+    /**
+     * Return the total time spent in running tasks via {@link SingleThreadEventExecutor#runAllTasks()} or
+     * {@link SingleThreadEventExecutor#runAllTasks(long)} so far.
+     */
+    long taskRunTime();
+
+    /**
+     * Return a snapshot of the histogram of the time tasks submitted from outside the executor thread spend in the
+     * task queue before they are executed. Only a sample of the submitted tasks is measured.
+     * <p>
+     * The element at index {@code i} holds the number of samples that waited at least {@code 2^i} and less than
+     * {@code 2^(i + 1)} nanoseconds. The element at index {@code 0} also holds the samples that did not wait at all.
+     */
+    long[] taskQueueLatencyHistogram();
+}
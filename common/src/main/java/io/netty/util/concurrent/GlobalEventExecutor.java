@@ -210,8 +210,10 @@ public final class GlobalEventExecutor extends AbstractScheduledEventExecutor {
     private void startThread() {
         if (started.compareAndSet(false, true)) {
             Thread t = threadFactory.newThread(taskRunner);
-            t.start();
+            // Set the thread before starting it as otherwise inEventLoop() may return false and so produce
+            // an assert error when the new thread polls the scheduled tasks.
             thread = t;
+            t.start();
         }
     }
 
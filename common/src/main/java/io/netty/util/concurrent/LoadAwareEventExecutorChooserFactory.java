@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ThreadLocalRandom;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the {@link EventExecutor} by its current load instead of using
+ * round-robin. Each time an {@link EventExecutor} is chosen two distinct {@link EventExecutor}s are picked at random
+ * and the one with the lower {@link #load(EventExecutor)} is returned ("power of two choices"). This spreads the load
+ * almost as good as always picking the least loaded {@link EventExecutor}, but only needs to look at two of them and
+ * avoids that all callers pile onto the same one while its load is not updated yet.
+ */
+public abstract class LoadAwareEventExecutorChooserFactory implements EventExecutorChooserFactory {
+
+    /**
+     * Uses the number of {@linkplain EventExecutorMetrics#pendingTasks() pending tasks} as load. This reads a
+     * counter and does not walk the task queue like {@link SingleThreadEventExecutor#pendingTasks()} would.
+     */
+    public static final LoadAwareEventExecutorChooserFactory PENDING_TASKS =
+            new LoadAwareEventExecutorChooserFactory() {
+        @Override
+        protected long load(EventExecutor executor) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                return ((SingleThreadEventExecutor) executor).metrics().pendingTasks();
+            }
+            return 0;
+        }
+    };
+
+    @Override
+    public final EventExecutorChooser newChooser(final EventExecutor[] executors) {
+        if (executors.length == 1) {
+            return new EventExecutorChooser() {
+                @Override
+                public EventExecutor next() {
+                    return executors[0];
+                }
+            };
+        }
+        return new PowerOfTwoChoicesEventExecutorChooser(executors);
+    }
+
+    /**
+     * Returns the current load of the given {@link EventExecutor}. This method is called concurrently from the
+     * threads that call {@link MultithreadEventExecutorGroup#next()} and so must be thread-safe and cheap.
+     */
+    protected abstract long load(EventExecutor executor);
+
+    private final class PowerOfTwoChoicesEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+
+        PowerOfTwoChoicesEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(executors.length);
+            // Pick a distinct second index.
+            int b = random.nextInt(executors.length - 1);
+            if (b >= a) {
+                b ++;
+            }
+            EventExecutor first = executors[a];
+            EventExecutor second = executors[b];
+            return load(second) < load(first) ? second : first;
+        }
+    }
+}
@@ -43,6 +43,11 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
     /* 0 - no repeat, >0 - repeat at fixed rate, <0 - repeat with fixed delay */
     private final long periodNanos;
 
+    // Used by ScheduledTaskWheel
+    int wheelIndex = ScheduledTaskWheel.NOT_QUEUED;
+    ScheduledFutureTask<?> prevInSlot;
+    ScheduledFutureTask<?> nextInSlot;
+
     ScheduledFutureTask(EventExecutor executor,
                         Callable<V> callable, long nanoTime, long period) {
         super(executor.unwrap(), callable);
@@ -99,6 +104,15 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
         }
     }
 
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            ((AbstractScheduledEventExecutor) executor()).removeCancelledScheduledTask(this);
+        }
+        return cancelled;
+    }
+
     @Override
     public void run() {
         assert executor().inEventLoop();
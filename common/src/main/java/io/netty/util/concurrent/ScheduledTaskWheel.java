@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * A {@link Queue} of {@link ScheduledFutureTask}s which is backed by a hierarchical timing wheel and may be used by an
+ * {@link AbstractScheduledEventExecutor} instead of a {@link PriorityQueue}.
+ * <p>
+ * Like the wheel of the {@link io.netty.util.HashedWheelTimer}, every slot is a doubly linked list in which the
+ * {@link ScheduledFutureTask}s act as nodes, so adding and removing a task takes constant time and no extra object
+ * creation is needed. This allows to remove cancelled tasks eagerly instead of keeping them until they expire.
+ * <p>
+ * The wheel consists of {@value #LEVELS} levels of {@value #SLOTS} slots. A slot of the first level covers one tick and
+ * a slot of every other level covers all the slots of the level below. Tasks are cascaded into the lower levels once
+ * the current tick enters their slot. The tasks of the earliest occupied slot of the first level are moved into a small
+ * {@link PriorityQueue}, so that {@link #peek()} and {@link #poll()} always return the task with the earliest deadline
+ * and the precision of the tasks does not depend on the tick duration. Tasks which are too far in the future to fit
+ * into the wheel are kept in an overflow {@link PriorityQueue}.
+ * <p>
+ * This class is not thread-safe and must only be accessed by the thread of the {@link EventExecutor}, except for
+ * {@link #size()} and {@link #removeLater(ScheduledFutureTask)}.
+ */
+final class ScheduledTaskWheel extends AbstractQueue<ScheduledFutureTask<?>> {
+
+    static final int NOT_QUEUED = -1;
+    private static final int EXPIRING = -2;
+    private static final int OVERFLOW = -3;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    private static final int WHEEL_BITS = SLOT_BITS * LEVELS;
+
+    private final EventExecutor executor;
+    private final long tickNanos;
+    private final ScheduledFutureTask<?>[] slots = new ScheduledFutureTask<?>[SLOTS * LEVELS];
+    // One bit per slot which is set if the slot is not empty.
+    private final long[] occupiedSlots = new long[LEVELS];
+    private final PriorityQueue<ScheduledFutureTask<?>> expiringTasks = new PriorityQueue<ScheduledFutureTask<?>>();
+    private final PriorityQueue<ScheduledFutureTask<?>> overflowTasks = new PriorityQueue<ScheduledFutureTask<?>>();
+    private final Queue<ScheduledFutureTask<?>> cancelledTasks = PlatformDependent.newMpscQueue();
+
+    // All tasks whose tick is less than the current tick are contained in expiringTasks.
+    private long currentTick;
+    private volatile int size;
+
+    ScheduledTaskWheel(EventExecutor executor, long tickNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos: " + tickNanos + " (expected: > 0)");
+        }
+        this.executor = executor;
+        this.tickNanos = tickNanos;
+        currentTick = tick(ScheduledFutureTask.nanoTime());
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        assert task.wheelIndex == NOT_QUEUED;
+
+        add0(task);
+        size ++;
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        ScheduledFutureTask<?> task = peek();
+        if (task != null) {
+            expiringTasks.poll();
+            task.wheelIndex = NOT_QUEUED;
+            size --;
+        }
+        return task;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        processCancelledTasks();
+
+        if (expiringTasks.isEmpty() && size != 0) {
+            advance();
+        }
+        return expiringTasks.peek();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof ScheduledFutureTask)) {
+            return false;
+        }
+
+        ScheduledFutureTask<?> task = (ScheduledFutureTask<?>) o;
+        int index = task.wheelIndex;
+        if (index == NOT_QUEUED) {
+            return false;
+        }
+        if (index == EXPIRING) {
+            if (!expiringTasks.remove(task)) {
+                return false;
+            }
+        } else if (index == OVERFLOW) {
+            if (!overflowTasks.remove(task)) {
+                return false;
+            }
+        } else {
+            unlink(task);
+        }
+        task.wheelIndex = NOT_QUEUED;
+        size --;
+        return true;
+    }
+
+    /**
+     * Remove the given cancelled {@link ScheduledFutureTask} the next time the wheel is accessed by the thread of the
+     * {@link EventExecutor}. This method may be called by any thread.
+     */
+    void removeLater(ScheduledFutureTask<?> task) {
+        cancelledTasks.add(task);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (ScheduledFutureTask<?> task: this) {
+            task.wheelIndex = NOT_QUEUED;
+            task.prevInSlot = null;
+            task.nextInSlot = null;
+        }
+        for (int i = 0; i < slots.length; i ++) {
+            slots[i] = null;
+        }
+        for (int i = 0; i < occupiedSlots.length; i ++) {
+            occupiedSlots[i] = 0;
+        }
+        expiringTasks.clear();
+        overflowTasks.clear();
+        cancelledTasks.clear();
+        size = 0;
+    }
+
+    /**
+     * Return an {@link Iterator} over a snapshot of the tasks in no particular order.
+     */
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size);
+        tasks.addAll(expiringTasks);
+        for (ScheduledFutureTask<?> head: slots) {
+            for (ScheduledFutureTask<?> task = head; task != null; task = task.nextInSlot) {
+                tasks.add(task);
+            }
+        }
+        tasks.addAll(overflowTasks);
+
+        final Iterator<ScheduledFutureTask<?>> i = tasks.iterator();
+        return new Iterator<ScheduledFutureTask<?>>() {
+            private ScheduledFutureTask<?> current;
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public ScheduledFutureTask<?> next() {
+                return current = i.next();
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                ScheduledTaskWheel.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    private void processCancelledTasks() {
+        for (;;) {
+            ScheduledFutureTask<?> task = cancelledTasks.poll();
+            if (task == null) {
+                break;
+            }
+            // The task may have been migrated to another EventExecutor in the meantime.
+            if (task.executor() == executor) {
+                remove(task);
+            }
+        }
+    }
+
+    private long tick(long deadlineNanos) {
+        return deadlineNanos / tickNanos;
+    }
+
+    private void add0(ScheduledFutureTask<?> task) {
+        long tick = tick(task.deadlineNanos());
+        long currentTick = this.currentTick;
+        if (tick < currentTick) {
+            task.wheelIndex = EXPIRING;
+            expiringTasks.add(task);
+            return;
+        }
+
+        // Find the lowest level whose slots cover the tick of the task.
+        for (int level = 0; level < LEVELS; level ++) {
+            int shift = level * SLOT_BITS;
+            if (tick >>> shift + SLOT_BITS == currentTick >>> shift + SLOT_BITS) {
+                link(task, level, (int) (tick >>> shift) & SLOT_MASK);
+                return;
+            }
+        }
+
+        task.wheelIndex = OVERFLOW;
+        overflowTasks.add(task);
+    }
+
+    /**
+     * Advance the current tick to the earliest occupied slot and move its tasks into {@link #expiringTasks}.
+     */
+    private void advance() {
+        while (expiringTasks.isEmpty()) {
+            long currentTick = this.currentTick;
+            boolean found = false;
+            for (int level = 0; level < LEVELS; level ++) {
+                int shift = level * SLOT_BITS;
+                int currentSlot = (int) (currentTick >>> shift) & SLOT_MASK;
+                long candidates;
+                if (level == 0) {
+                    candidates = occupiedSlots[0] & -1L << currentSlot;
+                } else if (currentSlot == SLOT_MASK) {
+                    // The current slot of the higher levels is always empty as its tasks were cascaded already.
+                    candidates = 0;
+                } else {
+                    candidates = occupiedSlots[level] & -1L << currentSlot + 1;
+                }
+                if (candidates == 0) {
+                    continue;
+                }
+
+                int slot = Long.numberOfTrailingZeros(candidates);
+                long slotTick = (currentTick >>> shift + SLOT_BITS << shift + SLOT_BITS) | (long) slot << shift;
+                if (level == 0) {
+                    expire(slot);
+                    setCurrentTick(slotTick + 1);
+                } else {
+                    setCurrentTick(slotTick);
+                }
+                found = true;
+                break;
+            }
+
+            if (!found) {
+                // The wheel is empty, so jump directly to the first task which did not fit into the wheel.
+                ScheduledFutureTask<?> task = overflowTasks.peek();
+                assert task != null;
+                setCurrentTick(Math.max(currentTick, tick(task.deadlineNanos())));
+            }
+        }
+    }
+
+    private void setCurrentTick(long newTick) {
+        long oldTick = currentTick;
+        currentTick = newTick;
+
+        if (newTick >>> WHEEL_BITS != oldTick >>> WHEEL_BITS) {
+            for (;;) {
+                ScheduledFutureTask<?> task = overflowTasks.peek();
+                if (task == null || tick(task.deadlineNanos()) >>> WHEEL_BITS != newTick >>> WHEEL_BITS) {
+                    break;
+                }
+                overflowTasks.remove();
+                add0(task);
+            }
+        }
+
+        // Cascade the slots the current tick has entered, starting with the highest level.
+        for (int level = LEVELS - 1; level > 0; level --) {
+            int shift = level * SLOT_BITS;
+            if (newTick >>> shift != oldTick >>> shift) {
+                cascade(level, (int) (newTick >>> shift) & SLOT_MASK);
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        ScheduledFutureTask<?> task = unlinkAll(level, slot);
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.nextInSlot;
+            task.nextInSlot = null;
+            add0(task);
+            task = next;
+        }
+    }
+
+    private void expire(int slot) {
+        ScheduledFutureTask<?> task = unlinkAll(0, slot);
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.nextInSlot;
+            task.nextInSlot = null;
+            task.wheelIndex = EXPIRING;
+            expiringTasks.add(task);
+            task = next;
+        }
+    }
+
+    private void link(ScheduledFutureTask<?> task, int level, int slot) {
+        int index = level * SLOTS + slot;
+        ScheduledFutureTask<?> head = slots[index];
+        if (head != null) {
+            head.prevInSlot = task;
+        }
+        task.nextInSlot = head;
+        task.prevInSlot = null;
+        task.wheelIndex = index;
+        slots[index] = task;
+        occupiedSlots[level] |= 1L << slot;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        int index = task.wheelIndex;
+        ScheduledFutureTask<?> prev = task.prevInSlot;
+        ScheduledFutureTask<?> next = task.nextInSlot;
+        if (next != null) {
+            next.prevInSlot = prev;
+        }
+        if (prev != null) {
+            prev.nextInSlot = next;
+        } else {
+            slots[index] = next;
+            if (next == null) {
+                occupiedSlots[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+            }
+        }
+        task.prevInSlot = null;
+        task.nextInSlot = null;
+    }
+
+    /**
+     * Empty the given slot and return its first task. The tasks are still linked via
+     * {@link ScheduledFutureTask#nextInSlot}.
+     */
+    private ScheduledFutureTask<?> unlinkAll(int level, int slot) {
+        int index = level * SLOTS + slot;
+        ScheduledFutureTask<?> head = slots[index];
+        slots[index] = null;
+        occupiedSlots[level] &= ~(1L << slot);
+        for (ScheduledFutureTask<?> task = head; task != null; task = task.nextInSlot) {
+            task.prevInSlot = null;
+            task.wheelIndex = NOT_QUEUED;
+        }
+        return head;
+    }
+}
@@ -16,6 +16,7 @@
 package io.netty.util.concurrent;
 
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -27,12 +28,13 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Abstract base class for {@link EventExecutor}'s that execute all its submitted tasks in a single thread.
@@ -57,6 +59,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     };
 
     private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> STATE_UPDATER;
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> LATENCY_PROBE_UPDATER;
+    private static final AtomicIntegerFieldUpdater<SingleThreadEventExecutor> PENDING_TASKS_UPDATER;
     private static final AtomicReferenceFieldUpdater<SingleThreadEventExecutor, Thread> THREAD_UPDATER;
 
     static {
@@ -67,6 +71,18 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
         STATE_UPDATER = updater;
 
+        updater = PlatformDependent.newAtomicIntegerFieldUpdater(SingleThreadEventExecutor.class, "latencyProbeState");
+        if (updater == null) {
+            updater = AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "latencyProbeState");
+        }
+        LATENCY_PROBE_UPDATER = updater;
+
+        updater = PlatformDependent.newAtomicIntegerFieldUpdater(SingleThreadEventExecutor.class, "pendingTaskCount");
+        if (updater == null) {
+            updater = AtomicIntegerFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "pendingTaskCount");
+        }
+        PENDING_TASKS_UPDATER = updater;
+
         AtomicReferenceFieldUpdater<SingleThreadEventExecutor, Thread> refUpdater =
                 PlatformDependent.newAtomicReferenceFieldUpdater(SingleThreadEventExecutor.class, "thread");
         if (refUpdater == null) {
@@ -85,6 +101,12 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     private final Set<Runnable> shutdownHooks = new LinkedHashSet<Runnable>();
     private final boolean addTaskWakesUp;
 
+    /**
+     * {@code true} while the executor thread is parked in {@link #takeTask()} because the task queue was empty.
+     * Only used if the task queue is not a {@link BlockingQueue}.
+     */
+    private volatile boolean waitingForTask;
+
     private long lastExecutionTime;
 
     @SuppressWarnings({ "FieldMayBeFinal", "unused" })
@@ -96,12 +118,25 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
 
+    // Metrics, only updated by the executor thread.
+    private volatile long completedTasks;
+    private volatile long taskRunTime;
+    private final AtomicLongArray taskQueueLatencyHistogram = new AtomicLongArray(64);
+    private final LatencyProbe latencyProbe = new LatencyProbe();
+    @SuppressWarnings({ "FieldMayBeFinal", "unused" })
+    private volatile int latencyProbeState;
+    // Number of tasks in the task queue, not counting the wakeup task and the latency probe.
+    @SuppressWarnings({ "FieldMayBeFinal", "unused" })
+    private volatile int pendingTaskCount;
+    private final EventExecutorMetrics metrics = new Metrics();
+
     private boolean firstRun = true;
 
     private final Runnable asRunnable = new Runnable() {
         @Override
         public void run() {
             updateThread(Thread.currentThread());
+            ThreadExecutorMap.setCurrentEventExecutor(SingleThreadEventExecutor.this);
 
             // lastExecutionTime must be set on the first run
             // in order for shutdown to work correctly for the
@@ -117,6 +152,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             } catch (Throwable t) {
                 logger.warn("Unexpected exception from an event executor: ", t);
                 cleanupAndTerminate(false);
+            } finally {
+                ThreadExecutorMap.setCurrentEventExecutor(null);
             }
         }
     };
@@ -141,12 +178,12 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     /**
      * Create a new {@link Queue} which will holds the tasks to execute. This default implementation will return a
-     * {@link LinkedBlockingQueue} but if your sub-class of {@link SingleThreadEventExecutor} will not do any blocking
-     * calls on the this {@link Queue} it may make sense to {@code @Override} this and return some more performant
-     * implementation that does not support blocking operations at all.
+     * lock-free multi-producer single-consumer {@link Queue}. {@link #takeTask()} will park the executor thread
+     * while this {@link Queue} is empty, so the returned {@link Queue} does not need to implement
+     * {@link BlockingQueue}. If a {@link BlockingQueue} is returned its blocking operations are used instead.
      */
     protected Queue<Runnable> newTaskQueue() {
-        return new LinkedBlockingQueue<Runnable>();
+        return PlatformDependent.newMpscQueue();
     }
 
     /**
@@ -159,23 +196,20 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             if (task == WAKEUP_TASK) {
                 continue;
             }
+            taskRemoved(task);
             return task;
         }
     }
 
     /**
      * Take the next {@link Runnable} from the task queue and so will block if no task is currently present.
-     * <p>
-     * Be aware that this method will throw an {@link UnsupportedOperationException} if the task queue, which was
-     * created via {@link #newTaskQueue()}, does not implement {@link BlockingQueue}.
-     * </p>
      *
      * @return {@code null} if the executor thread has been interrupted or waken up.
      */
     protected Runnable takeTask() {
         assert inEventLoop();
         if (!(taskQueue instanceof BlockingQueue)) {
-            throw new UnsupportedOperationException();
+            return parkAndTakeTask();
         }
 
         BlockingQueue<Runnable> taskQueue = (BlockingQueue<Runnable>) this.taskQueue;
@@ -187,6 +221,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                     task = taskQueue.take();
                     if (task == WAKEUP_TASK) {
                         task = null;
+                    } else {
+                        taskRemoved(task);
                     }
                 } catch (InterruptedException e) {
                     // Ignore
@@ -213,12 +249,68 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                 }
 
                 if (task != null) {
+                    taskRemoved(task);
                     return task;
                 }
             }
         }
     }
 
+    /**
+     * Variant of {@link #takeTask()} for task queues that do not implement {@link BlockingQueue}. The executor thread
+     * is parked while the task queue is empty and unparked by {@link #addTask(Runnable)} and {@link #wakeup(boolean)}.
+     */
+    private Runnable parkAndTakeTask() {
+        for (;;) {
+            ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
+            long delayNanos = 0;
+            if (scheduledTask != null) {
+                delayNanos = scheduledTask.delayNanos();
+                if (delayNanos <= 0) {
+                    // Fetch the scheduled tasks before polling so they are not starved by a task queue that always
+                    // contains a task. See https://github.com/netty/netty/issues/1614
+                    fetchFromScheduledTaskQueue();
+                }
+            }
+
+            Runnable task = taskQueue.poll();
+            if (task == WAKEUP_TASK) {
+                return null;
+            }
+            if (task != null) {
+                taskRemoved(task);
+                return task;
+            }
+
+            if (scheduledTask == null || delayNanos > 0) {
+                waitingForTask = true;
+                try {
+                    // Check again after publishing waitingForTask so we can not miss the unpark of a producer.
+                    if (taskQueue.isEmpty()) {
+                        if (scheduledTask == null) {
+                            LockSupport.park(this);
+                        } else {
+                            LockSupport.parkNanos(this, delayNanos);
+                        }
+                    }
+                } finally {
+                    waitingForTask = false;
+                }
+                if (Thread.interrupted()) {
+                    // Waken up.
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void offerTask(Runnable task) {
+        taskQueue.add(task);
+        if (waitingForTask) {
+            LockSupport.unpark(thread);
+        }
+    }
+
     private void fetchFromScheduledTaskQueue() {
         if (hasScheduledTasks()) {
             long nanoTime = AbstractScheduledEventExecutor.nanoTime();
@@ -227,11 +319,21 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                 if (scheduledTask == null) {
                     break;
                 }
+                PENDING_TASKS_UPDATER.incrementAndGet(this);
                 taskQueue.add(scheduledTask);
             }
         }
     }
 
+    /**
+     * Must be called for every task that was removed from the task queue to keep {@link #pendingTaskCount} in sync.
+     */
+    private void taskRemoved(Runnable task) {
+        if (task != null && task != latencyProbe) {
+            PENDING_TASKS_UPDATER.decrementAndGet(this);
+        }
+    }
+
     /**
      * @see {@link Queue#peek()}
      */
@@ -269,7 +371,14 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (isShutdown()) {
             reject();
         }
-        taskQueue.add(task);
+        // Increment before the task is visible to the executor thread, so the count never becomes negative.
+        PENDING_TASKS_UPDATER.incrementAndGet(this);
+        try {
+            offerTask(task);
+        } catch (RuntimeException e) {
+            PENDING_TASKS_UPDATER.decrementAndGet(this);
+            throw e;
+        }
     }
 
     /**
@@ -279,7 +388,11 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (task == null) {
             throw new NullPointerException("task");
         }
-        return taskQueue.remove(task);
+        if (taskQueue.remove(task)) {
+            taskRemoved(task);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -294,6 +407,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
 
+        final long startTime = ScheduledFutureTask.nanoTime();
+        long runTasks = 0;
         for (;;) {
             try {
                 task.run();
@@ -301,9 +416,14 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                 logger.warn("A task raised an exception.", t);
             }
 
+            if (task != latencyProbe) {
+                runTasks ++;
+            }
+
             task = pollTask();
             if (task == null) {
                 lastExecutionTime = ScheduledFutureTask.nanoTime();
+                recordCompletedTasks(runTasks, lastExecutionTime - startTime);
                 return true;
             }
         }
@@ -320,8 +440,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
 
-        final long deadline = ScheduledFutureTask.nanoTime() + timeoutNanos;
+        final long startTime = ScheduledFutureTask.nanoTime();
+        final long deadline = startTime + timeoutNanos;
         long runTasks = 0;
+        long probeTasks = 0;
         long lastExecutionTime;
         for (;;) {
             try {
@@ -331,6 +453,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             }
 
             runTasks ++;
+            if (task == latencyProbe) {
+                probeTasks ++;
+            }
 
             // Check timeout every 64 tasks because nanoTime() is relatively expensive.
             // XXX: Hard-coded value - will make it configurable if it is really a problem.
@@ -349,9 +474,23 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
 
         this.lastExecutionTime = lastExecutionTime;
+        recordCompletedTasks(runTasks - probeTasks, lastExecutionTime - startTime);
         return true;
     }
 
+    private void recordCompletedTasks(long tasks, long runTime) {
+        // Only updated by the executor thread so there is no need for an atomic operation.
+        completedTasks += tasks;
+        taskRunTime += runTime;
+    }
+
+    /**
+     * Returns the runtime metrics of this executor.
+     */
+    public EventExecutorMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * Returns the amount of time left until the scheduled task with the closest dead line is executed.
      */
@@ -389,7 +528,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop || STATE_UPDATER.get(this) == ST_SHUTTING_DOWN) {
-            taskQueue.add(WAKEUP_TASK);
+            offerTask(WAKEUP_TASK);
         }
     }
 
@@ -659,8 +798,19 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         } else {
             startExecution();
             addTask(task);
-            if (isShutdown() && removeTask(task)) {
-                reject();
+            if (isShutdown()) {
+                boolean reject = false;
+                try {
+                    reject = removeTask(task);
+                } catch (UnsupportedOperationException e) {
+                    // The task queue does not support removal so the best thing we can do is to move on and hope
+                    // the task is picked up before the executor terminates. In the worst case it is logged then.
+                }
+                if (reject) {
+                    reject();
+                }
+            } else {
+                sampleTaskQueueLatency();
             }
         }
 
@@ -669,6 +819,17 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
     }
 
+    /**
+     * Adds the {@link LatencyProbe} right behind the task that was just added, unless it is still in the task queue.
+     * This keeps the sampling cheap enough to be always on while still measuring how long tasks wait under load.
+     */
+    private void sampleTaskQueueLatency() {
+        if (latencyProbeState == 0 && LATENCY_PROBE_UPDATER.compareAndSet(this, 0, 1)) {
+            latencyProbe.enqueueTime = ScheduledFutureTask.nanoTime();
+            offerTask(latencyProbe);
+        }
+    }
+
     @SuppressWarnings("unused")
     protected boolean wakesUpForTask(Runnable task) {
         return true;
@@ -749,4 +910,49 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             purgeCancelledScheduledTasks();
         }
     }
+
+    private final class LatencyProbe implements Runnable {
+        long enqueueTime;
+
+        @Override
+        public void run() {
+            long latency = ScheduledFutureTask.nanoTime() - enqueueTime;
+            int bucket = latency <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(latency);
+            // Only updated by the executor thread so there is no need for an atomic increment.
+            taskQueueLatencyHistogram.lazySet(bucket, taskQueueLatencyHistogram.get(bucket) + 1);
+            LATENCY_PROBE_UPDATER.set(SingleThreadEventExecutor.this, 0);
+        }
+    }
+
+    private final class Metrics implements EventExecutorMetrics {
+        @Override
+        public int pendingTasks() {
+            return pendingTaskCount;
+        }
+
+        @Override
+        public int scheduledTasks() {
+            Queue<ScheduledFutureTask<?>> scheduledTaskQueue = SingleThreadEventExecutor.this.scheduledTaskQueue;
+            return scheduledTaskQueue == null ? 0 : scheduledTaskQueue.size();
+        }
+
+        @Override
+        public long completedTasks() {
+            return completedTasks;
+        }
+
+        @Override
+        public long taskRunTime() {
+            return taskRunTime;
+        }
+
+        @Override
+        public long[] taskQueueLatencyHistogram() {
+            long[] histogram = new long[taskQueueLatencyHistogram.length()];
+            for (int i = 0; i < histogram.length; i ++) {
+                histogram[i] = taskQueueLatencyHistogram.get(i);
+            }
+            return histogram;
+        }
+    }
 }
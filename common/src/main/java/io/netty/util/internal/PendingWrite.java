@@ -23,7 +23,7 @@ import io.netty.util.concurrent.Promise;
  * Some pending write which should be picked up later.
  */
 public final class PendingWrite {
-    private static final Recycler<PendingWrite> RECYCLER = new Recycler<PendingWrite>() {
+    private static final Recycler<PendingWrite> RECYCLER = new Recycler<PendingWrite>("pendingWrite") {
         @Override
         protected PendingWrite newObject(Handle<PendingWrite> handle) {
             return new PendingWrite(handle);
@@ -29,13 +29,16 @@ import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.nio.ByteBuffer;
+import java.util.Deque;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
@@ -146,6 +149,14 @@ public final class PlatformDependent {
         return HAS_UNSAFE;
     }
 
+    /**
+     * Return {@code true} if {@code sun.misc.Unsafe} can be used and the platform supports unaligned access, so
+     * {@link #getLong(long)} and {@link #getLong(byte[], int)} read a whole word at once.
+     */
+    public static boolean isUnaligned() {
+        return HAS_UNSAFE && PlatformDependent0.isUnaligned();
+    }
+
     /**
      * Returns {@code true} if the platform has reliable low-level direct buffer access API and a user specified
      * {@code -Dio.netty.preferDirect} option.
@@ -318,6 +329,13 @@ public final class PlatformDependent {
         return PlatformDependent0.getLong(address);
     }
 
+    /**
+     * Reads the 8 bytes at the given index of the array in the native byte order.
+     */
+    public static long getLong(byte[] data, int index) {
+        return PlatformDependent0.getLong(data, ARRAY_BASE_OFFSET + index);
+    }
+
     public static void putOrderedObject(Object object, long address, Object value) {
         PlatformDependent0.putOrderedObject(object, address, value);
     }
@@ -409,6 +427,17 @@ public final class PlatformDependent {
         return new MpscLinkedQueue<T>();
     }
 
+    /**
+     * Returns a new concurrent {@link Deque}.  On Java 7 and later this is a lock-free deque.
+     */
+    public static <C> Deque<C> newConcurrentDeque() {
+        if (javaVersion() < 7) {
+            return new LinkedBlockingDeque<C>();
+        } else {
+            return new ConcurrentLinkedDeque<C>();
+        }
+    }
+
     /**
      * Return the {@link ClassLoader} for the given {@link Class}.
      */
@@ -179,6 +179,27 @@ final class PlatformDependent0 {
         return UNSAFE.getByte(address);
     }
 
+    static boolean isUnaligned() {
+        return UNALIGNED;
+    }
+
+    static long getLong(byte[] data, long offset) {
+        if (UNALIGNED) {
+            return UNSAFE.getLong(data, offset);
+        }
+        long value = 0;
+        if (BIG_ENDIAN) {
+            for (int i = 0; i < 8; i ++) {
+                value = value << 8 | UNSAFE.getByte(data, offset + i) & 0xff;
+            }
+        } else {
+            for (int i = 7; i >= 0; i --) {
+                value = value << 8 | UNSAFE.getByte(data, offset + i) & 0xff;
+            }
+        }
+        return value;
+    }
+
     static short getShort(long address) {
         if (UNALIGNED) {
             return UNSAFE.getShort(address);
@@ -33,7 +33,8 @@ public final class RecyclableArrayList extends ArrayList<Object> {
 
     private static final int DEFAULT_INITIAL_CAPACITY = 8;
 
-    private static final Recycler<RecyclableArrayList> RECYCLER = new Recycler<RecyclableArrayList>() {
+    private static final Recycler<RecyclableArrayList> RECYCLER =
+            new Recycler<RecyclableArrayList>("recyclableArrayList") {
         @Override
         protected RecyclableArrayList newObject(Handle<RecyclableArrayList> handle) {
             return new RecyclableArrayList(handle);
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MultithreadHashedWheelTimerTest {
+
+    @Test(timeout = 10000)
+    public void testTimeoutsOfOverflowWheelsExpireOnTime() throws Exception {
+        // Use a tiny wheel, so most of the timeouts are kept in the overflow wheels.
+        MultithreadHashedWheelTimer timer = new MultithreadHashedWheelTimer(
+                Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS, 4, 2, null);
+        final int count = 100;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < count; i ++) {
+            final long delay = TimeUnit.MILLISECONDS.toNanos(i * 20);
+            final long start = System.nanoTime();
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    if (System.nanoTime() - start < delay) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+        latch.await();
+        assertTrue(timer.stop().isEmpty());
+        assertEquals(0, early.get());
+        assertEquals(count, timer.metrics().expiredTimeouts());
+        assertEquals(0, timer.metrics().pendingTimeouts());
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksAreDispatchedToExecutor() throws Exception {
+        EventExecutorGroup group = new DefaultEventExecutorGroup(2);
+        MultithreadHashedWheelTimer timer = new MultithreadHashedWheelTimer(
+                Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS, 512, 1, group);
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicInteger inExecutor = new AtomicInteger();
+            final EventExecutorGroup executorGroup = group;
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    for (EventExecutor e: executorGroup.<EventExecutor>children()) {
+                        if (e.inEventLoop()) {
+                            inExecutor.incrementAndGet();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            latch.await();
+            assertEquals(1, inExecutor.get());
+        } finally {
+            timer.stop();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledTimeoutsAreRemoved() throws Exception {
+        MultithreadHashedWheelTimer timer = new MultithreadHashedWheelTimer(
+                Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS, 512, 4, null);
+        List<Timeout> timeouts = new ArrayList<Timeout>();
+        for (int i = 0; i < 1000; i ++) {
+            timeouts.add(timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) throws Exception {
+                    fail("This should not have run");
+                }
+            }, 1 + i, TimeUnit.MINUTES));
+        }
+        assertEquals(1000, timer.metrics().pendingTimeouts());
+
+        for (int i = 0; i < 500; i ++) {
+            assertTrue(timeouts.get(i).cancel());
+            assertFalse(timeouts.get(i).cancel());
+        }
+        assertEquals(500, timer.metrics().pendingTimeouts());
+        assertEquals(500, timer.metrics().cancelledTimeouts());
+
+        assertEquals(500, timer.stop().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNewTimeoutAfterStop() {
+        MultithreadHashedWheelTimer timer = new MultithreadHashedWheelTimer();
+        timer.stop();
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                fail("This should not have run");
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+    }
+}
@@ -166,6 +166,86 @@ public class RecyclerTest {
         assertThat(recycler.threadLocalSize(), is(0));
     }
 
+    @Test
+    public void testMaxCapacityOfNamedRecycler() {
+        System.setProperty("io.netty.recycler.maxCapacity.recyclerTest", "8");
+        try {
+            Recycler<HandledObject> recycler = new Recycler<HandledObject>("recyclerTest") {
+                @Override
+                protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                    return new HandledObject(handle);
+                }
+            };
+            assertEquals("recyclerTest", recycler.metric().name());
+            assertEquals(8, recycler.metric().maxCapacity());
+            assertEquals(16, recycler.metric().maxSharedCapacity());
+        } finally {
+            System.clearProperty("io.netty.recycler.maxCapacity.recyclerTest");
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        Recycler<HandledObject> recycler = new Recycler<HandledObject>("testMetrics", 1, 2) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+        assertTrue(Recycler.metrics().contains(recycler.metric()));
+
+        HandledObject a = recycler.get();
+        HandledObject b = recycler.get();
+        recycler.recycle(a, a.handle);
+        // The pool holds one object only.
+        recycler.recycle(b, b.handle);
+        assertSame(a, recycler.get());
+
+        recycler.flushThreadLocalStats();
+        RecyclerMetric metric = recycler.metric();
+        assertEquals(1, metric.numHits());
+        assertEquals(2, metric.numMisses());
+        assertEquals(1, metric.numDrops());
+        assertEquals(0, metric.numCrossThreadRecycles());
+    }
+
+    @Test
+    public void testMaxSharedCapacity() throws Exception {
+        // At most 32 objects can be handed back by other threads.
+        final Recycler<HandledObject> recycler = new Recycler<HandledObject>("testMaxSharedCapacity", 64, 2) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+        assertEquals(32, recycler.metric().maxSharedCapacity());
+
+        final HandledObject[] array = new HandledObject[48];
+        for (int i = 0; i < array.length; i ++) {
+            array[i] = recycler.get();
+        }
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (HandledObject o: array) {
+                    recycler.recycle(o, o.handle);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(32, recycler.metric().numCrossThreadRecycles());
+        assertEquals(16, recycler.metric().numDrops());
+
+        // The handed back objects are reused.
+        for (int i = 0; i < 32; i ++) {
+            recycler.get();
+        }
+        recycler.flushThreadLocalStats();
+        assertEquals(32, recycler.metric().numHits());
+    }
+
     static final class HandledObject {
         Recycler.Handle<HandledObject> handle;
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.ResourceLeakDetector.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResourceLeakDetectorTest {
+
+    private Level oldLevel;
+
+    @Before
+    public void setUp() {
+        oldLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(Level.ADAPTIVE);
+    }
+
+    @After
+    public void tearDown() {
+        ResourceLeakDetector.setLevel(oldLevel);
+    }
+
+    @Test
+    public void testAdaptiveRecordsAreBounded() {
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>("test", 1, Long.MAX_VALUE);
+        Object resource = new Object();
+        ResourceLeak leak = detector.open(resource);
+        assertNotNull(leak);
+        for (int i = 0; i < 1000; i ++) {
+            leak.record("hint" + i);
+        }
+
+        String records = leak.toString();
+        assertTrue(records, records.contains("Recent access records: 4"));
+        assertTrue(records, records.contains("testAdaptiveRecordsAreBounded"));
+        assertTrue(leak.close());
+    }
+
+    @Test(timeout = 10000)
+    public void testAdaptiveLeaksAreAggregatedByAllocationSite() throws Exception {
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>("test", 1, Long.MAX_VALUE);
+        Map<String, Long> leaks;
+        do {
+            leak(detector);
+            System.gc();
+            Thread.sleep(10);
+            // Leaks are reported when the next resource is opened.
+            ResourceLeak leak = detector.open(new Object());
+            if (leak != null) {
+                leak.close();
+            }
+            leaks = detector.leaksByAllocationSite();
+        } while (leaks.isEmpty());
+
+        assertEquals(1, leaks.size());
+        Map.Entry<String, Long> e = leaks.entrySet().iterator().next();
+        // The allocation site starts at the caller of open().
+        assertTrue(e.getKey(), e.getKey().trim().startsWith(ResourceLeakDetectorTest.class.getName() + ".leak("));
+        assertTrue(e.getValue() >= 1);
+    }
+
+    private static void leak(ResourceLeakDetector<Object> detector) {
+        ResourceLeak leak = detector.open(new Object());
+        if (leak != null) {
+            leak.record();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAdaptiveLeaksByAllocationSiteAreBounded() throws Exception {
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>("test", 1, Long.MAX_VALUE);
+        // Every recursion depth is a distinct allocation site.
+        int numSites = ResourceLeakDetector.MAX_LEAKED_ALLOCATION_SITES + 10;
+        for (int i = 0; i < numSites; i ++) {
+            leak(detector, i);
+        }
+        Map<String, Long> leaks;
+        do {
+            System.gc();
+            Thread.sleep(10);
+            // Leaks are reported when the next resource is opened.
+            ResourceLeak leak = detector.open(new Object());
+            if (leak != null) {
+                leak.close();
+            }
+            leaks = detector.leaksByAllocationSite();
+            assertTrue(leaks.size() <= ResourceLeakDetector.MAX_LEAKED_ALLOCATION_SITES);
+        } while (leaks.size() < ResourceLeakDetector.MAX_LEAKED_ALLOCATION_SITES);
+    }
+
+    private static void leak(ResourceLeakDetector<Object> detector, int depth) {
+        if (depth > 0) {
+            leak(detector, depth - 1);
+            return;
+        }
+        // Retry until the resource is sampled, in case the sampling interval was raised in the meantime.
+        while (detector.open(new Object()) == null) {
+            continue;
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAdaptiveSamplingIntervalAdjustsToBudget() {
+        // A budget of 1 microsecond per second is exceeded by almost any rate of new resources.
+        ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>("test", 1, Long.MAX_VALUE, 1);
+        assertEquals(1, detector.adaptiveSamplingInterval());
+        Object resource = new Object();
+        while (detector.adaptiveSamplingInterval() == 1) {
+            ResourceLeak leak = detector.open(resource);
+            if (leak != null) {
+                leak.close();
+            }
+        }
+        assertTrue(detector.adaptiveSamplingInterval() > 1);
+    }
+}
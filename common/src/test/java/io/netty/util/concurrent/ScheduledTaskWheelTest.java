@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ScheduledTaskWheelTest {
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Test
+    public void testOrderMatchesPriorityQueue() {
+        ScheduledTaskWheel wheel = new ScheduledTaskWheel(GlobalEventExecutor.INSTANCE, 1);
+        PriorityQueue<ScheduledFutureTask<?>> expected = new PriorityQueue<ScheduledFutureTask<?>>();
+        List<ScheduledFutureTask<?>> queued = new ArrayList<ScheduledFutureTask<?>>();
+        Random random = new Random(42);
+        long now = ScheduledFutureTask.nanoTime();
+
+        for (int i = 0; i < 200000; i ++) {
+            int op = random.nextInt(10);
+            if (op < 5) {
+                // Mix deadlines which fit into the lower levels, the higher levels and the overflow queue.
+                long delay;
+                switch (random.nextInt(4)) {
+                case 0:
+                    delay = random.nextInt(100);
+                    break;
+                case 1:
+                    delay = random.nextInt(100000);
+                    break;
+                case 2:
+                    delay = (long) (random.nextDouble() * (1L << 36));
+                    break;
+                default:
+                    delay = (long) (random.nextDouble() * (1L << 40));
+                }
+                ScheduledFutureTask<?> task = newTask(now + delay);
+                assertTrue(wheel.offer(task));
+                expected.add(task);
+                queued.add(task);
+            } else if (op < 8) {
+                ScheduledFutureTask<?> task = wheel.poll();
+                assertSame(expected.poll(), task);
+                if (task != null) {
+                    queued.remove(task);
+                    // Move the time forward as an executor would do.
+                    now = Math.max(now, task.deadlineNanos());
+                }
+            } else if (!queued.isEmpty()) {
+                ScheduledFutureTask<?> task = queued.remove(random.nextInt(queued.size()));
+                assertTrue(wheel.remove(task));
+                assertFalse(wheel.remove(task));
+                assertTrue(expected.remove(task));
+            }
+            assertEquals(expected.size(), wheel.size());
+        }
+
+        while (!expected.isEmpty()) {
+            assertSame(expected.poll(), wheel.poll());
+        }
+        assertNull(wheel.poll());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testIteratorAndClear() {
+        ScheduledTaskWheel wheel = new ScheduledTaskWheel(GlobalEventExecutor.INSTANCE, 1);
+        long now = ScheduledFutureTask.nanoTime();
+        ScheduledFutureTask<?> a = newTask(now);
+        ScheduledFutureTask<?> b = newTask(now + 1000);
+        ScheduledFutureTask<?> c = newTask(now + (1L << 40));
+        wheel.add(a);
+        wheel.add(b);
+        wheel.add(c);
+
+        int count = 0;
+        for (Iterator<ScheduledFutureTask<?>> i = wheel.iterator(); i.hasNext();) {
+            if (i.next() == b) {
+                i.remove();
+            }
+            count ++;
+        }
+        assertEquals(3, count);
+        assertEquals(2, wheel.size());
+
+        wheel.clear();
+        assertTrue(wheel.isEmpty());
+        assertNull(wheel.peek());
+
+        // The tasks can be added again after the wheel was cleared.
+        wheel.add(c);
+        wheel.add(b);
+        assertSame(b, wheel.poll());
+        assertSame(c, wheel.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledTasksAreRemovedEagerly() throws Exception {
+        final TimingWheelEventExecutor executor = new TimingWheelEventExecutor();
+        try {
+            List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+            for (int i = 0; i < 1000; i ++) {
+                futures.add(executor.schedule(NOOP, 1 + i, TimeUnit.MINUTES));
+            }
+            final BlockingQueue<Integer> sizes = new LinkedBlockingQueue<Integer>();
+            Runnable reportSize = new Runnable() {
+                @Override
+                public void run() {
+                    sizes.add(executor.scheduledTaskQueue().size());
+                }
+            };
+
+            executor.submit(reportSize).sync();
+            // The scheduled tasks plus the purge task.
+            assertEquals(1001, sizes.take().intValue());
+
+            // Cancel from outside the event loop.
+            for (ScheduledFuture<?> future: futures) {
+                assertTrue(future.cancel(false));
+            }
+            executor.submit(reportSize).sync();
+            assertEquals(1, sizes.take().intValue());
+
+            // Cancel from inside the event loop.
+            final ScheduledFuture<?> future = executor.schedule(NOOP, 1, TimeUnit.MINUTES);
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    future.cancel(false);
+                    sizes.add(executor.scheduledTaskQueue().size());
+                }
+            }).sync();
+            assertEquals(1, sizes.take().intValue());
+
+            // Scheduled tasks are still executed.
+            assertTrue(executor.schedule(NOOP, 10, TimeUnit.MILLISECONDS).await(5000));
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    private static ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(
+                GlobalEventExecutor.INSTANCE, Executors.<Void>callable(NOOP, null), deadlineNanos);
+    }
+
+    private static final class TimingWheelEventExecutor extends SingleThreadEventExecutor {
+        TimingWheelEventExecutor() {
+            super(null, new DefaultExecutorServiceFactory(TimingWheelEventExecutor.class).newExecutorService(1), true);
+        }
+
+        @Override
+        protected boolean useTimingWheel() {
+            return true;
+        }
+
+        @Override
+        protected void run() {
+            Runnable task = takeTask();
+            if (task != null) {
+                task.run();
+                updateLastExecutionTime();
+            }
+
+            if (confirmShutdown()) {
+                cleanupAndTerminate(true);
+            } else {
+                scheduleExecution();
+            }
+        }
+    }
+}
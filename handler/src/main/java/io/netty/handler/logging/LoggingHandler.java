@@ -17,17 +17,22 @@ package io.netty.handler.logging;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
-import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.ThreadLocalRandom;
 import io.netty.util.internal.logging.InternalLogLevel;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link ChannelHandler} that logs all events using a logging framework.
@@ -39,65 +44,16 @@ public class LoggingHandler extends ChannelHandlerAdapter {
 
     private static final LogLevel DEFAULT_LEVEL = LogLevel.DEBUG;
 
-    private static final String NEWLINE = StringUtil.NEWLINE;
-
-    private static final String[] BYTE2HEX = new String[256];
-    private static final String[] HEXPADDING = new String[16];
-    private static final String[] BYTEPADDING = new String[16];
-    private static final char[] BYTE2CHAR = new char[256];
-    private static final String[] HEXDUMP_ROWPREFIXES = new String[65536 >>> 4];
-
-    static {
-        int i;
-
-        // Generate the lookup table for byte-to-hex-dump conversion
-        for (i = 0; i < BYTE2HEX.length; i ++) {
-            BYTE2HEX[i] = ' ' + StringUtil.byteToHexStringPadded(i);
-        }
-
-        // Generate the lookup table for hex dump paddings
-        for (i = 0; i < HEXPADDING.length; i ++) {
-            int padding = HEXPADDING.length - i;
-            StringBuilder buf = new StringBuilder(padding * 3);
-            for (int j = 0; j < padding; j ++) {
-                buf.append("   ");
-            }
-            HEXPADDING[i] = buf.toString();
-        }
-
-        // Generate the lookup table for byte dump paddings
-        for (i = 0; i < BYTEPADDING.length; i ++) {
-            int padding = BYTEPADDING.length - i;
-            StringBuilder buf = new StringBuilder(padding);
-            for (int j = 0; j < padding; j ++) {
-                buf.append(' ');
-            }
-            BYTEPADDING[i] = buf.toString();
-        }
-
-        // Generate the lookup table for byte-to-char conversion
-        for (i = 0; i < BYTE2CHAR.length; i ++) {
-            if (i <= 0x1f || i >= 0x7f) {
-                BYTE2CHAR[i] = '.';
-            } else {
-                BYTE2CHAR[i] = (char) i;
-            }
-        }
-
-        // Generate the lookup table for the start-offset header in each row (up to 64KiB).
-        for (i = 0; i < HEXDUMP_ROWPREFIXES.length; i ++) {
-            StringBuilder buf = new StringBuilder(12);
-            buf.append(NEWLINE);
-            buf.append(Long.toHexString(i << 4 & 0xFFFFFFFFL | 0x100000000L));
-            buf.setCharAt(buf.length() - 9, '|');
-            buf.append('|');
-            HEXDUMP_ROWPREFIXES[i] = buf.toString();
-        }
-    }
+    private static final int MAX_PENDING_EVENTS = 4096;
 
     protected final InternalLogger logger;
     protected final InternalLogLevel internalLevel;
     private final LogLevel level;
+    private final int maxHexDumpBytes;
+    private final int samplingInterval;
+    private final Executor executor;
+    private final AtomicInteger pendingEvents;
+    private final AtomicLong droppedEvents;
 
     /**
      * Creates a new instance whose logger name is the fully qualified class
@@ -121,6 +77,11 @@ public class LoggingHandler extends ChannelHandlerAdapter {
         logger = InternalLoggerFactory.getInstance(getClass());
         this.level = level;
         internalLevel = level.toInternalLevel();
+        maxHexDumpBytes = Integer.MAX_VALUE;
+        samplingInterval = 1;
+        executor = null;
+        pendingEvents = null;
+        droppedEvents = null;
     }
 
     /**
@@ -140,16 +101,33 @@ public class LoggingHandler extends ChannelHandlerAdapter {
      * @param level the log level
      */
     public LoggingHandler(Class<?> clazz, LogLevel level) {
+        this(clazz, level, Integer.MAX_VALUE, 1, null);
+    }
+
+    /**
+     * Creates a new instance with the specified logger name.
+     *
+     * @param clazz the class type to generate the logger for
+     * @param level the log level
+     * @param maxHexDumpBytes the maximal number of bytes of a message which are included in the hex dump
+     * @param samplingInterval only one of {@code samplingInterval} messages is logged on average
+     * @param executor the {@link Executor} which formats and logs the events, or {@code null} to log them in the
+     *                 {@link io.netty.channel.EventLoop}
+     */
+    public LoggingHandler(Class<?> clazz, LogLevel level, int maxHexDumpBytes, int samplingInterval,
+                          Executor executor) {
         if (clazz == null) {
             throw new NullPointerException("clazz");
         }
-        if (level == null) {
-            throw new NullPointerException("level");
-        }
 
         logger = InternalLoggerFactory.getInstance(clazz);
-        this.level = level;
+        this.level = checkLevel(level);
         internalLevel = level.toInternalLevel();
+        this.maxHexDumpBytes = checkMaxHexDumpBytes(maxHexDumpBytes);
+        this.samplingInterval = checkSamplingInterval(samplingInterval);
+        this.executor = executor;
+        pendingEvents = executor == null ? null : new AtomicInteger();
+        droppedEvents = executor == null ? null : new AtomicLong();
     }
 
     /**
@@ -168,16 +146,61 @@ public class LoggingHandler extends ChannelHandlerAdapter {
      * @param level the log level
      */
     public LoggingHandler(String name, LogLevel level) {
+        this(name, level, Integer.MAX_VALUE, 1, null);
+    }
+
+    /**
+     * Creates a new instance with the specified logger name.
+     * <p>
+     * Logging every message of a busy connection with a hex dump is expensive, so only a part of each message may be
+     * dumped and only a sample of the messages may be logged.  Sampling only applies to the {@code RECEIVED} and
+     * {@code WRITE} events.  If an {@link Executor} is given, the events are logged by it, and {@link ByteBuf}
+     * messages are also formatted by it on a retained duplicate.  The {@link Executor} must run the tasks in the
+     * order they were submitted, e.g. a single-threaded {@link Executor}, to keep the events in order.  If it falls
+     * behind, further events are dropped and counted in {@link #droppedEvents()}.
+     *
+     * @param name the name of the class to use for the logger
+     * @param level the log level
+     * @param maxHexDumpBytes the maximal number of bytes of a message which are included in the hex dump
+     * @param samplingInterval only one of {@code samplingInterval} messages is logged on average
+     * @param executor the {@link Executor} which formats and logs the events, or {@code null} to log them in the
+     *                 {@link io.netty.channel.EventLoop}
+     */
+    public LoggingHandler(String name, LogLevel level, int maxHexDumpBytes, int samplingInterval,
+                          Executor executor) {
         if (name == null) {
             throw new NullPointerException("name");
         }
+
+        logger = InternalLoggerFactory.getInstance(name);
+        this.level = checkLevel(level);
+        internalLevel = level.toInternalLevel();
+        this.maxHexDumpBytes = checkMaxHexDumpBytes(maxHexDumpBytes);
+        this.samplingInterval = checkSamplingInterval(samplingInterval);
+        this.executor = executor;
+        pendingEvents = executor == null ? null : new AtomicInteger();
+        droppedEvents = executor == null ? null : new AtomicLong();
+    }
+
+    private static LogLevel checkLevel(LogLevel level) {
         if (level == null) {
             throw new NullPointerException("level");
         }
+        return level;
+    }
 
-        logger = InternalLoggerFactory.getInstance(name);
-        this.level = level;
-        internalLevel = level.toInternalLevel();
+    private static int checkMaxHexDumpBytes(int maxHexDumpBytes) {
+        if (maxHexDumpBytes < 0) {
+            throw new IllegalArgumentException("maxHexDumpBytes: " + maxHexDumpBytes + " (expected: >= 0)");
+        }
+        return maxHexDumpBytes;
+    }
+
+    private static int checkSamplingInterval(int samplingInterval) {
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException("samplingInterval: " + samplingInterval + " (expected: > 0)");
+        }
+        return samplingInterval;
     }
 
     /**
@@ -187,10 +210,17 @@ public class LoggingHandler extends ChannelHandlerAdapter {
         return level;
     }
 
+    /**
+     * Returns the number of events which were not logged because the {@link Executor} fell behind or rejected them.
+     */
+    public long droppedEvents() {
+        return droppedEvents == null ? 0 : droppedEvents.get();
+    }
+
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "REGISTERED"));
+            log(format(ctx, "REGISTERED"), null);
         }
         ctx.fireChannelRegistered();
     }
@@ -198,7 +228,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "UNREGISTERED"));
+            log(format(ctx, "UNREGISTERED"), null);
         }
         ctx.fireChannelUnregistered();
     }
@@ -206,7 +236,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "ACTIVE"));
+            log(format(ctx, "ACTIVE"), null);
         }
         ctx.fireChannelActive();
     }
@@ -214,7 +244,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "INACTIVE"));
+            log(format(ctx, "INACTIVE"), null);
         }
         ctx.fireChannelInactive();
     }
@@ -222,7 +252,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "EXCEPTION", cause), cause);
+            log(format(ctx, "EXCEPTION", cause), cause);
         }
         ctx.fireExceptionCaught(cause);
     }
@@ -230,7 +260,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "USER_EVENT", evt));
+            log(format(ctx, "USER_EVENT", evt), null);
         }
         ctx.fireUserEventTriggered(evt);
     }
@@ -238,7 +268,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "BIND", localAddress));
+            log(format(ctx, "BIND", localAddress), null);
         }
         ctx.bind(localAddress, promise);
     }
@@ -248,7 +278,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
             ChannelHandlerContext ctx,
             SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "CONNECT", remoteAddress, localAddress));
+            log(format(ctx, "CONNECT", remoteAddress, localAddress), null);
         }
         ctx.connect(remoteAddress, localAddress, promise);
     }
@@ -256,7 +286,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "DISCONNECT"));
+            log(format(ctx, "DISCONNECT"), null);
         }
         ctx.disconnect(promise);
     }
@@ -264,7 +294,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "CLOSE"));
+            log(format(ctx, "CLOSE"), null);
         }
         ctx.close(promise);
     }
@@ -272,7 +302,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "DEREGISTER"));
+            log(format(ctx, "DEREGISTER"), null);
         }
         ctx.deregister(promise);
     }
@@ -280,7 +310,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "RECEIVED", msg));
+            logMessage(ctx, "RECEIVED", msg);
         }
         ctx.fireChannelRead(msg);
     }
@@ -288,7 +318,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "WRITE", msg));
+            logMessage(ctx, "WRITE", msg);
         }
         ctx.write(msg, promise);
     }
@@ -296,11 +326,88 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void flush(ChannelHandlerContext ctx) throws Exception {
         if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "FLUSH"));
+            log(format(ctx, "FLUSH"), null);
         }
         ctx.flush();
     }
 
+    private void log(final String message, final Throwable cause) {
+        if (executor == null) {
+            log0(message, cause);
+            return;
+        }
+        submit(new LogTask() {
+            @Override
+            void doLog() {
+                log0(message, cause);
+            }
+        });
+    }
+
+    private void log0(String message, Throwable cause) {
+        if (cause == null) {
+            logger.log(internalLevel, message);
+        } else {
+            logger.log(internalLevel, message, cause);
+        }
+    }
+
+    private void logMessage(final ChannelHandlerContext ctx, final String eventName, Object msg) {
+        if (samplingInterval != 1 && ThreadLocalRandom.current().nextInt(samplingInterval) != 0) {
+            return;
+        }
+        if (executor == null || !(msg instanceof ByteBuf)) {
+            log(format(ctx, eventName, msg), null);
+            return;
+        }
+
+        // Format the hex dump in the executor on a duplicate, as the message may be modified or released as soon
+        // as this method returns.
+        final ByteBuf duplicate = ((ByteBuf) msg).retainedDuplicate();
+        LogTask task = new LogTask() {
+            @Override
+            void doLog() {
+                try {
+                    log0(format(ctx, eventName, duplicate), null);
+                } finally {
+                    duplicate.release();
+                }
+            }
+        };
+        if (!submit(task)) {
+            duplicate.release();
+        }
+    }
+
+    private boolean submit(LogTask task) {
+        if (pendingEvents.incrementAndGet() > MAX_PENDING_EVENTS) {
+            pendingEvents.decrementAndGet();
+            droppedEvents.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingEvents.decrementAndGet();
+            droppedEvents.incrementAndGet();
+            return false;
+        }
+    }
+
+    private abstract class LogTask implements Runnable {
+        @Override
+        public final void run() {
+            try {
+                doLog();
+            } finally {
+                pendingEvents.decrementAndGet();
+            }
+        }
+
+        abstract void doLog();
+    }
+
     /**
      * Formats an event and returns the formatted message.
      *
@@ -356,7 +463,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     /**
      * Generates the default log message of the specified event whose argument is a {@link ByteBuf}.
      */
-    private static String formatByteBuf(ChannelHandlerContext ctx, String eventName, ByteBuf msg) {
+    private String formatByteBuf(ChannelHandlerContext ctx, String eventName, ByteBuf msg) {
         String chStr = ctx.channel().toString();
         int length = msg.readableBytes();
         if (length == 0) {
@@ -364,11 +471,11 @@ public class LoggingHandler extends ChannelHandlerAdapter {
             buf.append(chStr).append(' ').append(eventName).append(": 0B");
             return buf.toString();
         } else {
-            int rows = length / 16 + (length % 15 == 0? 0 : 1) + 4;
-            StringBuilder buf = new StringBuilder(chStr.length() + 1 + eventName.length() + 2 + 10 + 1 + 2 + rows * 80);
+            StringBuilder buf = new StringBuilder(
+                    chStr.length() + 1 + eventName.length() + 2 + 10 + 1 + estimateHexDumpLength(length));
 
             buf.append(chStr).append(' ').append(eventName).append(": ").append(length).append('B');
-            appendHexDump(buf, msg);
+            appendHexDump(buf, msg, length);
 
             return buf.toString();
         }
@@ -377,7 +484,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     /**
      * Generates the default log message of the specified event whose argument is a {@link ByteBufHolder}.
      */
-    private static String formatByteBufHolder(ChannelHandlerContext ctx, String eventName, ByteBufHolder msg) {
+    private String formatByteBufHolder(ChannelHandlerContext ctx, String eventName, ByteBufHolder msg) {
         String chStr = ctx.channel().toString();
         String msgStr = msg.toString();
         ByteBuf content = msg.content();
@@ -387,91 +494,41 @@ public class LoggingHandler extends ChannelHandlerAdapter {
             buf.append(chStr).append(' ').append(eventName).append(", ").append(msgStr).append(", 0B");
             return buf.toString();
         } else {
-            int rows = length / 16 + (length % 15 == 0? 0 : 1) + 4;
             StringBuilder buf = new StringBuilder(
-                    chStr.length() + 1 + eventName.length() + 2 + msgStr.length() + 2 + 10 + 1 + 2 + rows * 80);
+                    chStr.length() + 1 + eventName.length() + 2 + msgStr.length() + 2 + 10 + 1 +
+                    estimateHexDumpLength(length));
 
             buf.append(chStr).append(' ').append(eventName).append(": ")
                .append(msgStr).append(", ").append(length).append('B');
-            appendHexDump(buf, content);
+            appendHexDump(buf, content, length);
 
             return buf.toString();
         }
     }
 
-    /**
-     * Appends the prettifies multi-line hexadecimal dump of the specified {@link ByteBuf} to the specified
-     * {@link StringBuilder}.
-     */
-    protected static void appendHexDump(StringBuilder dump, ByteBuf buf) {
-        dump.append(
-                NEWLINE + "         +-------------------------------------------------+" +
-                NEWLINE + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
-                NEWLINE + "+--------+-------------------------------------------------+----------------+");
-
-        final int startIndex = buf.readerIndex();
-        final int endIndex = buf.writerIndex();
-        final int length = endIndex - startIndex;
-        final int fullRows = length >>> 4;
-        final int remainder = length & 0xF;
-
-        // Dump the rows which have 16 bytes.
-        for (int row = 0; row < fullRows; row ++) {
-            int rowStartIndex = row << 4;
-
-            // Per-row prefix.
-            appendHexDumpRowPrefix(dump, row, rowStartIndex);
-
-            // Hex dump
-            int rowEndIndex = rowStartIndex + 16;
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2HEX[buf.getUnsignedByte(j)]);
-            }
-            dump.append(" |");
-
-            // ASCII dump
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2CHAR[buf.getUnsignedByte(j)]);
-            }
-            dump.append('|');
+    private int estimateHexDumpLength(int length) {
+        if (maxHexDumpBytes == 0) {
+            return 0;
         }
+        int rows = (Math.min(length, maxHexDumpBytes) + 15 >>> 4) + 4;
+        return rows * 80;
+    }
 
-        // Dump the last row which has less than 16 bytes.
-        if (remainder != 0) {
-            int rowStartIndex = fullRows << 4;
-            appendHexDumpRowPrefix(dump, fullRows, rowStartIndex);
-
-            // Hex dump
-            int rowEndIndex = rowStartIndex + remainder;
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2HEX[buf.getUnsignedByte(j)]);
-            }
-            dump.append(HEXPADDING[remainder]);
-            dump.append(" |");
-
-            // Ascii dump
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2CHAR[buf.getUnsignedByte(j)]);
-            }
-            dump.append(BYTEPADDING[remainder]);
-            dump.append('|');
+    private void appendHexDump(StringBuilder buf, ByteBuf msg, int length) {
+        if (maxHexDumpBytes != 0) {
+            ByteBufUtil.appendPrettyHexDump(buf, msg, msg.readerIndex(), length, maxHexDumpBytes);
         }
-
-        dump.append(NEWLINE + "+--------+-------------------------------------------------+----------------+");
     }
 
     /**
-     * Appends the prefix of each hex dump row.  Uses the look-up table for the buffer <= 64 KiB.
+     * Appends the prettifies multi-line hexadecimal dump of the specified {@link ByteBuf} to the specified
+     * {@link StringBuilder}.
+     *
+     * @deprecated Use {@link ByteBufUtil#appendPrettyHexDump(StringBuilder, ByteBuf)} instead.
      */
-    private static void appendHexDumpRowPrefix(StringBuilder dump, int row, int rowStartIndex) {
-        if (row < HEXDUMP_ROWPREFIXES.length) {
-            dump.append(HEXDUMP_ROWPREFIXES[row]);
-        } else {
-            dump.append(NEWLINE);
-            dump.append(Long.toHexString(rowStartIndex & 0xFFFFFFFFL | 0x100000000L));
-            dump.setCharAt(dump.length() - 9, '|');
-            dump.append('|');
-        }
+    @Deprecated
+    protected static void appendHexDump(StringBuilder dump, ByteBuf buf) {
+        ByteBufUtil.appendPrettyHexDump(dump, buf);
     }
 
     /**
@@ -114,6 +114,14 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
 
     private volatile int state; // 0 - none, 1 - initialized, 2 - destroyed
 
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            lastWriteTime = System.nanoTime();
+            firstWriterIdleEvent = firstAllIdleEvent = true;
+        }
+    };
+
     /**
      * Creates a new instance firing {@link IdleStateEvent}s.
      *
@@ -257,13 +265,7 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         ChannelPromise unvoid = promise.unvoid();
-        unvoid.addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                lastWriteTime = System.nanoTime();
-                firstWriterIdleEvent = firstAllIdleEvent = true;
-            }
-        });
+        unvoid.addListener(writeListener);
         ctx.write(msg, unvoid);
     }
 
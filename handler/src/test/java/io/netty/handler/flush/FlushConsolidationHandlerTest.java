@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.flush;
+
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FlushConsolidationHandlerTest {
+
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 3;
+
+    @Test
+    public void testFlushViaReadComplete() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        // Flushes are held back until the read loop completes.
+        channel.pipeline().fireChannelRead(1L);
+        assertEquals(0, flushCount.get());
+        channel.pipeline().fireChannelRead(2L);
+        assertEquals(0, flushCount.get());
+        assertNull(channel.readOutbound());
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertEquals(2L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushViaThresholdInReadLoop() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        for (long i = 0; i < EXPLICIT_FLUSH_AFTER_FLUSHES; i ++) {
+            assertEquals(0, flushCount.get());
+            channel.pipeline().fireChannelRead(i);
+        }
+        assertEquals(1, flushCount.get());
+        channel.pipeline().fireChannelRead(3L);
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(2, flushCount.get());
+        for (long i = 0; i < 4; i ++) {
+            assertEquals(i, channel.readOutbound());
+        }
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testImmediateFlushOutsideOfReadLoop() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        channel.writeAndFlush(1L);
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushViaScheduledTaskOutsideOfReadLoop() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, true);
+        channel.writeAndFlush(1L);
+        channel.writeAndFlush(2L);
+        assertEquals(0, flushCount.get());
+        assertNull(channel.readOutbound());
+        channel.runPendingTasks();
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertEquals(2L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushViaThresholdOutsideOfReadLoop() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, true);
+        for (long i = 0; i < EXPLICIT_FLUSH_AFTER_FLUSHES; i ++) {
+            assertEquals(0, flushCount.get());
+            channel.writeAndFlush(i);
+        }
+        assertEquals(1, flushCount.get());
+        // The scheduled flush was cancelled.
+        channel.runPendingTasks();
+        assertEquals(1, flushCount.get());
+        for (long i = 0; i < EXPLICIT_FLUSH_AFTER_FLUSHES; i ++) {
+            assertEquals(i, channel.readOutbound());
+        }
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushViaClose() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        channel.pipeline().fireChannelRead(1L);
+        assertEquals(0, flushCount.get());
+        assertNull(channel.readOutbound());
+        channel.close();
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushViaException() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        channel.pipeline().fireChannelRead(1L);
+        assertEquals(0, flushCount.get());
+        assertNull(channel.readOutbound());
+        channel.pipeline().fireExceptionCaught(new IllegalStateException());
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        try {
+            channel.finish();
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFlushViaRemoval() {
+        final AtomicInteger flushCount = new AtomicInteger();
+        EmbeddedChannel channel = newChannel(flushCount, false);
+        channel.pipeline().fireChannelRead(1L);
+        assertEquals(0, flushCount.get());
+        assertNull(channel.readOutbound());
+        channel.pipeline().remove(FlushConsolidationHandler.class);
+        assertEquals(1, flushCount.get());
+        assertEquals(1L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExplicitFlushAfterFlushes() {
+        new FlushConsolidationHandler(0);
+    }
+
+    private static EmbeddedChannel newChannel(final AtomicInteger flushCount, boolean consolidateWhenNoReadInProgress) {
+        return new EmbeddedChannel(
+                new ChannelHandlerAdapter() {
+                    @Override
+                    public void flush(ChannelHandlerContext ctx) throws Exception {
+                        flushCount.incrementAndGet();
+                        ctx.flush();
+                    }
+                },
+                new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, consolidateWhenNoReadInProgress),
+                new ChannelHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                        ctx.writeAndFlush(msg);
+                    }
+                });
+    }
+}
@@ -35,9 +35,13 @@ import org.junit.Test;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -265,6 +269,78 @@ public class LoggingHandlerTest {
         assertThat(channel.readInbound(), is(nullValue()));
     }
 
+    @Test
+    public void shouldSampleMessages() throws Exception {
+        ImmediateExecutor executor = new ImmediateExecutor();
+        EmbeddedChannel channel = new EmbeddedChannel(new LoggingHandler(
+                "LoggingHandlerTest", LogLevel.INFO, Integer.MAX_VALUE, Integer.MAX_VALUE, executor));
+        int events = executor.executed;
+        for (int i = 0; i < 100; i ++) {
+            channel.writeInbound("hello");
+            assertEquals("hello", channel.readInbound());
+        }
+        // Only the messages are sampled, other events are always logged.
+        assertEquals(events, executor.executed);
+        channel.pipeline().fireUserEventTriggered("event");
+        assertEquals(events + 1, executor.executed);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void shouldLogByteBufInExecutor() throws Exception {
+        ByteBuf msg = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+        appender.doAppend(matchesLog(".+RECEIVED: " + msg.readableBytes() + "B$"));
+        replay(appender);
+        final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+        EmbeddedChannel channel = new EmbeddedChannel(new LoggingHandler(
+                "LoggingHandlerTest", LogLevel.INFO, 4, 1, new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        tasks.add(command);
+                    }
+                }));
+        channel.writeInbound(msg);
+        ByteBuf handledMsg = channel.readInbound();
+        assertThat(msg, is(sameInstance(handledMsg)));
+
+        // The message is kept until it was logged.
+        assertFalse(handledMsg.release());
+        for (;;) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            task.run();
+        }
+        verify(appender);
+        assertEquals(0, msg.refCnt());
+    }
+
+    @Test
+    public void shouldCountDroppedEvents() throws Exception {
+        LoggingHandler handler = new LoggingHandler("LoggingHandlerTest", LogLevel.INFO, Integer.MAX_VALUE, 1,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        throw new RejectedExecutionException();
+                    }
+                });
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        long dropped = handler.droppedEvents();
+        assertTrue(dropped > 0);
+
+        ByteBuf msg = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+        channel.writeInbound(msg);
+        ByteBuf handledMsg = channel.readInbound();
+        assertTrue(handledMsg.release());
+        assertEquals(dropped + 1, handler.droppedEvents());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptZeroSamplingInterval() {
+        new LoggingHandler("LoggingHandlerTest", LogLevel.INFO, Integer.MAX_VALUE, 0, null);
+    }
+
     /**
      * Static helper method for matching Logback messages.
      *
@@ -309,6 +385,17 @@ public class LoggingHandlerTest {
         }
     }
 
+    private static final class ImmediateExecutor implements Executor {
+
+        int executed;
+
+        @Override
+        public void execute(Runnable command) {
+            executed ++;
+            command.run();
+        }
+    }
+
     private static final class DisconnectingEmbeddedChannel extends EmbeddedChannel {
 
         private DisconnectingEmbeddedChannel(ChannelHandler... handlers) {
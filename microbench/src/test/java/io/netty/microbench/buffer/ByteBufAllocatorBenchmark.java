@@ -31,8 +31,10 @@ import java.util.Random;
 public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
 
     private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true);
-    private static final ByteBufAllocator pooledAllocator =
-            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0, 0); // Disable thread-local cache
+    private static final PooledByteBufAllocator pooledAllocator =
+            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0, 0, 0, 0, false); // Disable thread-local cache
+    private static final PooledByteBufAllocator pooledFineAllocator =
+            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0, 0, 0, 0, true); // Fine-grained size classes
 
     private static final int MAX_LIVE_BUFFERS = 8192;
     private static final Random rand = new Random();
@@ -40,10 +42,12 @@ public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
     private static final ByteBuf[] unpooledDirectBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
     private static final ByteBuf[] pooledHeapBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
     private static final ByteBuf[] pooledDirectBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
+    private static final ByteBuf[] pooledFineHeapBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
+    private static final ByteBuf[] pooledFineDirectBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
     private static final ByteBuf[] defaultPooledHeapBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
     private static final ByteBuf[] defaultPooledDirectBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
 
-    @Param({ "00000", "00256", "01024", "04096", "16384", "65536" })
+    @Param({ "00000", "00256", "01024", "04096", "09216", "16384", "40960", "65536" })
     public int size;
 
     @Benchmark
@@ -86,6 +90,26 @@ public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
         pooledDirectBuffers[idx] = pooledAllocator.directBuffer(size);
     }
 
+    @Benchmark
+    public void pooledFineHeapAllocAndFree() {
+        int idx = rand.nextInt(pooledFineHeapBuffers.length);
+        ByteBuf oldBuf = pooledFineHeapBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledFineHeapBuffers[idx] = pooledFineAllocator.heapBuffer(size);
+    }
+
+    @Benchmark
+    public void pooledFineDirectAllocAndFree() {
+        int idx = rand.nextInt(pooledFineDirectBuffers.length);
+        ByteBuf oldBuf = pooledFineDirectBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledFineDirectBuffers[idx] = pooledFineAllocator.directBuffer(size);
+    }
+
     @Benchmark
     public void defaultPooledHeapAllocAndFree() {
         int idx = rand.nextInt(defaultPooledHeapBuffers.length);
@@ -16,6 +16,7 @@
 package io.netty.microbench.buffer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
@@ -43,6 +44,21 @@ public class
     private StringBuilder utf8Sequence;
     private String utf8;
 
+    // A line of 1023 bytes which is terminated by LF.
+    private ByteBuf directLine;
+    private ByteBuf heapLine;
+    // Copies of the lines above, which only differ in the last byte.
+    private ByteBuf directLineCopy;
+    private ByteBuf heapLineCopy;
+
+    // Same as ByteBufProcessor.FIND_LF, but not known to the buffer, so it is called for every byte.
+    private static final ByteBufProcessor FIND_LF_BYTE_BY_BYTE = new ByteBufProcessor() {
+        @Override
+        public boolean process(byte value) throws Exception {
+            return value != '\n';
+        }
+    };
+
     @Setup
     public void setup() {
         // Use buffer sizes that will also allow to write UTF-8 without grow the buffer
@@ -62,12 +78,27 @@ public class
         }
         utf8 = utf8Sequence.toString();
         asciiSequence = utf8Sequence;
+
+        directLine = Unpooled.directBuffer(1024);
+        heapLine = Unpooled.buffer(1024);
+        for (int i = 0; i < 1023; i++) {
+            directLine.writeByte('a');
+            heapLine.writeByte('a');
+        }
+        directLine.writeByte('\n');
+        heapLine.writeByte('\n');
+        directLineCopy = directLine.copy().setByte(1023, '\r');
+        heapLineCopy = heapLine.copy().setByte(1023, '\r');
     }
 
     @TearDown
     public void tearDown() {
         buffer.release();
         wrapped.release();
+        directLine.release();
+        heapLine.release();
+        directLineCopy.release();
+        heapLineCopy.release();
     }
 
     @Benchmark
@@ -165,4 +196,84 @@ public class
         wrapped.resetWriterIndex();
         ByteBufUtil.writeUtf8(wrapped, utf8Sequence);
     }
+
+    @Benchmark
+    public int indexOfDirect() {
+        return directLine.indexOf(directLine.readerIndex(), directLine.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfHeap() {
+        return heapLine.indexOf(heapLine.readerIndex(), heapLine.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfCrLfDirect() {
+        return directLine.indexOf(directLine.readerIndex(), directLine.writerIndex(), (byte) '\r', (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfCrLfHeap() {
+        return heapLine.indexOf(heapLine.readerIndex(), heapLine.writerIndex(), (byte) '\r', (byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteFindLfDirect() {
+        return directLine.forEachByte(ByteBufProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteFindLfHeap() {
+        return heapLine.forEachByte(ByteBufProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteByteByByteDirect() {
+        return directLine.forEachByte(FIND_LF_BYTE_BY_BYTE);
+    }
+
+    @Benchmark
+    public int forEachByteByteByByteHeap() {
+        return heapLine.forEachByte(FIND_LF_BYTE_BY_BYTE);
+    }
+
+    @Benchmark
+    public boolean equalsDirect() {
+        return ByteBufUtil.equals(directLine, directLineCopy);
+    }
+
+    @Benchmark
+    public boolean equalsHeap() {
+        return ByteBufUtil.equals(heapLine, heapLineCopy);
+    }
+
+    @Benchmark
+    public int compareDirect() {
+        return ByteBufUtil.compare(directLine, directLineCopy);
+    }
+
+    @Benchmark
+    public int compareHeap() {
+        return ByteBufUtil.compare(heapLine, heapLineCopy);
+    }
+
+    @Benchmark
+    public int hashCodeDirect() {
+        return ByteBufUtil.hashCode(directLine);
+    }
+
+    @Benchmark
+    public int hashCodeHeap() {
+        return ByteBufUtil.hashCode(heapLine);
+    }
+
+    @Benchmark
+    public int xxHash32Direct() {
+        return ByteBufUtil.xxHash32(directLine);
+    }
+
+    @Benchmark
+    public int xxHash32Heap() {
+        return ByteBufUtil.xxHash32(heapLine);
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a write through an {@link EmbeddedChannel}, including the allocation of the
+ * {@link io.netty.channel.ChannelPromise}.  Run with {@code -prof gc} to see the allocation rate per write.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+public class EmbeddedChannelWriteBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean idleStateHandler;
+
+    private EmbeddedChannel channel;
+    private ByteBuf msg;
+
+    @Setup
+    public void setup() {
+        ChannelHandler handler = idleStateHandler ? new IdleStateHandler(0, 60, 0) : new ChannelHandlerAdapter();
+        channel = new EmbeddedChannel(handler);
+        msg = Unpooled.unreleasableBuffer(Unpooled.directBuffer(16).writeLong(42));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finish();
+        msg.unwrap().release();
+    }
+
+    @Benchmark
+    public ChannelFuture writeAndFlush() {
+        ChannelFuture future = channel.writeAndFlush(msg);
+        channel.outboundMessages().clear();
+        return future;
+    }
+
+    @Benchmark
+    public ChannelFuture writeAndFlushVoidPromise() {
+        ChannelFuture future = channel.writeAndFlush(msg, channel.voidPromise());
+        channel.outboundMessages().clear();
+        return future;
+    }
+}
@@ -18,6 +18,7 @@ package io.netty.channel.epoll;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
@@ -31,6 +32,7 @@ import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
 import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.internal.OneTimeTask;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
@@ -45,9 +47,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
     private static final String EXPECTED_TYPES =
             " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
                     StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
+    // Do not shrink the gathering write limit because of partial writes that were small anyway.
+    private static final int MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD = 4096;
 
     private volatile boolean inputShutdown;
     private volatile boolean outputShutdown;
+    private volatile int maxBytesPerGatheringWrite = Integer.MAX_VALUE;
 
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         super(parent, fd, Native.EPOLLIN, true);
@@ -87,12 +92,37 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
             return writtenBytes == readableBytes;
         } else {
             ByteBuffer[] nioBuffers = buf.nioBuffers();
-            return writeBytesMultiple(in, nioBuffers, nioBuffers.length, readableBytes, writeSpinCount);
+            return writeBytesMultiple(in, nioBuffers, nioBuffers.length, readableBytes, writeSpinCount,
+                                      maxBytesPerGatheringWrite);
+        }
+    }
+
+    /**
+     * Set the maximal number of bytes to gather for a single {@code writev} call.  This is adjusted automatically
+     * based on the number of bytes the kernel accepted.
+     */
+    final void setMaxBytesPerGatheringWrite(int maxBytesPerGatheringWrite) {
+        this.maxBytesPerGatheringWrite = maxBytesPerGatheringWrite;
+    }
+
+    /**
+     * Learns how many bytes the kernel accepts per {@code writev} call, much like {@link AdaptiveRecvByteBufAllocator}
+     * does for reads: the limit grows if everything that was attempted was written and shrinks if less than half of
+     * it was written.
+     */
+    private void adjustMaxBytesPerGatheringWrite(long attempted, long written, int oldMaxBytesPerGatheringWrite) {
+        if (attempted == written) {
+            if (attempted << 1 > oldMaxBytesPerGatheringWrite) {
+                setMaxBytesPerGatheringWrite((int) Math.min(attempted << 1, Integer.MAX_VALUE));
+            }
+        } else if (attempted > MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD && written < attempted >>> 1) {
+            setMaxBytesPerGatheringWrite((int) (attempted >>> 1));
         }
     }
 
     private boolean writeBytesMultiple(
-            ChannelOutboundBuffer in, IovArray array, int writeSpinCount) throws IOException {
+            ChannelOutboundBuffer in, IovArray array, int writeSpinCount,
+            int maxBytesPerGatheringWrite) throws IOException {
 
         long expectedWrittenBytes = array.size();
         final long initialExpectedWrittenBytes = expectedWrittenBytes;
@@ -110,6 +140,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
             if (localWrittenBytes == 0) {
                 break;
             }
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
             expectedWrittenBytes -= localWrittenBytes;
 
             if (expectedWrittenBytes == 0) {
@@ -139,7 +170,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
 
     private boolean writeBytesMultiple(
             ChannelOutboundBuffer in, ByteBuffer[] nioBuffers,
-            int nioBufferCnt, long expectedWrittenBytes, int writeSpinCount) throws IOException {
+            int nioBufferCnt, long expectedWrittenBytes, int writeSpinCount,
+            int maxBytesPerGatheringWrite) throws IOException {
 
         assert expectedWrittenBytes != 0;
         final long initialExpectedWrittenBytes = expectedWrittenBytes;
@@ -152,6 +184,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
             if (localWrittenBytes == 0) {
                 break;
             }
+            adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
             expectedWrittenBytes -= localWrittenBytes;
 
             if (expectedWrittenBytes == 0) {
@@ -283,13 +316,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
     }
 
     private boolean doWriteMultiple(ChannelOutboundBuffer in, int writeSpinCount) throws Exception {
+        final int maxBytesPerGatheringWrite = this.maxBytesPerGatheringWrite;
         if (PlatformDependent.hasUnsafe()) {
             // this means we can cast to IovArray and write the IovArray directly.
-            IovArray array = IovArrayThreadLocal.get(in);
+            IovArray array = IovArrayThreadLocal.get(in, maxBytesPerGatheringWrite);
             int cnt = array.count();
             if (cnt >= 1) {
                 // TODO: Handle the case where cnt == 1 specially.
-                if (!writeBytesMultiple(in, array, writeSpinCount)) {
+                if (!writeBytesMultiple(in, array, writeSpinCount, maxBytesPerGatheringWrite)) {
                     // was not able to write everything so break here we will get notified later again once
                     // the network stack can handle more writes.
                     return false;
@@ -298,11 +332,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
                 in.removeBytes(0);
             }
         } else {
-            ByteBuffer[] buffers = in.nioBuffers();
+            ByteBuffer[] buffers = in.nioBuffers(maxBytesPerGatheringWrite);
             int cnt = in.nioBufferCount();
             if (cnt >= 1) {
                 // TODO: Handle the case where cnt == 1 specially.
-                if (!writeBytesMultiple(in, buffers, cnt, in.nioBufferSize(), writeSpinCount)) {
+                if (!writeBytesMultiple(in, buffers, cnt, in.nioBufferSize(), writeSpinCount,
+                                        maxBytesPerGatheringWrite)) {
                     // was not able to write everything so break here we will get notified later again once
                     // the network stack can handle more writes.
                     return false;
@@ -397,8 +432,6 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
         private ScheduledFuture<?> connectTimeoutFuture;
         private SocketAddress requestedRemoteAddress;
 
-        private RecvByteBufAllocator.Handle allocHandle;
-
         private void closeOnRead(ChannelPipeline pipeline) {
             inputShutdown = true;
             if (isOpen()) {
@@ -589,59 +622,51 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel {
 
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
-            RecvByteBufAllocator.Handle allocHandle = this.allocHandle;
-            if (allocHandle == null) {
-                this.allocHandle = allocHandle = config.getRecvByteBufAllocator().newHandle();
-            }
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config);
 
             ByteBuf byteBuf = null;
             boolean close = false;
             try {
-                // if edgeTriggered is used we need to read all messages as we are not notified again otherwise.
-                final int maxMessagesPerRead = edgeTriggered
-                        ? Integer.MAX_VALUE : config.getMaxMessagesPerRead();
-                int messages = 0;
-                int totalReadAmount = 0;
                 do {
                     // we use a direct buffer here as the native implementations only be able
                     // to handle direct buffers.
                     byteBuf = allocHandle.allocate(allocator);
-                    int writable = byteBuf.writableBytes();
-                    int localReadAmount = doReadBytes(byteBuf);
-                    if (localReadAmount <= 0) {
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    if (allocHandle.lastBytesRead() <= 0) {
                         // not was read release the buffer
                         byteBuf.release();
-                        close = localReadAmount < 0;
+                        byteBuf = null;
+                        close = allocHandle.lastBytesRead() < 0;
                         break;
                     }
+                    allocHandle.incMessagesRead(1);
                     readPending = false;
                     pipeline.fireChannelRead(byteBuf);
                     byteBuf = null;
 
-                    if (totalReadAmount >= Integer.MAX_VALUE - localReadAmount) {
-                        allocHandle.record(totalReadAmount);
-
-                        // Avoid overflow.
-                        totalReadAmount = localReadAmount;
-                    } else {
-                        totalReadAmount += localReadAmount;
-                    }
-
-                    if (localReadAmount < writable) {
-                        // Read less than what the buffer can hold,
-                        // which might mean we drained the recv buffer completely.
-                        break;
-                    }
-                    if (!edgeTriggered && !config.isAutoRead()) {
-                        // This is not using EPOLLET so we can stop reading
-                        // ASAP as we will get notified again later with
-                        // pending data
-                        break;
-                    }
-                } while (++ messages < maxMessagesPerRead);
+                    // Only continue if the buffer was filled completely, as otherwise we most likely drained the
+                    // receive buffer and the next read would return 0 or EAGAIN anyway.
+                } while (allocHandle.continueReading());
 
                 pipeline.fireChannelReadComplete();
-                allocHandle.record(totalReadAmount);
+                allocHandle.readComplete();
+
+                if (edgeTriggered && !close && allocHandle.lastBytesRead() > 0 &&
+                    allocHandle.lastBytesRead() == allocHandle.attemptedBytesRead()) {
+                    // The read loop was stopped although there may be more data to read.  Because of epoll ET we
+                    // will not get notified again until we read everything from the socket, so schedule another
+                    // read.  This way other channels of this EventLoop are served in the meantime.
+                    eventLoop().execute(new OneTimeTask() {
+                        @Override
+                        public void run() {
+                            if (isOpen()) {
+                                epollInReady();
+                            }
+                        }
+                    });
+                }
 
                 if (close) {
                     closeOnRead(pipeline);
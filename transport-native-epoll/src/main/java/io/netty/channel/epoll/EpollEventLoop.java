@@ -28,7 +28,6 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
@@ -138,12 +137,6 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         }
     }
 
-    @Override
-    protected Queue<Runnable> newTaskQueue() {
-        // This event loop never calls takeTask()
-        return PlatformDependent.newMpscQueue();
-    }
-
     /**
      * Returns the percentage of the desired amount of time spent for I/O in the event loop.
      */
@@ -202,7 +195,9 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                 // Non blocking just return what is ready directly without block
                 ready = Native.epollWait(epollFd, events, 0);
             } else {
+                final long waitStartTime = System.nanoTime();
                 ready = epollWait(oldWakenUp);
+                recordIoWaitTime(System.nanoTime() - waitStartTime);
 
                 // 'wakenUp.compareAndSet(false, true)' is always evaluated
                 // before calling 'selector.wakeup()' to reduce the wake-up
@@ -238,19 +233,17 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             }
 
             final int ioRatio = this.ioRatio;
+            final long ioStartTime = System.nanoTime();
+
+            if (ready > 0) {
+                processReady(events, ready);
+            }
+
+            final long ioTime = System.nanoTime() - ioStartTime;
+            recordIoProcessingTime(ioTime);
             if (ioRatio == 100) {
-                if (ready > 0) {
-                    processReady(events, ready);
-                }
                 runAllTasks();
             } else {
-                final long ioStartTime = System.nanoTime();
-
-                if (ready > 0) {
-                    processReady(events, ready);
-                }
-
-                final long ioTime = System.nanoTime() - ioStartTime;
                 runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
             }
             if (allowGrowing && ready == events.length()) {
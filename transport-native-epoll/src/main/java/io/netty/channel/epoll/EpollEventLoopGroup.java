@@ -19,6 +19,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.ExecutorServiceFactory;
 
 import java.util.concurrent.Executor;
@@ -116,6 +117,20 @@ public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
         super(nEventLoops, executorServiceFactory, maxEventsAtOnce);
     }
 
+    /**
+     * @param nEventLoops   the number of {@link EventLoop}s that will be used by this instance.
+     *                      If {@code executor} is {@code null} this number will also be the parallelism
+     *                      requested from the default executor. It is generally advised for the number
+     *                      of {@link EventLoop}s and the number of {@link Thread}s used by the
+     *                      {@code executor} to lie very close together.
+     * @param executor  the {@link Executor} to use, or {@code null} if the default should be used.
+     * @param chooserFactory  the {@link EventExecutorChooserFactory} which is used to choose the
+     *                        {@link EventLoop} returned by {@link #next()}.
+     */
+    public EpollEventLoopGroup(int nEventLoops, Executor executor, EventExecutorChooserFactory chooserFactory) {
+        super(nEventLoops, executor, chooserFactory, 0);
+    }
+
     /**
      * Sets the percentage of the desired amount of time spent for I/O in the child event loops.  The default value is
      * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
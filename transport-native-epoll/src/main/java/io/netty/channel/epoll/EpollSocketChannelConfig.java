@@ -41,6 +41,7 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (PlatformDependent.canEnableTcpNoDelayByDefault()) {
             setTcpNoDelay(true);
         }
+        calculateMaxBytesPerGatheringWrite();
     }
 
     @Override
@@ -219,6 +220,7 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
     @Override
     public EpollSocketChannelConfig setSendBufferSize(int sendBufferSize) {
         Native.setSendBufferSize(channel.fd().intValue(), sendBufferSize);
+        calculateMaxBytesPerGatheringWrite();
         return this;
     }
 
@@ -342,4 +344,12 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         super.setEpollMode(mode);
         return this;
     }
+
+    private void calculateMaxBytesPerGatheringWrite() {
+        // Start with twice the send buffer size and adapt from there.
+        int newSendBufferSize = getSendBufferSize() << 1;
+        if (newSendBufferSize > 0) {
+            channel.setMaxBytesPerGatheringWrite(newSendBufferSize);
+        }
+    }
 }
@@ -59,6 +59,7 @@ final class IovArray implements MessageProcessor {
     private final long memoryAddress;
     private int count;
     private long size;
+    private long maxBytes = Long.MAX_VALUE;
 
     IovArray() {
         memoryAddress = PlatformDependent.allocateMemory(CAPACITY);
@@ -69,6 +70,14 @@ final class IovArray implements MessageProcessor {
         size = 0;
     }
 
+    /**
+     * Set the maximal number of bytes the buffers added to this {@link IovArray} may have in total.  Buffers which
+     * would exceed the limit are not added, unless the array is still empty.
+     */
+    void maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
     /**
      * Try to add the given {@link ByteBuf}. Returns {@code true} on success,
      * {@code false} otherwise.
@@ -86,6 +95,10 @@ final class IovArray implements MessageProcessor {
             // fetching the next buffers.
             return true;
         }
+        if (maxBytes - len < size && count > 0) {
+            // The limit would be exceeded, so leave the buffer for the next writev call.
+            return false;
+        }
 
         final long addr = buf.memoryAddress();
         final int offset = buf.readerIndex();
@@ -125,6 +138,10 @@ final class IovArray implements MessageProcessor {
             // No more room!
             return false;
         }
+        if (maxBytes - buf.readableBytes() < size && count > 0) {
+            // The limit would be exceeded, so leave the buffer for the next writev call.
+            return false;
+        }
         for (int i = 0; i < buffers.length; i++) {
             ByteBuffer nioBuffer = buffers[i];
             int offset = nioBuffer.position();
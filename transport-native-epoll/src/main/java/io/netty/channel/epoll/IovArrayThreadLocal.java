@@ -38,11 +38,13 @@ final class IovArrayThreadLocal {
     };
 
     /**
-     * Returns a {@link IovArray} which is filled with the flushed messages of {@link ChannelOutboundBuffer}.
+     * Returns a {@link IovArray} which is filled with the flushed messages of {@link ChannelOutboundBuffer}, up to
+     * {@code maxBytes} in total.
      */
-    static IovArray get(ChannelOutboundBuffer buffer) throws Exception {
+    static IovArray get(ChannelOutboundBuffer buffer, long maxBytes) throws Exception {
         IovArray array = ARRAY.get();
         array.clear();
+        array.maxBytes(maxBytes);
         buffer.forEachFlushedMessage(array);
         return array;
     }
@@ -53,6 +55,7 @@ final class IovArrayThreadLocal {
     static IovArray get(CompositeByteBuf buf) throws Exception {
         IovArray array = ARRAY.get();
         array.clear();
+        array.maxBytes(Long.MAX_VALUE);
         array.add(buf);
         return array;
     }
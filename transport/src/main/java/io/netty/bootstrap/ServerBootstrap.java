@@ -77,6 +77,11 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
      * Set the {@link EventLoopGroup} for the parent (acceptor) and the child (client). These
      * {@link EventLoopGroup}'s are used to handle all the events and IO for {@link ServerChannel} and
      * {@link Channel}'s.
+     * <p>
+     * Each accepted {@link Channel} is registered to the event loop returned by {@link EventLoopGroup#next()} of the
+     * {@code childGroup}. Create the {@code childGroup} with the
+     * {@link io.netty.channel.RegisteredChannelsEventLoopChooserFactory} to spread the accepted {@link Channel}s by
+     * the actual load of the event loops instead of using round-robin.
      */
     public ServerBootstrap group(EventLoopGroup parentGroup, EventLoopGroup childGroup) {
         super.group(parentGroup);
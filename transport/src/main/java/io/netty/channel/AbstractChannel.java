@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.DefaultAttributeMap;
 import io.netty.util.ReferenceCountUtil;
@@ -422,15 +423,20 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
     protected abstract class AbstractUnsafe implements Unsafe {
 
         private ChannelOutboundBuffer outboundBuffer = new ChannelOutboundBuffer(AbstractChannel.this);
-        private RecvByteBufAllocator.Handle recvHandle;
+        private RecvByteBufAllocator.ExtendedHandle recvHandle;
         private boolean inFlush0;
         /** true if the channel has never been registered, false otherwise */
         private boolean neverRegistered = true;
 
         @Override
-        public RecvByteBufAllocator.Handle recvBufAllocHandle() {
+        public RecvByteBufAllocator.ExtendedHandle recvBufAllocHandle() {
             if (recvHandle == null) {
-                recvHandle = config().getRecvByteBufAllocator().newHandle();
+                RecvByteBufAllocator.Handle handle = config().getRecvByteBufAllocator().newHandle();
+                if (handle instanceof RecvByteBufAllocator.ExtendedHandle) {
+                    recvHandle = (RecvByteBufAllocator.ExtendedHandle) handle;
+                } else {
+                    recvHandle = new ExtendedHandleAdapter(handle);
+                }
             }
             return recvHandle;
         }
@@ -514,6 +520,10 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                 doRegister();
                 neverRegistered = false;
                 registered = true;
+                EventLoop loop = eventLoop.unwrap();
+                if (loop instanceof SingleThreadEventLoop) {
+                    ((SingleThreadEventLoop) loop).incrementRegisteredChannels();
+                }
                 eventLoop.acceptNewTasks();
                 safeSetSuccess(promise);
                 pipeline.fireChannelRegistered();
@@ -735,6 +745,10 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
             } finally {
                 if (registered) {
                     registered = false;
+                    EventLoop loop = eventLoop.unwrap();
+                    if (loop instanceof SingleThreadEventLoop) {
+                        ((SingleThreadEventLoop) loop).decrementRegisteredChannels();
+                    }
                     safeSetSuccess(promise);
                     pipeline.fireChannelUnregistered();
                 } else {
@@ -997,6 +1011,91 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
         return msg;
     }
 
+    /**
+     * Adapts a {@link RecvByteBufAllocator.Handle} of a {@link RecvByteBufAllocator} which does not implement
+     * {@link RecvByteBufAllocator.ExtendedHandle} yet.  The number of bytes read per read loop is not limited.
+     */
+    private static final class ExtendedHandleAdapter implements RecvByteBufAllocator.ExtendedHandle {
+        private final RecvByteBufAllocator.Handle handle;
+        private ChannelConfig config;
+        private int maxMessagesPerRead;
+        private int totalMessages;
+        private int totalBytesRead;
+        private int attemptedBytesRead;
+        private int lastBytesRead;
+
+        ExtendedHandleAdapter(RecvByteBufAllocator.Handle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            return handle.allocate(alloc);
+        }
+
+        @Override
+        public int guess() {
+            return handle.guess();
+        }
+
+        @Override
+        public void record(int actualReadBytes) {
+            handle.record(actualReadBytes);
+        }
+
+        @Override
+        public void reset(ChannelConfig config) {
+            this.config = config;
+            maxMessagesPerRead = config.getMaxMessagesPerRead();
+            totalMessages = totalBytesRead = 0;
+        }
+
+        @Override
+        public void incMessagesRead(int numMessages) {
+            totalMessages += numMessages;
+        }
+
+        @Override
+        public void attemptedBytesRead(int bytes) {
+            attemptedBytesRead = bytes;
+        }
+
+        @Override
+        public int attemptedBytesRead() {
+            return attemptedBytesRead;
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            lastBytesRead = bytes;
+            if (bytes > 0) {
+                if (totalBytesRead > Integer.MAX_VALUE - bytes) {
+                    // Avoid overflow.
+                    totalBytesRead = Integer.MAX_VALUE;
+                } else {
+                    totalBytesRead += bytes;
+                }
+            }
+        }
+
+        @Override
+        public int lastBytesRead() {
+            return lastBytesRead;
+        }
+
+        @Override
+        public boolean continueReading() {
+            return config.isAutoRead() &&
+                   lastBytesRead > 0 && lastBytesRead == attemptedBytesRead &&
+                   totalMessages < maxMessagesPerRead;
+        }
+
+        @Override
+        public void readComplete() {
+            handle.record(totalBytesRead);
+        }
+    }
+
     static final class CloseFuture extends DefaultChannelPromise {
 
         CloseFuture(AbstractChannel ch) {
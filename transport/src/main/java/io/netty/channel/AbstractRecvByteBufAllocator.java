@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Skeletal {@link RecvByteBufAllocator} implementation whose handles implement
+ * {@link RecvByteBufAllocator.ExtendedHandle}.  A read loop is continued only as long as the previous read filled the
+ * whole buffer, less than {@link ChannelConfig#getMaxMessagesPerRead()} messages and less than
+ * {@link #maxBytesPerRead()} bytes were read, so a single busy {@link Channel} can not starve the others which are
+ * served by the same {@link EventLoop}.
+ */
+public abstract class AbstractRecvByteBufAllocator implements RecvByteBufAllocator {
+
+    static final int DEFAULT_MAX_BYTES_PER_READ = 1024 * 1024;
+
+    private volatile int maxBytesPerRead = DEFAULT_MAX_BYTES_PER_READ;
+
+    /**
+     * Returns the maximum number of bytes to read per read loop.  The default is {@code 1048576}.
+     */
+    public int maxBytesPerRead() {
+        return maxBytesPerRead;
+    }
+
+    /**
+     * Sets the maximum number of bytes to read per read loop.  The read loop always reads at least once, so a
+     * single read may exceed this limit.
+     */
+    public AbstractRecvByteBufAllocator maxBytesPerRead(int maxBytesPerRead) {
+        if (maxBytesPerRead <= 0) {
+            throw new IllegalArgumentException("maxBytesPerRead: " + maxBytesPerRead + " (expected: > 0)");
+        }
+        this.maxBytesPerRead = maxBytesPerRead;
+        return this;
+    }
+
+    /**
+     * Skeletal {@link RecvByteBufAllocator.ExtendedHandle} implementation which keeps track of the read loop.
+     * Sub-classes only need to implement {@link #guess()} and {@link #record(int)}.
+     */
+    protected abstract class MaxMessageHandle implements ExtendedHandle {
+        private ChannelConfig config;
+        private int maxMessagesPerRead;
+        private int maxBytesPerRead;
+        private int totalMessages;
+        private int totalBytesRead;
+        private int attemptedBytesRead;
+        private int lastBytesRead;
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            return alloc.ioBuffer(guess());
+        }
+
+        @Override
+        public void reset(ChannelConfig config) {
+            this.config = config;
+            maxMessagesPerRead = config.getMaxMessagesPerRead();
+            maxBytesPerRead = maxBytesPerRead();
+            totalMessages = totalBytesRead = 0;
+        }
+
+        @Override
+        public final void incMessagesRead(int numMessages) {
+            totalMessages += numMessages;
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            lastBytesRead = bytes;
+            if (bytes > 0) {
+                if (totalBytesRead > Integer.MAX_VALUE - bytes) {
+                    // Avoid overflow.
+                    totalBytesRead = Integer.MAX_VALUE;
+                } else {
+                    totalBytesRead += bytes;
+                }
+            }
+        }
+
+        @Override
+        public final int lastBytesRead() {
+            return lastBytesRead;
+        }
+
+        @Override
+        public void attemptedBytesRead(int bytes) {
+            attemptedBytesRead = bytes;
+        }
+
+        @Override
+        public final int attemptedBytesRead() {
+            return attemptedBytesRead;
+        }
+
+        @Override
+        public boolean continueReading() {
+            return config.isAutoRead() &&
+                   lastBytesRead > 0 && lastBytesRead == attemptedBytesRead &&
+                   totalMessages < maxMessagesPerRead &&
+                   totalBytesRead < maxBytesPerRead;
+        }
+
+        @Override
+        public void readComplete() {
+            record(totalBytesRead);
+        }
+
+        /**
+         * Returns the number of bytes read in the current read loop.
+         */
+        protected final int totalBytesRead() {
+            return totalBytesRead;
+        }
+    }
+}
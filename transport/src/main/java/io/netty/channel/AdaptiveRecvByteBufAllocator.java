@@ -15,9 +15,6 @@
  */
 package io.netty.channel;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufAllocator;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,7 +28,7 @@ import java.util.List;
  * amount of the allocated buffer two times consecutively.  Otherwise, it keeps
  * returning the same prediction.
  */
-public class AdaptiveRecvByteBufAllocator implements RecvByteBufAllocator {
+public class AdaptiveRecvByteBufAllocator extends AbstractRecvByteBufAllocator {
 
     static final int DEFAULT_MINIMUM = 64;
     static final int DEFAULT_INITIAL = 1024;
@@ -84,7 +81,7 @@ public class AdaptiveRecvByteBufAllocator implements RecvByteBufAllocator {
         }
     }
 
-    private static final class HandleImpl implements Handle {
+    private final class HandleImpl extends MaxMessageHandle {
         private final int minIndex;
         private final int maxIndex;
         private int index;
@@ -100,8 +97,13 @@ public class AdaptiveRecvByteBufAllocator implements RecvByteBufAllocator {
         }
 
         @Override
-        public ByteBuf allocate(ByteBufAllocator alloc) {
-            return alloc.ioBuffer(nextReceiveBufferSize);
+        public void lastBytesRead(int bytes) {
+            // If we read as much as we asked for we should grow the buffer right away, instead of waiting until the
+            // whole read loop completed, so the remaining reads of this loop need less system calls.
+            if (bytes == attemptedBytesRead()) {
+                record(bytes);
+            }
+            super.lastBytesRead(bytes);
         }
 
         @Override
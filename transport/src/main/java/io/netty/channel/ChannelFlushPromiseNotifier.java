@@ -60,13 +60,7 @@ public final class ChannelFlushPromiseNotifier {
             throw new IllegalArgumentException("pendingDataSize must be >= 0 but was " + pendingDataSize);
         }
         long checkpoint = writeCounter + pendingDataSize;
-        if (promise instanceof FlushCheckpoint) {
-            FlushCheckpoint cp = (FlushCheckpoint) promise;
-            cp.flushCheckpoint(checkpoint);
-            flushCheckpoints.add(cp);
-        } else {
-            flushCheckpoints.add(new DefaultFlushCheckpoint(checkpoint, promise));
-        }
+        flushCheckpoints.add(new DefaultFlushCheckpoint(checkpoint, promise));
         return this;
     }
     /**
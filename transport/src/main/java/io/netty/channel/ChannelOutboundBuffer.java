@@ -86,6 +86,14 @@ public final class ChannelOutboundBuffer {
 
     private volatile Runnable fireChannelWritabilityChangedTask;
 
+    private volatile OutboundMemoryBudget memoryBudget;
+    // The writability of the memoryBudget this buffer was notified about last.
+    private volatile boolean memoryBudgetWritable = true;
+    // The number of bytes which are accounted to the memoryBudget.  Only accessed by the EventLoop.
+    private long budgetedSize;
+    // Set by close(), so the buffer is not attached to a budget anymore.  Only accessed by the EventLoop.
+    private boolean closed;
+
     static {
         AtomicIntegerFieldUpdater<ChannelOutboundBuffer> unwritableUpdater =
                 PlatformDependent.newAtomicIntegerFieldUpdater(ChannelOutboundBuffer.class, "unwritable");
@@ -127,6 +135,7 @@ public final class ChannelOutboundBuffer {
         // increment pending bytes after adding message to the unflushed arrays.
         // See https://github.com/netty/netty/issues/1619
         incrementPendingOutboundBytes(size, false);
+        incrementMemoryBudget(size);
     }
 
     /**
@@ -150,6 +159,7 @@ public final class ChannelOutboundBuffer {
                     // Was cancelled so make sure we free up memory and notify about the freed bytes
                     int pending = entry.cancel();
                     decrementPendingOutboundBytes(pending, false);
+                    decrementMemoryBudget(pending);
                 }
                 entry = entry.next;
             } while (entry != null);
@@ -197,6 +207,24 @@ public final class ChannelOutboundBuffer {
         }
     }
 
+    // The budget only counts the bytes in this buffer, which are only added and removed by the EventLoop, so the
+    // number of bytes to move is known exactly when the budget is replaced.
+    private void incrementMemoryBudget(long size) {
+        OutboundMemoryBudget budget = memoryBudget;
+        if (budget != null && size != 0) {
+            budgetedSize += size;
+            budget.increment(this, size);
+        }
+    }
+
+    private void decrementMemoryBudget(long size) {
+        OutboundMemoryBudget budget = memoryBudget;
+        if (budget != null && size != 0) {
+            budgetedSize -= size;
+            budget.decrement(this, size);
+        }
+    }
+
     private static long total(Object msg) {
         if (msg instanceof ByteBuf) {
             return ((ByteBuf) msg).readableBytes();
@@ -258,6 +286,7 @@ public final class ChannelOutboundBuffer {
             ReferenceCountUtil.safeRelease(msg);
             safeSuccess(promise);
             decrementPendingOutboundBytes(size, false);
+            decrementMemoryBudget(size);
         }
 
         // recycle the entry
@@ -289,6 +318,7 @@ public final class ChannelOutboundBuffer {
 
             safeFail(promise, cause);
             decrementPendingOutboundBytes(size, false);
+            decrementMemoryBudget(size);
         }
 
         // recycle the entry
@@ -353,6 +383,20 @@ public final class ChannelOutboundBuffer {
      * </p>
      */
     public ByteBuffer[] nioBuffers() {
+        return nioBuffers(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns an array of direct NIO buffers if the currently pending messages are made of {@link ByteBuf} only,
+     * like {@link #nioBuffers()} does, but stops gathering once the total number of readable bytes would exceed
+     * {@code maxBytes}.  The first buffer is always included, even if it is larger than {@code maxBytes}.
+     *
+     * @param maxBytes the maximal number of bytes to gather for a single gathering write
+     */
+    public ByteBuffer[] nioBuffers(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + " (expected: > 0)");
+        }
         long nioBufferSize = 0;
         int nioBufferCount = 0;
         final InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.get();
@@ -365,6 +409,10 @@ public final class ChannelOutboundBuffer {
                 final int readableBytes = buf.writerIndex() - readerIndex;
 
                 if (readableBytes > 0) {
+                    if (maxBytes - readableBytes < nioBufferSize && nioBufferCount != 0) {
+                        // The limit would be exceeded by this buffer, so leave it for the next gathering write.
+                        break;
+                    }
                     nioBufferSize += readableBytes;
                     int count = entry.count;
                     if (count == -1) {
@@ -452,12 +500,69 @@ public final class ChannelOutboundBuffer {
 
     /**
      * Returns {@code true} if and only if {@linkplain #totalPendingWriteBytes() the total number of pending bytes} did
-     * not exceed the write watermark of the {@link Channel} and
+     * not exceed the write watermark of the {@link Channel},
      * no {@linkplain #setUserDefinedWritability(int, boolean) user-defined writability flag} has been set to
-     * {@code false}.
+     * {@code false} and the {@link OutboundMemoryBudget} of the {@link Channel}, if any, is writable.
      */
     public boolean isWritable() {
-        return unwritable == 0;
+        return unwritable == 0 && isMemoryBudgetWritable();
+    }
+
+    private boolean isMemoryBudgetWritable() {
+        OutboundMemoryBudget budget = memoryBudget;
+        // Become unwritable as soon as the budget is exceeded, but writable again only once notified, so the
+        // Channels of the budget do not all start writing at the same time.
+        return budget == null || memoryBudgetWritable && budget.isWritable();
+    }
+
+    /**
+     * Sets the {@link OutboundMemoryBudget} this buffer is accounted to, or {@code null} to use none.  The bytes which
+     * are pending already are moved from the previous budget to the new one.  Must be called by the
+     * {@link EventLoop} of the {@link Channel}, and does nothing once the buffer was closed.
+     */
+    void memoryBudget(OutboundMemoryBudget budget) {
+        OutboundMemoryBudget oldBudget = memoryBudget;
+        if (closed || oldBudget == budget) {
+            return;
+        }
+        // Detach first, so the old budget does not notify this buffer anymore.
+        if (oldBudget != null) {
+            oldBudget.detach(this);
+            oldBudget.decrement(this, budgetedSize);
+            budgetedSize = 0;
+        }
+        memoryBudgetWritable = true;
+        memoryBudget = budget;
+        if (budget != null) {
+            budget.attach(this);
+            Entry e = flushedEntry != null ? flushedEntry : unflushedEntry;
+            while (e != null) {
+                // Cancelled entries have a pendingSize of 0.
+                incrementMemoryBudget(e.pendingSize);
+                e = e.next;
+            }
+        }
+    }
+
+    /**
+     * Called by the {@link OutboundMemoryBudget} to notify this buffer about the writability of the budget.  The event
+     * is only triggered if the writability of this buffer itself does not prevent writes anyway.
+     *
+     * @return {@code true} if the writability differs from the one this buffer was notified about last
+     */
+    boolean memoryBudgetWritabilityChanged(boolean writable) {
+        if (memoryBudgetWritable == writable) {
+            return false;
+        }
+        memoryBudgetWritable = writable;
+        if (unwritable == 0 && channel.isRegistered()) {
+            fireChannelWritabilityChanged(true);
+        }
+        return true;
+    }
+
+    Channel channel() {
+        return channel;
     }
 
     /**
@@ -485,7 +590,7 @@ public final class ChannelOutboundBuffer {
             final int oldValue = unwritable;
             final int newValue = oldValue & mask;
             if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
-                if (oldValue != 0 && newValue == 0) {
+                if (oldValue != 0 && newValue == 0 && isMemoryBudgetWritable()) {
                     fireChannelWritabilityChanged(true);
                 }
                 break;
@@ -499,7 +604,7 @@ public final class ChannelOutboundBuffer {
             final int oldValue = unwritable;
             final int newValue = oldValue | mask;
             if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
-                if (oldValue == 0 && newValue != 0) {
+                if (oldValue == 0 && newValue != 0 && isMemoryBudgetWritable()) {
                     fireChannelWritabilityChanged(true);
                 }
                 break;
@@ -519,7 +624,7 @@ public final class ChannelOutboundBuffer {
             final int oldValue = unwritable;
             final int newValue = oldValue & ~1;
             if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
-                if (oldValue != 0 && newValue == 0) {
+                if (oldValue != 0 && newValue == 0 && isMemoryBudgetWritable()) {
                     fireChannelWritabilityChanged(invokeLater);
                 }
                 break;
@@ -532,7 +637,7 @@ public final class ChannelOutboundBuffer {
             final int oldValue = unwritable;
             final int newValue = oldValue | 1;
             if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
-                if (oldValue == 0 && newValue != 0) {
+                if (oldValue == 0 && newValue != 0 && isMemoryBudgetWritable()) {
                     fireChannelWritabilityChanged(invokeLater);
                 }
                 break;
@@ -616,6 +721,16 @@ public final class ChannelOutboundBuffer {
             throw new IllegalStateException("close() must be invoked after all flushed writes are handled.");
         }
 
+        // Stop being notified by the budget, as this Channel will not become writable again, and give the memory
+        // back, which may make the other Channels of the budget writable again.
+        closed = true;
+        final OutboundMemoryBudget budget = memoryBudget;
+        if (budget != null) {
+            budget.detach(this);
+            budget.decrement(this, budgetedSize);
+            budgetedSize = 0;
+        }
+
         // Release all unflushed messages.
         try {
             Entry e = unflushedEntry;
@@ -694,7 +809,7 @@ public final class ChannelOutboundBuffer {
     }
 
     static final class Entry {
-        private static final Recycler<Entry> RECYCLER = new Recycler<Entry>() {
+        private static final Recycler<Entry> RECYCLER = new Recycler<Entry>("outboundBuffer") {
             @Override
             protected Entry newObject(Handle handle) {
                 return new Entry(handle);
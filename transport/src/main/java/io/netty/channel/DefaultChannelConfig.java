@@ -18,6 +18,7 @@ package io.netty.channel;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.nio.AbstractNioByteChannel;
 import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.util.internal.OneTimeTask;
 import io.netty.util.internal.PlatformDependent;
 
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
@@ -53,6 +54,7 @@ public class DefaultChannelConfig implements ChannelConfig {
     private volatile ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
     private volatile RecvByteBufAllocator rcvBufAllocator = DEFAULT_RCVBUF_ALLOCATOR;
     private volatile MessageSizeEstimator msgSizeEstimator = DEFAULT_MSG_SIZE_ESTIMATOR;
+    private volatile OutboundMemoryBudget outboundMemoryBudget;
 
     private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT;
     private volatile int maxMessagesPerRead;
@@ -84,7 +86,7 @@ public class DefaultChannelConfig implements ChannelConfig {
                 null,
                 CONNECT_TIMEOUT_MILLIS, MAX_MESSAGES_PER_READ, WRITE_SPIN_COUNT,
                 ALLOCATOR, AUTO_READ, RCVBUF_ALLOCATOR, WRITE_BUFFER_HIGH_WATER_MARK,
-                WRITE_BUFFER_LOW_WATER_MARK, MESSAGE_SIZE_ESTIMATOR);
+                WRITE_BUFFER_LOW_WATER_MARK, MESSAGE_SIZE_ESTIMATOR, OUTBOUND_MEMORY_BUDGET);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -149,6 +151,9 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == MESSAGE_SIZE_ESTIMATOR) {
             return (T) getMessageSizeEstimator();
         }
+        if (option == OUTBOUND_MEMORY_BUDGET) {
+            return (T) outboundMemoryBudget;
+        }
         return null;
     }
 
@@ -174,6 +179,8 @@ public class DefaultChannelConfig implements ChannelConfig {
             setWriteBufferLowWaterMark((Integer) value);
         } else if (option == MESSAGE_SIZE_ESTIMATOR) {
             setMessageSizeEstimator((MessageSizeEstimator) value);
+        } else if (option == OUTBOUND_MEMORY_BUDGET) {
+            setOutboundMemoryBudget((OutboundMemoryBudget) value);
         } else {
             return false;
         }
@@ -337,4 +344,27 @@ public class DefaultChannelConfig implements ChannelConfig {
         msgSizeEstimator = estimator;
         return this;
     }
+
+    private void setOutboundMemoryBudget(OutboundMemoryBudget budget) {
+        outboundMemoryBudget = budget;
+        // The ChannelOutboundBuffer is only modified by the EventLoop, so swap the budget there as well.
+        if (channel.isRegistered() && !channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(new OneTimeTask() {
+                @Override
+                public void run() {
+                    applyOutboundMemoryBudget();
+                }
+            });
+        } else {
+            applyOutboundMemoryBudget();
+        }
+    }
+
+    private void applyOutboundMemoryBudget() {
+        // The buffer is null once the Channel was closed.
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        if (buffer != null) {
+            buffer.memoryBudget(outboundMemoryBudget);
+        }
+    }
 }
@@ -406,7 +406,7 @@ public class DefaultChannelHandlerInvoker implements ChannelHandlerInvoker {
         private ChannelPromise promise;
         private int size;
 
-        private static final Recycler<WriteTask> RECYCLER = new Recycler<WriteTask>() {
+        private static final Recycler<WriteTask> RECYCLER = new Recycler<WriteTask>("writeTask") {
             @Override
             protected WriteTask newObject(Handle<WriteTask> handle) {
                 return new WriteTask(handle);
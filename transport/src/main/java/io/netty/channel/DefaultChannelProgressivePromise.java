@@ -15,7 +15,6 @@
  */
 package io.netty.channel;
 
-import io.netty.channel.ChannelFlushPromiseNotifier.FlushCheckpoint;
 import io.netty.util.concurrent.DefaultProgressivePromise;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
@@ -27,10 +26,9 @@ import io.netty.util.concurrent.GenericFutureListener;
  * constructor explicitly.
  */
 public class DefaultChannelProgressivePromise
-        extends DefaultProgressivePromise<Void> implements ChannelProgressivePromise, FlushCheckpoint {
+        extends DefaultProgressivePromise<Void> implements ChannelProgressivePromise {
 
     private final Channel channel;
-    private long checkpoint;
 
     /**
      * Creates a new instance.
@@ -145,21 +143,6 @@ public class DefaultChannelProgressivePromise
         return this;
     }
 
-    @Override
-    public long flushCheckpoint() {
-        return checkpoint;
-    }
-
-    @Override
-    public void flushCheckpoint(long checkpoint) {
-        this.checkpoint = checkpoint;
-    }
-
-    @Override
-    public ChannelProgressivePromise promise() {
-        return this;
-    }
-
     @Override
     protected void checkDeadLock() {
         if (channel().isRegistered()) {
@@ -15,7 +15,6 @@
  */
 package io.netty.channel;
 
-import io.netty.channel.ChannelFlushPromiseNotifier.FlushCheckpoint;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
@@ -25,10 +24,9 @@ import io.netty.util.concurrent.GenericFutureListener;
  * The default {@link ChannelPromise} implementation.  It is recommended to use {@link Channel#newPromise()} to create
  * a new {@link ChannelPromise} rather than calling the constructor explicitly.
  */
-public class DefaultChannelPromise extends DefaultPromise<Void> implements ChannelPromise, FlushCheckpoint {
+public class DefaultChannelPromise extends DefaultPromise<Void> implements ChannelPromise {
 
     private final Channel channel;
-    private long checkpoint;
 
     /**
      * Creates a new instance.
@@ -136,21 +134,6 @@ public class DefaultChannelPromise extends DefaultPromise<Void> implements Chann
         return this;
     }
 
-    @Override
-    public long flushCheckpoint() {
-        return checkpoint;
-    }
-
-    @Override
-    public void flushCheckpoint(long checkpoint) {
-        this.checkpoint = checkpoint;
-    }
-
-    @Override
-    public ChannelPromise promise() {
-        return this;
-    }
-
     @Override
     protected void checkDeadLock() {
         if (channel().isRegistered()) {
@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.ExecutorServiceFactory;
 
 import java.util.concurrent.Executor;
@@ -70,6 +71,20 @@ public class DefaultEventLoopGroup extends MultithreadEventLoopGroup {
         super(nEventLoops, executorServiceFactory);
     }
 
+    /**
+     * @param nEventLoops       the number of {@link EventLoop}s that will be used by this instance.
+     *                          If {@code executor} is {@code null} this number will also be the parallelism
+     *                          requested from the default executor. It is generally advised for the number
+     *                          of {@link EventLoop}s and the number of {@link Thread}s used by the
+     *                          {@code executor} to lie very close together.
+     * @param executor          the {@link Executor} to use, or {@code null} if the default should be used.
+     * @param chooserFactory    the {@link EventExecutorChooserFactory} which is used to choose the
+     *                          {@link EventLoop} returned by {@link #next()}.
+     */
+    public DefaultEventLoopGroup(int nEventLoops, Executor executor, EventExecutorChooserFactory chooserFactory) {
+        super(nEventLoops, executor, chooserFactory);
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         return new DefaultEventLoop(this, executor);
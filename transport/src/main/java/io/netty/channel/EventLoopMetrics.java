@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutorMetrics;
+
+/**
+ * Runtime metrics of a {@link SingleThreadEventLoop}, which adds the time spent for I/O to the
+ * {@link EventExecutorMetrics}. Transports that do not record the time spent for I/O report {@code 0}.
+ */
+public interface EventLoopMetrics extends EventExecutorMetrics {
+
+    /**
+     * Return the number of {@link Channel}s that are currently registered to the event loop.
+     */
+    int registeredChannels();
+
+    /**
+     * Return the total time spent in waiting for I/O events, for example in {@code Selector.select()} or
+     * {@code epoll_wait}.
+     */
+    long ioWaitTime();
+
+    /**
+     * Return the total time spent in processing the I/O events.
+     */
+    long ioProcessingTime();
+
+    /**
+     * Return the number of times the selector was rebuilt to work around the epoll 100% CPU bug.
+     */
+    long selectorRebuilds();
+}
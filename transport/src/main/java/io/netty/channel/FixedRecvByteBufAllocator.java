@@ -15,28 +15,13 @@
  */
 package io.netty.channel;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufAllocator;
-
-
 /**
  * The {@link RecvByteBufAllocator} that always yields the same buffer
  * size prediction.  This predictor ignores the feed back from the I/O thread.
  */
-public class FixedRecvByteBufAllocator implements RecvByteBufAllocator {
-
-    private static final class HandleImpl implements Handle {
-
-        private final int bufferSize;
+public class FixedRecvByteBufAllocator extends AbstractRecvByteBufAllocator {
 
-        HandleImpl(int bufferSize) {
-            this.bufferSize = bufferSize;
-        }
-
-        @Override
-        public ByteBuf allocate(ByteBufAllocator alloc) {
-            return alloc.ioBuffer(bufferSize);
-        }
+    private final class HandleImpl extends MaxMessageHandle {
 
         @Override
         public int guess() {
@@ -47,7 +32,7 @@ public class FixedRecvByteBufAllocator implements RecvByteBufAllocator {
         public void record(int actualReadBytes) { }
     }
 
-    private final Handle handle;
+    private final int bufferSize;
 
     /**
      * Creates a new predictor that always returns the same prediction of
@@ -59,11 +44,12 @@ public class FixedRecvByteBufAllocator implements RecvByteBufAllocator {
                     "bufferSize must greater than 0: " + bufferSize);
         }
 
-        handle = new HandleImpl(bufferSize);
+        this.bufferSize = bufferSize;
     }
 
     @Override
     public Handle newHandle() {
-        return handle;
+        // The handle keeps track of the read loop, so it can not be shared between channels.
+        return new HandleImpl();
     }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget for the outbound memory of several {@link Channel}s.  The number of pending outbound bytes of all
+ * {@link Channel}s that use the same budget is added up, and all of them become unwritable once the sum reaches the
+ * high water mark.  They become writable again once the sum dropped to the low water mark.  Every {@link Channel} of
+ * the budget is notified via {@link ChannelHandler#channelWritabilityChanged(ChannelHandlerContext)}, not only the
+ * one whose write exceeded it.
+ * <p>
+ * Like the per-{@link Channel} water marks the budget is advisory: writes are never rejected, so it only bounds the
+ * outbound memory if the handlers stop writing while {@link Channel#isWritable()} returns {@code false}.  Only the
+ * bytes in the {@link ChannelOutboundBuffer}s are counted, not the ones which are still on their way to the
+ * {@link EventLoop} of their {@link Channel}.
+ * <p>
+ * The {@link Channel}s are notified in batches of {@value #NOTIFY_BATCH_SIZE} by a single task, which runs on the
+ * {@link EventLoop} of the {@link Channel} whose write changed the writability of the budget.  A {@link Channel}
+ * which was not notified yet reports the old writability, except that every {@link Channel} is unwritable as soon as
+ * the high water mark was reached, so not all of them start writing again at once when the budget recovers.
+ * <p>
+ * A {@link Channel} uses a budget once {@link ChannelOption#OUTBOUND_MEMORY_BUDGET} was set, which should be done
+ * before it writes anything, for example via {@link io.netty.bootstrap.Bootstrap#option(ChannelOption, Object)} or
+ * {@link io.netty.bootstrap.ServerBootstrap#childOption(ChannelOption, Object)}.  To share one budget between the
+ * {@link Channel}s of an {@link EventLoop} or a {@link io.netty.channel.group.ChannelGroup}, set the same instance on
+ * each of them, for example from a {@link ChannelInitializer}.  Sharing a budget between different {@link EventLoop}s
+ * is supported but all of them will update the same counter.
+ * <p>
+ * The per-{@link Channel} {@link ChannelOption#WRITE_BUFFER_HIGH_WATER_MARK} and
+ * {@link ChannelOption#WRITE_BUFFER_LOW_WATER_MARK} are still honoured, a {@link Channel} is only writable if both
+ * its own and the shared limits allow it.
+ */
+public final class OutboundMemoryBudget {
+
+    /**
+     * The maximal number of {@link Channel}s which are notified about a change of the writability before the
+     * notification task yields to the other tasks of its {@link EventLoop}.
+     */
+    static final int NOTIFY_BATCH_SIZE = 64;
+
+    private static final AtomicIntegerFieldUpdater<OutboundMemoryBudget> EXCEEDED_UPDATER;
+
+    static {
+        AtomicIntegerFieldUpdater<OutboundMemoryBudget> exceededUpdater =
+                PlatformDependent.newAtomicIntegerFieldUpdater(OutboundMemoryBudget.class, "exceeded");
+        if (exceededUpdater == null) {
+            exceededUpdater = AtomicIntegerFieldUpdater.newUpdater(OutboundMemoryBudget.class, "exceeded");
+        }
+        EXCEEDED_UPDATER = exceededUpdater;
+    }
+
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final ConcurrentMap<ChannelOutboundBuffer, Boolean> buffers = PlatformDependent.newConcurrentHashMap();
+    private final Notifier notifier = new Notifier();
+
+    @SuppressWarnings("UnusedDeclaration")
+    private volatile int exceeded;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param highWaterMark the number of pending outbound bytes of all {@link Channel}s at which they become
+     *                      unwritable
+     * @param lowWaterMark  the number of pending outbound bytes of all {@link Channel}s at which they become
+     *                      writable again
+     */
+    public OutboundMemoryBudget(long highWaterMark, long lowWaterMark) {
+        if (highWaterMark <= 0) {
+            throw new IllegalArgumentException("highWaterMark: " + highWaterMark + " (expected: > 0)");
+        }
+        if (lowWaterMark < 0 || lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException(
+                    "lowWaterMark: " + lowWaterMark + " (expected: 0 <= lowWaterMark <= highWaterMark)");
+        }
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * Returns the number of pending outbound bytes of all {@link Channel}s at which they become unwritable.
+     */
+    public long highWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Returns the number of pending outbound bytes of all {@link Channel}s at which they become writable again.
+     */
+    public long lowWaterMark() {
+        return lowWaterMark;
+    }
+
+    /**
+     * Returns the number of pending outbound bytes of all {@link Channel}s which use this budget.
+     */
+    public long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which use this budget.
+     */
+    public int channels() {
+        return buffers.size();
+    }
+
+    /**
+     * Returns {@code false} if the high water mark was reached and the low water mark was not reached again since.
+     */
+    public boolean isWritable() {
+        return exceeded == 0;
+    }
+
+    void attach(ChannelOutboundBuffer buffer) {
+        buffers.put(buffer, Boolean.TRUE);
+        if (!isWritable()) {
+            // The buffer was not notified when the budget became unwritable.
+            notifier.start(buffer);
+        }
+    }
+
+    void detach(ChannelOutboundBuffer buffer) {
+        buffers.remove(buffer);
+    }
+
+    void increment(ChannelOutboundBuffer buffer, long size) {
+        pendingBytes.addAndGet(size);
+        update(buffer);
+    }
+
+    void decrement(ChannelOutboundBuffer buffer, long size) {
+        pendingBytes.addAndGet(-size);
+        update(buffer);
+    }
+
+    private void update(ChannelOutboundBuffer buffer) {
+        // Loop until the state matches the number of pending bytes, as another thread may have changed the number
+        // while we flipped the state.
+        for (;;) {
+            final int oldValue = exceeded;
+            final long pending = pendingBytes.get();
+            final int newValue;
+            if (oldValue == 0 && pending >= highWaterMark) {
+                newValue = 1;
+            } else if (oldValue != 0 && pending <= lowWaterMark) {
+                newValue = 0;
+            } else {
+                break;
+            }
+            if (EXCEEDED_UPDATER.compareAndSet(this, oldValue, newValue)) {
+                // Notify every Channel, not only the one which caused the change, but not from within its write.
+                notifier.start(buffer);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundMemoryBudget(pendingBytes: " + pendingBytes() + ", highWaterMark: " + highWaterMark +
+               ", lowWaterMark: " + lowWaterMark + ", channels: " + channels() + ')';
+    }
+
+    /**
+     * Notifies all {@link ChannelOutboundBuffer}s of the budget whose writability differs from the one of the budget,
+     * at most {@link #NOTIFY_BATCH_SIZE} per run.  At most one run is scheduled at a time.
+     */
+    private final class Notifier implements Runnable {
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Incremented for every change which requires another pass over all buffers.
+        private final AtomicInteger requests = new AtomicInteger();
+
+        // Only accessed by the scheduled run.
+        private EventExecutor executor;
+        private Iterator<ChannelOutboundBuffer> iterator;
+        private int passRequests;
+
+        void start(ChannelOutboundBuffer buffer) {
+            requests.incrementAndGet();
+            if (scheduled.compareAndSet(false, true)) {
+                Channel channel = buffer.channel();
+                executor = channel.isRegistered() ? channel.eventLoop() : GlobalEventExecutor.INSTANCE;
+                execute();
+            }
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The EventLoop is shutting down, so finish on another thread.
+                executor = GlobalEventExecutor.INSTANCE;
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (iterator == null) {
+                passRequests = requests.get();
+                iterator = buffers.keySet().iterator();
+            }
+            int notified = 0;
+            while (iterator.hasNext()) {
+                if (iterator.next().memoryBudgetWritabilityChanged(isWritable()) && ++notified == NOTIFY_BATCH_SIZE) {
+                    // Let the other tasks of the EventLoop run before notifying the next batch.
+                    execute();
+                    return;
+                }
+            }
+            iterator = null;
+            scheduled.set(false);
+
+            // Start another pass if the writability changed or a buffer was attached during this one.
+            if (requests.get() != passRequests && scheduled.compareAndSet(false, true)) {
+                execute();
+            }
+        }
+    }
+}
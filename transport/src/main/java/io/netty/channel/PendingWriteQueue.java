@@ -258,7 +258,7 @@ public final class PendingWriteQueue {
      * Holds all meta-data and construct the linked-list structure.
      */
     static final class PendingWrite {
-        private static final Recycler<PendingWrite> RECYCLER = new Recycler<PendingWrite>() {
+        private static final Recycler<PendingWrite> RECYCLER = new Recycler<PendingWrite>("pendingWrite") {
             @Override
             protected PendingWrite newObject(Handle handle) {
                 return new PendingWrite(handle);
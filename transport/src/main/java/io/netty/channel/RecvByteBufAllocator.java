@@ -51,4 +51,70 @@ public interface RecvByteBufAllocator {
          */
         void record(int actualReadBytes);
     }
+
+    /**
+     * A {@link Handle} which also keeps track of a whole read loop, so it can decide whether the loop should
+     * continue or not.  A transport uses it like this:
+     * <pre>
+     * allocHandle.reset(config);
+     * do {
+     *     ByteBuf buf = allocHandle.allocate(alloc);
+     *     allocHandle.attemptedBytesRead(buf.writableBytes());
+     *     allocHandle.lastBytesRead(doReadBytes(buf));
+     *     if (allocHandle.lastBytesRead() &lt;= 0) {
+     *         buf.release();
+     *         break;
+     *     }
+     *     allocHandle.incMessagesRead(1);
+     *     pipeline.fireChannelRead(buf);
+     * } while (allocHandle.continueReading());
+     * allocHandle.readComplete();
+     * </pre>
+     */
+    interface ExtendedHandle extends Handle {
+        /**
+         * Reset any counters that have accumulated and recommend how many messages/bytes should be read for the
+         * next read loop.
+         *
+         * @param config the {@link ChannelConfig} of the {@link Channel} which is about to start a read loop
+         */
+        void reset(ChannelConfig config);
+
+        /**
+         * Increment the number of messages that have been read for the current read loop.
+         */
+        void incMessagesRead(int numMessages);
+
+        /**
+         * Set the number of bytes the last read operation attempted to read.
+         */
+        void attemptedBytesRead(int bytes);
+
+        /**
+         * Get the number of bytes the last read operation attempted to read.
+         */
+        int attemptedBytesRead();
+
+        /**
+         * Set the number of bytes that have been read for the last read operation.
+         */
+        void lastBytesRead(int bytes);
+
+        /**
+         * Get the number of bytes that have been read for the last read operation.
+         */
+        int lastBytesRead();
+
+        /**
+         * Returns {@code true} if the read loop should continue.  This is only the case if the last read filled
+         * the whole buffer, as a shorter read means the socket was most likely drained and another read would only
+         * return {@code 0}.
+         */
+        boolean continueReading();
+
+        /**
+         * Called once the read loop completed.
+         */
+        void readComplete();
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.LoadAwareEventExecutorChooserFactory;
+
+/**
+ * {@link LoadAwareEventExecutorChooserFactory} which uses the number of {@link Channel}s registered to a
+ * {@link SingleThreadEventLoop} as its load. Use it for the child {@link EventLoopGroup} of a
+ * {@link io.netty.bootstrap.ServerBootstrap} to spread long-lived accepted {@link Channel}s evenly, even if many of
+ * the {@link Channel}s that were assigned in round-robin fashion before are closed already. Pending tasks are used
+ * to break ties.
+ */
+public final class RegisteredChannelsEventLoopChooserFactory extends LoadAwareEventExecutorChooserFactory {
+
+    public static final RegisteredChannelsEventLoopChooserFactory INSTANCE =
+            new RegisteredChannelsEventLoopChooserFactory();
+
+    private RegisteredChannelsEventLoopChooserFactory() { }
+
+    @Override
+    protected long load(EventExecutor executor) {
+        if (executor instanceof SingleThreadEventLoop) {
+            EventLoopMetrics metrics = ((SingleThreadEventLoop) executor).metrics();
+            // Channels dominate the load, pending tasks only break ties. Both are plain counters, so this is cheap
+            // and does not touch the task queue.
+            return ((long) metrics.registeredChannels() << 32) + metrics.pendingTasks();
+        }
+        return 0;
+    }
+}
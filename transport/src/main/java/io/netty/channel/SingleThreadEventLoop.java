@@ -16,6 +16,7 @@
 package io.netty.channel;
 
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
 
 import java.util.concurrent.Executor;
@@ -29,6 +30,13 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
 
     private final ChannelHandlerInvoker invoker = new DefaultChannelHandlerInvoker(this);
 
+    // Metrics, only updated by the event loop thread.
+    private volatile long ioWaitTime;
+    private volatile long ioProcessingTime;
+    private volatile long selectorRebuilds;
+    private volatile int registeredChannels;
+    private final EventLoopMetrics metrics = new Metrics();
+
     protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor, boolean addTaskWakesUp) {
         super(parent, executor, addTaskWakesUp);
     }
@@ -76,8 +84,102 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return this;
     }
 
+    @Override
+    public EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds the given time to the time spent in waiting for I/O events.
+     * This method MUST be called only when {@link #inEventLoop()} is {@code true}.
+     */
+    protected final void recordIoWaitTime(long nanos) {
+        ioWaitTime += nanos;
+    }
+
+    /**
+     * Adds the given time to the time spent in processing I/O events.
+     * This method MUST be called only when {@link #inEventLoop()} is {@code true}.
+     */
+    protected final void recordIoProcessingTime(long nanos) {
+        ioProcessingTime += nanos;
+    }
+
+    /**
+     * Called by {@link AbstractChannel} once a {@link Channel} was registered to this event loop.
+     */
+    void incrementRegisteredChannels() {
+        assert inEventLoop();
+        registeredChannels ++;
+    }
+
+    /**
+     * Called by {@link AbstractChannel} once a {@link Channel} was deregistered from this event loop.
+     */
+    void decrementRegisteredChannels() {
+        assert inEventLoop();
+        registeredChannels --;
+    }
+
+    /**
+     * Increments the number of selector rebuilds.
+     * This method MUST be called only when {@link #inEventLoop()} is {@code true}.
+     */
+    protected final void recordSelectorRebuild() {
+        selectorRebuilds ++;
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
     interface NonWakeupRunnable extends Runnable { }
+
+    private final class Metrics implements EventLoopMetrics {
+        private final EventExecutorMetrics executorMetrics = SingleThreadEventLoop.super.metrics();
+
+        @Override
+        public int pendingTasks() {
+            return executorMetrics.pendingTasks();
+        }
+
+        @Override
+        public int scheduledTasks() {
+            return executorMetrics.scheduledTasks();
+        }
+
+        @Override
+        public long completedTasks() {
+            return executorMetrics.completedTasks();
+        }
+
+        @Override
+        public long taskRunTime() {
+            return executorMetrics.taskRunTime();
+        }
+
+        @Override
+        public long[] taskQueueLatencyHistogram() {
+            return executorMetrics.taskQueueLatencyHistogram();
+        }
+
+        @Override
+        public int registeredChannels() {
+            return registeredChannels;
+        }
+
+        @Override
+        public long ioWaitTime() {
+            return ioWaitTime;
+        }
+
+        @Override
+        public long ioProcessingTime() {
+            return ioProcessingTime;
+        }
+
+        @Override
+        public long selectorRebuilds() {
+            return selectorRebuilds;
+        }
+    }
 }
@@ -54,7 +54,7 @@ final class ThreadLocalPooledDirectByteBuf {
     static final class ThreadLocalUnsafeDirectByteBuf extends UnpooledUnsafeDirectByteBuf {
 
         private static final Recycler<ThreadLocalUnsafeDirectByteBuf> RECYCLER =
-                new Recycler<ThreadLocalUnsafeDirectByteBuf>() {
+                new Recycler<ThreadLocalUnsafeDirectByteBuf>("threadLocalDirectByteBuf") {
             @Override
             protected ThreadLocalUnsafeDirectByteBuf newObject(Handle<ThreadLocalUnsafeDirectByteBuf> handle) {
                 return new ThreadLocalUnsafeDirectByteBuf(handle);
@@ -87,7 +87,8 @@ final class ThreadLocalPooledDirectByteBuf {
 
     static final class ThreadLocalDirectByteBuf extends UnpooledDirectByteBuf {
 
-        private static final Recycler<ThreadLocalDirectByteBuf> RECYCLER = new Recycler<ThreadLocalDirectByteBuf>() {
+        private static final Recycler<ThreadLocalDirectByteBuf> RECYCLER =
+                new Recycler<ThreadLocalDirectByteBuf>("threadLocalDirectByteBuf") {
             @Override
             protected ThreadLocalDirectByteBuf newObject(Handle<ThreadLocalDirectByteBuf> handle) {
                 return new ThreadLocalDirectByteBuf(handle);
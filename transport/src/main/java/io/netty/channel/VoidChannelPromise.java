@@ -23,6 +23,21 @@ import java.util.concurrent.TimeUnit;
 
 final class VoidChannelPromise extends AbstractFuture<Void> implements ChannelPromise {
 
+    /**
+     * Added to the promise returned by {@link #unvoid()}, so a failure is fired through the pipeline like this promise
+     * would have done.  It is notified like any other listener, so in the order the listeners were added and by the
+     * event loop.  It is stateless, so one instance is shared instead of allocating one per {@link #unvoid()}, which
+     * matters as handlers like {@code IdleStateHandler} call it for every write.
+     */
+    private static final ChannelFutureListener FIRE_EXCEPTION_ON_FAILURE = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                fireException0(future.channel(), future.cause());
+            }
+        }
+    };
+
     private final Channel channel;
     private final boolean fireException;
 
@@ -197,14 +212,7 @@ final class VoidChannelPromise extends AbstractFuture<Void> implements ChannelPr
     public ChannelPromise unvoid() {
         ChannelPromise promise = new DefaultChannelPromise(channel);
         if (fireException) {
-            promise.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (!future.isSuccess()) {
-                        fireException(future.cause());
-                    }
-                }
-            });
+            promise.addListener(FIRE_EXCEPTION_ON_FAILURE);
         }
         return promise;
     }
@@ -215,11 +223,17 @@ final class VoidChannelPromise extends AbstractFuture<Void> implements ChannelPr
     }
 
     private void fireException(Throwable cause) {
+        if (fireException) {
+            fireException0(channel, cause);
+        }
+    }
+
+    private static void fireException0(Channel channel, Throwable cause) {
         // Only fire the exception if the channel is open and registered
         // if not the pipeline is not setup and so it would hit the tail
         // of the pipeline.
         // See https://github.com/netty/netty/issues/1517
-        if (fireException && channel.isRegistered()) {
+        if (channel.isRegistered()) {
             channel.pipeline().fireExceptionCaught(cause);
         }
     }
@@ -100,26 +100,25 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
 
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
-            final int maxMessagesPerRead = config.getMaxMessagesPerRead();
-            RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config);
 
             ByteBuf byteBuf = null;
-            int messages = 0;
             boolean close = false;
             try {
-                int totalReadAmount = 0;
                 boolean readPendingReset = false;
                 do {
                     byteBuf = allocHandle.allocate(allocator);
-                    int writable = byteBuf.writableBytes();
-                    int localReadAmount = doReadBytes(byteBuf);
-                    if (localReadAmount <= 0) {
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    if (allocHandle.lastBytesRead() <= 0) {
                         // not was read release the buffer
                         byteBuf.release();
                         byteBuf = null;
-                        close = localReadAmount < 0;
+                        close = allocHandle.lastBytesRead() < 0;
                         break;
                     }
+                    allocHandle.incMessagesRead(1);
                     if (!readPendingReset) {
                         readPendingReset = true;
                         setReadPending(false);
@@ -127,28 +126,12 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
                     pipeline.fireChannelRead(byteBuf);
                     byteBuf = null;
 
-                    if (totalReadAmount >= Integer.MAX_VALUE - localReadAmount) {
-                        // Avoid overflow.
-                        totalReadAmount = Integer.MAX_VALUE;
-                        break;
-                    }
-
-                    totalReadAmount += localReadAmount;
-
-                    // stop reading
-                    if (!config.isAutoRead()) {
-                        break;
-                    }
-
-                    if (localReadAmount < writable) {
-                        // Read less than what the buffer can hold,
-                        // which might mean we drained the recv buffer completely.
-                        break;
-                    }
-                } while (++ messages < maxMessagesPerRead);
+                    // Only continue if the buffer was filled completely, as otherwise we most likely drained the
+                    // receive buffer and the next read would return 0 anyway.
+                } while (allocHandle.continueReading());
 
                 pipeline.fireChannelReadComplete();
-                allocHandle.record(totalReadAmount);
+                allocHandle.readComplete();
 
                 if (close) {
                     closeOnRead(pipeline);
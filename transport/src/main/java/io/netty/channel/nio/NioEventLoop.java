@@ -36,7 +36,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -160,12 +159,6 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         return selector;
     }
 
-    @Override
-    protected Queue<Runnable> newTaskQueue() {
-        // This event loop never calls takeTask()
-        return PlatformDependent.newMpscQueue();
-    }
-
     /**
      * Registers an arbitrary {@link SelectableChannel}, not necessarily created by Netty, to the {@link Selector}
      * of this event loop.  Once the specified {@link SelectableChannel} is registered, the specified {@code task} will
@@ -284,6 +277,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
 
         selector = newSelector;
+        recordSelectorRebuild();
 
         try {
             // time to close the old selector as everything else is registered to the new one
@@ -304,7 +298,9 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             if (hasTasks()) {
                 selectNow();
             } else {
+                final long selectStartTime = System.nanoTime();
                 select(oldWakenUp);
+                recordIoWaitTime(System.nanoTime() - selectStartTime);
 
                 // 'wakenUp.compareAndSet(false, true)' is always evaluated
                 // before calling 'selector.wakeup()' to reduce the wake-up
@@ -342,15 +338,15 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             cancelledKeys = 0;
             needsToSelectAgain = false;
             final int ioRatio = this.ioRatio;
+            final long ioStartTime = System.nanoTime();
+
+            processSelectedKeys();
+
+            final long ioTime = System.nanoTime() - ioStartTime;
+            recordIoProcessingTime(ioTime);
             if (ioRatio == 100) {
-                processSelectedKeys();
                 runAllTasks();
             } else {
-                final long ioStartTime = System.nanoTime();
-
-                processSelectedKeys();
-
-                final long ioTime = System.nanoTime() - ioStartTime;
                 runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
             }
 
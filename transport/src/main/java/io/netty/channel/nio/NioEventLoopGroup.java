@@ -19,6 +19,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.ExecutorServiceFactory;
 
 import java.nio.channels.Selector;
@@ -115,6 +116,22 @@ public class NioEventLoopGroup extends MultithreadEventLoopGroup {
         super(nEventLoops, executorServiceFactory, selectorProvider);
     }
 
+    /**
+     * @param nEventLoops   the number of {@link EventLoop}s that will be used by this instance.
+     *                      If {@code executor} is {@code null} this number will also be the parallelism
+     *                      requested from the default executor. It is generally advised for the number
+     *                      of {@link EventLoop}s and the number of {@link Thread}s used by the
+     *                      {@code executor} to lie very close together.
+     * @param executor  the {@link Executor} to use, or {@code null} if the default should be used.
+     * @param chooserFactory  the {@link EventExecutorChooserFactory} which is used to choose the
+     *                        {@link EventLoop} returned by {@link #next()}.
+     * @param selectorProvider  the {@link SelectorProvider} to use. This value must not be {@code null}.
+     */
+    public NioEventLoopGroup(int nEventLoops, Executor executor, EventExecutorChooserFactory chooserFactory,
+                             final SelectorProvider selectorProvider) {
+        super(nEventLoops, executor, chooserFactory, selectorProvider);
+    }
+
     /**
      * Sets the percentage of the desired amount of time spent for I/O in the child event loops.  The default value is
      * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
@@ -16,6 +16,7 @@
 package io.netty.channel.socket.nio;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelFuture;
@@ -48,6 +49,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
 
     private static final ChannelMetadata METADATA = new ChannelMetadata(false);
     private static final SelectorProvider DEFAULT_SELECTOR_PROVIDER = SelectorProvider.provider();
+    // Do not shrink the gathering write limit because of partial writes that were small anyway.
+    private static final int MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD = 4096;
 
     private static SocketChannel newSocket(SelectorProvider provider) {
         try {
@@ -63,7 +66,7 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         }
     }
 
-    private final SocketChannelConfig config;
+    private final NioSocketChannelConfig config;
 
     /**
      * Create a new instance
@@ -266,7 +269,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
             boolean setOpWrite = false;
 
             // Ensure the pending writes are made of ByteBufs only.
-            ByteBuffer[] nioBuffers = in.nioBuffers();
+            int maxBytesPerGatheringWrite = config.getMaxBytesPerGatheringWrite();
+            ByteBuffer[] nioBuffers = in.nioBuffers(maxBytesPerGatheringWrite);
             int nioBufferCnt = in.nioBufferCount();
             long expectedWrittenBytes = in.nioBufferSize();
             SocketChannel ch = javaChannel();
@@ -287,6 +291,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
                             setOpWrite = true;
                             break;
                         }
+                        adjustMaxBytesPerGatheringWrite(
+                                expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
                         expectedWrittenBytes -= localWrittenBytes;
                         writtenBytes += localWrittenBytes;
                         if (expectedWrittenBytes == 0) {
@@ -302,6 +308,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
                             setOpWrite = true;
                             break;
                         }
+                        adjustMaxBytesPerGatheringWrite(
+                                expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
                         expectedWrittenBytes -= localWrittenBytes;
                         writtenBytes += localWrittenBytes;
                         if (expectedWrittenBytes == 0) {
@@ -323,6 +331,21 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         }
     }
 
+    /**
+     * Learns how many bytes the kernel accepts per write, much like {@link AdaptiveRecvByteBufAllocator} does for
+     * reads: the limit grows if everything that was attempted was written and shrinks if less than half of it was
+     * written.  {@code SO_SNDBUF} is only the starting point, as some OSes tune it dynamically.
+     */
+    private void adjustMaxBytesPerGatheringWrite(long attempted, long written, int oldMaxBytesPerGatheringWrite) {
+        if (attempted == written) {
+            if (attempted << 1 > oldMaxBytesPerGatheringWrite) {
+                config.setMaxBytesPerGatheringWrite((int) Math.min(attempted << 1, Integer.MAX_VALUE));
+            }
+        } else if (attempted > MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD && written < attempted >>> 1) {
+            config.setMaxBytesPerGatheringWrite((int) (attempted >>> 1));
+        }
+    }
+
     @Override
     protected AbstractNioUnsafe newUnsafe() {
         return new NioSocketChannelUnsafe();
@@ -339,8 +362,34 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
     }
 
     private final class NioSocketChannelConfig  extends DefaultSocketChannelConfig {
+        private volatile int maxBytesPerGatheringWrite = Integer.MAX_VALUE;
+
         private NioSocketChannelConfig(NioSocketChannel channel, Socket javaSocket) {
             super(channel, javaSocket);
+            calculateMaxBytesPerGatheringWrite();
+        }
+
+        @Override
+        public NioSocketChannelConfig setSendBufferSize(int sendBufferSize) {
+            super.setSendBufferSize(sendBufferSize);
+            calculateMaxBytesPerGatheringWrite();
+            return this;
+        }
+
+        void setMaxBytesPerGatheringWrite(int maxBytesPerGatheringWrite) {
+            this.maxBytesPerGatheringWrite = maxBytesPerGatheringWrite;
+        }
+
+        int getMaxBytesPerGatheringWrite() {
+            return maxBytesPerGatheringWrite;
+        }
+
+        private void calculateMaxBytesPerGatheringWrite() {
+            // Start with twice the send buffer size and adapt from there.
+            int newSendBufferSize = getSendBufferSize() << 1;
+            if (newSendBufferSize > 0) {
+                setMaxBytesPerGatheringWrite(newSendBufferSize);
+            }
         }
 
         @Override
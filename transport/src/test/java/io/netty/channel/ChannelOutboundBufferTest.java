@@ -90,6 +90,34 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testNioBuffersMaxBytes() {
+        TestChannel channel = new TestChannel();
+
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        ByteBuf buf = directBuffer().writeBytes("buf1".getBytes(CharsetUtil.US_ASCII));
+        for (int i = 0; i < 64; i++) {
+            buffer.addMessage(buf.copy(), buf.readableBytes(), channel.voidPromise());
+        }
+        buffer.addFlush();
+
+        buffer.nioBuffers(10);
+        assertEquals(2, buffer.nioBufferCount());
+        assertEquals(8, buffer.nioBufferSize());
+
+        // The first buffer is always gathered, even if it exceeds the limit.
+        buffer.nioBuffers(1);
+        assertEquals(1, buffer.nioBufferCount());
+        assertEquals(4, buffer.nioBufferSize());
+
+        buffer.nioBuffers(Long.MAX_VALUE);
+        assertEquals(64, buffer.nioBufferCount());
+        assertEquals(256, buffer.nioBufferSize());
+        release(buffer);
+        buf.release();
+    }
+
     @Test
     public void testNioBuffersExpand2() {
         TestChannel channel = new TestChannel();
@@ -351,6 +379,160 @@ public class ChannelOutboundBufferTest {
         safeClose(ch);
     }
 
+    @Test
+    public void testMemoryBudgetWritability() {
+        final StringBuilder buf1 = new StringBuilder();
+        final StringBuilder buf2 = new StringBuilder();
+        EmbeddedChannel ch1 = new EmbeddedChannel(new WritabilityRecorder(buf1));
+        EmbeddedChannel ch2 = new EmbeddedChannel(new WritabilityRecorder(buf2));
+
+        OutboundMemoryBudget budget = new OutboundMemoryBudget(256, 128);
+        ch1.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        ch2.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        assertThat(ch1.config().getOption(ChannelOption.OUTBOUND_MEMORY_BUDGET), is(sameInstance(budget)));
+        assertThat(ch1.config().getOptions().get(ChannelOption.OUTBOUND_MEMORY_BUDGET), is((Object) budget));
+        assertThat(budget.channels(), is(2));
+
+        // Ensure neither channel becomes unwritable while the sum stays below the high watermark.
+        ch1.write(buffer().writeZero(160));
+        ch1.runPendingTasks();
+        assertThat(budget.pendingBytes(), is(160L));
+        assertThat(ch1.isWritable(), is(true));
+        assertThat(buf1.toString(), is(""));
+
+        // Ensure exceeding the high watermark makes both channels unwritable, not only the one that wrote.
+        // The channels are notified by the event loop of the one that wrote.
+        ch2.write(buffer().writeZero(96));
+        assertThat(ch1.isWritable(), is(false));
+        ch2.runPendingTasks();
+        ch1.runPendingTasks();
+        assertThat(budget.isWritable(), is(false));
+        assertThat(buf1.toString(), is("false "));
+        assertThat(buf2.toString(), is("false "));
+
+        // Ensure staying above the low watermark keeps both channels unwritable.
+        ch2.flush();
+        ch1.runPendingTasks();
+        assertThat(budget.pendingBytes(), is(160L));
+        assertThat(ch1.isWritable(), is(false));
+        assertThat(ch2.isWritable(), is(false));
+
+        // Ensure going down to the low watermark makes both channels writable again.
+        ch1.flush();
+        ch1.runPendingTasks();
+        ch2.runPendingTasks();
+        assertThat(budget.pendingBytes(), is(0L));
+        assertThat(buf1.toString(), is("false true "));
+        assertThat(buf2.toString(), is("false true "));
+
+        safeClose(ch1);
+        safeClose(ch2);
+        assertThat(budget.channels(), is(0));
+    }
+
+    @Test
+    public void testMemoryBudgetReleasedOnClose() {
+        final StringBuilder buf = new StringBuilder();
+        EmbeddedChannel ch1 = new EmbeddedChannel(new ChannelHandlerAdapter());
+        EmbeddedChannel ch2 = new EmbeddedChannel(new WritabilityRecorder(buf));
+
+        OutboundMemoryBudget budget = new OutboundMemoryBudget(256, 128);
+        ch2.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        ch1.write(buffer().writeZero(256));
+
+        // Ensure the bytes which are pending already are accounted once the budget is set.
+        ch1.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        ch1.runPendingTasks();
+        ch2.runPendingTasks();
+        assertThat(budget.pendingBytes(), is(256L));
+        assertThat(buf.toString(), is("false "));
+
+        // Ensure closing the channel gives back its unflushed bytes.
+        ch1.close();
+        ch1.runPendingTasks();
+        ch2.runPendingTasks();
+        assertThat(budget.pendingBytes(), is(0L));
+        assertThat(budget.channels(), is(1));
+        assertThat(buf.toString(), is("false true "));
+
+        // Ensure a closed channel is not attached to a budget anymore.
+        ch1.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, new OutboundMemoryBudget(256, 128));
+        ch1.config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        assertThat(budget.channels(), is(1));
+
+        safeClose(ch2);
+    }
+
+    @Test
+    public void testMemoryBudgetNotifiesInBatches() {
+        OutboundMemoryBudget budget = new OutboundMemoryBudget(1, 0);
+        EmbeddedChannel[] channels = new EmbeddedChannel[OutboundMemoryBudget.NOTIFY_BATCH_SIZE * 2 + 1];
+        for (int i = 0; i < channels.length; i ++) {
+            channels[i] = new EmbeddedChannel(new ChannelHandlerAdapter());
+            channels[i].config().setOption(ChannelOption.OUTBOUND_MEMORY_BUDGET, budget);
+        }
+        final EmbeddedChannel ch = channels[0];
+        ch.write(buffer().writeZero(1));
+        runPendingTasks(channels);
+        assertThat(writableChannels(channels), is(0));
+
+        // Ensure the channels become writable again in batches, so the event loop can run other tasks in between.
+        ch.flush();
+        assertThat(budget.isWritable(), is(true));
+        assertThat(writableChannels(channels), is(0));
+        final int[] writableAfterFirstBatch = new int[1];
+        final EmbeddedChannel[] allChannels = channels;
+        ch.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                writableAfterFirstBatch[0] = writableChannels(allChannels);
+            }
+        });
+        runPendingTasks(channels);
+        assertThat(writableAfterFirstBatch[0], is(OutboundMemoryBudget.NOTIFY_BATCH_SIZE));
+        assertThat(writableChannels(channels), is(channels.length));
+
+        for (EmbeddedChannel c: channels) {
+            safeClose(c);
+        }
+        assertThat(budget.channels(), is(0));
+    }
+
+    private static void runPendingTasks(EmbeddedChannel... channels) {
+        for (EmbeddedChannel ch: channels) {
+            ch.runPendingTasks();
+        }
+    }
+
+    private static int writableChannels(EmbeddedChannel... channels) {
+        int writable = 0;
+        for (EmbeddedChannel ch: channels) {
+            if (ch.isWritable()) {
+                writable ++;
+            }
+        }
+        return writable;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMemoryBudgetInvalidWaterMarks() {
+        new OutboundMemoryBudget(128, 256);
+    }
+
+    private static final class WritabilityRecorder extends ChannelHandlerAdapter {
+        private final StringBuilder buf;
+
+        WritabilityRecorder(StringBuilder buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            buf.append(ctx.channel().isWritable());
+            buf.append(' ');
+        }
+    }
+
     private static void safeClose(EmbeddedChannel ch) {
         ch.finish();
         for (;;) {
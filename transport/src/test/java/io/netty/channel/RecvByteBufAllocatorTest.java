@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecvByteBufAllocatorTest {
+
+    @Test
+    public void testContinueReadingOnlyIfBufferWasFilled() {
+        ChannelConfig config = newConfig();
+        ExtendedHandle handle = (ExtendedHandle) new FixedRecvByteBufAllocator(1024).newHandle();
+        handle.reset(config);
+
+        read(handle, 1024);
+        assertTrue(handle.continueReading());
+        read(handle, 1000);
+        assertFalse(handle.continueReading());
+    }
+
+    @Test
+    public void testMaxMessagesPerRead() {
+        ChannelConfig config = newConfig().setMaxMessagesPerRead(2);
+        ExtendedHandle handle = (ExtendedHandle) new FixedRecvByteBufAllocator(1024).newHandle();
+        handle.reset(config);
+
+        read(handle, 1024);
+        assertTrue(handle.continueReading());
+        read(handle, 1024);
+        assertFalse(handle.continueReading());
+
+        // The counters start from scratch for the next read loop.
+        handle.reset(config);
+        read(handle, 1024);
+        assertTrue(handle.continueReading());
+    }
+
+    @Test
+    public void testMaxBytesPerRead() {
+        ChannelConfig config = newConfig();
+        ExtendedHandle handle = (ExtendedHandle) new FixedRecvByteBufAllocator(1024).maxBytesPerRead(2048).newHandle();
+        handle.reset(config);
+
+        read(handle, 1024);
+        assertTrue(handle.continueReading());
+        read(handle, 1024);
+        assertFalse(handle.continueReading());
+    }
+
+    @Test
+    public void testStopReadingIfAutoReadIsDisabled() {
+        ChannelConfig config = newConfig();
+        ExtendedHandle handle = (ExtendedHandle) new FixedRecvByteBufAllocator(1024).newHandle();
+        handle.reset(config);
+
+        config.setAutoRead(false);
+        read(handle, 1024);
+        assertFalse(handle.continueReading());
+    }
+
+    @Test
+    public void testAdaptiveGrowsWithinReadLoop() {
+        ChannelConfig config = newConfig();
+        ExtendedHandle handle = (ExtendedHandle) new AdaptiveRecvByteBufAllocator(64, 1024, 65536).newHandle();
+        handle.reset(config);
+
+        assertEquals(1024, handle.guess());
+        read(handle, 1024);
+        // The buffer was filled, so the next read of the same loop uses a bigger one.
+        assertTrue(handle.guess() > 1024);
+        handle.readComplete();
+    }
+
+    private static ChannelConfig newConfig() {
+        return new EmbeddedChannel().config().setMaxMessagesPerRead(16);
+    }
+
+    private static void read(ExtendedHandle handle, int bytes) {
+        ByteBuf buf = handle.allocate(UnpooledByteBufAllocator.DEFAULT);
+        try {
+            handle.attemptedBytesRead(buf.writableBytes());
+            handle.lastBytesRead(bytes);
+            handle.incMessagesRead(1);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.local.LocalChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+public class RegisteredChannelsEventLoopChooserFactoryTest {
+
+    private DefaultEventLoopGroup group;
+
+    @Before
+    public void setUp() {
+        group = new DefaultEventLoopGroup(2, null, RegisteredChannelsEventLoopChooserFactory.INSTANCE);
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Test
+    public void testChoosesLeastLoadedEventLoop() throws Exception {
+        Iterator<SingleThreadEventLoop> loops = group.<SingleThreadEventLoop>children().iterator();
+        SingleThreadEventLoop busy = loops.next();
+        SingleThreadEventLoop idle = loops.next();
+
+        Channel ch = new LocalChannel();
+        busy.register(ch).sync();
+        assertEquals(1, busy.metrics().registeredChannels());
+        assertEquals(0, idle.metrics().registeredChannels());
+
+        // With two event loops both are compared every time.
+        for (int i = 0; i < 16; i ++) {
+            assertSame(idle, group.next());
+        }
+
+        ch.close().sync();
+        // The channel is deregistered from the event loop after it was closed.
+        busy.submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).sync();
+        assertEquals(0, busy.metrics().registeredChannels());
+    }
+}
@@ -708,6 +708,73 @@ public class SingleThreadEventLoopTest {
         assertTrue(oneTimeScheduledTaskExecuted.get());
     }
 
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        final int numTasks = 100;
+        EventLoopMetrics metrics = loopB.metrics();
+
+        // Start the event loop first. This runs our task and the one which schedules the purge task.
+        loopB.submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).sync();
+        while (metrics.completedTasks() < 2) {
+            Thread.sleep(10);
+        }
+        final long completedTasks = metrics.completedTasks();
+        assertEquals(2, completedTasks);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        loopB.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                // Adding a task interrupts the thread of SingleThreadEventLoopB, so wait until we are released.
+                for (;;) {
+                    try {
+                        blocked.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                }
+            }
+        });
+        started.await();
+
+        final CountDownLatch latch = new CountDownLatch(numTasks);
+        for (int i = 0; i < numTasks; i ++) {
+            loopB.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        // The latency probe which was added behind the first task is not counted.
+        assertEquals(numTasks, metrics.pendingTasks());
+        blocked.countDown();
+        latch.await();
+
+        // The counters are updated after runAllTasks() ran all tasks.
+        while (metrics.completedTasks() < completedTasks + numTasks + 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(completedTasks + numTasks + 1, metrics.completedTasks());
+        assertEquals(0, metrics.pendingTasks());
+
+        long samples = 0;
+        for (long count: metrics.taskQueueLatencyHistogram()) {
+            samples += count;
+        }
+        assertTrue(samples > 0);
+        assertEquals(0, metrics.ioWaitTime());
+        assertEquals(0, metrics.selectorRebuilds());
+    }
+
     private static class SingleThreadEventLoopA extends SingleThreadEventLoop {
 
         final AtomicInteger cleanedUp = new AtomicInteger();
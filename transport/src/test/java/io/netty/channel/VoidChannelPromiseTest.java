@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class VoidChannelPromiseTest {
+
+    @Test
+    public void testUnvoidFiresFailure() {
+        final AtomicReference<Throwable> caught = new AtomicReference<Throwable>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                caught.set(cause);
+            }
+        });
+
+        ChannelPromise promise = channel.voidPromise().unvoid();
+        assertFalse(promise.isVoid());
+        assertTrue(promise.trySuccess());
+        assertNull(caught.get());
+
+        // The failure is fired by a listener, so in order with the listeners added later.
+        final Exception cause = new Exception();
+        final AtomicReference<Throwable> caughtBeforeListener = new AtomicReference<Throwable>();
+        promise = channel.voidPromise().unvoid();
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                caughtBeforeListener.set(caught.get());
+            }
+        });
+        assertTrue(promise.tryFailure(cause));
+        assertSame(cause, caught.get());
+        assertSame(cause, caughtBeforeListener.get());
+        assertFalse(promise.tryFailure(new Exception()));
+        assertSame(cause, caught.get());
+
+        promise = channel.voidPromise().unvoid();
+        assertTrue(promise.cancel(false));
+        assertTrue(caught.get() instanceof CancellationException);
+
+        // The promise of the unsafe does not fire any failures.
+        caught.set(null);
+        promise = channel.unsafe().voidPromise().unvoid();
+        promise.setFailure(cause);
+        assertSame(cause, promise.cause());
+        assertNull(caught.get());
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.CountingChannelPoolHandler.DiscardHandler;
+import io.netty.channel.pool.FixedChannelPool.AcquireTimeoutAction;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class FixedChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.id";
+
+    private EventLoopGroup group;
+    private Channel sc;
+    private Bootstrap cb;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group).channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new DiscardHandler());
+              }
+          });
+        sc = sb.bind(addr).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sc.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testAcquire() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new FixedChannelPool(cb, handler, 1, Integer.MAX_VALUE);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.isDone());
+
+        pool.release(channel).syncUninterruptibly();
+        assertTrue(future.await(1, TimeUnit.SECONDS));
+
+        Channel channel2 = future.getNow();
+        assertSame(channel, channel2);
+        assertEquals(1, handler.channelCount());
+        assertEquals(2, handler.acquiredCount());
+        assertEquals(1, handler.releasedCount());
+
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testAcquireTimeout() throws Exception {
+        ChannelPool pool = new FixedChannelPool(cb, new CountingChannelPoolHandler(), ChannelHealthChecker.ACTIVE,
+                                                AcquireTimeoutAction.FAIL, 500, 1, Integer.MAX_VALUE);
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        try {
+            pool.acquire().syncUninterruptibly();
+        } finally {
+            pool.release(channel).syncUninterruptibly();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testAcquireNewConnection() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new FixedChannelPool(cb, handler, ChannelHealthChecker.ACTIVE,
+                                                AcquireTimeoutAction.NEW, 500, 1, Integer.MAX_VALUE);
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        Channel channel2 = pool.acquire().syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+        assertEquals(2, handler.channelCount());
+
+        pool.release(channel).syncUninterruptibly();
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAcquireBoundQueue() throws Exception {
+        ChannelPool pool = new FixedChannelPool(cb, new CountingChannelPoolHandler(), 1, 1);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.isDone());
+        try {
+            pool.acquire().syncUninterruptibly();
+        } finally {
+            pool.release(channel).syncUninterruptibly();
+            pool.release(future.syncUninterruptibly().getNow()).syncUninterruptibly();
+            pool.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseDifferentPool() throws Exception {
+        ChannelPool pool = new FixedChannelPool(cb, new CountingChannelPoolHandler(), 1, 1);
+        ChannelPool pool2 = new FixedChannelPool(cb, new CountingChannelPoolHandler(), 1, 1);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        try {
+            pool2.release(channel).syncUninterruptibly();
+        } finally {
+            pool.close();
+            pool2.close();
+        }
+    }
+
+    @Test
+    public void testReleaseAfterClosePool() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(cb, new CountingChannelPoolHandler(), 2);
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        pool.close();
+
+        Future<Void> f = pool.release(channel).awaitUninterruptibly();
+        assertSame(FixedChannelPool.POOL_CLOSED_ON_RELEASE_EXCEPTION, f.cause());
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireAfterClosePool() throws Exception {
+        FixedChannelPool pool = new FixedChannelPool(cb, new CountingChannelPoolHandler(), 2);
+        pool.close();
+
+        Future<Channel> f = pool.acquire().awaitUninterruptibly();
+        assertSame(FixedChannelPool.POOL_CLOSED_ON_ACQUIRE_EXCEPTION, f.cause());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.CountingChannelPoolHandler.DiscardHandler;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.ThreadExecutorMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SimpleChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.id";
+
+    private EventLoopGroup group;
+    private Channel sc;
+    private Bootstrap cb;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group).channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new DiscardHandler());
+              }
+          });
+        sc = sb.bind(addr).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sc.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testAcquire() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new SimpleChannelPool(cb, handler);
+
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).syncUninterruptibly();
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertSame(channel, channel2);
+        assertEquals(1, handler.channelCount());
+        pool.release(channel2).syncUninterruptibly();
+
+        // Should fail on multiple release calls.
+        try {
+            pool.release(channel2).syncUninterruptibly();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+            assertFalse(channel.isActive());
+        }
+
+        assertEquals(2, handler.acquiredCount());
+        assertEquals(2, handler.releasedCount());
+        pool.close();
+    }
+
+    @Test
+    public void testUnhealthyChannelIsNotReused() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new SimpleChannelPool(cb, handler);
+
+        Channel channel1 = pool.acquire().sync().getNow();
+        pool.release(channel1).syncUninterruptibly();
+        channel1.close().syncUninterruptibly();
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel1, channel2);
+        assertEquals(2, handler.channelCount());
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test
+    public void testReleaseClosedChannelIsNotOfferedBack() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        ChannelPool pool = new SimpleChannelPool(cb, handler);
+
+        Channel channel1 = pool.acquire().sync().getNow();
+        channel1.close().syncUninterruptibly();
+        // Releasing a closed Channel succeeds but the Channel is dropped by the release health check.
+        assertTrue(pool.release(channel1).syncUninterruptibly().isSuccess());
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel1, channel2);
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test
+    public void testLifo() throws Exception {
+        testOrder(true);
+    }
+
+    @Test
+    public void testFifo() throws Exception {
+        testOrder(false);
+    }
+
+    private void testOrder(boolean lastRecentUsed) throws Exception {
+        ChannelPool pool = new SimpleChannelPool(
+                cb, new CountingChannelPoolHandler(), ChannelHealthChecker.ACTIVE, true, lastRecentUsed);
+
+        Channel channel1 = pool.acquire().sync().getNow();
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel1, channel2);
+        pool.release(channel1).syncUninterruptibly();
+        pool.release(channel2).syncUninterruptibly();
+
+        Channel channel = pool.acquire().sync().getNow();
+        assertSame(lastRecentUsed ? channel2 : channel1, channel);
+        pool.release(channel).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test
+    public void testReleaseToOtherPoolFails() throws Exception {
+        ChannelPool pool = new SimpleChannelPool(cb, new CountingChannelPoolHandler());
+        ChannelPool pool2 = new SimpleChannelPool(cb, new CountingChannelPoolHandler());
+
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Void> f = pool2.release(channel).awaitUninterruptibly();
+        assertTrue(f.cause() instanceof IllegalArgumentException);
+        assertFalse(channel.isActive());
+        pool.close();
+        pool2.close();
+    }
+
+    @Test
+    public void testCloseClosesIdleChannels() throws Exception {
+        ChannelPool pool = new SimpleChannelPool(cb, new CountingChannelPoolHandler());
+
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).syncUninterruptibly();
+        pool.close();
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireFromEventLoopIsNotifiedByIt() throws Exception {
+        final ChannelPool pool = new SimpleChannelPool(cb, new CountingChannelPoolHandler());
+        final EventLoop loop = group.next();
+        final AtomicReference<EventExecutor> notifier = new AtomicReference<EventExecutor>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Future<Channel> future = loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return acquire(pool, notifier, latch);
+            }
+        }).sync().getNow();
+        latch.await();
+        assertSame(loop, notifier.get());
+
+        pool.release(future.sync().getNow()).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test
+    public void testAcquireFromOtherThreadIsNotifiedByEventLoopOfGroup() throws Exception {
+        ChannelPool pool = new SimpleChannelPool(cb, new CountingChannelPoolHandler());
+        AtomicReference<EventExecutor> notifier = new AtomicReference<EventExecutor>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Future<Channel> future = acquire(pool, notifier, latch);
+        latch.await();
+        assertTrue(notifier.get() instanceof EventLoop);
+        assertSame(group, notifier.get().parent());
+
+        pool.release(future.sync().getNow()).syncUninterruptibly();
+        pool.close();
+    }
+
+    private static Future<Channel> acquire(
+            ChannelPool pool, final AtomicReference<EventExecutor> notifier, final CountDownLatch latch) {
+        return pool.acquire().addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(Future<Channel> future) {
+                notifier.set(ThreadExecutorMap.currentExecutor());
+                latch.countDown();
+            }
+        });
+    }
+}